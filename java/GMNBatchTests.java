@@ -0,0 +1,152 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.BitSet;
+
+/*
+ * These are unit tests for the columnar batch API.
+ *
+ * Rows are checked against the results of the single-GMN methods of the
+ * helper API.
+ *
+ */
+import org.gs1.*;
+import static org.gs1.GMNValidationResult.Reason.*;
+
+public class GMNBatchTests
+{
+
+        @Test
+        public void verify_MixedRows() throws Exception
+        {
+            GMNBatch batch = new GMNBatch(2);
+            batch.add("1987654Ad4X4bL5ttr2310c2K");
+            batch.add("1987654Ad4X4bL5ttr2310c2X");
+            batch.add("12345XX");
+            batch.add("19876£4Ad4X4bL5ttr2310c2K".toCharArray(), 0, 25);
+            batch.add("--12345ANJ".getBytes("US-ASCII"), 2, 8);
+
+            assertEquals(2, batch.verify());
+            assertEquals(5, batch.size());
+
+            BitSet expected = new BitSet();
+            expected.set(0);
+            expected.set(4);
+            assertEquals(expected, batch.validRows());
+
+            assertEquals(VALID, batch.getReason(0));
+            assertEquals(CHECK_MISMATCH, batch.getReason(1));
+            assertEquals(TOO_SHORT, batch.getReason(2));
+            assertEquals(INVALID_CHARACTER, batch.getReason(3));
+            assertEquals(5, batch.getPosition(3));
+
+            assertEquals("2K", batch.getCheckCharacters(0));
+            assertEquals("2K", batch.getCheckCharacters(1));
+            assertNull(batch.getCheckCharacters(2));
+            assertEquals("12345ANJ", batch.get(4));
+        }
+
+        @Test
+        public void complete_PackedCheckCharacters() throws Exception
+        {
+            GMNBatch batch = new GMNBatch();
+            batch.add("1987654Ad4X4bL5ttr2310c");
+            batch.add("12345");
+            batch.add("12345A");
+
+            assertEquals(2, batch.complete());
+            assertTrue(batch.isValid(0));
+            assertFalse(batch.isValid(1));
+            assertEquals(TOO_SHORT, batch.getReason(1));
+
+            byte[] checks = batch.checkCharacterBuffer();
+            assertEquals('2', checks[0]);
+            assertEquals('K', checks[1]);
+            assertEquals(0, checks[2]);
+            assertEquals('N', checks[4]);
+            assertEquals('J', checks[5]);
+
+            char[] out = new char[2];
+            assertEquals(2, batch.getCheckCharacters(2, out, 0));
+            assertEquals("NJ", new String(out));
+        }
+
+        @Test
+        public void clear_ReusesBatch() throws Exception
+        {
+            GMNBatch batch = new GMNBatch(1);
+            for (int round = 0; round < 3; round++)
+            {
+                batch.clear();
+                for (int i = 0; i < 100; i++)
+                    batch.add(i % 2 == 0 ? "12345678901234567890123NT" : "12345678901234567890123NX");
+                assertEquals(50, batch.verify());
+                assertEquals(50, batch.validRows().cardinality());
+            }
+        }
+
+        @Test
+        public void verify_AgreesWithVerifyCheckCharacters() throws Exception
+        {
+            String[] inputs = { "7907665Bm8v2AB", "97850l6KZm0yCD", "00000!HV", "99999zzzzzzzzzzzzzzzzzzT2",
+                                "1987654Ad4X4bL5ttr2310cXK", "12345678901234567890123NT" };
+            GMNBatch batch = new GMNBatch();
+            for (String gmn : inputs)
+                batch.add(gmn);
+            batch.verify();
+            for (int i = 0; i < inputs.length; i++)
+                assertEquals(HealthcareGMN.verifyCheckCharacters(inputs[i]), batch.isValid(i));
+        }
+
+        @Test
+        public void verifyAndComplete_EveryByteAtEveryPosition() throws Exception
+        {
+            // Rows of every length with each byte value substituted at each
+            // position, which exercises the character classification of every
+            // lane and the bounds of the prefix and check character pair
+            String base = "1987654Ad4X4bL5ttr2310c2K99";
+            GMNBatch batch = new GMNBatch();
+            java.util.List<String> inputs = new java.util.ArrayList<String>();
+            for (int len = 0; len <= base.length(); len++)
+            {
+                for (int i = 0; i < len; i++)
+                {
+                    for (int b = 0; b < 256; b++)
+                    {
+                        byte[] row = base.substring(0, len).getBytes("US-ASCII");
+                        row[i] = (byte) b;
+                        batch.add(row, 0, len);
+                        char[] c = base.substring(0, len).toCharArray();
+                        c[i] = (char) b;
+                        inputs.add(new String(c));
+                    }
+                }
+            }
+
+            batch.verify();
+            for (int row = 0; row < inputs.size(); row++)
+            {
+                GMNValidationResult expected = HealthcareGMN.validate(inputs.get(row));
+                assertEquals(inputs.get(row), expected.getReason(), batch.getReason(row));
+                assertEquals(inputs.get(row), expected.getPosition(), batch.getPosition(row));
+            }
+
+            batch.complete();
+            for (int row = 0; row < inputs.size(); row++)
+            {
+                GMNValidationResult expected = HealthcareGMN.validatePartial(inputs.get(row));
+                assertEquals(inputs.get(row), expected.getReason(), batch.getReason(row));
+                assertEquals(inputs.get(row), expected.getPosition(), batch.getPosition(row));
+            }
+        }
+
+        @Test(expected = IndexOutOfBoundsException.class)
+        public void getReason_OutOfRange() throws Exception
+        {
+            GMNBatch batch = new GMNBatch();
+            batch.add("12345ANJ");
+            batch.verify();
+            batch.getReason(1);
+        }
+
+}
@@ -0,0 +1,126 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/*
+ * These are unit tests for the Bloom filter of registered healthcare GMNs.
+ *
+ * Members must always be found, and the rate of false positives for
+ * non-members is checked against the rate for which the filter was sized.
+ *
+ */
+import org.gs1.*;
+
+public class GMNBloomFilterTests
+{
+
+        @Rule
+        public TemporaryFolder folder = new TemporaryFolder();
+
+        @Test
+        public void membersFoundAndFalsePositivesBounded() throws Exception
+        {
+            GMNBloomFilter filter = GMNBloomFilter.forInsertions(10000, 0.01);
+            String[] members = GMNTestInputs.randomGMNs(10000, 1);
+            for (String gmn : members)
+                filter.put(gmn);
+            for (String gmn : members)
+            {
+                assertTrue(filter.mightContain(gmn));
+                assertTrue(filter.isPossiblyRegistered(gmn));
+            }
+            int positives = 0;
+            for (String gmn : GMNTestInputs.randomGMNs(10000, 2))
+                if (filter.mightContain(gmn))
+                    positives++;
+            assertTrue("False positives: " + positives, positives < 200);
+            assertEquals(10000, filter.getInsertionCount());
+        }
+
+        @Test
+        public void isPossiblyRegistered_RequiresValidGMN() throws Exception
+        {
+            GMNBloomFilter filter = GMNBloomFilter.forInsertions(100, 0.01);
+            filter.put("1987654Ad4X4bL5ttr2310c2K");
+            assertTrue(filter.isPossiblyRegistered("1987654Ad4X4bL5ttr2310c2K"));
+            assertFalse(filter.isPossiblyRegistered("1987654Ad4X4bL5ttr2310cXK"));
+            assertFalse(filter.isPossiblyRegistered("1987654Ad4X4bL5ttr2310c2"));
+            assertFalse(filter.mightContain("1987654Ad4X4bL5ttr2310c£K"));
+            try
+            {
+                filter.put("1987654Ad4X4bL5ttr2310cXK");
+                fail();
+            }
+            catch (GS1Exception e)
+            {
+                assertEquals("The check character pair is incorrect.", e.getMessage());
+            }
+        }
+
+        @Test
+        public void putAll_SaveAndLoad() throws Exception
+        {
+            String[] members = GMNTestInputs.randomGMNs(1000, 3);
+            File list = folder.newFile();
+            Files.write(list.toPath(), (String.join("\n", members) + "\n\n  ").getBytes(StandardCharsets.UTF_8));
+            GMNBloomFilter filter = GMNBloomFilter.forInsertions(1000, 0.001);
+            assertEquals(1000, filter.putAll(list.toPath()));
+
+            File saved = folder.newFile();
+            filter.save(saved.toPath());
+            GMNBloomFilter loaded = GMNBloomFilter.load(saved.toPath());
+            assertEquals(filter.getBitCount(), loaded.getBitCount());
+            assertEquals(filter.getHashCount(), loaded.getHashCount());
+            assertEquals(1000, loaded.getInsertionCount());
+            for (String gmn : members)
+                assertTrue(loaded.mightContain(gmn));
+            for (String gmn : GMNTestInputs.randomGMNs(1000, 4))
+                assertEquals(filter.mightContain(gmn), loaded.mightContain(gmn));
+        }
+
+        @Test
+        public void putAll_ReportsLine() throws Exception
+        {
+            File list = folder.newFile();
+            Files.write(list.toPath(), "1987654Ad4X4bL5ttr2310c2K\n12345\n".getBytes(StandardCharsets.UTF_8));
+            try
+            {
+                GMNBloomFilter.forInsertions(100, 0.01).putAll(list.toPath());
+                fail();
+            }
+            catch (GS1Exception e)
+            {
+                assertEquals("Line 2: The input is too short. It should be at least 8 characters long.", e.getMessage());
+                assertEquals(GMNValidationResult.Reason.TOO_SHORT, e.getReason());
+            }
+        }
+
+        @Test
+        public void withBits_RejectsInvalidSize() throws Exception
+        {
+            assertEquals(128, GMNBloomFilter.withBits(65, 1).getBitCount());
+            try
+            {
+                GMNBloomFilter.withBits(64, 0);
+                fail();
+            }
+            catch (IllegalArgumentException e)
+            {
+                assertEquals("The number of hash functions must be at least 1.", e.getMessage());
+            }
+            try
+            {
+                GMNBloomFilter.withBits(0, 3);
+                fail();
+            }
+            catch (IllegalArgumentException e)
+            {
+            }
+        }
+
+}
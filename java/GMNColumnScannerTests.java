@@ -0,0 +1,164 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/*
+ * These are unit tests for the CSV column scanner.
+ *
+ * Expected outcomes are calculated with the String methods of the helper API.
+ *
+ */
+import org.gs1.*;
+
+public class GMNColumnScannerTests
+{
+
+        @Rule
+        public TemporaryFolder folder = new TemporaryFolder();
+
+        private String annotate(GMNColumnScanner scanner, String content, GMNFileProcessor.Summary[] summary) throws Exception
+        {
+            File in = folder.newFile();
+            File out = folder.newFile();
+            Files.write(in.toPath(), content.getBytes(StandardCharsets.UTF_8));
+            summary[0] = scanner.annotate(in.toPath(), out.toPath());
+            return new String(Files.readAllBytes(out.toPath()), StandardCharsets.UTF_8);
+        }
+
+        private static String reason(String gmn)
+        {
+            return HealthcareGMN.validate(gmn).getReason().name();
+        }
+
+        @Test
+        public void annotate_QuotedFieldsByName() throws Exception
+        {
+            String content =
+                "id,\"description, long\",GMN,price\r\n" +
+                "1,\"Stent, coated\",1987654Ad4X4bL5ttr2310c2K,10.00\r\n" +
+                "2,\"Line one\nline two\",\"1987654Ad4X4bL5ttr2310cXK\",\"5\"\r\n" +
+                "3,\"Says \"\"hi\"\"\",\"12345\"\"AB\",1\r\n" +
+                "\r\n" +
+                "4,short\r\n" +
+                "5,,,\r\n" +
+                "6,x,12345ANJ,2";
+            String expected =
+                "id,\"description, long\",GMN,price,gmnCheck\r\n" +
+                "1,\"Stent, coated\",1987654Ad4X4bL5ttr2310c2K,10.00,VALID\r\n" +
+                "2,\"Line one\nline two\",\"1987654Ad4X4bL5ttr2310cXK\",\"5\",CHECK_MISMATCH\r\n" +
+                "3,\"Says \"\"hi\"\"\",\"12345\"\"AB\",1," + reason("12345\"AB") + "\r\n" +
+                "\r\n" +
+                "4,short,TOO_SHORT\r\n" +
+                "5,,,,TOO_SHORT\r\n" +
+                "6,x,12345ANJ,2,VALID";
+
+            GMNColumnScanner scanner = new GMNColumnScanner.Builder(GMNFileProcessor.Mode.VERIFY).column("GMN").build();
+            GMNFileProcessor.Summary[] summary = new GMNFileProcessor.Summary[1];
+            assertEquals(expected, annotate(scanner, content, summary));
+            assertEquals(6, summary[0].getLines());
+            assertEquals(2, summary[0].getValid());
+            assertEquals(2, summary[0].getCount(GMNValidationResult.Reason.TOO_SHORT));
+        }
+
+        @Test
+        public void reject_TsvByPosition() throws Exception
+        {
+            String content =
+                "A\t1987654Ad4X4bL5ttr2310c\n" +
+                "B\t12345\n" +
+                "C\tABC7654Ad4X4bL5ttr2310c\n" +
+                "D\t12345A\n";
+            GMNColumnScanner scanner = new GMNColumnScanner.Builder(GMNFileProcessor.Mode.COMPLETE)
+                .column(1).delimiter('\t').header(false).build();
+
+            File in = folder.newFile();
+            File rejects = folder.newFile();
+            Files.write(in.toPath(), content.getBytes(StandardCharsets.UTF_8));
+            GMNFileProcessor.Summary summary = scanner.reject(in.toPath(), rejects.toPath());
+            assertEquals("B\t12345\tTOO_SHORT\nC\tABC7654Ad4X4bL5ttr2310c\tGCP_NOT_NUMERIC\n",
+                new String(Files.readAllBytes(rejects.toPath()), StandardCharsets.UTF_8));
+            assertEquals(2, summary.getValid());
+            assertEquals(2, summary.getInvalid());
+
+            GMNFileProcessor.Summary[] annotated = new GMNFileProcessor.Summary[1];
+            assertEquals("A\t1987654Ad4X4bL5ttr2310c\t2K\n", annotate(scanner, content, annotated).substring(0, 29));
+        }
+
+        @Test
+        public void annotate_RowsStraddleReads() throws Exception
+        {
+            // Quoted line terminators and rows cross the boundaries of the
+            // input buffer, and one row is longer than the buffer
+            StringBuilder content = new StringBuilder("sku,notes,gmn\n");
+            StringBuilder expected = new StringBuilder("sku,notes,gmn,status\n");
+            String[] gmns = { "1987654Ad4X4bL5ttr2310c2K", "1987654Ad4X4bL5ttr2310cXK", "12345ANJ", "1234" };
+            for (int i = 0; i < 60000; i++)
+            {
+                String gmn = gmns[i % gmns.length];
+                String notes = i == 30000 ? new String(new char[3 << 20]).replace('\0', 'n') : "\"a,b\r\nc\"\"d\"";
+                String row = i + "," + notes + "," + gmn;
+                content.append(row).append(i % 2 == 0 ? "\n" : "\r\n");
+                expected.append(row).append(',').append(reason(gmn)).append(i % 2 == 0 ? "\n" : "\r\n");
+            }
+
+            GMNColumnScanner scanner = new GMNColumnScanner.Builder(GMNFileProcessor.Mode.VERIFY)
+                .column(2).resultColumn("status").build();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            GMNFileProcessor.Summary summary = scanner.annotate(
+                Channels.newChannel(new ByteArrayInputStream(content.toString().getBytes(StandardCharsets.UTF_8))), Channels.newChannel(out));
+            assertEquals(expected.toString(), new String(out.toByteArray(), StandardCharsets.UTF_8));
+            assertEquals(60000, summary.getLines());
+            assertEquals(30000, summary.getValid());
+        }
+
+        @Test
+        public void configurationErrors() throws Exception
+        {
+            GMNColumnScanner.Builder builder = new GMNColumnScanner.Builder(GMNFileProcessor.Mode.VERIFY);
+            try
+            {
+                builder.build();
+                fail();
+            }
+            catch (IllegalStateException e)
+            {
+            }
+            try
+            {
+                builder.column("gmn").header(false).build();
+                fail();
+            }
+            catch (IllegalStateException e)
+            {
+            }
+            try
+            {
+                builder.delimiter('\n');
+                fail();
+            }
+            catch (IllegalArgumentException e)
+            {
+            }
+
+            GMNColumnScanner scanner = builder.header(true).build();
+            try
+            {
+                annotate(scanner, "id,GMN\n1,12345ANJ\n", new GMNFileProcessor.Summary[1]);
+                fail();
+            }
+            catch (IOException e)
+            {
+                assertTrue(e.getMessage().contains("[id, GMN]"));
+            }
+        }
+
+}
@@ -0,0 +1,198 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/*
+ * These are unit tests for the external-sort deduplication pipeline.
+ *
+ * The output is compared with an in-memory sort of the distinct valid inputs,
+ * using memory limits small enough to force several runs and merge passes.
+ *
+ */
+import org.gs1.*;
+
+public class GMNDeduplicatorTests
+{
+
+        @Rule
+        public TemporaryFolder folder = new TemporaryFolder();
+
+        // Write a list of valid GMNs, with duplicates, mixed line endings and
+        // occasional invalid, padded or empty lines, and return the expected
+        // output and rejects
+        private static int writeInput(Path input, int n, long seed, TreeSet<String> expected, List<String> rejects) throws Exception
+        {
+            Random rnd = new Random(seed);
+            List<String> seen = new ArrayList<String>();
+            StringBuilder sb = new StringBuilder();
+            String[] eol = { "\n", "\r\n", "\r" };
+            for (int i = 0; i < n; i++)
+            {
+                String line;
+                if (i % 37 == 5)
+                {
+                    line = GMNTestInputs.randomGMN(rnd);
+                    line = line.substring(0, line.length() - 1) + (line.endsWith("2") ? "3" : "2");
+                }
+                else
+                {
+                    line = !seen.isEmpty() && rnd.nextInt(4) == 0 ? seen.get(rnd.nextInt(seen.size())) : GMNTestInputs.randomGMN(rnd);
+                }
+
+                // Lines are checked as read, so padding makes a line invalid
+                if (rnd.nextInt(10) == 0)
+                    line = "  " + line + "\t";
+                if (i % 37 != 5 && line.equals(line.trim()))
+                {
+                    seen.add(line);
+                    expected.add(line);
+                }
+                else
+                {
+                    rejects.add(line + " : " + HealthcareGMN.validate(line).getMessage());
+                }
+                String terminator = eol[rnd.nextInt(3)];
+                sb.append(line).append(terminator);
+                if (rnd.nextInt(50) == 0)
+                {
+                    sb.append(terminator);
+                    rejects.add(" : " + HealthcareGMN.validate("").getMessage());
+                }
+            }
+            Files.write(input, sb.toString().getBytes(StandardCharsets.UTF_8));
+            return seen.size();
+        }
+
+        private void check(long memoryLimit, int parallelism, int n, long seed) throws Exception
+        {
+            Path input = folder.newFile().toPath();
+            Path output = folder.newFile().toPath();
+            Path rejected = folder.newFile().toPath();
+            Path temp = folder.newFolder().toPath();
+            TreeSet<String> expected = new TreeSet<String>();
+            List<String> rejects = new ArrayList<String>();
+            int valid = writeInput(input, n, seed, expected, rejects);
+
+            GMNDeduplicator.Summary summary;
+            ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+            try
+            {
+                summary = new GMNDeduplicator(memoryLimit, temp).process(input, output, rejected, pool, parallelism);
+            }
+            finally
+            {
+                pool.shutdown();
+            }
+
+            assertEquals(new ArrayList<String>(expected), Files.readAllLines(output, StandardCharsets.UTF_8));
+            assertEquals(rejects, Files.readAllLines(rejected, StandardCharsets.UTF_8));
+            assertEquals(valid + rejects.size(), summary.getLines());
+            assertEquals(valid, summary.getValid());
+            assertEquals(rejects.size(), summary.getRejected());
+            assertEquals(expected.size(), summary.getDistinct());
+            assertEquals(valid - expected.size(), summary.getDuplicates());
+            assertEquals(0, Files.list(temp).count());
+        }
+
+        @Test
+        public void singleRun() throws Exception
+        {
+            check(GMNDeduplicator.DEFAULT_MEMORY_LIMIT, 1, 2000, 1);
+        }
+
+        @Test
+        public void multiPassMerge() throws Exception
+        {
+            // 1024-entry runs, merged two at a time
+            check(1, 1, 20000, 2);
+        }
+
+        @Test
+        public void parallelRuns() throws Exception
+        {
+            check(1 << 17, 4, 20000, 3);
+        }
+
+        @Test
+        public void countsMatchFileProcessor() throws Exception
+        {
+            // Both read lines by the same rule, so count the same lines as valid
+            Path input = folder.newFile().toPath();
+            writeInput(input, 2000, 5, new TreeSet<String>(), new ArrayList<String>());
+            GMNDeduplicator.Summary summary = new GMNDeduplicator().process(input, folder.newFile().toPath(), folder.newFile().toPath());
+            GMNFileProcessor.Summary expected = new GMNFileProcessor(GMNFileProcessor.Mode.VERIFY).process(input, folder.newFile().toPath());
+            assertEquals(expected.getLines(), summary.getLines());
+            assertEquals(expected.getValid(), summary.getValid());
+            assertEquals(expected.getInvalid(), summary.getRejected());
+        }
+
+        @Test
+        public void failedRangeWaitsForTheOthers() throws Exception
+        {
+            // The first range starts late and the second is rejected. The
+            // failure is reported only once the first range has finished, so
+            // that none of its files are left behind.
+            Path input = folder.newFile().toPath();
+            Path temp = folder.newFolder().toPath();
+            writeInput(input, 2000, 4, new TreeSet<String>(), new ArrayList<String>());
+            List<Thread> threads = new ArrayList<Thread>();
+            Executor executor = task -> {
+                if (!threads.isEmpty())
+                    throw new RejectedExecutionException();
+                Thread t = new Thread(() -> {
+                    try
+                    {
+                        Thread.sleep(200);
+                    }
+                    catch (InterruptedException e)
+                    {
+                    }
+                    task.run();
+                });
+                threads.add(t);
+                t.start();
+            };
+            try
+            {
+                new GMNDeduplicator(1, temp).process(input, folder.newFile().toPath(), folder.newFile().toPath(), executor, 2);
+                fail();
+            }
+            catch (RejectedExecutionException e)
+            {
+            }
+            threads.get(0).join();
+            assertEquals(0, Files.list(temp).count());
+        }
+
+        @Test
+        public void rejectsNonAscii() throws Exception
+        {
+            Path input = folder.newFile().toPath();
+            Path output = folder.newFile().toPath();
+            Path rejected = folder.newFile().toPath();
+            Files.write(input, "1987654Ad4X4bL5ttr2310c2K\n1987654Ad4X4bL5ttr2310c£K\n\n12345\n1987654Ad4X4bL5ttr2310c2K".getBytes(StandardCharsets.UTF_8));
+            GMNDeduplicator.Summary summary = new GMNDeduplicator().process(input, output, rejected);
+            assertEquals(1, summary.getDistinct());
+            assertEquals(5, summary.getLines());
+            assertEquals("[1987654Ad4X4bL5ttr2310c2K]", Files.readAllLines(output, StandardCharsets.UTF_8).toString());
+            List<String> r = Files.readAllLines(rejected, StandardCharsets.UTF_8);
+            assertEquals(3, r.size());
+            assertEquals("1987654Ad4X4bL5ttr2310c£K : " + HealthcareGMN.validate("1987654Ad4X4bL5ttr2310c£K").getMessage(), r.get(0));
+            assertEquals(" : The input is too short. It should be at least 8 characters long.", r.get(1));
+            assertEquals("12345 : The input is too short. It should be at least 8 characters long.", r.get(2));
+        }
+
+}
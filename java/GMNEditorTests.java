@@ -0,0 +1,181 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+/*
+ * These are unit tests for the incremental editor.
+ *
+ * After every edit of a random sequence, the state of the editor is compared
+ * with the results of the String methods of the helper API for its content.
+ *
+ */
+import org.gs1.*;
+
+public class GMNEditorTests
+{
+
+        // Mostly cset82, with some cset32-only, invalid and non-ASCII characters
+        private static final String CHARACTERS = "0123456789ABCDEFGHJKLMNPQRSTUVWXYZabcxyz!\"%/_ #@[`£";
+
+        private static void assertMatches(GMNEditor editor, String content) throws Exception
+        {
+            assertEquals(content, editor.toString());
+            assertEquals(content.length(), editor.length());
+
+            GMNValidationResult expected = editor.isComplete() ? HealthcareGMN.validate(content) : HealthcareGMN.validatePartial(content);
+            assertEquals(content, expected.getReason(), editor.getReason());
+            assertEquals(content, expected.getPosition(), editor.getPosition());
+            assertEquals(content, expected.isValid(), editor.isValid());
+            assertEquals(content, expected.getMessage(), editor.getValidation().getMessage());
+
+            boolean[] good = HealthcareGMN.goodCharacterPositions(content, editor.isComplete());
+            for (int i = 0; i < good.length; i++)
+                assertEquals(content + " at " + i, good[i], editor.isGoodCharacter(i));
+
+            String checks = null;
+            if (editor.isComplete() && editor.isWellFormed())
+                checks = HealthcareGMN.checkCharacters(content.substring(0, content.length() - 2));
+            else if (!editor.isComplete() && expected.isValid())
+                checks = HealthcareGMN.checkCharacters(content);
+            assertEquals(content, checks, editor.getCheckCharacters());
+        }
+
+        private static void randomEdits(boolean complete, long seed) throws Exception
+        {
+            Random random = new Random(seed);
+            GMNEditor editor = new GMNEditor(complete);
+            StringBuilder content = new StringBuilder();
+            for (int n = 0; n < 20000; n++)
+            {
+                int op = random.nextInt(10);
+                char c = CHARACTERS.charAt(random.nextInt(CHARACTERS.length()));
+                if (content.length() == 0 || (op < 5 && content.length() < 30))
+                {
+                    // Mostly typing at the end
+                    int pos = op < 3 ? content.length() : random.nextInt(content.length() + 1);
+                    if (op == 4)
+                    {
+                        // Occasionally pasting several characters
+                        StringBuilder paste = new StringBuilder().append(c);
+                        for (int i = random.nextInt(6); i > 0; i--)
+                            paste.append(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+                        editor.insert(pos, paste);
+                        content.insert(pos, paste);
+                    }
+                    else
+                    {
+                        editor.insert(pos, c);
+                        content.insert(pos, c);
+                    }
+                }
+                else if (op < 8)
+                {
+                    int pos = random.nextInt(content.length());
+                    editor.delete(pos);
+                    content.deleteCharAt(pos);
+                }
+                else
+                {
+                    int pos = random.nextInt(content.length());
+                    editor.replace(pos, c);
+                    content.setCharAt(pos, c);
+                }
+                assertMatches(editor, content.toString());
+            }
+        }
+
+        @Test
+        public void partial_RandomEdits() throws Exception
+        {
+            randomEdits(false, 1);
+        }
+
+        @Test
+        public void complete_RandomEdits() throws Exception
+        {
+            randomEdits(true, 2);
+        }
+
+        @Test
+        public void typing_LiveCheckCharacters() throws Exception
+        {
+            GMNEditor editor = new GMNEditor(false);
+            String part = "1987654Ad4X4bL5ttr2310c";
+            for (int i = 0; i < part.length(); i++)
+            {
+                editor.append(part.charAt(i));
+                assertEquals(i + 1 >= 6, editor.isValid());
+            }
+            char[] dst = new char[4];
+            assertEquals(3, editor.checkCharacters(dst, 1));
+            assertEquals("2K", new String(dst, 1, 2));
+
+            editor.append('X');
+            assertEquals(GMNValidationResult.Reason.TOO_LONG, editor.getReason());
+            assertEquals(0, editor.checkCharacters(dst, 0));
+            assertNull(editor.getCheckCharacters());
+
+            editor.delete(0, 8);
+            editor.insert(0, "1987654A");
+            editor.delete(editor.length() - 1);
+            assertEquals("2K", editor.getCheckCharacters());
+
+            GMNEditor complete = new GMNEditor(true);
+            complete.set("1987654Ad4X4bL5ttr2310c2K");
+            assertTrue(complete.isValid());
+            complete.replace(24, 'X');
+            assertEquals(GMNValidationResult.Reason.CHECK_MISMATCH, complete.getReason());
+            assertEquals(23, complete.getPosition());
+            assertEquals("2K", complete.getCheckCharacters());
+        }
+
+        @Test
+        public void capacityAndPositions() throws Exception
+        {
+            GMNEditor editor = new GMNEditor(false);
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < GMNEditor.CAPACITY; i++)
+            {
+                editor.append('1');
+                content.append('1');
+            }
+            assertMatches(editor, content.toString());
+            try
+            {
+                editor.append('1');
+                fail();
+            }
+            catch (IllegalStateException e)
+            {
+            }
+            try
+            {
+                editor.delete(GMNEditor.CAPACITY);
+                fail();
+            }
+            catch (IndexOutOfBoundsException e)
+            {
+            }
+            editor.delete(0, GMNEditor.CAPACITY - 6);
+            assertMatches(editor, "111111");
+
+            // A paste that does not fit leaves the content unchanged
+            char[] paste = new char[GMNEditor.CAPACITY - 5];
+            java.util.Arrays.fill(paste, 'A');
+            try
+            {
+                editor.insert(3, new String(paste));
+                fail();
+            }
+            catch (IllegalStateException e)
+            {
+            }
+            assertMatches(editor, "111111");
+            editor.insert(3, new String(paste, 0, paste.length - 1));
+            assertEquals(GMNEditor.CAPACITY, editor.length());
+            editor.clear();
+            assertMatches(editor, "");
+        }
+
+}
@@ -0,0 +1,303 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * These are unit tests for the memory-mapped file processor.
+ *
+ * The expected output of each line is produced in the same way as the "cf" and
+ * "vf" options of the example program, using the String methods of the helper
+ * API.
+ *
+ */
+import org.gs1.*;
+
+public class GMNFileProcessorTests
+{
+
+        @Rule
+        public TemporaryFolder folder = new TemporaryFolder();
+
+        private static final String NL = System.lineSeparator();
+
+        private static String expected(String in, boolean verify)
+        {
+            String out;
+            try
+            {
+                if (verify)
+                    out = HealthcareGMN.verifyCheckCharacters(in) ? "*** Valid ***" : "*** Not valid ***";
+                else
+                    out = HealthcareGMN.checkCharacters(in);
+            }
+            catch (GS1Exception e)
+            {
+                out = e.getMessage();
+            }
+            return in + " : " + out + NL;
+        }
+
+        private String run(String content, GMNFileProcessor processor, GMNFileProcessor.Summary[] summary) throws Exception
+        {
+            File in = folder.newFile();
+            File out = folder.newFile();
+            Files.write(in.toPath(), content.getBytes(StandardCharsets.UTF_8));
+            summary[0] = processor.process(in.toPath(), out.toPath());
+            return new String(Files.readAllBytes(out.toPath()), StandardCharsets.UTF_8);
+        }
+
+        @Test
+        public void verify_MatchesStringApi() throws Exception
+        {
+            String[] lines = { "1987654Ad4X4bL5ttr2310c2K", "1987654Ad4X4bL5ttr2310cXK", "12345XX", "",
+                               "X987654Ad4X4bL5ttr2310c2K", "1987654Ad4X4bL5ttr2310£2K", "1987654Ad4X4bL5ttr2310c2x",
+                               "123456789012345678901234XX", "12345ANJ" };
+            StringBuilder content = new StringBuilder();
+            StringBuilder expected = new StringBuilder();
+            for (String line : lines)
+            {
+                content.append(line).append('\n');
+                expected.append(expected(line, true));
+            }
+
+            GMNFileProcessor.Summary[] summary = new GMNFileProcessor.Summary[1];
+            assertEquals(expected.toString(), run(content.toString(), new GMNFileProcessor(GMNFileProcessor.Mode.VERIFY), summary));
+            assertEquals(9, summary[0].getLines());
+            assertEquals(2, summary[0].getValid());
+            assertEquals(7, summary[0].getInvalid());
+            assertEquals(1, summary[0].getCount(GMNValidationResult.Reason.CHECK_MISMATCH));
+            assertEquals(2, summary[0].getCount(GMNValidationResult.Reason.TOO_SHORT));
+        }
+
+        @Test
+        public void complete_MatchesStringApi() throws Exception
+        {
+            String[] lines = { "1987654Ad4X4bL5ttr2310c", "12345", "12345A", "12345678901234567890123", "ABC7654Ad4X4bL5ttr2310c" };
+            StringBuilder expected = new StringBuilder();
+            for (String line : lines)
+                expected.append(expected(line, false));
+
+            // Mixed line terminators and no terminator on the final line
+            String content = lines[0] + "\r\n" + lines[1] + "\r" + lines[2] + "\n" + lines[3] + "\n" + lines[4];
+
+            GMNFileProcessor.Summary[] summary = new GMNFileProcessor.Summary[1];
+            assertEquals(expected.toString(), run(content, new GMNFileProcessor(GMNFileProcessor.Mode.COMPLETE), summary));
+            assertEquals(3, summary[0].getValid());
+        }
+
+        @Test
+        public void verify_SmallMappingWindows() throws Exception
+        {
+            StringBuilder content = new StringBuilder();
+            StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < 200; i++)
+            {
+                String line = i % 3 == 0 ? "12345678901234567890123NT" : i % 3 == 1 ? "12345ANJ" : "1987654Ad4X4bL5ttr2310cXK";
+                content.append(line).append("\r\n");
+                expected.append(expected(line, true));
+            }
+
+            // Windows smaller than a line force remapping, and windows that
+            // split a CR LF pair must not produce empty lines
+            for (int window : new int[] { 2, 7, 26, 27, 1000 })
+            {
+                GMNFileProcessor.Summary[] summary = new GMNFileProcessor.Summary[1];
+                assertEquals(expected.toString(), run(content.toString(), new GMNFileProcessor(GMNFileProcessor.Mode.VERIFY, window), summary));
+                assertEquals(200, summary[0].getLines());
+            }
+        }
+
+        @Test
+        public void verify_EmptyFile() throws Exception
+        {
+            GMNFileProcessor.Summary[] summary = new GMNFileProcessor.Summary[1];
+            assertEquals("", run("", new GMNFileProcessor(GMNFileProcessor.Mode.VERIFY), summary));
+            assertEquals(0, summary[0].getLines());
+        }
+
+        @Test
+        public void processParallel_MatchesSequential() throws Exception
+        {
+            String[] lines = { "1987654Ad4X4bL5ttr2310c2K", "1987654Ad4X4bL5ttr2310cXK", "12345XX", "",
+                               "1987654Ad4X4bL5ttr2310£2K", "12345ANJ", "99999zzzzzzzzzzzzzzzzzzT2" };
+            String[] terminators = { "\n", "\r\n", "\r" };
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 1000; i++)
+                content.append(lines[i % lines.length]).append(terminators[i % terminators.length]);
+
+            File in = folder.newFile();
+            Files.write(in.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+
+            File seq = folder.newFile();
+            GMNFileProcessor.Summary expected = new GMNFileProcessor(GMNFileProcessor.Mode.VERIFY).process(in.toPath(), seq.toPath());
+            byte[] expectedBytes = Files.readAllBytes(seq.toPath());
+
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try
+            {
+                for (int chunk : new int[] { 1, 2, 25, 26, 27, 1000, 1 << 20 })
+                {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    GMNFileProcessor processor = new GMNFileProcessor(GMNFileProcessor.Mode.VERIFY, 64, chunk);
+                    GMNFileProcessor.Summary summary = processor.processParallel(in.toPath(), Channels.newChannel(out), executor, 4);
+                    assertArrayEquals("chunk size " + chunk, expectedBytes, out.toByteArray());
+                    assertEquals(expected.toString(), summary.toString());
+                }
+            }
+            finally
+            {
+                executor.shutdown();
+            }
+        }
+
+        @Test
+        public void processParallel_CommonPool() throws Exception
+        {
+            StringBuilder content = new StringBuilder();
+            StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < 500; i++)
+            {
+                String line = i % 2 == 0 ? "1987654Ad4X4bL5ttr2310c" : "12345";
+                content.append(line).append('\n');
+                expected.append(expected(line, false));
+            }
+
+            File in = folder.newFile();
+            File out = folder.newFile();
+            Files.write(in.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+            GMNFileProcessor.Summary summary =
+                new GMNFileProcessor(GMNFileProcessor.Mode.COMPLETE, 1 << 10, 100).processParallel(in.toPath(), out.toPath());
+            assertEquals(expected.toString(), new String(Files.readAllBytes(out.toPath()), StandardCharsets.UTF_8));
+            assertEquals(250, summary.getValid());
+        }
+
+
+        // The CSV record or JSON object expected for a line, following the String API
+        private static String record(String in, boolean verify, boolean csv) throws Exception
+        {
+            GMNValidationResult v = verify ? HealthcareGMN.validate(in) : HealthcareGMN.validatePartial(in);
+            String checks = null;
+            if (v.isValid() || v.getReason() == GMNValidationResult.Reason.CHECK_MISMATCH)
+                checks = HealthcareGMN.checkCharacters(verify ? in.substring(0, in.length() - 2) : in);
+            if (csv)
+                return "\"" + in.replace("\"", "\"\"") + "\"," + v.isValid() + "," + v.getReason() + "," + v.getPosition() + "," +
+                       (checks != null ? checks : "") + "," + (v.isValid() ? "" : "\"" + v.getMessage().replace("\"", "\"\"") + "\"") + NL;
+            return "{\"input\":\"" + in.replace("\\", "\\\\").replace("\"", "\\\"") + "\",\"valid\":" + v.isValid() +
+                   ",\"reason\":\"" + v.getReason() + "\",\"position\":" + v.getPosition() +
+                   ",\"checkCharacters\":" + (checks != null ? "\"" + checks + "\"" : "null") +
+                   (v.isValid() ? "" : ",\"message\":\"" + v.getMessage().replace("\\", "\\\\").replace("\"", "\\\"") + "\"") + "}" + NL;
+        }
+
+        @Test
+        public void verify_CsvAndNdjsonFormats() throws Exception
+        {
+            String[] lines = { "1987654Ad4X4bL5ttr2310c2K", "1987654Ad4X4bL5ttr2310cXK", "12345XX", "",
+                               "12345\"A,b\\c", "1987654Ad4X4bL5ttr2310\"2K", "1987654Ad4X4bL5ttr2310c\"K",
+                               "1987654Ad4X4bL5ttr2310£2K", "12345ANJ", "\"2345ANJ" };
+            StringBuilder content = new StringBuilder();
+            for (String line : lines)
+                content.append(line).append('\n');
+
+            for (GMNFileProcessor.Format format : new GMNFileProcessor.Format[] { GMNFileProcessor.Format.CSV, GMNFileProcessor.Format.NDJSON })
+            {
+                boolean csv = format == GMNFileProcessor.Format.CSV;
+                StringBuilder expected = new StringBuilder();
+                if (csv)
+                    expected.append("input,valid,reason,position,checkCharacters,message").append(NL);
+                for (String line : lines)
+                    expected.append(record(line, true, csv));
+
+                GMNFileProcessor processor = new GMNFileProcessor(GMNFileProcessor.Mode.VERIFY, format);
+                assertEquals(format, processor.getFormat());
+                GMNFileProcessor.Summary[] summary = new GMNFileProcessor.Summary[1];
+                assertEquals(expected.toString(), run(content.toString(), processor, summary));
+                assertEquals(2, summary[0].getValid());
+
+                File in = folder.newFile();
+                File out = folder.newFile();
+                Files.write(in.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+                new GMNFileProcessor(GMNFileProcessor.Mode.VERIFY, format, 64, 40).processParallel(in.toPath(), out.toPath());
+                assertEquals(expected.toString(), new String(Files.readAllBytes(out.toPath()), StandardCharsets.UTF_8));
+            }
+        }
+
+        @Test
+        public void summary_NonAsciiCountedAsReported() throws Exception
+        {
+            // A line of 23 characters, but 24 bytes, is counted with the
+            // reason that is written for it rather than as too long
+            String[] lines = { "1987654Ad4X4bL5ttr2310\u00e9", "12345\u00e9", "\u00e92345A" };
+            StringBuilder content = new StringBuilder();
+            StringBuilder expected = new StringBuilder("input,valid,reason,position,checkCharacters,message").append(NL);
+            int[] counts = new int[GMNValidationResult.Reason.values().length];
+            for (String line : lines)
+            {
+                content.append(line).append('\n');
+                expected.append(record(line, false, true));
+                counts[HealthcareGMN.validatePartial(line).getReason().ordinal()]++;
+            }
+            GMNFileProcessor.Summary[] summary = new GMNFileProcessor.Summary[1];
+            assertEquals(expected.toString(), run(content.toString(),
+                new GMNFileProcessor(GMNFileProcessor.Mode.COMPLETE, GMNFileProcessor.Format.CSV), summary));
+            for (GMNValidationResult.Reason reason : GMNValidationResult.Reason.values())
+                assertEquals(reason.name(), counts[reason.ordinal()], summary[0].getCount(reason));
+            assertEquals(0, summary[0].getCount(GMNValidationResult.Reason.TOO_LONG));
+        }
+
+        @Test
+        public void complete_NdjsonFormat() throws Exception
+        {
+            String[] lines = { "1987654Ad4X4bL5ttr2310c", "12345", "12345A", "ABC7654Ad4X4bL5ttr2310c" };
+            StringBuilder content = new StringBuilder();
+            StringBuilder expected = new StringBuilder();
+            for (String line : lines)
+            {
+                content.append(line).append("\r\n");
+                expected.append(record(line, false, false));
+            }
+            GMNFileProcessor.Summary[] summary = new GMNFileProcessor.Summary[1];
+            assertEquals(expected.toString(), run(content.toString(),
+                new GMNFileProcessor(GMNFileProcessor.Mode.COMPLETE, GMNFileProcessor.Format.NDJSON), summary));
+            assertEquals(2, summary[0].getValid());
+        }
+
+        @Test
+        public void process_ReadableChannelMatchesFile() throws Exception
+        {
+            // Lines straddle reads, and a line longer than the input buffer forces it to grow
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 100000; i++)
+                content.append(i % 3 == 0 ? "12345678901234567890123NT" : i % 3 == 1 ? "12345ANJ" : "1987654Ad4X4bL5ttr2310cXK").append("\r\n");
+            char[] longLine = new char[3 << 20];
+            java.util.Arrays.fill(longLine, 'A');
+            content.append(longLine).append("\n12345ANJ");
+            byte[] bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+
+            GMNFileProcessor processor = new GMNFileProcessor(GMNFileProcessor.Mode.VERIFY, GMNFileProcessor.Format.CSV);
+            GMNFileProcessor.Summary[] expected = new GMNFileProcessor.Summary[1];
+            String file = run(content.toString(), processor, expected);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            processor.writeHeader(Channels.newChannel(out));
+            GMNFileProcessor.Summary summary = processor.process(Channels.newChannel(new ByteArrayInputStream(bytes)), Channels.newChannel(out));
+            assertEquals(file, new String(out.toByteArray(), StandardCharsets.UTF_8));
+            assertEquals(expected[0].toString(), summary.toString());
+            assertEquals(100002, summary.getLines());
+
+            GMNFileProcessor.Summary total = new GMNFileProcessor.Summary();
+            total.add(summary);
+            total.add(expected[0]);
+            assertEquals(2 * summary.getValid(), total.getValid());
+        }
+
+}
@@ -0,0 +1,124 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/*
+ * These are unit tests for the memory-mapped healthcare GMN index.
+ *
+ * Queries are checked against a sorted set of the string forms of the
+ * healthcare GMNs from which the index was built.
+ *
+ */
+import org.gs1.*;
+
+public class GMNIndexTests
+{
+
+        @Rule
+        public TemporaryFolder folder = new TemporaryFolder();
+
+        private static final String[] GCPS = { "12345", "1234567", "987654321098", "00001" };
+
+        private static String[] randomGMNs(int n, long seed) throws Exception
+        {
+            Random rnd = new Random(seed);
+            String[] out = new String[n];
+            for (int i = 0; i < n; i++)
+            {
+                String gcp = GCPS[rnd.nextInt(GCPS.length)];
+                StringBuilder sb = new StringBuilder(gcp);
+                int len = Math.max(6, gcp.length() + 1) + rnd.nextInt(4);
+                while (sb.length() < len)
+                    sb.append(GMNTestInputs.CSET82.charAt(rnd.nextInt(82)));
+                out[i] = HealthcareGMN.addCheckCharacters(sb.toString());
+            }
+            return out;
+        }
+
+        private GMNIndex build(String[] gmns) throws Exception
+        {
+            GMNIndex.Builder builder = new GMNIndex.Builder();
+            for (String gmn : gmns)
+                builder.add(gmn);
+            File file = folder.newFile();
+            builder.write(file.toPath());
+            return GMNIndex.open(file.toPath());
+        }
+
+        @Test
+        public void contains_MatchesSet() throws Exception
+        {
+            String[] gmns = randomGMNs(5000, 1);
+            TreeSet<String> set = new TreeSet<String>();
+            for (String gmn : gmns)
+                set.add(gmn);
+            GMNIndex index = build(gmns);
+            assertEquals(set.size(), index.size());
+            for (String gmn : gmns)
+                assertTrue(index.contains(gmn));
+            for (String gmn : randomGMNs(5000, 2))
+                assertEquals(set.contains(gmn), index.contains(gmn));
+            assertFalse(index.contains("1234"));
+            long i = 0;
+            for (String gmn : set)
+                assertEquals(gmn, index.get(i++).toString());
+        }
+
+        @Test
+        public void gcpRange_MatchesSet() throws Exception
+        {
+            String[] gmns = randomGMNs(5000, 3);
+            TreeSet<String> set = new TreeSet<String>();
+            for (String gmn : gmns)
+                set.add(gmn);
+            GMNIndex index = build(gmns);
+            for (String gcp : new String[] { "12345", "1234567", "123456", "987654321098", "00001", "55555", "99999" })
+            {
+                List<String> expected = new ArrayList<String>();
+                for (String gmn : set)
+                    if (gmn.startsWith(gcp))
+                        expected.add(gmn);
+                List<String> actual = new ArrayList<String>();
+                index.forEachOfGcp(gcp, k -> actual.add(k.toString()));
+                assertEquals(gcp, expected, actual);
+                assertEquals(expected.size(), index.countOfGcp(gcp));
+                assertEquals(set.headSet(gcp).size(), index.firstIndexOfGcp(gcp));
+            }
+            try
+            {
+                index.countOfGcp("1234A");
+                fail();
+            }
+            catch (GS1Exception e)
+            {
+                assertEquals("The GS1 Company Prefix must only contain digits.", e.getMessage());
+            }
+        }
+
+        @Test
+        public void builder_AddAllAndEmptyIndex() throws Exception
+        {
+            File list = folder.newFile();
+            Files.write(list.toPath(), " 1987654Ad4X4bL5ttr2310c2K\n\n1987654Ad4X4bL5ttr2310c2K\n12345678XX\n".getBytes(StandardCharsets.UTF_8));
+            File file = folder.newFile();
+            assertEquals(2, new GMNIndex.Builder().addAll(list.toPath()).write(file.toPath()));
+            GMNIndex index = GMNIndex.open(file.toPath());
+            assertTrue(index.contains("1987654Ad4X4bL5ttr2310c2K"));
+            assertTrue(index.contains("12345678XX"));
+            assertEquals(1, index.countOfGcp("1987654"));
+
+            File empty = folder.newFile();
+            assertEquals(0, new GMNIndex.Builder().write(empty.toPath()));
+            assertFalse(GMNIndex.open(empty.toPath()).contains("1987654Ad4X4bL5ttr2310c2K"));
+        }
+
+}
@@ -0,0 +1,135 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+/*
+ * These are unit tests for the packed healthcare GMN key.
+ *
+ * Randomly generated healthcare GMNs of every length are packed and checked
+ * against their string forms for round trip, ordering and verification.
+ *
+ */
+import org.gs1.*;
+
+public class GMNKeyTests
+{
+
+        // Healthcare GMNs of which half have a correct check character pair
+        private static String[] randomGMNs(int n, long seed) throws Exception
+        {
+            Random rnd = new Random(seed);
+            String[] out = new String[n];
+            for (int i = 0; i < n; i++)
+            {
+                String part = GMNTestInputs.randomPart(rnd);
+                if (rnd.nextBoolean())
+                    out[i] = HealthcareGMN.addCheckCharacters(part);
+                else
+                    out[i] = part + GMNTestInputs.CSET32.charAt(rnd.nextInt(32)) + GMNTestInputs.CSET32.charAt(rnd.nextInt(32));
+            }
+            return out;
+        }
+
+        @Test
+        public void roundTrip() throws Exception
+        {
+            for (String gmn : randomGMNs(2000, 1))
+            {
+                GMNKey k = GMNKey.of(gmn);
+                assertEquals(gmn, k.toString());
+                assertEquals(gmn.length(), k.length());
+                assertEquals(gmn.charAt(gmn.length() - 1), k.charAt(gmn.length() - 1));
+                assertEquals(k, GMNKey.of(gmn.getBytes("US-ASCII"), 0, gmn.length()));
+                assertEquals(k, GMNKey.fromBytes(k.toBytes(), 0));
+                assertEquals(k, GMNKey.of(k.getHigh(), k.getMiddle(), k.getLow()));
+                assertEquals(k.hashCode(), GMNKey.of(gmn).hashCode());
+                byte[] ascii = new byte[25];
+                assertEquals(gmn, new String(ascii, 0, k.getBytes(ascii, 0), "US-ASCII"));
+            }
+            assertEquals("00000!!!22", GMNKey.of("00000!!!22").toString());
+            assertEquals("99999zzzzzzzzzzzzzzzzzzZZ", GMNKey.of("99999zzzzzzzzzzzzzzzzzzZZ").toString());
+        }
+
+        @Test
+        public void verifyCheckCharacters_MatchesHelperAPI() throws Exception
+        {
+            for (String gmn : randomGMNs(2000, 2))
+                assertEquals(gmn, HealthcareGMN.verifyCheckCharacters(gmn), GMNKey.of(gmn).verifyCheckCharacters());
+            assertTrue(GMNKey.of("1987654Ad4X4bL5ttr2310c2K").verifyCheckCharacters());
+        }
+
+        @Test
+        public void compareTo_MatchesStringOrder() throws Exception
+        {
+            String[] gmns = randomGMNs(500, 3);
+            gmns[1] = "1987654Ad4X4bL5ttr2310c2K";
+            gmns[2] = "1987654Ad4X4bL5ttr23102K";
+            gmns[3] = "1987654Ad4X4bL5ttr2322";
+            for (String a : gmns)
+            {
+                for (String b : gmns)
+                {
+                    GMNKey ka = GMNKey.of(a);
+                    GMNKey kb = GMNKey.of(b);
+                    assertEquals(Integer.signum(a.compareTo(b)), Integer.signum(ka.compareTo(kb)));
+                    assertEquals(a.equals(b), ka.equals(kb));
+                }
+            }
+        }
+
+        @Test
+        public void bulkCodecs() throws Exception
+        {
+            String[] gmns = randomGMNs(100, 4);
+            long[] high = new long[101];
+            long[] middle = new long[101];
+            int[] low = new int[101];
+            GMNKey.encode(gmns, 0, high, middle, low, 1, 100);
+            String[] out = new String[100];
+            GMNKey.decode(high, middle, low, 1, out, 0, 100);
+            assertArrayEquals(gmns, out);
+
+            byte[] bytes = new byte[100 * GMNKey.BYTES];
+            assertEquals(bytes.length, GMNKey.encode(gmns, 0, bytes, 0, 100));
+            GMNKey.decode(bytes, 0, out, 0, 100);
+            assertArrayEquals(gmns, out);
+            assertEquals(GMNKey.of(gmns[7]), GMNKey.fromBytes(bytes, 7 * GMNKey.BYTES));
+            assertEquals(GMNKey.of(gmns[7]), GMNKey.of(high[8], middle[8], low[8]));
+        }
+
+        @Test
+        public void rejectsInvalidInput() throws Exception
+        {
+            try
+            {
+                GMNKey.of("1987654Ad4X4bL5ttr2310c2I");
+                fail();
+            }
+            catch (GS1Exception e)
+            {
+                assertEquals("Invalid check character at position 25: I", e.getMessage());
+            }
+            try
+            {
+                GMNKey.encode(new String[] { "1987654Ad4X4bL5ttr2310c2K", "12345" }, 0, new byte[40], 0, 2);
+                fail();
+            }
+            catch (GS1Exception e)
+            {
+                assertEquals("Healthcare GMN at index 1: The input is too short. It should be at least 8 characters long.", e.getMessage());
+                assertEquals(GMNValidationResult.Reason.TOO_SHORT, ((GS1Exception) e.getCause()).getReason());
+            }
+            byte[] corrupt = GMNKey.of("1987654Ad4X4bL5ttr2310c2K").toBytes();
+            corrupt[5] = (byte) 0xFF;
+            try
+            {
+                GMNKey.fromBytes(corrupt, 0);
+                fail();
+            }
+            catch (IllegalArgumentException e)
+            {
+            }
+        }
+
+}
@@ -0,0 +1,80 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/*
+ * These are unit tests for the command-line entry point.
+ *
+ * Expected output is produced in the same way as the command-line and "vf"
+ * options of the example program, using the String methods of the helper API.
+ *
+ */
+import org.gs1.*;
+
+public class GMNMainTests
+{
+
+        private static final String NL = System.lineSeparator();
+
+        @Test
+        public void single_MatchesExampleUser() throws Exception
+        {
+            StringBuilder out = new StringBuilder();
+            StringBuilder err = new StringBuilder();
+            assertEquals(GMNMain.EXIT_VALID, GMNMain.run(new String[] { "verify", "1987654Ad4X4bL5ttr2310c2K" }, out, err));
+            assertEquals(GMNMain.EXIT_INVALID, GMNMain.run(new String[] { "verify", "1987654Ad4X4bL5ttr2310cXK" }, out, err));
+            assertEquals(GMNMain.EXIT_VALID, GMNMain.run(new String[] { "complete", "1987654Ad4X4bL5ttr2310c" }, out, err));
+            assertEquals("The check characters are valid" + NL + "The check characters are NOT valid" + NL +
+                HealthcareGMN.addCheckCharacters("1987654Ad4X4bL5ttr2310c") + NL, out.toString());
+            assertEquals(0, err.length());
+
+            assertEquals(GMNMain.EXIT_INVALID, GMNMain.run(new String[] { "complete", "12345" }, out, err));
+            assertEquals("Error: " + HealthcareGMN.validatePartial("12345").getMessage() + NL, err.toString());
+        }
+
+        @Test
+        public void many_OneLinePerArgument() throws Exception
+        {
+            String[] gmns = { "1987654Ad4X4bL5ttr2310c2K", "1987654Ad4X4bL5ttr2310cXK", "12345", "12345£££d4X4bL5ttr2310cZZ" };
+            String[] args = new String[gmns.length + 1];
+            args[0] = "verify";
+            System.arraycopy(gmns, 0, args, 1, gmns.length);
+
+            StringBuilder expected = new StringBuilder();
+            for (String gmn : gmns)
+            {
+                String result;
+                try
+                {
+                    result = HealthcareGMN.verifyCheckCharacters(gmn) ? "*** Valid ***" : "*** Not valid ***";
+                }
+                catch (GS1Exception e)
+                {
+                    result = e.getMessage();
+                }
+                expected.append(gmn).append(" : ").append(result).append(NL);
+            }
+
+            StringBuilder out = new StringBuilder();
+            StringBuilder err = new StringBuilder();
+            assertEquals(GMNMain.EXIT_INVALID, GMNMain.run(args, out, err));
+            assertEquals(expected.toString(), out.toString());
+            assertEquals(0, err.length());
+
+            out.setLength(0);
+            assertEquals(GMNMain.EXIT_VALID, GMNMain.run(new String[] { "complete", "12345ANJ", "1987654Ad4X4bL5ttr2310c" }, out, err));
+            assertEquals("12345ANJ : " + HealthcareGMN.checkCharacters("12345ANJ") + NL +
+                "1987654Ad4X4bL5ttr2310c : 2K" + NL, out.toString());
+        }
+
+        @Test
+        public void usage() throws Exception
+        {
+            StringBuilder out = new StringBuilder();
+            StringBuilder err = new StringBuilder();
+            assertEquals(GMNMain.EXIT_USAGE, GMNMain.run(new String[] { "verify" }, out, err));
+            assertEquals(GMNMain.EXIT_USAGE, GMNMain.run(new String[] { "check", "12345ANJ" }, out, err));
+            assertEquals(0, out.length());
+            assertTrue(err.toString().startsWith("Usage: "));
+        }
+
+}
@@ -0,0 +1,96 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import javax.management.JMX;
+import javax.management.ObjectName;
+
+/*
+ * These are unit tests for the runtime metrics of the helper methods.
+ *
+ * The build enables metrics with every call sampled. Counts are compared
+ * between snapshots so that the tests do not depend on each other.
+ *
+ */
+import org.gs1.*;
+import org.gs1.GMNMetrics.Method;
+import org.gs1.GMNValidationResult.Reason;
+
+public class GMNMetricsTests
+{
+
+        @Test
+        public void countsCallsAndFailures() throws Exception
+        {
+            assertTrue(GMNMetrics.isEnabled());
+            GMNMetrics.Snapshot before = GMNMetrics.snapshot();
+
+            HealthcareGMN.checkCharacters("1987654Ad4X4bL5ttr2310c");
+            HealthcareGMN.checkCharacters("1987654Ad4X4bL5ttr2310c".toCharArray(), 0, 23);
+            assertTrue(HealthcareGMN.verifyCheckCharacters("1987654Ad4X4bL5ttr2310c2K"));
+            assertFalse(HealthcareGMN.verifyCheckCharacters("1987654Ad4X4bL5ttr2310cXK"));
+            assertFalse(HealthcareGMN.validate("12345").isValid());
+            assertFalse(HealthcareGMN.validate("1987654Ad4X4bL5ttr2310c2{").isValid());
+            HealthcareGMN.goodCharacterPositionsGcpModel("1987654", "Ad4X4bL5ttr2310c");
+            try
+            {
+                HealthcareGMN.addCheckCharacters("123A5ABC");
+                fail();
+            }
+            catch (GS1Exception e)
+            {
+            }
+
+            GMNMetrics.Snapshot after = GMNMetrics.snapshot();
+            assertEquals(2, after.getCalls(Method.CHECK_CHARACTERS) - before.getCalls(Method.CHECK_CHARACTERS));
+            assertEquals(2, after.getCalls(Method.VERIFY_CHECK_CHARACTERS) - before.getCalls(Method.VERIFY_CHECK_CHARACTERS));
+            assertEquals(2, after.getCalls(Method.VALIDATE) - before.getCalls(Method.VALIDATE));
+            assertEquals(1, after.getCalls(Method.ADD_CHECK_CHARACTERS) - before.getCalls(Method.ADD_CHECK_CHARACTERS));
+            assertEquals(1, after.getCalls(Method.GOOD_CHARACTER_POSITIONS_GCP_MODEL) - before.getCalls(Method.GOOD_CHARACTER_POSITIONS_GCP_MODEL));
+            assertEquals(0, after.getCalls(Method.GOOD_CHARACTER_POSITIONS) - before.getCalls(Method.GOOD_CHARACTER_POSITIONS));
+            assertEquals(8, after.getTotalCalls() - before.getTotalCalls());
+
+            assertEquals(1, after.getFailures(Reason.CHECK_MISMATCH) - before.getFailures(Reason.CHECK_MISMATCH));
+            assertEquals(1, after.getFailures(Reason.TOO_SHORT) - before.getFailures(Reason.TOO_SHORT));
+            assertEquals(1, after.getFailures(Reason.INVALID_CHECK_CHARACTER) - before.getFailures(Reason.INVALID_CHECK_CHARACTER));
+            assertEquals(1, after.getFailures(Reason.GCP_NOT_NUMERIC) - before.getFailures(Reason.GCP_NOT_NUMERIC));
+            assertEquals(4, after.getTotalFailures() - before.getTotalFailures());
+            assertEquals(0, after.getFailures(Reason.VALID));
+        }
+
+        @Test
+        public void samplesLatency() throws Exception
+        {
+            GMNMetrics.Snapshot before = GMNMetrics.snapshot();
+            for (int i = 0; i < 1000; i++)
+                HealthcareGMN.validatePartial("1987654Ad4X4bL5ttr2310c");
+            GMNMetrics.Snapshot after = GMNMetrics.snapshot();
+
+            // Every call is sampled in the test build
+            assertEquals(1000, after.getSamples(Method.VALIDATE_PARTIAL) - before.getSamples(Method.VALIDATE_PARTIAL));
+            long[] h = after.getLatencyHistogram(Method.VALIDATE_PARTIAL);
+            assertEquals(GMNMetrics.BUCKETS, h.length);
+            long p50 = after.getLatencyPercentile(Method.VALIDATE_PARTIAL, 50);
+            long p99 = after.getLatencyPercentile(Method.VALIDATE_PARTIAL, 99);
+            assertTrue(p50 > 0 && Long.bitCount(p50) == 1);
+            assertTrue(p99 >= p50);
+        }
+
+        @Test
+        public void publishedAsMXBean() throws Exception
+        {
+            GMNMetricsMXBean bean = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(),
+                new ObjectName(GMNMetrics.OBJECT_NAME), GMNMetricsMXBean.class);
+            long before = bean.getCallCounts().get("validateGcpModelChecks");
+            HealthcareGMN.validateGcpModelChecks("1987654", "Ad4X4bL5ttr2310c", "2K");
+            Map<String, Long> calls = bean.getCallCounts();
+            assertEquals(before + 1, (long) calls.get("validateGcpModelChecks"));
+            assertEquals(GMNMetrics.Method.values().length, calls.size());
+            assertTrue(bean.getFailureCounts().containsKey("CHECK_MISMATCH"));
+            assertFalse(bean.getFailureCounts().containsKey("VALID"));
+            assertEquals(1, bean.getSampleInterval());
+            assertTrue(bean.getMedianLatencyNanos().get("validateGcpModelChecks") > 0);
+        }
+
+}
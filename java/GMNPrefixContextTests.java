@@ -0,0 +1,84 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/*
+ * These are unit tests for the GS1 Company Prefix context.
+ *
+ * Results and exception messages are checked against the GS1 Company Prefix
+ * and model reference variants of the methods of the helper API.
+ *
+ */
+import org.gs1.*;
+
+public class GMNPrefixContextTests
+{
+
+        private static final String[] MODELS = { "Ad4X4bL5ttr2310c", "A", "678901234567890123", "6789012345678901234",
+                                                 "", "Ad4X£", "zzzzzzzzzzzzzzzzzz", "!\"%&'()*+,-./" };
+
+        private static String outcome(Callable c)
+        {
+            try
+            {
+                return c.call();
+            }
+            catch (GS1Exception e)
+            {
+                return "GS1Exception: " + e.getMessage();
+            }
+        }
+
+        private interface Callable
+        {
+            String call() throws GS1Exception;
+        }
+
+        @Test
+        public void checkCharacters_UsingExampleFromGenSpecs() throws Exception
+        {
+            GMNPrefixContext ctx = new GMNPrefixContext("1987654");
+            assertEquals("2K", ctx.checkCharacters("Ad4X4bL5ttr2310c"));
+            assertEquals("1987654Ad4X4bL5ttr2310c2K", ctx.addCheckCharacters("Ad4X4bL5ttr2310c"));
+            assertTrue(ctx.verifyCheckCharacters("Ad4X4bL5ttr2310c", "2K"));
+            assertFalse(ctx.verifyCheckCharacters("Ad4X4bL5ttr2310c", "XK"));
+
+            char[] dst = new char[2];
+            assertEquals(2, ctx.checkCharacters("Ad4X4bL5ttr2310c", dst, 0));
+            assertEquals("2K", new String(dst));
+        }
+
+        @Test
+        public void agreesWithHealthcareGMN() throws Exception
+        {
+            String[] gcps = { "12345", "1987654", "123456789012", "1234", "1234567890123", "198765A", "99999" };
+            for (final String gcp : gcps)
+            {
+                final GMNPrefixContext ctx = new GMNPrefixContext(gcp);
+                for (final String model : MODELS)
+                {
+                    assertEquals(outcome(() -> HealthcareGMN.checkCharactersGcpModel(gcp, model)),
+                                 outcome(() -> ctx.checkCharacters(model)));
+                    assertEquals(outcome(() -> HealthcareGMN.addCheckCharactersGcpModel(gcp, model)),
+                                 outcome(() -> ctx.addCheckCharacters(model)));
+                    for (final String checks : new String[] { "2K", "NT", "3", "XX", "2x" })
+                    {
+                        assertEquals(outcome(() -> "" + HealthcareGMN.verifyCheckCharactersGcpModelChecks(gcp, model, checks)),
+                                     outcome(() -> "" + ctx.verifyCheckCharacters(model, checks)));
+                        assertEquals(HealthcareGMN.validateGcpModelChecks(gcp, model, checks).toString(),
+                                     ctx.validate(model, checks).toString());
+                    }
+                    assertEquals(HealthcareGMN.validateGcpModel(gcp, model).toString(), ctx.validatePartial(model).toString());
+                }
+            }
+        }
+
+        @Test
+        public void getValidation() throws Exception
+        {
+            assertTrue(new GMNPrefixContext("1987654").getValidation().isValid());
+            assertEquals(GMNValidationResult.Reason.GCP_TOO_SHORT, new GMNPrefixContext("1234").getValidation().getReason());
+            assertEquals(GMNValidationResult.Reason.GCP_NOT_NUMERIC, new GMNPrefixContext("198765A").getValidation().getReason());
+            assertEquals(6, new GMNPrefixContext("198765A").getValidation().getPosition());
+        }
+
+}
@@ -0,0 +1,779 @@
+import org.junit.Assume;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/*
+ * These are differential tests of every fast path against a reference oracle.
+ *
+ * The oracle is the original String implementation of the helper API, kept
+ * below as it was written, from which each fast path must not differ in its
+ * result, exception message, failure reason or character classification.
+ * Inputs of every length have every character of cset82 and cset32, and a
+ * selection of characters outside of both, substituted at every position.
+ * The components are exercised at the boundary GS1 Company Prefix lengths of
+ * 5 and 12, and seeded random inputs are compared in bulk.
+ *
+ * The throughput of the main paths is measured against the oracle in the same
+ * JVM, so that the ratio does not depend on the speed of the machine, and must
+ * not fall below half of the ratio recorded in BASELINES for the running Java
+ * version. The JIT treats the two implementations differently from one version
+ * to the next, so there is no baseline for a version that has not been
+ * recorded and the measurement is skipped. It only runs with the throughput
+ * profile, in a separate test run without the metrics, whose timing of every
+ * call would otherwise dominate. Run with -Dorg.gs1.gmn.throughput.record=true
+ * to print the measured ratios when recording a new baseline.
+ *
+ */
+import org.gs1.*;
+
+public class GMNReferenceTests
+{
+
+        /*
+         * The original implementation of the helper API.
+         *
+         * The only change is that the GS1 Company Prefix is checked for ASCII
+         * digits, rather than with Character.isDigit, which also accepted
+         * other Unicode digits that then failed the check character
+         * calculation with a NullPointerException.
+         *
+         */
+        private static final class Reference
+        {
+
+            private final static short[] weights = new short[]
+                {83,79,73,71,67,61,59,53,47,43,41,37,31,29,23,19,17,13,11,7,5,3,2};
+
+            private final static String cset82 =
+                "!\"%&'()*+,-./0123456789:;<=>?ABCDEFGHIJKLMNOPQRSTUVWXYZ" +
+                "_abcdefghijklmnopqrstuvwxyz";
+
+            private final static String cset32 = "23456789ABCDEFGHJKLMNPQRSTUVWXYZ";
+
+            private final static Map<Character, Short> cset82value;
+
+            private final static Map<Character, Short> cset32value;
+
+            static
+            {
+                Map<Character, Short> tmp = new HashMap<>();
+                for (short i = 0; i < cset82.length(); i++)
+                    tmp.put(cset82.charAt(i), i);
+                cset82value=Collections.unmodifiableMap(tmp);
+
+                tmp = new HashMap<>();
+                for (short i = 0; i < cset32.length(); i++)
+                    tmp.put(cset32.charAt(i), i);
+                cset32value=Collections.unmodifiableMap(tmp);
+            }
+
+            static String checkCharacters(String part)
+                throws GS1Exception
+            {
+                _formatChecks(part, false);
+
+                int offset = weights.length - part.length();
+
+                int sum = 0;
+                for (int i=0; i < part.length(); i++)
+                {
+                        short c = cset82value.get(part.charAt(i));
+                        short w = weights[ offset + i ];
+                        sum += c * w;
+                }
+                sum %= 1021;
+
+                return "" + cset32.charAt(sum / 32) + cset32.charAt(sum % 32);
+            }
+
+            static String checkCharactersGcpModel(String gcp, String model)
+                throws GS1Exception
+            {
+                _formatChecksGcpModel(gcp, model);
+                return checkCharacters(gcp + model);
+            }
+
+            static boolean verifyCheckCharacters(String gmn)
+                throws GS1Exception
+            {
+                _formatChecks(gmn, true);
+
+                String part = gmn.substring(0, gmn.length() - 2);
+                String suppliedChecks = gmn.substring(gmn.length() - 2, gmn.length());
+
+                return checkCharacters(part).equals(suppliedChecks);
+            }
+
+            static boolean verifyCheckCharactersGcpModelChecks(String gcp, String model, String checks)
+                throws GS1Exception
+            {
+                _formatChecksGcpModelChecks(gcp, model, checks);
+                return verifyCheckCharacters(gcp + model + checks);
+            }
+
+            static boolean[] goodCharacterPositions(String gmn, boolean complete)
+            {
+                boolean[] out = new boolean[gmn.length()];
+                for (int i = 0; i < gmn.length(); i++)
+                {
+
+                    if (i < 5)
+                        out[i] = isDigit(gmn.charAt(i));
+                    else if (!complete || i < gmn.length() - 2)
+                        out[i] = cset82value.containsKey(gmn.charAt(i));
+                    else
+                        out[i] = cset32value.containsKey(gmn.charAt(i));
+
+                }
+                return out;
+            }
+
+            static boolean[] goodCharacterPositionsGcpModelChecks(String gcp, String model, String checks)
+            {
+                boolean[] out = goodCharacterPositions(gcp + model + checks, true);
+                for (int i = 0; i < gcp.length(); i++)
+                    out[i] = isDigit(gcp.charAt(i));
+                return out;
+            }
+
+            static boolean[] goodCharacterPositionsGcpModel(String gcp, String model)
+            {
+                boolean[] out = goodCharacterPositions(gcp + model, false);
+                for (int i = 0; i < gcp.length(); i++)
+                    out[i] = isDigit(gcp.charAt(i));
+                return out;
+            }
+
+            private static boolean isDigit(char c)
+            {
+                return c >= '0' && c <= '9';
+            }
+
+            private static void _formatChecks(String input, boolean complete)
+                throws GS1Exception
+            {
+                int maxLength = complete ? weights.length + 2 : weights.length;
+                int minLength = complete ? 8 : 6;
+
+                if (input.length() < minLength)
+                    throw new GS1Exception("The input is too short. It should be at least " + minLength + " characters long" + ( complete ? "." : " excluding the check character pair." ) );
+                if (input.length() > maxLength)
+                    throw new GS1Exception("The input is too long. It should be " + maxLength + " characters maximum" + ( complete ? "." : " excluding the check character pair." ) );
+
+                boolean[] goodCharacters = goodCharacterPositions(input, complete);
+                for (int i = 0; i < input.length(); i++)
+                    if (!goodCharacters[i])
+                    {
+                        if (i < 5)
+                            throw new GS1Exception("GMN starts with the GS1 Company Prefix. At least the first five characters must be digits.");
+                        else if (!complete || i < input.length() - 2)
+                            throw new GS1Exception("Invalid character at position " + (i + 1) + ": " + input.charAt(i));
+                        else
+                            throw new GS1Exception("Invalid check character at position " + (i + 1) + ": " + input.charAt(i));
+                    }
+            }
+
+            private static void _formatChecksGcpModel(String gcp, String model)
+                throws GS1Exception
+            {
+                 _formatChecksGcpModelChecks(gcp, model, null);
+            }
+
+            private static void _formatChecksGcpModelChecks(String gcp, String model, String checks)
+                throws GS1Exception
+            {
+                 if (gcp.length() < 5)
+                     throw new GS1Exception("The GS1 Company Prefix is too short. It should be at least 5 digits long.");
+                 if (gcp.length() > 12)
+                     throw new GS1Exception("The GS1 Company Prefix is too long. It should not be more than 12 digits long.");
+
+                 if (model.length() < 1)
+                     throw new GS1Exception("The model reference must contain at least one character.");
+
+                 boolean[] goodCharacters = goodCharacterPositionsGcpModel(gcp, model);
+                 for (int i = 0; i < gcp.length(); i++)
+                     if (!goodCharacters[i])
+                         throw new GS1Exception("The GS1 Company Prefix must only contain digits.");
+
+                 if (checks != null && checks.length() != 2)
+                    throw new GS1Exception("The check must be 2 characters long.");
+
+                 if (checks == null)
+                     _formatChecks(gcp + model, false);
+                 else
+                     _formatChecks(gcp + model + checks, true);
+            }
+
+        }
+
+        private static final String CSET82 = Reference.cset82;
+        private static final String CSET32 = Reference.cset32;
+
+        // Every character of cset82 and cset32, then characters outside of
+        // both: ASCII, the byte boundaries, and Unicode digits and letters
+        private static final char[] CHARACTERS;
+        static
+        {
+            Set<Character> all = new LinkedHashSet<>();
+            for (char c : (CSET82 + CSET32 + " #$@[\\]^`{|}~\u0000\u007f\u0080£éÿĀ٣０Ａ").toCharArray())
+                all.add(c);
+            CHARACTERS = new char[all.size()];
+            int i = 0;
+            for (char c : all)
+                CHARACTERS[i++] = c;
+        }
+
+        private static final String NL = System.lineSeparator();
+
+        // The outcome of verifying a healthcare GMN, as "true", "false" or the
+        // exception message prefixed with "!"
+        private static String referenceVerify(String gmn)
+        {
+            try
+            {
+                return String.valueOf(Reference.verifyCheckCharacters(gmn));
+            }
+            catch (GS1Exception e)
+            {
+                return "!" + e.getMessage();
+            }
+        }
+
+        // The outcome of completing a partial healthcare GMN, as the check
+        // character pair or the exception message prefixed with "!"
+        private static String referenceComplete(String part)
+        {
+            try
+            {
+                return Reference.checkCharacters(part);
+            }
+            catch (GS1Exception e)
+            {
+                return "!" + e.getMessage();
+            }
+        }
+
+        private interface Outcome
+        {
+            Object get() throws Exception;
+        }
+
+        private static String outcome(Outcome o) throws Exception
+        {
+            try
+            {
+                return String.valueOf(o.get());
+            }
+            catch (GS1Exception e)
+            {
+                return "!" + e.getMessage();
+            }
+        }
+
+        private static String outcome(GMNValidationResult r, String valid)
+        {
+            if (r.isValid())
+                return valid;
+            if (r.getReason() == GMNValidationResult.Reason.CHECK_MISMATCH)
+                return "false";
+            return "!" + r.getMessage();
+        }
+
+        // The input within a larger buffer, to exercise the offsets
+        private static char[] padded(String s)
+        {
+            char[] buf = new char[s.length() + 6];
+            Arrays.fill(buf, '9');
+            s.getChars(0, s.length(), buf, 3);
+            return buf;
+        }
+
+        // Inputs of printable ASCII only, which the line-oriented paths can carry
+        private static boolean printable(String s)
+        {
+            if (s.isEmpty())
+                return false;
+            for (int i = 0; i < s.length(); i++)
+                if (s.charAt(i) <= ' ' || s.charAt(i) >= 0x7F)
+                    return false;
+            return true;
+        }
+
+        /*
+         * Compares the fast paths that process a single input with the oracle,
+         * and adds the input to the pending multi-input paths.
+         *
+         */
+        private static final class Checker
+        {
+
+            private final List<String> pending = new ArrayList<>();
+            private final GMNEditor verifyEditor = new GMNEditor(true);
+            private final GMNEditor completeEditor = new GMNEditor(false);
+            private long count;
+
+            void check(final String s) throws Exception
+            {
+                count++;
+                final StringBuilder sb = new StringBuilder(s);
+                final char[] buf = padded(s);
+                final int len = s.length();
+
+                String verify = referenceVerify(s);
+                assertEquals(s, verify, outcome(() -> HealthcareGMN.verifyCheckCharacters(s)));
+                assertEquals(s, verify, outcome(() -> HealthcareGMN.verifyCheckCharacters(sb)));
+                assertEquals(s, verify, outcome(() -> HealthcareGMN.verifyCheckCharacters(buf, 3, len)));
+                assertEquals(s, verify, outcome(HealthcareGMN.validate(s), "true"));
+                assertEquals(s, verify, outcome(HealthcareGMN.validate(buf, 3, len), "true"));
+
+                String complete = referenceComplete(s);
+                String valid = complete.startsWith("!") ? complete : "valid";
+                assertEquals(s, complete, outcome(() -> HealthcareGMN.checkCharacters(s)));
+                assertEquals(s, complete, outcome(() -> HealthcareGMN.checkCharacters(sb)));
+                assertEquals(s, complete, outcome(() -> HealthcareGMN.checkCharacters(buf, 3, len)));
+                assertEquals(s, complete, outcome(() -> {
+                    char[] dst = new char[4];
+                    assertEquals(3, HealthcareGMN.checkCharacters(sb, dst, 1));
+                    return new String(dst, 1, 2);
+                }));
+                assertEquals(s, complete, outcome(() -> {
+                    char[] dst = new char[4];
+                    assertEquals(3, HealthcareGMN.checkCharacters(buf, 3, len, dst, 1));
+                    return new String(dst, 1, 2);
+                }));
+                assertEquals(s, complete, outcome(() -> {
+                    StringBuilder out = new StringBuilder();
+                    HealthcareGMN.checkCharacters(sb, out);
+                    return out;
+                }));
+                if (!complete.startsWith("!"))
+                {
+                    assertEquals(s, s + complete, HealthcareGMN.addCheckCharacters(s));
+                    assertEquals(s, s + complete, HealthcareGMN.addCheckCharacters(sb));
+                }
+                assertEquals(s, valid, outcome(HealthcareGMN.validatePartial(s), "valid"));
+                assertEquals(s, valid, outcome(HealthcareGMN.validatePartial(buf, 3, len), "valid"));
+
+                boolean[] goodComplete = Reference.goodCharacterPositions(s, true);
+                boolean[] goodPartial = Reference.goodCharacterPositions(s, false);
+                assertArrayEquals(s, goodComplete, HealthcareGMN.goodCharacterPositions(s, true));
+                assertArrayEquals(s, goodPartial, HealthcareGMN.goodCharacterPositions(s, false));
+
+                if (len <= GMNEditor.CAPACITY)
+                {
+                    verifyEditor.set(s);
+                    assertEquals(s, verify, outcome(verifyEditor.getValidation(), "true"));
+                    assertEquals(s, verify.equals("true"), verifyEditor.isValid());
+                    completeEditor.set(s);
+                    assertEquals(s, valid, outcome(completeEditor.getValidation(), "valid"));
+                    assertEquals(s, complete.startsWith("!") ? null : complete, completeEditor.getCheckCharacters());
+                    for (int i = 0; i < len; i++)
+                    {
+                        assertEquals(s, goodComplete[i], verifyEditor.isGoodCharacter(i));
+                        assertEquals(s, goodPartial[i], completeEditor.isGoodCharacter(i));
+                    }
+                }
+
+                pending.add(s);
+                if (pending.size() == 512)
+                    flush();
+            }
+
+            // Compare the multi-input paths with the oracle for the pending inputs
+            void flush() throws Exception
+            {
+                for (boolean verify : new boolean[] { true, false })
+                {
+                    checkBatch(pending, verify);
+                    checkLines(pending, verify);
+                }
+                pending.clear();
+            }
+
+            private static void checkBatch(List<String> inputs, boolean verify) throws Exception
+            {
+                GMNBatch chars = new GMNBatch(16);
+                GMNBatch bytes = new GMNBatch(16);
+                for (String s : inputs)
+                {
+                    chars.add(s);
+                    if (printable(s))
+                        bytes.add(s.getBytes(StandardCharsets.US_ASCII), 0, s.length());
+                }
+                int valid = verify ? chars.verify() : chars.complete();
+                int expectedValid = 0;
+                for (int row = 0; row < inputs.size(); row++)
+                {
+                    String s = inputs.get(row);
+                    String expected = verify ? referenceVerify(s) : referenceComplete(s);
+                    GMNValidationResult r = verify ? HealthcareGMN.validate(s) : HealthcareGMN.validatePartial(s);
+                    boolean ok = verify ? expected.equals("true") : !expected.startsWith("!");
+                    if (ok)
+                        expectedValid++;
+                    assertEquals(s, ok, chars.isValid(row));
+                    assertEquals(s, r.getReason(), chars.getReason(row));
+                    assertEquals(s, r.getPosition(), chars.getPosition(row));
+                    if (!verify)
+                        assertEquals(s, ok ? expected : null, chars.getCheckCharacters(row));
+                }
+                assertEquals(expectedValid, valid);
+
+                if (verify)
+                    bytes.verify();
+                else
+                    bytes.complete();
+                for (int row = 0, i = 0; i < inputs.size(); i++)
+                    if (printable(inputs.get(i)))
+                    {
+                        assertEquals(inputs.get(i), chars.getReason(i), bytes.getReason(row));
+                        assertEquals(inputs.get(i), chars.getPosition(i), bytes.getPosition(row));
+                        assertEquals(inputs.get(i), chars.getCheckCharacters(i), bytes.getCheckCharacters(row));
+                        row++;
+                    }
+            }
+
+            // The command-line entry point and the file processor, given the
+            // printable inputs
+            private static void checkLines(List<String> inputs, boolean verify) throws Exception
+            {
+                List<String> args = new ArrayList<>();
+                args.add(verify ? "verify" : "complete");
+                StringBuilder content = new StringBuilder();
+                StringBuilder expected = new StringBuilder();
+                boolean allValid = true;
+                for (String s : inputs)
+                {
+                    if (!printable(s))
+                        continue;
+                    args.add(s);
+                    content.append(s).append('\n');
+                    String out = verify ? referenceVerify(s) : referenceComplete(s);
+                    if (out.startsWith("!"))
+                        out = out.substring(1);
+                    else if (verify)
+                        out = out.equals("true") ? "*** Valid ***" : "*** Not valid ***";
+                    allValid &= out.equals("*** Valid ***") || !verify && out.length() == 2;
+                    expected.append(s).append(" : ").append(out).append(NL);
+                }
+                if (args.size() < 3)
+                    return;
+
+                StringBuilder out = new StringBuilder();
+                StringBuilder err = new StringBuilder();
+                int exit = GMNMain.run(args.toArray(new String[0]), out, err);
+                assertEquals(expected.toString(), out.toString());
+                assertEquals(allValid ? GMNMain.EXIT_VALID : GMNMain.EXIT_INVALID, exit);
+
+                GMNFileProcessor processor = new GMNFileProcessor(verify ? GMNFileProcessor.Mode.VERIFY : GMNFileProcessor.Mode.COMPLETE);
+                ByteArrayOutputStream processed = new ByteArrayOutputStream();
+                processor.process(Channels.newChannel(new ByteArrayInputStream(content.toString().getBytes(StandardCharsets.US_ASCII))),
+                    Channels.newChannel(processed));
+                assertEquals(expected.toString(), new String(processed.toByteArray(), StandardCharsets.US_ASCII));
+            }
+
+        }
+
+        // A valid partial healthcare GMN of a given length, built from the
+        // characters of cset82 in turn
+        private static String partial(int len)
+        {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < len; i++)
+                sb.append(i < 5 ? (char) ('0' + (i * 3 + 1) % 10) : CSET82.charAt((i * 7) % CSET82.length()));
+            return sb.toString();
+        }
+
+        // Substitute every character at every position of the input
+        private static void substitute(Checker checker, String s) throws Exception
+        {
+            checker.check(s);
+            char[] buf = s.toCharArray();
+            for (int pos = 0; pos < buf.length; pos++)
+            {
+                char original = buf[pos];
+                for (char c : CHARACTERS)
+                {
+                    buf[pos] = c;
+                    checker.check(new String(buf));
+                }
+                buf[pos] = original;
+            }
+        }
+
+        @Test
+        public void everyLength_EveryCharacterAtEveryPosition() throws Exception
+        {
+            Checker checker = new Checker();
+            for (int len = 0; len <= 30; len++)
+            {
+                String part = partial(len);
+                substitute(checker, part);
+
+                // Complete, so that substitutions are also verified against a correct pair
+                if (len >= 6 && len <= 23)
+                    substitute(checker, part + Reference.checkCharacters(part));
+            }
+            checker.flush();
+            assertTrue(checker.count > 50000);
+        }
+
+        @Test
+        public void components_BoundaryGcpLengths() throws Exception
+        {
+            for (int gcpLen : new int[] { 4, 5, 12, 13 })
+            {
+                String gcp = partial(gcpLen).replaceAll("[^0-9]", "7");
+                for (int modelLen = 0; gcpLen + modelLen <= 24; modelLen++)
+                {
+                    String model = partial(gcpLen + modelLen).substring(gcpLen);
+
+                    // Substitute every character at every position of both
+                    // components at the boundary lengths
+                    if (gcpLen == 5 || gcpLen == 12)
+                        for (int pos = 0; pos < gcpLen + modelLen; pos++)
+                            for (char c : CHARACTERS)
+                            {
+                                String s = new StringBuilder(gcp + model).replace(pos, pos + 1, String.valueOf(c)).toString();
+                                checkComponents(s.substring(0, gcpLen), s.substring(gcpLen));
+                            }
+                    checkComponents(gcp, model);
+                }
+            }
+        }
+
+        private static void checkComponents(final String gcp, final String model) throws Exception
+        {
+            String context = gcp + "|" + model;
+            GMNPrefixContext prefix = new GMNPrefixContext(gcp);
+
+            String complete = outcome(() -> Reference.checkCharactersGcpModel(gcp, model));
+            String valid = complete.startsWith("!") ? complete : "valid";
+            assertEquals(context, complete, outcome(() -> HealthcareGMN.checkCharactersGcpModel(gcp, model)));
+            assertEquals(context, complete, outcome(() -> prefix.checkCharacters(model)));
+            if (!complete.startsWith("!"))
+            {
+                assertEquals(context, gcp + model + complete, HealthcareGMN.addCheckCharactersGcpModel(gcp, model));
+                assertEquals(context, gcp + model + complete, prefix.addCheckCharacters(model));
+            }
+            assertEquals(context, valid, outcome(HealthcareGMN.validateGcpModel(gcp, model), "valid"));
+            assertEquals(context, valid, outcome(prefix.validatePartial(model), "valid"));
+            assertArrayEquals(context, Reference.goodCharacterPositionsGcpModel(gcp, model), HealthcareGMN.goodCharacterPositionsGcpModel(gcp, model));
+
+            List<String> checks = new ArrayList<>();
+            checks.add("");
+            checks.add("2");
+            checks.add("22K");
+            checks.add("I2");
+            checks.add("2£");
+            if (!complete.startsWith("!"))
+            {
+                checks.add(complete);
+                checks.add(complete.substring(1) + complete.charAt(0));
+            }
+            for (final String check : checks)
+            {
+                String c = context + "|" + check;
+                String verify = outcome(() -> Reference.verifyCheckCharactersGcpModelChecks(gcp, model, check));
+                assertEquals(c, verify, outcome(() -> HealthcareGMN.verifyCheckCharactersGcpModelChecks(gcp, model, check)));
+                assertEquals(c, verify, outcome(() -> prefix.verifyCheckCharacters(model, check)));
+                assertEquals(c, verify, outcome(HealthcareGMN.validateGcpModelChecks(gcp, model, check), "true"));
+                assertEquals(c, verify, outcome(prefix.validate(model, check), "true"));
+                assertArrayEquals(c, Reference.goodCharacterPositionsGcpModelChecks(gcp, model, check),
+                    HealthcareGMN.goodCharacterPositionsGcpModelChecks(gcp, model, check));
+            }
+        }
+
+        // A random input, most often a valid or nearly valid healthcare GMN
+        private static String random(Random rnd)
+        {
+            int len = rnd.nextInt(8) == 0 ? rnd.nextInt(32) : 6 + rnd.nextInt(18);
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < len; i++)
+            {
+                int kind = rnd.nextInt(100);
+                if (i < 5 && kind < 90)
+                    sb.append((char) ('0' + rnd.nextInt(10)));
+                else if (kind < 97)
+                    sb.append(CSET82.charAt(rnd.nextInt(CSET82.length())));
+                else
+                    sb.append(CHARACTERS[rnd.nextInt(CHARACTERS.length)]);
+            }
+            String s = sb.toString();
+            if (rnd.nextBoolean())
+            {
+                String checks = referenceComplete(s);
+                if (!checks.startsWith("!"))
+                    s += rnd.nextInt(4) == 0 ? CSET32.charAt(rnd.nextInt(32)) + "" + CSET32.charAt(rnd.nextInt(32)) : checks;
+            }
+            return s;
+        }
+
+        @Test
+        public void random_MatchesReference() throws Exception
+        {
+            Random rnd = new Random(0x474d4eL);
+            Checker checker = new Checker();
+            for (int i = 0; i < 20000; i++)
+                checker.check(random(rnd));
+            checker.flush();
+        }
+
+        /*
+         * Recorded throughput of each main path relative to the oracle, i.e.
+         * the oracle time divided by the time of the path for the same inputs,
+         * measured with the properties set by the throughput profile and keyed
+         * by java.specification.version. The ratio of each path must remain at
+         * least half of its recorded value.
+         *
+         */
+        private static final Map<String, Map<String, Double>> BASELINES = new HashMap<>();
+        static
+        {
+            Map<String, Double> java17 = new HashMap<>();
+            java17.put("verifyCheckCharacters(String)", 6.0);
+            java17.put("verifyCheckCharacters(char[])", 6.5);
+            java17.put("validate(CharSequence)", 6.0);
+            java17.put("checkCharacters(String)", 3.5);
+            java17.put("GMNBatch.verify()", 5.5);
+            java17.put("GMNBatch.complete()", 4.0);
+            BASELINES.put("17", java17);
+        }
+
+        private static final double TOLERANCE = 0.5;
+
+        private interface Workload
+        {
+            int run() throws GS1Exception;
+        }
+
+        // Consumes the results of each workload so that they are not eliminated
+        private static int sink;
+
+        // The least time of several runs of a workload, in nanoseconds
+        private static long time(Workload w, int runs) throws GS1Exception
+        {
+            long best = Long.MAX_VALUE;
+            for (int r = 0; r < runs; r++)
+            {
+                long start = System.nanoTime();
+                sink += w.run();
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            return best;
+        }
+
+        // The throughput of a path relative to that of the oracle, each being
+        // warmed up and then timed in alternation
+        private static double ratio(Workload reference, Workload path) throws GS1Exception
+        {
+            time(reference, 1000);
+            time(path, 1000);
+            long referenceTime = Long.MAX_VALUE;
+            long pathTime = Long.MAX_VALUE;
+            for (int round = 0; round < 20; round++)
+            {
+                referenceTime = Math.min(referenceTime, time(reference, 5));
+                pathTime = Math.min(pathTime, time(path, 5));
+            }
+            return (double) referenceTime / pathTime;
+        }
+
+        @Test
+        public void throughput_NotBelowBaseline() throws Exception
+        {
+            Assume.assumeFalse(GMNMetrics.isEnabled());
+            boolean record = Boolean.getBoolean("org.gs1.gmn.throughput.record");
+            Map<String, Double> baseline = BASELINES.get(System.getProperty("java.specification.version"));
+            Assume.assumeTrue(baseline != null || record);
+
+            // Valid healthcare GMNs of every length, as for the benchmarks
+            Random rnd = new Random(21);
+            final String[] gmns = new String[1024];
+            final String[] parts = new String[gmns.length];
+            final char[][] chars = new char[gmns.length][];
+            for (int i = 0; i < gmns.length; i++)
+            {
+                parts[i] = GMNTestInputs.randomPart(rnd);
+                gmns[i] = parts[i] + Reference.checkCharacters(parts[i]);
+                chars[i] = gmns[i].toCharArray();
+            }
+            final GMNBatch verifyBatch = new GMNBatch(gmns.length);
+            final GMNBatch completeBatch = new GMNBatch(gmns.length);
+            for (int i = 0; i < gmns.length; i++)
+            {
+                verifyBatch.add(gmns[i]);
+                completeBatch.add(parts[i]);
+            }
+
+            Workload referenceVerify = () -> {
+                int n = 0;
+                for (String s : gmns)
+                    n += Reference.verifyCheckCharacters(s) ? 1 : 0;
+                return n;
+            };
+            Workload referenceComplete = () -> {
+                int n = 0;
+                for (String s : parts)
+                    n += Reference.checkCharacters(s).charAt(0);
+                return n;
+            };
+
+            Map<String, Double> measured = new HashMap<>();
+            measured.put("verifyCheckCharacters(String)", ratio(referenceVerify, () -> {
+                int n = 0;
+                for (String s : gmns)
+                    n += HealthcareGMN.verifyCheckCharacters(s) ? 1 : 0;
+                return n;
+            }));
+            measured.put("verifyCheckCharacters(char[])", ratio(referenceVerify, () -> {
+                int n = 0;
+                for (char[] c : chars)
+                    n += HealthcareGMN.verifyCheckCharacters(c, 0, c.length) ? 1 : 0;
+                return n;
+            }));
+            measured.put("validate(CharSequence)", ratio(referenceVerify, () -> {
+                int n = 0;
+                for (String s : gmns)
+                    n += HealthcareGMN.validate(s).isValid() ? 1 : 0;
+                return n;
+            }));
+            measured.put("checkCharacters(String)", ratio(referenceComplete, () -> {
+                int n = 0;
+                for (String s : parts)
+                    n += HealthcareGMN.checkCharacters(s).charAt(0);
+                return n;
+            }));
+            measured.put("GMNBatch.verify()", ratio(referenceVerify, verifyBatch::verify));
+            measured.put("GMNBatch.complete()", ratio(referenceComplete, completeBatch::complete));
+
+            if (record)
+                for (Map.Entry<String, Double> e : measured.entrySet())
+                    System.out.printf("%-32s %6.2f%n", e.getKey(), e.getValue());
+            Assume.assumeNotNull(baseline);
+
+            StringBuilder failures = new StringBuilder();
+            for (Map.Entry<String, Double> e : baseline.entrySet())
+            {
+                double ratio = measured.get(e.getKey());
+                if (ratio < e.getValue() * TOLERANCE)
+                    failures.append(String.format("%s is %.2f times the throughput of the reference, below the baseline of %.2f%n",
+                        e.getKey(), ratio, e.getValue()));
+            }
+            assertTrue(failures.toString(), failures.length() == 0);
+        }
+
+}
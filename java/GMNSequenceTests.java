@@ -0,0 +1,143 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/*
+ * These are unit tests for the sequential healthcare GMN generator.
+ *
+ * Every generated healthcare GMN is checked against the result of completing
+ * the same model reference with the helper API.
+ *
+ */
+import org.gs1.*;
+
+public class GMNSequenceTests
+{
+
+        @Test
+        public void next_MatchesAddCheckCharacters() throws Exception
+        {
+            GMNSequence seq = new GMNSequence("1987654", "ABC", "0123456789", 4, 1, 10000);
+            int count = 0;
+            while (seq.next())
+            {
+                String model = String.format("ABC%04d", seq.index());
+                assertEquals(HealthcareGMN.addCheckCharactersGcpModel("1987654", model), new String(seq.buffer(), 0, seq.length()));
+                count++;
+            }
+            assertEquals(9999, count);
+            assertFalse(seq.next());
+        }
+
+        @Test
+        public void next_RollsOverNonContiguousAlphabet() throws Exception
+        {
+            String alphabet = "!/9Zz";
+            GMNSequence seq = new GMNSequence("12345", "", alphabet, 3, 0, GMNSequence.capacity(alphabet.length(), 3));
+            int count = 0;
+            while (seq.next())
+            {
+                int v = (int) seq.index();
+                String model = "" + alphabet.charAt(v / 25) + alphabet.charAt(v / 5 % 5) + alphabet.charAt(v % 5);
+                assertEquals(HealthcareGMN.addCheckCharactersGcpModel("12345", model), seq.current());
+                count++;
+            }
+            assertEquals(125, count);
+        }
+
+        @Test
+        public void split_CoversRangeInOrder() throws Exception
+        {
+            GMNSequence seq = new GMNSequence("1987654", "X", "0123456789ABCDEF", 3, 7, 4000);
+            StringBuilder expected = new StringBuilder();
+            while (seq.next())
+                expected.append(seq.current()).append('\n');
+
+            GMNSequence[] parts = new GMNSequence("1987654", "X", "0123456789ABCDEF", 3, 7, 4000).split(7);
+            assertEquals(7, parts.length);
+            StringBuilder actual = new StringBuilder();
+            for (GMNSequence part : parts)
+                while (part.next())
+                    actual.append(part.current()).append('\n');
+            assertEquals(expected.toString(), actual.toString());
+        }
+
+        @Test
+        public void split_LargeRange() throws Exception
+        {
+            String cset82 = GMNTestInputs.CSET82;
+            assertEquals(Long.MAX_VALUE, GMNSequence.capacity(cset82.length(), 10));
+
+            // Bounds of the whole range are increasing and start at the first value
+            GMNSequence[] parts = new GMNSequence("12345", "A", cset82, 10, 0, Long.MAX_VALUE).split(7);
+            assertEquals(7, parts.length);
+            assertEquals(-1, parts[0].index());
+            for (int i = 1; i < parts.length; i++)
+            {
+                long size = parts[i].index() - parts[i - 1].index();
+                assertTrue(size == Long.MAX_VALUE / 7 || size == Long.MAX_VALUE / 7 + 1);
+            }
+
+            // A range that ends at Long.MAX_VALUE is covered in order
+            long from = Long.MAX_VALUE - 100;
+            GMNSequence seq = new GMNSequence("12345", "A", cset82, 10, from, Long.MAX_VALUE);
+            StringBuilder expected = new StringBuilder();
+            while (seq.next())
+                expected.append(seq.current()).append('\n');
+            StringBuilder actual = new StringBuilder();
+            for (GMNSequence part : new GMNSequence("12345", "A", cset82, 10, from, Long.MAX_VALUE).split(7))
+                while (part.next())
+                    actual.append(part.current()).append('\n');
+            assertEquals(expected.toString(), actual.toString());
+        }
+
+        @Test
+        public void constructor_RejectsInvalidInput() throws Exception
+        {
+            try
+            {
+                new GMNSequence("1234", "A", "0123456789", 2, 0, 100);
+                fail();
+            }
+            catch (GS1Exception e)
+            {
+                assertEquals("The GS1 Company Prefix is too short. It should be at least 5 digits long.", e.getMessage());
+            }
+            try
+            {
+                new GMNSequence("123456789012", "ABCDEFGH", "0123456789", 4, 0, 100);
+                fail();
+            }
+            catch (GS1Exception e)
+            {
+                assertEquals("The input is too long. It should be 23 characters maximum excluding the check character pair.", e.getMessage());
+            }
+            try
+            {
+                new GMNSequence("12345", "A", "01£", 2, 0, 9);
+                fail();
+            }
+            catch (IllegalArgumentException e)
+            {
+            }
+            for (String alphabet : new String[] { "0120", "0112", "0213", "BA" })
+            {
+                try
+                {
+                    new GMNSequence("12345", "A", alphabet, 2, 0, 4);
+                    fail(alphabet);
+                }
+                catch (IllegalArgumentException e)
+                {
+                }
+            }
+            try
+            {
+                new GMNSequence("12345", "A", "0123456789", 2, 0, 101);
+                fail();
+            }
+            catch (IllegalArgumentException e)
+            {
+            }
+        }
+
+}
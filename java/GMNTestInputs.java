@@ -0,0 +1,46 @@
+import java.util.Random;
+
+import org.gs1.*;
+
+/*
+ * Shared generators of healthcare GMNs for the unit tests.
+ *
+ * Tests that need a different distribution, e.g. shared GS1 Company Prefixes
+ * or corrupted input, build it on these or keep their own generator.
+ *
+ */
+final class GMNTestInputs
+{
+
+        static final String CSET82 = "!\"%&'()*+,-./0123456789:;<=>?ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+        static final String CSET32 = "23456789ABCDEFGHJKLMNPQRSTUVWXYZ";
+
+        private GMNTestInputs() {}
+
+        // A valid partial healthcare GMN of 6 to 23 characters, starting with
+        // five digits
+        static String randomPart(Random rnd)
+        {
+            StringBuilder sb = new StringBuilder();
+            int len = 6 + rnd.nextInt(18);
+            for (int j = 0; j < len; j++)
+                sb.append(j < 5 ? (char) ('0' + rnd.nextInt(10)) : CSET82.charAt(rnd.nextInt(82)));
+            return sb.toString();
+        }
+
+        // A valid healthcare GMN complete with its check character pair
+        static String randomGMN(Random rnd) throws GS1Exception
+        {
+            return HealthcareGMN.addCheckCharacters(randomPart(rnd));
+        }
+
+        static String[] randomGMNs(int n, long seed) throws GS1Exception
+        {
+            Random rnd = new Random(seed);
+            String[] out = new String[n];
+            for (int i = 0; i < n; i++)
+                out[i] = randomGMN(rnd);
+            return out;
+        }
+
+}
@@ -0,0 +1,118 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/*
+ * These are unit tests for the verification cache.
+ *
+ * Cached results and exception messages are checked against the helper API,
+ * and the counters against known sequences of lookups.
+ *
+ */
+import org.gs1.*;
+
+public class GMNVerificationCacheTests
+{
+
+        private static final String[] GMNS = { "1987654Ad4X4bL5ttr2310c2K", "1987654Ad4X4bL5ttr2310cXK", "1987654Ad4X4bL5ttr2310c",
+                                               "1987654Ad4X4bL5ttr2310c£K", "12345", "ABCDEFGHIJKL", "12345678901234567890123456" };
+
+        private static String outcome(GMNVerificationCache cache, String gmn)
+        {
+            try
+            {
+                return String.valueOf(cache.verifyCheckCharacters(gmn));
+            }
+            catch (GS1Exception e)
+            {
+                return "GS1Exception: " + e.getMessage();
+            }
+        }
+
+        private static String outcome(String gmn)
+        {
+            try
+            {
+                return String.valueOf(HealthcareGMN.verifyCheckCharacters(gmn));
+            }
+            catch (GS1Exception e)
+            {
+                return "GS1Exception: " + e.getMessage();
+            }
+        }
+
+        @Test
+        public void verifyCheckCharacters_MatchesHelperAPI() throws Exception
+        {
+            GMNVerificationCache cache = new GMNVerificationCache(100);
+            for (int pass = 0; pass < 2; pass++)
+                for (String gmn : GMNS)
+                    assertEquals(gmn, outcome(gmn), outcome(cache, gmn));
+            assertEquals(6, cache.getHitCount());
+            assertEquals(6, cache.getMissCount());
+            assertEquals(6, cache.size());
+            assertEquals(0, cache.getEvictionCount());
+        }
+
+        @Test
+        public void verifyCheckCharactersGcpModelChecks_CachedSeparately() throws Exception
+        {
+            GMNVerificationCache cache = new GMNVerificationCache(100);
+            assertTrue(cache.verifyCheckCharactersGcpModelChecks("1987654", "Ad4X4bL5ttr2310c", "2K"));
+            assertTrue(cache.verifyCheckCharacters("1987654Ad4X4bL5ttr2310c2K"));
+            assertEquals(0, cache.getHitCount());
+            assertEquals(GMNValidationResult.Reason.GCP_TOO_SHORT, cache.validateGcpModelChecks("1987", "654Ad4X4bL5ttr2310c", "2K").getReason());
+            assertEquals(GMNValidationResult.Reason.GCP_TOO_SHORT, cache.validateGcpModelChecks("1987", "654Ad4X4bL5ttr2310c", "2K").getReason());
+            assertFalse(cache.verifyCheckCharactersGcpModelChecks("1987654", "Ad4X4bL5ttr2310c", "XK"));
+            assertEquals(1, cache.getHitCount());
+            assertEquals(4, cache.getMissCount());
+        }
+
+        @Test
+        public void evictsUnreferencedEntries() throws Exception
+        {
+            GMNVerificationCache cache = new GMNVerificationCache(4);
+            String hot = "1987654Ad4X4bL5ttr2310c2K";
+            cache.validate(hot);
+            for (int i = 0; i < 100; i++)
+            {
+                cache.validate(hot);
+                cache.validate(HealthcareGMN.addCheckCharacters("12345" + i));
+                assertTrue(cache.size() <= 4);
+            }
+            assertEquals(100, cache.getHitCount());
+            assertEquals(101, cache.getMissCount());
+            assertEquals(97, cache.getEvictionCount());
+            cache.validate(hot);
+            assertEquals(101, cache.getHitCount());
+        }
+
+        @Test
+        public void concurrentLookups() throws Exception
+        {
+            final GMNVerificationCache cache = new GMNVerificationCache(16);
+            Thread[] threads = new Thread[4];
+            final boolean[] failed = new boolean[1];
+            for (int t = 0; t < threads.length; t++)
+            {
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < 10000; i++)
+                    {
+                        String gmn = GMNS[i % GMNS.length];
+                        if (!outcome(gmn).equals(outcome(cache, gmn)))
+                            failed[0] = true;
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads)
+                thread.join();
+            assertFalse(failed[0]);
+            assertEquals(6, cache.size());
+            int cached = 0;
+            for (int i = 0; i < 10000; i++)
+                if (GMNS[i % GMNS.length].length() <= 25)
+                    cached++;
+            assertEquals(threads.length * cached, cache.getHitCount() + cache.getMissCount());
+        }
+
+}
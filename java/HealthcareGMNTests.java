@@ -292,4 +292,328 @@ public class HealthcareGMNTests
             assertTrue(verifyCheckCharactersGcpModelChecks("123456789012","34567890123","NT"));
         }
 
+        @Test
+        public void checkCharacters_CharSequence() throws Exception
+        {
+            assertEquals("2K",checkCharacters(new StringBuilder("1987654Ad4X4bL5ttr2310c")));
+        }
+
+        @Test
+        public void checkCharacters_CharArrayRegion() throws Exception
+        {
+            char[] buf = "xx1987654Ad4X4bL5ttr2310cyy".toCharArray();
+            assertEquals("2K",checkCharacters(buf, 2, 23));
+        }
+
+        @Test
+        public void checkCharacters_IntoCharArray() throws Exception
+        {
+            char[] buf = "1987654Ad4X4bL5ttr2310c__".toCharArray();
+            assertEquals(25, checkCharacters(buf, 0, 23, buf, 23));
+            assertEquals("1987654Ad4X4bL5ttr2310c2K", new String(buf));
+
+            char[] dst = new char[3];
+            assertEquals(3, checkCharacters("12345A", dst, 1));
+            assertEquals("NJ", new String(dst, 1, 2));
+        }
+
+        @Test
+        public void checkCharacters_IntoAppendable() throws Exception
+        {
+            StringBuilder sb = new StringBuilder("12345678901234567890123");
+            checkCharacters(sb.toString(), sb);
+            assertEquals("12345678901234567890123NT", sb.toString());
+        }
+
+        @Test(expected = GS1Exception.class)
+        public void checkCharacters_CharArrayRegionInvalidCharacter() throws Exception
+        {
+            char[] buf = "1987654Ad4X4bL5ttr2310£".toCharArray();
+            checkCharacters(buf, 0, buf.length);
+        }
+
+        @Test
+        public void addCheckCharacters_CharSequence() throws Exception
+        {
+            assertEquals("1987654Ad4X4bL5ttr2310c2K", addCheckCharacters(new StringBuilder("1987654Ad4X4bL5ttr2310c")));
+        }
+
+        @Test
+        public void verifyCheckCharacters_CharSequence() throws Exception
+        {
+            assertTrue(verifyCheckCharacters(new StringBuilder("1987654Ad4X4bL5ttr2310c2K")));
+            assertFalse(verifyCheckCharacters(new StringBuilder("1987654Ad4X4bL5ttr2310c2X")));
+        }
+
+        @Test
+        public void verifyCheckCharacters_CharArrayRegion() throws Exception
+        {
+            char[] buf = "--12345ANJ--1987654Ad4X4bL5ttr2310cXK--".toCharArray();
+            assertTrue(verifyCheckCharacters(buf, 2, 8));
+            assertFalse(verifyCheckCharacters(buf, 12, 25));
+        }
+
+        @Test(expected = GS1Exception.class)
+        public void verifyCheckCharacters_CharArrayRegionTooShort() throws Exception
+        {
+            char[] buf = "12345ANJ".toCharArray();
+            verifyCheckCharacters(buf, 1, 7);
+        }
+
+        @Test(expected = GS1Exception.class)
+        public void verifyCheckCharacters_NonAsciiDigitInGcp() throws Exception
+        {
+            verifyCheckCharacters("1234٣ANJ");
+        }
+
+        @Test
+        public void validate_Valid() throws Exception
+        {
+            assertSame(GMNValidationResult.VALID, validate("1987654Ad4X4bL5ttr2310c2K"));
+            assertTrue(validate("12345ANJ").isValid());
+            assertNull(validate("12345ANJ").getMessage());
+        }
+
+        @Test
+        public void validate_Reasons() throws Exception
+        {
+            assertEquals(GMNValidationResult.Reason.TOO_SHORT, validate("12345XX").getReason());
+            assertEquals(GMNValidationResult.Reason.TOO_LONG, validate("123456789012345678901234XX").getReason());
+            assertEquals(GMNValidationResult.Reason.CHECK_MISMATCH, validate("1987654Ad4X4bL5ttr2310c2X").getReason());
+
+            GMNValidationResult r = validate("1987X54Ad4X4bL5ttr2310c2K");
+            assertEquals(GMNValidationResult.Reason.GCP_NOT_NUMERIC, r.getReason());
+            assertEquals(4, r.getPosition());
+
+            r = validate("1987654Ad4X4bL5ttr2310£2K");
+            assertEquals(GMNValidationResult.Reason.INVALID_CHARACTER, r.getReason());
+            assertEquals(22, r.getPosition());
+
+            r = validate("1987654Ad4X4bL5ttr2310c2x");
+            assertEquals(GMNValidationResult.Reason.INVALID_CHECK_CHARACTER, r.getReason());
+            assertEquals(24, r.getPosition());
+        }
+
+        @Test
+        public void validate_MessageMatchesException() throws Exception
+        {
+            String[] inputs = { "12345XX", "123456789012345678901234XX", "X987654Ad4X4bL5ttr2310c2K",
+                                "19876£4Ad4X4bL5ttr2310c2K", "1987654Ad4X4bL5ttr2310c2x" };
+            for (String gmn : inputs)
+            {
+                try
+                {
+                    verifyCheckCharacters(gmn);
+                    fail("Expected GS1Exception for " + gmn);
+                }
+                catch (GS1Exception e)
+                {
+                    assertEquals(e.getMessage(), validate(gmn).getMessage());
+                    assertEquals(validate(gmn).getReason(), e.getReason());
+                    assertEquals(validate(gmn).getPosition(), e.getPosition());
+                }
+            }
+        }
+
+        @Test
+        public void exception_ReasonAndPosition() throws Exception
+        {
+            try
+            {
+                addCheckCharactersGcpModel("1987654", "Ad4X4bL5ttr231£");
+                fail();
+            }
+            catch (GS1Exception e)
+            {
+                assertEquals(GMNValidationResult.Reason.INVALID_CHARACTER, e.getReason());
+                assertEquals(21, e.getPosition());
+                assertEquals("Invalid character at position 22: £", e.getMessage());
+                assertTrue(e.getStackTrace().length > 0);
+            }
+
+            GS1Exception e = new GS1Exception("Other problem");
+            assertNull(e.getReason());
+            assertEquals(-1, e.getPosition());
+            assertEquals("Other problem", e.getMessage());
+        }
+
+        @Test
+        public void exception_PublicConstructorKeepsCause() throws Exception
+        {
+            RuntimeException cause = new RuntimeException();
+            GS1Exception e = new GS1Exception("Other problem");
+            assertSame(e, e.initCause(cause));
+            assertSame(cause, e.getCause());
+            assertTrue(e.getStackTrace().length > 0);
+        }
+
+        @Test
+        public void validatePartial_Reasons() throws Exception
+        {
+            assertTrue(validatePartial("1987654Ad4X4bL5ttr2310c").isValid());
+            assertEquals(GMNValidationResult.Reason.TOO_SHORT, validatePartial("12345").getReason());
+            assertEquals(GMNValidationResult.Reason.TOO_LONG, validatePartial("123456789012345678901234").getReason());
+            assertEquals(GMNValidationResult.Reason.INVALID_CHARACTER, validatePartial("1987654Ad4X4bL5ttr2310£").getReason());
+            assertEquals("The input is too short. It should be at least 6 characters long excluding the check character pair.",
+                         validatePartial("12345").getMessage());
+        }
+
+        @Test
+        public void validateGcpModelChecks_Reasons() throws Exception
+        {
+            assertTrue(validateGcpModelChecks("1987654","Ad4X4bL5ttr2310c","2K").isValid());
+            assertEquals(GMNValidationResult.Reason.CHECK_MISMATCH, validateGcpModelChecks("1987654","Ad4X4bL5ttr2310c","XK").getReason());
+            assertEquals(GMNValidationResult.Reason.GCP_TOO_SHORT, validateGcpModelChecks("1234","Ad4X4bL5ttr2310c","XX").getReason());
+            assertEquals(GMNValidationResult.Reason.GCP_TOO_LONG, validateGcpModelChecks("1234567890123","Ad4X4bL5","XX").getReason());
+            assertEquals(GMNValidationResult.Reason.GCP_NOT_NUMERIC, validateGcpModelChecks("198765A","Ad4X4bL5ttr2310c","XX").getReason());
+            assertEquals(GMNValidationResult.Reason.MODEL_EMPTY, validateGcpModelChecks("1987654","","3T").getReason());
+            assertEquals(GMNValidationResult.Reason.CHECK_WRONG_LENGTH, validateGcpModelChecks("1987654","Ad4X4bL5ttr2310c","3").getReason());
+            assertEquals(GMNValidationResult.Reason.TOO_LONG, validateGcpModelChecks("12345","6789012345678901234","XX").getReason());
+            assertEquals("The GS1 Company Prefix must only contain digits.",
+                         validateGcpModelChecks("198765A","Ad4X4bL5ttr2310c","XX").getMessage());
+        }
+
+        @Test
+        public void validateGcpModel_Reasons() throws Exception
+        {
+            assertTrue(validateGcpModel("1987654","Ad4X4bL5ttr2310c").isValid());
+            GMNValidationResult r = validateGcpModel("1987654","Ad4X£");
+            assertEquals(GMNValidationResult.Reason.INVALID_CHARACTER, r.getReason());
+            assertEquals(11, r.getPosition());
+            assertEquals("Invalid character at position 12: £", r.getMessage());
+        }
+
+        @Test
+        public void suggestCorrections_Substitution() throws Exception
+        {
+            java.util.List<GMNCorrection> c = suggestCorrections("1987654Ad4X4bL5ttr231Oc2K");
+            assertEquals("1987654Ad4X4bL5ttr2310c2K", c.get(0).getGmn());
+            assertEquals(GMNCorrection.Type.SUBSTITUTION, c.get(0).getType());
+            assertEquals(21, c.get(0).getPosition());
+            for (GMNCorrection s : c)
+                assertTrue(verifyCheckCharacters(s.getGmn()));
+        }
+
+        @Test
+        public void suggestCorrections_Transposition() throws Exception
+        {
+            boolean found = false;
+            for (GMNCorrection s : suggestCorrections("1987654Ad4X4bL5ttr2301c2K"))
+            {
+                assertTrue(verifyCheckCharacters(s.getGmn()));
+                if (s.getType() == GMNCorrection.Type.TRANSPOSITION && s.getGmn().equals("1987654Ad4X4bL5ttr2310c2K"))
+                    found = true;
+            }
+            assertTrue(found);
+            assertTrue(suggestCorrections("1987654Ad4X4bL5ttr2310cK2").toString().contains("TRANSPOSITION at position 23: 1987654Ad4X4bL5ttr2310c2K"));
+        }
+
+        @Test
+        public void suggestCorrections_RepairsFormat() throws Exception
+        {
+            assertEquals("[SUBSTITUTION at position 11: 1987654Ad4X4bL5ttr2310c2K]", suggestCorrections("1987654Ad4X£bL5ttr2310c2K").toString());
+            assertEquals("[SUBSTITUTION at position 24: 1987654Ad4X4bL5ttr2310c2K]", suggestCorrections("1987654Ad4X4bL5ttr2310c21").toString());
+            assertEquals("1987654Ad4X4bL5ttr2310c2K", suggestCorrections("19876S4Ad4X4bL5ttr2310c2K").get(0).getGmn());
+        }
+
+        @Test
+        public void suggestCorrections_None() throws Exception
+        {
+            assertTrue(suggestCorrections("1987654Ad4X4bL5ttr2310c2K").isEmpty());
+            assertTrue(suggestCorrections("1234567").isEmpty());
+            assertTrue(suggestCorrections("1987654Ad4X££L5ttr2310c2K").isEmpty());
+        }
+
+        @Test
+        public void suggestCorrections_CheckPairOutOfRange() throws Exception
+        {
+            // ZX, ZY and ZZ encode 1021 to 1023, which no weighted sum reaches,
+            // so only a change of the check pair itself can repair them
+            for (GMNCorrection s : suggestCorrections("58734Q2F32AG7ZY"))
+                assertFalse(s.toString(), s.getType() == GMNCorrection.Type.SUBSTITUTION && s.getPosition() < 13);
+            java.util.Random rnd = new java.util.Random(1);
+            for (int n = 0; n < 300; n++)
+            {
+                String bad = GMNTestInputs.randomPart(rnd) + new String[] { "ZX", "ZY", "ZZ" }[n % 3];
+                for (GMNCorrection s : suggestCorrections(bad))
+                    assertTrue(s.toString(), verifyCheckCharacters(s.getGmn()));
+            }
+        }
+
+        @Test
+        public void suggestCorrections_MatchesExhaustiveSearch() throws Exception
+        {
+            java.util.Random rnd = new java.util.Random(1);
+            for (int n = 0; n < 200; n++)
+            {
+                char[] gmn = GMNTestInputs.randomGMN(rnd).toCharArray();
+                int p = rnd.nextInt(gmn.length - 1);
+                if (rnd.nextBoolean())
+                    gmn[p] = GMNTestInputs.CSET82.charAt(rnd.nextInt(82));
+                else
+                {
+                    char t = gmn[p]; gmn[p] = gmn[p + 1]; gmn[p + 1] = t;
+                }
+                String bad = new String(gmn);
+
+                java.util.Set<String> expected = new java.util.HashSet<String>();
+                for (int i = 0; i < gmn.length; i++)
+                {
+                    for (int j = 0; j < 82; j++)
+                    {
+                        char[] c = bad.toCharArray();
+                        c[i] = GMNTestInputs.CSET82.charAt(j);
+                        if (validate(new String(c)).isValid() && c[i] != bad.charAt(i))
+                            expected.add(new String(c));
+                    }
+                    if (i + 1 < gmn.length && gmn[i] != gmn[i + 1])
+                    {
+                        char[] c = bad.toCharArray();
+                        c[i] = gmn[i + 1]; c[i + 1] = gmn[i];
+                        if (validate(new String(c)).isValid())
+                            expected.add(new String(c));
+                    }
+                }
+                if (validate(bad).isValid())
+                    expected.clear();
+
+                java.util.Set<String> actual = new java.util.HashSet<String>();
+                for (GMNCorrection s : suggestCorrections(bad))
+                    actual.add(s.getGmn());
+                assertEquals(bad, expected, actual);
+            }
+        }
+
+        @Test
+        public void platformImplementation() throws Exception
+        {
+            // The build names the implementation that it expects to be loaded,
+            // which differs when the tests run against the multi-release jar
+            String expected = System.getProperty("org.gs1.gmn.implementation");
+            if (expected == null)
+                return;
+            java.lang.reflect.Field f = Class.forName("org.gs1.GMNPlatform").getDeclaredField("IMPLEMENTATION");
+            f.setAccessible(true);
+            assertEquals(expected, f.get(null));
+        }
+
+        @Test(expected = GS1Exception.class)
+        public void checkCharacters_Empty() throws Exception
+        {
+            checkCharacters("");
+        }
+
+        @Test(expected = GS1Exception.class)
+        public void verifyCheckCharacters_Empty() throws Exception
+        {
+            verifyCheckCharacters("");
+        }
+
+        @Test(expected = GS1Exception.class)
+        public void verifyCheckCharacters_CharArrayRegionEmptyAtEnd() throws Exception
+        {
+            char[] buf = "12345ANJ".toCharArray();
+            verifyCheckCharacters(buf, 8, 0);
+        }
+
 }
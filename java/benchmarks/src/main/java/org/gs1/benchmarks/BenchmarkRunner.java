@@ -0,0 +1,67 @@
+package org.gs1.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Standard regression run of the benchmarks.
+ *
+ * Runs the selected benchmarks once single-threaded and once with a thread per
+ * available processor, with the GC profiler attached so that the bytes
+ * allocated per operation ({@code gc.alloc.rate.norm}) are reported. Results
+ * are written as JSON for comparison between releases.
+ *
+ * Usage: {@code java -cp target/benchmarks.jar org.gs1.benchmarks.BenchmarkRunner [regexp [resultPrefix]]}
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {}
+
+    public static void main(String[] args)
+        throws RunnerException
+    {
+        String include = args.length > 0 ? args[0] : HealthcareGMNBenchmark.class.getSimpleName();
+        String prefix = args.length > 1 ? args[1] : "jmh-result";
+
+        run(include, 1, prefix);
+
+        int cpus = Runtime.getRuntime().availableProcessors();
+        if (cpus > 1)
+            run(include, cpus, prefix);
+    }
+
+    private static void run(String include, int threads, String prefix)
+        throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(include)
+            .threads(threads)
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result(prefix + "-t" + threads + ".json")
+            .build();
+        new Runner(opt).run();
+    }
+
+}
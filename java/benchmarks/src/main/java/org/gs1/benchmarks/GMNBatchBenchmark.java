@@ -0,0 +1,85 @@
+package org.gs1.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.gs1.GMNBatch;
+
+/**
+ * Throughput of verifying and completing a full batch of healthcare GMNs with
+ * {@link GMNBatch}, reported per row for comparison with the single-GMN
+ * methods in {@link HealthcareGMNBenchmark}.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GMNBatchBenchmark {
+
+    @Param({"8", "14", "25"})
+    public int length;
+
+    @Param({"valid", "mismatch", "invalid"})
+    public String kind;
+
+    GMNBatch completes;
+    GMNBatch partials;
+
+    @Setup
+    public void setup()
+    {
+        completes = new GMNBatch(GMNInputs.POOL_SIZE);
+        for (String gmn : GMNInputs.completes(length, kind, length))
+            completes.add(gmn);
+
+        partials = new GMNBatch(GMNInputs.POOL_SIZE);
+        for (String part : GMNInputs.partials(length - 2, !kind.equals("invalid"), length))
+            partials.add(part);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GMNInputs.POOL_SIZE)
+    public int verify()
+    {
+        return completes.verify();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GMNInputs.POOL_SIZE)
+    public int complete()
+    {
+        return partials.complete();
+    }
+
+}
@@ -0,0 +1,141 @@
+package org.gs1.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.gs1.GMNFileProcessor;
+
+/**
+ * Scaling curve of {@link GMNFileProcessor} over a generated file of complete
+ * healthcare GMNs.
+ *
+ * The sequential processor is the baseline. The parallel processor is run on
+ * a ForkJoinPool of each thread count, so the time per file against the
+ * thread count shows how close to linear the scaling is. Output is discarded
+ * so that the measurement is not bounded by the speed of the disk.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GMNFileProcessorBenchmark {
+
+    @Param({"1000000"})
+    public int lines;
+
+    /**
+     * Pool on which the parallel processor is run.
+     */
+    @State(Scope.Benchmark)
+    public static class Pool
+    {
+        @Param({"1", "2", "4", "8", "16", "32"})
+        public int threads;
+
+        ForkJoinPool pool;
+
+        @Setup(Level.Trial)
+        public void setup()
+        {
+            pool = new ForkJoinPool(threads);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown()
+        {
+            pool.shutdown();
+        }
+    }
+
+    Path input;
+    GMNFileProcessor processor = new GMNFileProcessor(GMNFileProcessor.Mode.VERIFY);
+    WritableByteChannel discard = Channels.newChannel(new OutputStream() {
+        @Override
+        public void write(int b) {}
+
+        @Override
+        public void write(byte[] b, int off, int len) {}
+    });
+
+    @Setup(Level.Trial)
+    public void setup()
+        throws IOException
+    {
+        input = Files.createTempFile("gmn-benchmark", ".txt");
+        String[][] pools = {
+            GMNInputs.completes(25, "valid", 1), GMNInputs.completes(14, "valid", 2),
+            GMNInputs.completes(25, "mismatch", 3), GMNInputs.completes(18, "invalid", 4)
+        };
+        try (Writer w = Files.newBufferedWriter(input, StandardCharsets.UTF_8))
+        {
+            for (int i = 0; i < lines; i++)
+            {
+                w.write(pools[i & 3][(i >>> 2) & (GMNInputs.POOL_SIZE - 1)]);
+                w.write('\n');
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+        throws IOException
+    {
+        Files.deleteIfExists(input);
+    }
+
+    @Benchmark
+    public long sequential()
+        throws IOException
+    {
+        return processor.process(input, discard).getLines();
+    }
+
+    @Benchmark
+    public long parallel(Pool p)
+        throws IOException
+    {
+        return processor.processParallel(input, discard, p.pool, p.threads).getLines();
+    }
+
+}
@@ -0,0 +1,140 @@
+package org.gs1.benchmarks;
+
+import java.util.Random;
+
+import org.gs1.GS1Exception;
+import org.gs1.HealthcareGMN;
+
+/**
+ * Deterministic generator of benchmark inputs.
+ *
+ * Each benchmark cycles through a pool of distinct inputs so that the results
+ * are not flattered by branch prediction over a single repeated value.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public final class GMNInputs {
+
+    /**
+     * Number of distinct inputs in each pool. A power of two.
+     */
+    public static final int POOL_SIZE = 1024;
+
+    static final String CSET82 =
+        "!\"%&'()*+,-./0123456789:;<=>?ABCDEFGHIJKLMNOPQRSTUVWXYZ" +
+        "_abcdefghijklmnopqrstuvwxyz";
+
+    static final String CSET32 = "23456789ABCDEFGHJKLMNPQRSTUVWXYZ";
+
+    // Characters that are outside of cset82
+    static final String INVALID = " #$@[\\]^`{|}~£é";
+
+    private GMNInputs() {}
+
+    /**
+     * Length of the GS1 Company Prefix used when splitting an input of the given length into components.
+     *
+     * @param length overall length of a partial healthcare GMN.
+     * @return a GS1 Company Prefix length that leaves at least one model reference character.
+     */
+    public static int gcpLength(int length)
+    {
+        return Math.max(5, Math.min(7, length - 1));
+    }
+
+    /**
+     * Generate partial healthcare GMNs.
+     *
+     * @param length length of each partial healthcare GMN, 6 to 23.
+     * @param valid true to generate well formed input. Otherwise each input contains a character outside of cset82.
+     * @param seed random seed.
+     * @return a pool of inputs.
+     */
+    public static String[] partials(int length, boolean valid, long seed)
+    {
+        Random rnd = new Random(seed);
+        String[] out = new String[POOL_SIZE];
+        for (int n = 0; n < POOL_SIZE; n++)
+        {
+            char[] c = body(rnd, length);
+            if (!valid)
+                c[5 + rnd.nextInt(length - 5)] = INVALID.charAt(rnd.nextInt(INVALID.length()));
+            out[n] = new String(c);
+        }
+        return out;
+    }
+
+    /**
+     * Generate complete healthcare GMNs.
+     *
+     * @param length length of each healthcare GMN including the check character pair, 8 to 25.
+     * @param kind "valid" for correct check characters, "mismatch" for incorrect check characters, or "invalid" for a character outside of cset82.
+     * @param seed random seed.
+     * @return a pool of inputs.
+     */
+    public static String[] completes(int length, String kind, long seed)
+    {
+        Random rnd = new Random(seed);
+        String[] out = new String[POOL_SIZE];
+        for (int n = 0; n < POOL_SIZE; n++)
+        {
+            String part = new String(body(rnd, length - 2));
+            String gmn;
+            try
+            {
+                gmn = HealthcareGMN.addCheckCharacters(part);
+            }
+            catch (GS1Exception e)
+            {
+                throw new IllegalStateException(e);
+            }
+            char[] c = gmn.toCharArray();
+            if (kind.equals("mismatch"))
+            {
+                char wrong;
+                do
+                    wrong = CSET32.charAt(rnd.nextInt(CSET32.length()));
+                while (wrong == c[length - 1]);
+                c[length - 1] = wrong;
+            }
+            else if (kind.equals("invalid"))
+            {
+                c[5 + rnd.nextInt(length - 7)] = INVALID.charAt(rnd.nextInt(INVALID.length()));
+            }
+            else if (!kind.equals("valid"))
+            {
+                throw new IllegalArgumentException("Unknown input kind: " + kind);
+            }
+            out[n] = new String(c);
+        }
+        return out;
+    }
+
+    // Random GS1 Company Prefix digits followed by random cset82 characters
+    private static char[] body(Random rnd, int length)
+    {
+        char[] c = new char[length];
+        int gcp = gcpLength(length);
+        for (int i = 0; i < gcp; i++)
+            c[i] = (char) ('0' + rnd.nextInt(10));
+        for (int i = gcp; i < length; i++)
+            c[i] = CSET82.charAt(rnd.nextInt(CSET82.length()));
+        return c;
+    }
+
+}
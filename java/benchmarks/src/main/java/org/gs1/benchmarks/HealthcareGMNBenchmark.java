@@ -0,0 +1,287 @@
+package org.gs1.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.gs1.GMNPrefixContext;
+import org.gs1.GS1Exception;
+import org.gs1.HealthcareGMN;
+
+/**
+ * Throughput benchmarks for the public methods of the helper API.
+ *
+ * Partial inputs cover every length from 6 to 23 characters and complete
+ * inputs every length from 8 to 25 characters. Each is run with well formed
+ * input and with input that is rejected, so that the cost of the failure
+ * paths is visible alongside the cost of the success path.
+ *
+ * Run the thread count and allocation profile of your choice from the command
+ * line, e.g. {@code java -jar target/benchmarks.jar -t 4 -prof gc}, or use
+ * {@link BenchmarkRunner} for the standard single and multi-threaded run.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HealthcareGMNBenchmark {
+
+    /**
+     * Per-thread pool of partial healthcare GMNs.
+     */
+    @State(Scope.Thread)
+    public static class Partials
+    {
+        @Param({"6", "7", "8", "9", "10", "11", "12", "13", "14", "15", "16", "17",
+                "18", "19", "20", "21", "22", "23"})
+        public int length;
+
+        @Param({"valid", "invalid"})
+        public String kind;
+
+        String[] inputs;
+        String[] gcps;
+        String[] models;
+        GMNPrefixContext[] contexts;
+        char[] checks = new char[2];
+        int next;
+
+        @Setup
+        public void setup()
+        {
+            inputs = GMNInputs.partials(length, kind.equals("valid"), length);
+            gcps = new String[inputs.length];
+            models = new String[inputs.length];
+            contexts = new GMNPrefixContext[inputs.length];
+            int gcp = GMNInputs.gcpLength(length);
+            for (int i = 0; i < inputs.length; i++)
+            {
+                gcps[i] = inputs[i].substring(0, gcp);
+                models[i] = inputs[i].substring(gcp);
+                contexts[i] = new GMNPrefixContext(gcps[i]);
+            }
+        }
+
+        int index()
+        {
+            return next++ & (GMNInputs.POOL_SIZE - 1);
+        }
+    }
+
+    /**
+     * Per-thread pool of complete healthcare GMNs.
+     */
+    @State(Scope.Thread)
+    public static class Completes
+    {
+        @Param({"8", "9", "10", "11", "12", "13", "14", "15", "16", "17", "18", "19",
+                "20", "21", "22", "23", "24", "25"})
+        public int length;
+
+        @Param({"valid", "mismatch", "invalid"})
+        public String kind;
+
+        String[] inputs;
+        String[] gcps;
+        String[] models;
+        String[] checks;
+        int next;
+
+        @Setup
+        public void setup()
+        {
+            inputs = GMNInputs.completes(length, kind, length);
+            gcps = new String[inputs.length];
+            models = new String[inputs.length];
+            checks = new String[inputs.length];
+            int gcp = GMNInputs.gcpLength(length - 2);
+            for (int i = 0; i < inputs.length; i++)
+            {
+                gcps[i] = inputs[i].substring(0, gcp);
+                models[i] = inputs[i].substring(gcp, length - 2);
+                checks[i] = inputs[i].substring(length - 2);
+            }
+        }
+
+        int index()
+        {
+            return next++ & (GMNInputs.POOL_SIZE - 1);
+        }
+    }
+
+    @Benchmark
+    public void checkCharacters(Partials p, Blackhole bh)
+    {
+        try
+        {
+            bh.consume(HealthcareGMN.checkCharacters(p.inputs[p.index()]));
+        }
+        catch (GS1Exception e)
+        {
+            bh.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void checkCharactersIntoArray(Partials p, Blackhole bh)
+    {
+        try
+        {
+            bh.consume(HealthcareGMN.checkCharacters(p.inputs[p.index()], p.checks, 0));
+        }
+        catch (GS1Exception e)
+        {
+            bh.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void checkCharactersGcpModel(Partials p, Blackhole bh)
+    {
+        int i = p.index();
+        try
+        {
+            bh.consume(HealthcareGMN.checkCharactersGcpModel(p.gcps[i], p.models[i]));
+        }
+        catch (GS1Exception e)
+        {
+            bh.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void checkCharactersPrefixContext(Partials p, Blackhole bh)
+    {
+        int i = p.index();
+        try
+        {
+            bh.consume(p.contexts[i].checkCharacters(p.models[i], p.checks, 0));
+        }
+        catch (GS1Exception e)
+        {
+            bh.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void addCheckCharacters(Partials p, Blackhole bh)
+    {
+        try
+        {
+            bh.consume(HealthcareGMN.addCheckCharacters(p.inputs[p.index()]));
+        }
+        catch (GS1Exception e)
+        {
+            bh.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void addCheckCharactersGcpModel(Partials p, Blackhole bh)
+    {
+        int i = p.index();
+        try
+        {
+            bh.consume(HealthcareGMN.addCheckCharactersGcpModel(p.gcps[i], p.models[i]));
+        }
+        catch (GS1Exception e)
+        {
+            bh.consume(e);
+        }
+    }
+
+    @Benchmark
+    public Object validatePartial(Partials p)
+    {
+        return HealthcareGMN.validatePartial(p.inputs[p.index()]);
+    }
+
+    @Benchmark
+    public boolean[] goodCharacterPositionsPartial(Partials p)
+    {
+        return HealthcareGMN.goodCharacterPositions(p.inputs[p.index()], false);
+    }
+
+    @Benchmark
+    public boolean[] goodCharacterPositionsGcpModel(Partials p)
+    {
+        int i = p.index();
+        return HealthcareGMN.goodCharacterPositionsGcpModel(p.gcps[i], p.models[i]);
+    }
+
+    @Benchmark
+    public void verifyCheckCharacters(Completes c, Blackhole bh)
+    {
+        try
+        {
+            bh.consume(HealthcareGMN.verifyCheckCharacters(c.inputs[c.index()]));
+        }
+        catch (GS1Exception e)
+        {
+            bh.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void verifyCheckCharactersGcpModelChecks(Completes c, Blackhole bh)
+    {
+        int i = c.index();
+        try
+        {
+            bh.consume(HealthcareGMN.verifyCheckCharactersGcpModelChecks(c.gcps[i], c.models[i], c.checks[i]));
+        }
+        catch (GS1Exception e)
+        {
+            bh.consume(e);
+        }
+    }
+
+    @Benchmark
+    public Object validate(Completes c)
+    {
+        return HealthcareGMN.validate(c.inputs[c.index()]);
+    }
+
+    @Benchmark
+    public boolean[] goodCharacterPositionsComplete(Completes c)
+    {
+        return HealthcareGMN.goodCharacterPositions(c.inputs[c.index()], true);
+    }
+
+    @Benchmark
+    public boolean[] goodCharacterPositionsGcpModelChecks(Completes c)
+    {
+        int i = c.index();
+        return HealthcareGMN.goodCharacterPositionsGcpModelChecks(c.gcps[i], c.models[i], c.checks[i]);
+    }
+
+}
@@ -0,0 +1,121 @@
+package org.gs1.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Startup benchmark of the command-line entry point.
+ *
+ * Launches a new JVM running {@code org.gs1.GMNMain} repeatedly and reports
+ * the median and minimum time from launch to its first result, and to its
+ * exit, for each of several JVM configurations: the default, the
+ * client compiler only, and, when an archive is given, class data sharing
+ * with and without the client compiler only. A final configuration verifies
+ * many healthcare GMNs in a single JVM to show the cost of each once the JVM
+ * has started. JMH is not used, since it measures code within a JVM that has
+ * already started.
+ *
+ * Usage: {@code java -cp target/benchmarks.jar org.gs1.benchmarks.StartupBenchmark jar [runs [archive]]},
+ * e.g. with the archive created by building the library with {@code -Pcds}:
+ * {@code java -cp target/benchmarks.jar org.gs1.benchmarks.StartupBenchmark ../target/HealthcareGMN-1.0.jar 50 ../target/HealthcareGMN.jsa}
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public final class StartupBenchmark {
+
+    private static final String GMN = "1987654Ad4X4bL5ttr2310c2K";
+
+    // Number of healthcare GMNs verified by the single JVM of the final configuration
+    private static final int MANY = 1000;
+
+    private StartupBenchmark() {}
+
+    public static void main(String[] args)
+        throws IOException, InterruptedException
+    {
+        if (args.length < 1)
+        {
+            System.err.println("Usage: java org.gs1.benchmarks.StartupBenchmark jar [runs [archive]]");
+            System.exit(2);
+        }
+        String jar = args[0];
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        String archive = args.length > 2 ? args[2] : null;
+
+        System.out.printf("%-40s %14s %14s %14s %14s%n", "configuration", "first median", "first min", "exit median", "exit min");
+        run("default", jar, runs, 1);
+        run("client compiler", jar, runs, 1, "-XX:TieredStopAtLevel=1");
+        if (archive != null)
+        {
+            if (!new File(archive).isFile())
+                throw new IOException("No such archive: " + archive);
+            run("class data sharing", jar, runs, 1, "-XX:SharedArchiveFile=" + archive);
+            run("class data sharing, client compiler", jar, runs, 1, "-XX:SharedArchiveFile=" + archive, "-XX:TieredStopAtLevel=1");
+        }
+        run(MANY + " arguments", jar, runs, MANY);
+    }
+
+    // Launch the entry point a number of times and report the times, in
+    // milliseconds, to the first line of output and to exit. The line is
+    // checked, since the JVM writes any warning, e.g. of an archive that does
+    // not match the jar, to the same stream.
+    private static void run(String name, String jar, int runs, int count, String... options)
+        throws IOException, InterruptedException
+    {
+        List<String> command = new ArrayList<String>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.addAll(Arrays.asList(options));
+        command.add("-cp");
+        command.add(jar);
+        command.add("org.gs1.GMNMain");
+        command.add("verify");
+        for (int i = 0; i < count; i++)
+            command.add(GMN);
+
+        double[] first = new double[runs];
+        double[] exit = new double[runs];
+        String expected = count == 1 ? "The check characters are valid" : GMN + " : *** Valid ***";
+        String launch = String.join(" ", command.subList(0, command.size() - count));
+        for (int r = 0; r < runs; r++)
+        {
+            long start = System.nanoTime();
+            Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            String line = in.readLine();
+            first[r] = (System.nanoTime() - start) / 1e6;
+            if (!expected.equals(line))
+                throw new IOException("Unexpected output from " + launch + ": " + line);
+            while (in.readLine() != null)
+                ;
+            int status = process.waitFor();
+            exit[r] = (System.nanoTime() - start) / 1e6;
+            if (status != 0)
+                throw new IOException("Exit status " + status + " from " + launch);
+        }
+        Arrays.sort(first);
+        Arrays.sort(exit);
+        System.out.printf("%-40s %11.1f ms %11.1f ms %11.1f ms %11.1f ms%n", name, first[runs / 2], first[0], exit[runs / 2], exit[0]);
+    }
+
+}
@@ -0,0 +1,220 @@
+package org.gs1;
+
+/**
+ * Hot-path checks of the {@link HealthcareGMN} API whose best implementation
+ * depends on the Java release.
+ *
+ * This is the Java 21 implementation, packaged in
+ * {@code META-INF/versions/21} of the multi-release jar. The format check and
+ * the weighted sum are fused into a single pass over the input in which the
+ * validity of every character is accumulated without branching, and String
+ * input is matched by type so that its characters are read through a
+ * monomorphic call. Any input that fails the check is passed to the scalar
+ * routines of {@link GMNKernel}, which locate the first problem, so the
+ * statuses are identical to those of the Java 8 implementation.
+ *
+ * Windows of ASCII bytes, such as the rows of a {@link GMNBatch}, are
+ * classified with the Vector API by {@link GMNVectorKernel} when the
+ * incubating jdk.incubator.vector module has been added to the JVM with
+ * {@code --add-modules jdk.incubator.vector}, unless disabled with
+ * {@code -Dorg.gs1.gmn.vector=false}. Otherwise the scalar routines are used.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+final class GMNPlatform
+{
+
+    /**
+     * Identifies the implementation in use, so that tests can confirm which
+     * code path they exercised.
+     */
+    static final String IMPLEMENTATION;
+
+    /**
+     * Longest window that can be classified as a bitmask of positions.
+     */
+    static final int MAX_MASK_LENGTH = 64;
+
+    /**
+     * Whether byte windows are classified with the Vector API.
+     */
+    static final boolean VECTOR;
+
+    static
+    {
+        // The kernel class is only loaded once its module is known to be
+        // present, since it cannot be linked without it
+        VECTOR = Boolean.parseBoolean(System.getProperty("org.gs1.gmn.vector", "true"))
+            && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+            && GMNVectorKernel.usable();
+        IMPLEMENTATION = VECTOR ? "java21-vector" : "java21";
+    }
+
+    private GMNPlatform() {}
+
+    // Format check a window of a complete GMN and compare its check character
+    // pair against the recalculated pair
+    static int checkGMN(CharSequence s, int off, int len)
+    {
+        if (inRange(len, true))
+        {
+            int sum = sum(s, off, len - 2);
+            int check = GMNKernel.checkValue(s.charAt(off + len - 2), s.charAt(off + len - 1));
+            if ((sum | check) >= 0)
+                return sum == check ? GMNKernel.OK : GMNKernel.status(GMNKernel.CHECK_MISMATCH, len - 2);
+        }
+        return GMNKernel.checkGMN(s, off, len);
+    }
+
+    static int checkGMN(char[] s, int off, int len)
+    {
+        if (inRange(len, true))
+        {
+            int sum = sum(s, off, len - 2);
+            int check = GMNKernel.checkValue(s[off + len - 2], s[off + len - 1]);
+            if ((sum | check) >= 0)
+                return sum == check ? GMNKernel.OK : GMNKernel.status(GMNKernel.CHECK_MISMATCH, len - 2);
+        }
+        return GMNKernel.checkGMN(s, off, len);
+    }
+
+    // Perform local consistency checks on a window of a partial or complete GMN
+    static int checkFormat(CharSequence s, int off, int len, boolean complete)
+    {
+        if (inRange(len, complete))
+        {
+            int body = complete ? len - 2 : len;
+            int check = complete ? GMNKernel.checkValue(s.charAt(off + body), s.charAt(off + body + 1)) : 0;
+            if ((sum(s, off, body) | check) >= 0)
+                return GMNKernel.OK;
+        }
+        return GMNKernel.checkFormat(s, off, len, complete);
+    }
+
+    static int checkFormat(char[] s, int off, int len, boolean complete)
+    {
+        if (inRange(len, complete))
+        {
+            int body = complete ? len - 2 : len;
+            int check = complete ? GMNKernel.checkValue(s[off + body], s[off + body + 1]) : 0;
+            if ((sum(s, off, body) | check) >= 0)
+                return GMNKernel.OK;
+        }
+        return GMNKernel.checkFormat(s, off, len, complete);
+    }
+
+    // Format check a window of a partial GMN and return its modulo sum, or
+    // the negated status if the format check fails
+    static int checkSum(CharSequence s, int off, int len)
+    {
+        int sum = inRange(len, false) ? sum(s, off, len) : -1;
+        return sum >= 0 ? sum : -GMNKernel.checkFormat(s, off, len, false);
+    }
+
+    static int checkSum(char[] s, int off, int len)
+    {
+        int sum = inRange(len, false) ? sum(s, off, len) : -1;
+        return sum >= 0 ? sum : -GMNKernel.checkFormat(s, off, len, false);
+    }
+
+    // Format check a window of ASCII bytes, e.g. a row of a packed batch
+    static int checkFormat(byte[] s, int off, int len, boolean complete)
+    {
+        if (!VECTOR || !inRange(len, complete))
+            return GMNKernel.checkFormat(s, off, len, complete);
+        if (GMNVectorKernel.wellFormed(s, off, len, complete))
+            return GMNKernel.OK;
+        return GMNKernel.statusOf(GMNVectorKernel.badPositions(s, off, len, complete), len, complete);
+    }
+
+    // Bitmask of the positions of a window, of at most MAX_MASK_LENGTH
+    // characters, that are outside of the character set for their position.
+    // Characters are not vectorised, since they would first have to be copied.
+    static long badPositions(CharSequence s, int off, int len, boolean complete)
+    {
+        return GMNKernel.badPositions(s, off, len, complete);
+    }
+
+    private static boolean inRange(int len, boolean complete)
+    {
+        return len >= GMNKernel.minLength(complete) && len <= GMNKernel.maxLength(complete);
+    }
+
+    // The modulo sum of the body of a GMN, or -1 if the first five characters
+    // are not all digits or any character is outside of cset82. A character
+    // outside of ASCII has its value forced negative by its high bits.
+    private static int sum(CharSequence s, int off, int len)
+    {
+        if (s instanceof String str)
+            return sum(str, off, len);
+        byte[] values = GMNKernel.cset82value;
+        short[] weights = GMNKernel.weights;
+        int w = weights.length - len;
+        int invalid = 0;
+        int sum = 0;
+        for (int i = 0; i < len; i++)
+        {
+            int c = s.charAt(off + i);
+            int v = values[c & 0x7F] | -(c >>> 7);
+            if (i < 5)
+                invalid |= (c - '0') | ('9' - c);
+            invalid |= v;
+            sum += v * weights[w + i];
+        }
+        return invalid < 0 ? -1 : sum % GMNKernel.MODULUS;
+    }
+
+    private static int sum(String s, int off, int len)
+    {
+        byte[] values = GMNKernel.cset82value;
+        short[] weights = GMNKernel.weights;
+        int w = weights.length - len;
+        int invalid = 0;
+        int sum = 0;
+        for (int i = 0; i < len; i++)
+        {
+            int c = s.charAt(off + i);
+            int v = values[c & 0x7F] | -(c >>> 7);
+            if (i < 5)
+                invalid |= (c - '0') | ('9' - c);
+            invalid |= v;
+            sum += v * weights[w + i];
+        }
+        return invalid < 0 ? -1 : sum % GMNKernel.MODULUS;
+    }
+
+    private static int sum(char[] s, int off, int len)
+    {
+        byte[] values = GMNKernel.cset82value;
+        short[] weights = GMNKernel.weights;
+        int w = weights.length - len;
+        int invalid = 0;
+        int sum = 0;
+        for (int i = 0; i < len; i++)
+        {
+            int c = s[off + i];
+            int v = values[c & 0x7F] | -(c >>> 7);
+            if (i < 5)
+                invalid |= (c - '0') | ('9' - c);
+            invalid |= v;
+            sum += v * weights[w + i];
+        }
+        return invalid < 0 ? -1 : sum % GMNKernel.MODULUS;
+    }
+
+}
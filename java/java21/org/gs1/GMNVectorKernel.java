@@ -0,0 +1,136 @@
+package org.gs1;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vectorised classification of windows of ASCII bytes against the GMN
+ * character sets.
+ *
+ * Every lane of a window is tested at once for membership of the digits,
+ * cset82 and cset32, and the result for its position is selected from the
+ * three by comparing the lane index with the bounds of the GS1 Company Prefix
+ * and the check character pair. The character sets are tested as ranges, so
+ * no table lookup is needed. A window of up to 64 bytes is classified in one
+ * or a few vector operations, either as a whole or as a bitmask of its bad
+ * positions.
+ *
+ * This class uses the jdk.incubator.vector module, which is only resolved
+ * when the JVM is started with {@code --add-modules jdk.incubator.vector}. It
+ * must only be loaded after {@link GMNPlatform} has found the module.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+final class GMNVectorKernel
+{
+
+    // A 256-bit vector holds the longest GMN, so wider vectors only add cost
+    private static final VectorSpecies<Byte> SPECIES =
+        ByteVector.SPECIES_PREFERRED.length() > 32 ? ByteVector.SPECIES_256 : ByteVector.SPECIES_PREFERRED;
+
+    // Lane indexes 0, 1, 2, ...
+    private static final ByteVector IOTA = ByteVector.zero(SPECIES).addIndex(1);
+
+    private GMNVectorKernel() {}
+
+    // Vectors narrower than 128 bits would need several operations for even
+    // the shortest GMN, which is slower than the scalar routines
+    static boolean usable()
+    {
+        return SPECIES.length() >= 16;
+    }
+
+    // Indicate whether every byte of a window of at most 64 bytes belongs to
+    // the character set for its position. This is the common case, so is
+    // tested without forming a bitmask.
+    static boolean wellFormed(byte[] s, int off, int len, boolean complete)
+    {
+        byte body = (byte) (complete ? len - 2 : len);
+        for (int i = 0; i < len; i += SPECIES.length())
+            if (bad(s, off, len, body, i).anyTrue())
+                return false;
+        return true;
+    }
+
+    // Bitmask of the positions of a window of at most 64 bytes that are
+    // outside of the character set for their position, as GMNKernel.badPositions
+    static long badPositions(byte[] s, int off, int len, boolean complete)
+    {
+        byte body = (byte) (complete ? len - 2 : len);
+        long bad = 0;
+        for (int i = 0; i < len; i += SPECIES.length())
+            bad |= bad(s, off, len, body, i).toLong() << i;
+        return bad;
+    }
+
+    // The lanes of the vector of a window starting at index i that are
+    // outside of the character set for their position
+    private static VectorMask<Byte> bad(byte[] s, int off, int len, byte body, int i)
+    {
+        ByteVector index = IOTA.add((byte) i);
+        VectorMask<Byte> lanes = index.lt((byte) len);
+
+        // Read whole vectors where the array allows, ignoring lanes beyond
+        // the window, and only mask the read at its very end
+        ByteVector v = off + i + SPECIES.length() <= s.length
+            ? ByteVector.fromArray(SPECIES, s, off + i)
+            : ByteVector.fromArray(SPECIES, s, off + i, lanes);
+
+        VectorMask<Byte> prefix = index.lt((byte) 5);
+        VectorMask<Byte> checks = index.compare(VectorOperators.GE, body).andNot(prefix);
+        VectorMask<Byte> model = prefix.or(checks).not();
+
+        VectorMask<Byte> good = prefix.and(digit(v))
+            .or(model.and(cset82(v)))
+            .or(checks.and(cset32(v)));
+        return lanes.andNot(good);
+    }
+
+    private static VectorMask<Byte> range(ByteVector v, char lo, char hi)
+    {
+        return v.compare(VectorOperators.GE, (byte) lo).and(v.compare(VectorOperators.LE, (byte) hi));
+    }
+
+    private static VectorMask<Byte> digit(ByteVector v)
+    {
+        return range(v, '0', '9');
+    }
+
+    // !" and %&'()*+,-./0123456789:;<=>? and A-Z, _ and a-z. Bytes above
+    // 0x7F are negative, so are outside of every range.
+    private static VectorMask<Byte> cset82(ByteVector v)
+    {
+        return range(v, '!', '"')
+            .or(range(v, '%', '?'))
+            .or(range(v, 'A', 'Z'))
+            .or(v.compare(VectorOperators.EQ, (byte) '_'))
+            .or(range(v, 'a', 'z'));
+    }
+
+    // 23456789ABCDEFGHJKLMNPQRSTUVWXYZ, i.e. without 0, 1, I and O
+    private static VectorMask<Byte> cset32(ByteVector v)
+    {
+        return range(v, '2', '9')
+            .or(range(v, 'A', 'H'))
+            .or(range(v, 'J', 'N'))
+            .or(range(v, 'P', 'Z'));
+    }
+
+}
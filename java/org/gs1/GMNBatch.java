@@ -0,0 +1,384 @@
+package org.gs1;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A reusable, columnar batch of full or partial healthcare GMNs that are
+ * verified or completed together.
+ *
+ * The characters of every row are packed into a single byte array, one ASCII
+ * byte per character, with an offsets array marking where each row begins.
+ * Processing the batch writes its results into equally packed, per-row
+ * columns: a BitSet of valid rows, the calculated check character pair of
+ * each row, and the reason and position of each failure.
+ *
+ * A batch is intended to be filled, processed and then cleared for reuse.
+ * Its buffers only grow, so once they have reached the size of the largest
+ * batch processed no further garbage is created.
+ *
+ * Instances are not safe for use by multiple concurrent threads.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public final class GMNBatch
+{
+
+    /**
+     * Default number of rows for which space is initially reserved.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    // Packed row characters and the offset of each row. offsets[size] marks
+    // the end of the last row.
+    private byte[] data;
+    private int[] offsets;
+    private int size;
+
+    // Result columns
+    private final BitSet valid = new BitSet();
+    private byte[] checks;
+    private byte[] reasons;
+    private byte[] positions;
+
+    /**
+     * Create a batch with space reserved for the default number of rows.
+     */
+    public GMNBatch()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a batch with space reserved for a given number of rows.
+     *
+     * @param capacity number of rows for which to reserve space.
+     */
+    public GMNBatch(int capacity)
+    {
+        capacity = Math.max(capacity, 1);
+        data = new byte[capacity * (GMNKernel.MAX_LENGTH + 2)];
+        offsets = new int[capacity + 1];
+        checks = new byte[capacity * 2];
+        reasons = new byte[capacity];
+        positions = new byte[capacity];
+    }
+
+    /**
+     * The number of rows in the batch.
+     *
+     * @return number of rows.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Remove all rows and results so that the batch can be refilled. Buffers are retained.
+     */
+    public void clear()
+    {
+        size = 0;
+        valid.clear();
+    }
+
+    /**
+     * Append a row.
+     *
+     * Characters outside of the ASCII range are stored as a value that does
+     * not belong to any of the GMN character sets.
+     *
+     * @param gmn a full or partial healthcare GMN.
+     * @return the index of the new row.
+     */
+    public int add(CharSequence gmn)
+    {
+        int len = gmn.length();
+        int off = reserve(len);
+        for (int i = 0; i < len; i++)
+        {
+            char c = gmn.charAt(i);
+            data[off + i] = c < 0x80 ? (byte) c : (byte) 0x80;
+        }
+        return size++;
+    }
+
+    /**
+     * Append a row from a region of a character array.
+     *
+     * @param buf a buffer containing a full or partial healthcare GMN.
+     * @param off offset of the first character.
+     * @param len number of characters.
+     * @return the index of the new row.
+     */
+    public int add(char[] buf, int off, int len)
+    {
+        int dst = reserve(len);
+        for (int i = 0; i < len; i++)
+        {
+            char c = buf[off + i];
+            data[dst + i] = c < 0x80 ? (byte) c : (byte) 0x80;
+        }
+        return size++;
+    }
+
+    /**
+     * Append a row from a region of an array of ASCII bytes.
+     *
+     * @param buf a buffer containing a full or partial healthcare GMN.
+     * @param off offset of the first byte.
+     * @param len number of bytes.
+     * @return the index of the new row.
+     */
+    public int add(byte[] buf, int off, int len)
+    {
+        int dst = reserve(len);
+        System.arraycopy(buf, off, data, dst, len);
+        return size++;
+    }
+
+    /**
+     * The length of a row.
+     *
+     * @param row row index.
+     * @return number of characters in the row.
+     */
+    public int length(int row)
+    {
+        checkRow(row);
+        return offsets[row + 1] - offsets[row];
+    }
+
+    /**
+     * The content of a row.
+     *
+     * @param row row index.
+     * @return the row as a String.
+     */
+    public String get(int row)
+    {
+        checkRow(row);
+        int off = offsets[row];
+        char[] c = new char[offsets[row + 1] - off];
+        for (int i = 0; i < c.length; i++)
+            c[i] = (char) (data[off + i] & 0xFF);
+        return new String(c);
+    }
+
+    /**
+     * Verify every row as a complete healthcare GMN.
+     *
+     * Rows that are well formed receive their recalculated check character
+     * pair, whether or not it matches the supplied pair. Rows with a
+     * mismatched pair are reported with {@link GMNValidationResult.Reason#CHECK_MISMATCH}.
+     *
+     * @return the number of rows that are valid.
+     */
+    public int verify()
+    {
+        valid.clear();
+        int count = 0;
+        for (int row = 0; row < size; row++)
+        {
+            int off = offsets[row];
+            int len = offsets[row + 1] - off;
+            int status = GMNPlatform.checkFormat(data, off, len, true);
+            if (status == GMNKernel.OK)
+            {
+                int sum = GMNKernel.sum(data, off, len - 2);
+                writeChecks(row, sum);
+                if (sum != GMNKernel.checkValue(data[off + len - 2], data[off + len - 1]))
+                    status = GMNKernel.status(GMNKernel.CHECK_MISMATCH, len - 2);
+            }
+            else
+            {
+                clearChecks(row);
+            }
+            count += record(row, status);
+        }
+        return count;
+    }
+
+    /**
+     * Calculate the check character pair of every row as a partial healthcare GMN.
+     *
+     * @return the number of rows that are well formed and have received a check character pair.
+     */
+    public int complete()
+    {
+        valid.clear();
+        int count = 0;
+        for (int row = 0; row < size; row++)
+        {
+            int off = offsets[row];
+            int len = offsets[row + 1] - off;
+            int status = GMNPlatform.checkFormat(data, off, len, false);
+            if (status == GMNKernel.OK)
+                writeChecks(row, GMNKernel.sum(data, off, len));
+            else
+                clearChecks(row);
+            count += record(row, status);
+        }
+        return count;
+    }
+
+    /**
+     * Indicate whether a row was found valid by the last call to {@link #verify()} or {@link #complete()}.
+     *
+     * @param row row index.
+     * @return true if the row is valid. Otherwise false.
+     */
+    public boolean isValid(int row)
+    {
+        checkRow(row);
+        return valid.get(row);
+    }
+
+    /**
+     * The rows found valid by the last call to {@link #verify()} or {@link #complete()}.
+     *
+     * The returned set belongs to the batch and is overwritten by subsequent calls.
+     *
+     * @return a set whose bits are the indexes of the valid rows.
+     */
+    public BitSet validRows()
+    {
+        return valid;
+    }
+
+    /**
+     * The reason for which a row was accepted or rejected by the last call to {@link #verify()} or {@link #complete()}.
+     *
+     * @param row row index.
+     * @return the reason, which is {@link GMNValidationResult.Reason#VALID} for a valid row.
+     */
+    public GMNValidationResult.Reason getReason(int row)
+    {
+        checkRow(row);
+        return GMNValidationResult.Reason.byCode[reasons[row]];
+    }
+
+    /**
+     * The zero-based position within a row of the character that caused it to be rejected.
+     *
+     * @param row row index.
+     * @return the position of the offending character, as described by {@link GMNValidationResult#getPosition()}.
+     */
+    public int getPosition(int row)
+    {
+        checkRow(row);
+        return positions[row];
+    }
+
+    /**
+     * Copy the check character pair calculated for a row into a caller-supplied array.
+     *
+     * @param row row index.
+     * @param dst destination array to receive the two check characters.
+     * @param dstOff offset in the destination array at which to write the check characters.
+     * @return the offset in the destination array immediately following the check characters.
+     */
+    public int getCheckCharacters(int row, char[] dst, int dstOff)
+    {
+        checkRow(row);
+        dst[dstOff] = (char) checks[row * 2];
+        dst[dstOff + 1] = (char) checks[row * 2 + 1];
+        return dstOff + 2;
+    }
+
+    /**
+     * The check character pair calculated for a row.
+     *
+     * @param row row index.
+     * @return check character pair, or null if the row was not well formed.
+     */
+    public String getCheckCharacters(int row)
+    {
+        checkRow(row);
+        if (checks[row * 2] == 0)
+            return null;
+        char[] c = new char[2];
+        getCheckCharacters(row, c, 0);
+        return new String(c);
+    }
+
+    /**
+     * The packed check character column: the ASCII check character pair of row
+     * {@code i} is at indexes {@code 2 * i} and {@code 2 * i + 1}, or is zero if
+     * the row was not well formed.
+     *
+     * The returned array belongs to the batch and is overwritten by subsequent
+     * calls. It may be longer than twice the number of rows.
+     *
+     * @return the packed check character column.
+     */
+    public byte[] checkCharacterBuffer()
+    {
+        return checks;
+    }
+
+    // Reserve space for a new row of the given length, growing the buffers if
+    // necessary, and return the offset at which its characters are stored
+    private int reserve(int len)
+    {
+        if (size + 1 >= offsets.length)
+        {
+            int capacity = offsets.length * 2;
+            offsets = Arrays.copyOf(offsets, capacity + 1);
+            checks = Arrays.copyOf(checks, capacity * 2);
+            reasons = Arrays.copyOf(reasons, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+        }
+        int off = offsets[size];
+        if (off + len > data.length)
+            data = Arrays.copyOf(data, Math.max(data.length * 2, off + len));
+        offsets[size + 1] = off + len;
+        return off;
+    }
+
+    private void writeChecks(int row, int sum)
+    {
+        checks[row * 2] = (byte) GMNKernel.cset32chars[sum / 32];
+        checks[row * 2 + 1] = (byte) GMNKernel.cset32chars[sum % 32];
+    }
+
+    private void clearChecks(int row)
+    {
+        checks[row * 2] = 0;
+        checks[row * 2 + 1] = 0;
+    }
+
+    // Record the outcome for a row and return 1 if it is valid
+    private int record(int row, int status)
+    {
+        reasons[row] = (byte) GMNKernel.code(status);
+        positions[row] = (byte) GMNKernel.position(status);
+        if (status != GMNKernel.OK)
+            return 0;
+        valid.set(row);
+        return 1;
+    }
+
+    private void checkRow(int row)
+    {
+        if (row < 0 || row >= size)
+            throw new IndexOutOfBoundsException("Row " + row + " is outside of the batch of " + size + " rows.");
+    }
+
+}
@@ -0,0 +1,383 @@
+package org.gs1;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A fixed-size Bloom filter over a set of healthcare GMNs, such as those
+ * registered in a catalogue, held off the Java heap.
+ *
+ * A filter answers whether a healthcare GMN might be a member of the set. A
+ * negative answer is definite, whereas a positive answer is wrong with a small
+ * probability that is chosen when the filter is created. Together with the
+ * check character pair, a single pass over a healthcare GMN establishes
+ * whether it is valid and possibly registered; see
+ * {@link #isPossiblyRegistered(CharSequence)}.
+ *
+ * The bits are held in a direct buffer whose size is fixed on creation.
+ * Lookups are lock-free and may run concurrently with one another and with
+ * insertions, although a lookup that runs concurrently with the insertion of
+ * the same healthcare GMN may not observe it. Insertions are serialised.
+ *
+ * A filter can be saved to and loaded from a binary file.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public final class GMNBloomFilter
+{
+
+    // File header: magic, format version, number of hash functions, number
+    // of bits and number of insertions
+    private static final int MAGIC = 0x474D4E42;  // "GMNB"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 8;
+
+    // Largest number of bits that a single direct buffer can hold
+    private static final long MAX_BITS = (Integer.MAX_VALUE / 8L) * 64;
+
+    private final ByteBuffer bits;
+    private final long bitCount;
+    private final int hashCount;
+    private long insertions;
+
+    private GMNBloomFilter(ByteBuffer bits, long bitCount, int hashCount)
+    {
+        this.bits = bits;
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Create an empty filter sized for a number of healthcare GMNs and a false positive probability.
+     *
+     * @param expectedInsertions the number of healthcare GMNs that the filter is expected to hold.
+     * @param falsePositiveRate the probability with which a lookup of a non-member should be positive once the expected number have been inserted.
+     * @return an empty filter.
+     */
+    public static GMNBloomFilter forInsertions(long expectedInsertions, double falsePositiveRate)
+    {
+        return withBits(optimalBits(expectedInsertions, falsePositiveRate), optimalHashes(expectedInsertions, falsePositiveRate));
+    }
+
+    /**
+     * Create an empty filter with a given number of bits and hash functions.
+     *
+     * @param bitCount the number of bits, which is rounded up to a multiple of 64.
+     * @param hashCount the number of hash functions.
+     * @return an empty filter.
+     */
+    public static GMNBloomFilter withBits(long bitCount, int hashCount)
+    {
+        // Validate both arguments before the buffer is allocated
+        int words = words(bitCount);
+        if (hashCount < 1)
+            throw new IllegalArgumentException("The number of hash functions must be at least 1.");
+        return new GMNBloomFilter(ByteBuffer.allocateDirect(words * 8), (long) words * 64, hashCount);
+    }
+
+    /**
+     * Insert a healthcare GMN.
+     *
+     * @param gmn a valid healthcare GMN complete with a check character pair.
+     * @throws GS1Exception if the healthcare GMN is invalid, including if its check character pair is incorrect.
+     */
+    public void put(CharSequence gmn)
+        throws GS1Exception
+    {
+        GMNValidationResult result = HealthcareGMN.validate(gmn);
+        if (!result.isValid())
+            throw new GS1Exception(result);
+        long h = hash(gmn, gmn.length());
+        long h1 = mix(h);
+        long h2 = mix(h ^ 0x9E3779B97F4A7C15L) | 1;
+        synchronized (bits)
+        {
+            for (int i = 0; i < hashCount; i++)
+            {
+                long bit = index(h1 + i * h2);
+                int pos = (int) (bit >>> 6) * 8;
+                bits.putLong(pos, bits.getLong(pos) | (1L << bit));
+            }
+            insertions++;
+        }
+    }
+
+    /**
+     * Insert every healthcare GMN listed in a file, one per line.
+     *
+     * Surrounding whitespace is removed from each line and blank lines are ignored.
+     *
+     * @param file a text file of healthcare GMNs.
+     * @return the number of healthcare GMNs inserted.
+     * @throws GS1Exception if any healthcare GMN is invalid, in which case those on preceding lines have been inserted.
+     * @throws IOException if the file cannot be read.
+     */
+    public long putAll(Path file)
+        throws GS1Exception, IOException
+    {
+        long count = 0;
+        long line = 0;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8))
+        {
+            String s;
+            while ((s = in.readLine()) != null)
+            {
+                line++;
+                s = s.trim();
+                if (s.isEmpty())
+                    continue;
+                try
+                {
+                    put(s);
+                }
+                catch (GS1Exception e)
+                {
+                    throw new GS1Exception("Line " + line + ": ", e);
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Indicate whether a healthcare GMN might have been inserted.
+     *
+     * @param gmn a healthcare GMN complete with a check character pair.
+     * @return false if the healthcare GMN has definitely not been inserted, including if its format is invalid. Otherwise true.
+     */
+    public boolean mightContain(CharSequence gmn)
+    {
+        int len = gmn.length();
+        if (GMNKernel.checkFormat(gmn, 0, len, true) != GMNKernel.OK)
+            return false;
+        return probe(hash(gmn, len));
+    }
+
+    /**
+     * Indicate whether a healthcare GMN is valid, including its check character pair, and might have been inserted.
+     *
+     * The format checks, the check character pair calculation and the hash are performed in a single pass over the healthcare GMN.
+     *
+     * @param gmn a healthcare GMN complete with a check character pair.
+     * @return true if the healthcare GMN is valid and might have been inserted. Otherwise false.
+     */
+    public boolean isPossiblyRegistered(CharSequence gmn)
+    {
+        int len = gmn.length();
+        if (len < GMNKernel.minLength(true) || len > GMNKernel.maxLength(true))
+            return false;
+        int body = len - 2;
+        int sum = 0;
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < body; i++)
+        {
+            char c = gmn.charAt(i);
+            int v = GMNKernel.cset82(c);
+            if (v < 0 || (i < 5 && !GMNKernel.isDigit(c)))
+                return false;
+            sum += v * GMNKernel.weight(body, i);
+            h = (h ^ c) * 0x100000001B3L;
+        }
+        char c1 = gmn.charAt(body);
+        char c2 = gmn.charAt(body + 1);
+        if (sum % GMNKernel.MODULUS != GMNKernel.checkValue(c1, c2))
+            return false;
+        h = (h ^ c1) * 0x100000001B3L;
+        h = (h ^ c2) * 0x100000001B3L;
+        return probe(h);
+    }
+
+    /**
+     * The number of bits in the filter.
+     *
+     * @return the size of the filter in bits.
+     */
+    public long getBitCount()
+    {
+        return bitCount;
+    }
+
+    /**
+     * The number of hash functions, i.e. of bits set for each healthcare GMN.
+     *
+     * @return the number of hash functions.
+     */
+    public int getHashCount()
+    {
+        return hashCount;
+    }
+
+    /**
+     * The number of insertions, including repeated insertions of the same healthcare GMN.
+     *
+     * @return the number of insertions.
+     */
+    public long getInsertionCount()
+    {
+        synchronized (bits)
+        {
+            return insertions;
+        }
+    }
+
+    /**
+     * Estimate the current probability with which a lookup of a non-member is positive, from the number of insertions.
+     *
+     * @return the estimated false positive probability.
+     */
+    public double getExpectedFalsePositiveRate()
+    {
+        return Math.pow(1 - Math.exp(-hashCount * (double) getInsertionCount() / bitCount), hashCount);
+    }
+
+    /**
+     * Save the filter to a binary file, replacing any existing file.
+     *
+     * @param file the destination file.
+     * @throws IOException if the file cannot be written.
+     */
+    public void save(Path file)
+        throws IOException
+    {
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+                                                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(hashCount).putLong(bitCount).putLong(getInsertionCount());
+            ((Buffer) header).flip();
+            while (header.hasRemaining())
+                out.write(header);
+            ByteBuffer view = bits.duplicate();
+            ((Buffer) view).clear();
+            while (view.hasRemaining())
+                out.write(view);
+        }
+    }
+
+    /**
+     * Load a filter from a binary file created by {@link #save(Path)}.
+     *
+     * @param file the source file.
+     * @return the filter.
+     * @throws IOException if the file cannot be read or is not a saved filter.
+     */
+    public static GMNBloomFilter load(Path file)
+        throws IOException
+    {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(in, header);
+            ((Buffer) header).flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                throw new IOException("The file is not a saved healthcare GMN Bloom filter: " + file);
+            int hashCount = header.getInt();
+            long bitCount = header.getLong();
+            long insertions = header.getLong();
+            if (hashCount < 1 || bitCount < 64 || bitCount > MAX_BITS || bitCount % 64 != 0 ||
+                in.size() != HEADER_SIZE + bitCount / 8)
+                throw new IOException("The saved healthcare GMN Bloom filter is corrupt: " + file);
+            ByteBuffer bits = ByteBuffer.allocateDirect((int) (bitCount / 8));
+            readFully(in, bits);
+            GMNBloomFilter filter = new GMNBloomFilter(bits, bitCount, hashCount);
+            filter.insertions = insertions;
+            return filter;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "GMNBloomFilter[bits=" + bitCount + ", hashes=" + hashCount + ", insertions=" + getInsertionCount() + "]";
+    }
+
+    private boolean probe(long h)
+    {
+        long h1 = mix(h);
+        long h2 = mix(h ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++)
+        {
+            long bit = index(h1 + i * h2);
+            if ((bits.getLong((int) (bit >>> 6) * 8) & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    private long index(long h)
+    {
+        return (h & Long.MAX_VALUE) % bitCount;
+    }
+
+    // FNV-1a hash of the characters of a healthcare GMN
+    private static long hash(CharSequence s, int len)
+    {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < len; i++)
+            h = (h ^ s.charAt(i)) * 0x100000001B3L;
+        return h;
+    }
+
+    // Finalisation step of MurmurHash3, which spreads every input bit
+    private static long mix(long h)
+    {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB93FE1A85EC5L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static int words(long bitCount)
+    {
+        if (bitCount < 1 || bitCount > MAX_BITS)
+            throw new IllegalArgumentException("The number of bits must be between 1 and " + MAX_BITS + ".");
+        return (int) ((bitCount + 63) / 64);
+    }
+
+    private static long optimalBits(long n, double p)
+    {
+        if (n < 1 || !(p > 0 && p < 1))
+            throw new IllegalArgumentException("The expected insertions must be positive and the false positive rate between 0 and 1.");
+        return Math.max(64, (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2))));
+    }
+
+    private static int optimalHashes(long n, double p)
+    {
+        double m = optimalBits(n, p);
+        return Math.max(1, (int) Math.round(m / n * Math.log(2)));
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buf)
+        throws IOException
+    {
+        while (buf.hasRemaining())
+            if (in.read(buf) < 0)
+                throw new IOException("Unexpected end of file.");
+    }
+
+}
@@ -0,0 +1,639 @@
+package org.gs1;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Verifies or completes the healthcare GMN held in one column of a CSV or
+ * TSV file, without parsing the other columns.
+ *
+ * Each row is scanned only as far as is needed to find the byte range of the
+ * configured column and the end of the row, honouring quoted fields, which
+ * may contain delimiters, line terminators and doubled quote characters. The
+ * GMN is checked in place as ASCII bytes; only a field that contains doubled
+ * quote characters is copied, to remove the escaping.
+ *
+ * Rows are either all written with an additional column holding the outcome,
+ * or only the rows that are not valid are written, as a rejects file with the
+ * same additional column. The additional column holds the name of the
+ * {@link GMNValidationResult.Reason} when verifying, and the check character
+ * pair or, for invalid input, the name of the reason when completing. The
+ * rows are otherwise copied byte for byte, including their line terminators.
+ *
+ * A row that has fewer fields than the configured column is treated as having
+ * an empty GMN. Blank lines are copied to the annotated output, omitted from
+ * the rejects and not counted.
+ *
+ * A scanner holds no state between calls and may be shared by threads.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public final class GMNColumnScanner
+{
+
+    /**
+     * Default name of the column appended to the header row.
+     */
+    public static final String DEFAULT_RESULT_COLUMN = "gmnCheck";
+
+    private final GMNFileProcessor.Mode mode;
+    private final int column;
+    private final String columnName;
+    private final byte delimiter;
+    private final byte quote;
+    private final boolean header;
+    private final byte[] resultColumn;
+
+    private GMNColumnScanner(Builder builder)
+    {
+        this.mode = builder.mode;
+        this.column = builder.column;
+        this.columnName = builder.columnName;
+        this.delimiter = builder.delimiter;
+        this.quote = builder.quote;
+        this.header = builder.header;
+        this.resultColumn = builder.resultColumn.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Configures and creates scanners.
+     */
+    public static final class Builder
+    {
+
+        private final GMNFileProcessor.Mode mode;
+        private int column = -1;
+        private String columnName;
+        private byte delimiter = ',';
+        private byte quote = '"';
+        private boolean header = true;
+        private String resultColumn = DEFAULT_RESULT_COLUMN;
+
+        /**
+         * Start configuring a scanner. A column must be given by position or by name.
+         *
+         * @param mode the operation performed on the GMN of each row.
+         */
+        public Builder(GMNFileProcessor.Mode mode)
+        {
+            if (mode == null)
+                throw new NullPointerException("mode");
+            this.mode = mode;
+        }
+
+        /**
+         * Select the column holding the GMN by its position.
+         *
+         * @param column the zero-based position of the column.
+         * @return this builder.
+         */
+        public Builder column(int column)
+        {
+            if (column < 0)
+                throw new IllegalArgumentException("The column position must not be negative.");
+            this.column = column;
+            this.columnName = null;
+            return this;
+        }
+
+        /**
+         * Select the column holding the GMN by its name in the header row.
+         *
+         * @param name the name of the column.
+         * @return this builder.
+         */
+        public Builder column(String name)
+        {
+            if (name == null)
+                throw new NullPointerException("name");
+            this.columnName = name;
+            this.column = -1;
+            return this;
+        }
+
+        /**
+         * Set the field delimiter, which is a comma by default.
+         *
+         * @param delimiter an ASCII delimiter, such as a tab for TSV.
+         * @return this builder.
+         */
+        public Builder delimiter(char delimiter)
+        {
+            this.delimiter = ascii(delimiter, "delimiter");
+            return this;
+        }
+
+        /**
+         * Set the character that quotes fields, which is a double quote by default.
+         *
+         * @param quote an ASCII quote character.
+         * @return this builder.
+         */
+        public Builder quote(char quote)
+        {
+            this.quote = ascii(quote, "quote");
+            return this;
+        }
+
+        /**
+         * Set whether the first row is a header row, which is the default.
+         *
+         * @param header true if the first row names the columns. Otherwise false.
+         * @return this builder.
+         */
+        public Builder header(boolean header)
+        {
+            this.header = header;
+            return this;
+        }
+
+        /**
+         * Set the name of the column appended to the header row.
+         *
+         * @param name the name, which is written as given.
+         * @return this builder.
+         */
+        public Builder resultColumn(String name)
+        {
+            if (name == null)
+                throw new NullPointerException("name");
+            this.resultColumn = name;
+            return this;
+        }
+
+        /**
+         * Create a scanner.
+         *
+         * @return a new scanner.
+         * @throws IllegalStateException if no column was selected, a column was selected by name without a header row, or the delimiter and quote are the same.
+         */
+        public GMNColumnScanner build()
+        {
+            if (column < 0 && columnName == null)
+                throw new IllegalStateException("A column must be selected.");
+            if (columnName != null && !header)
+                throw new IllegalStateException("A column can only be selected by name when there is a header row.");
+            if (delimiter == quote)
+                throw new IllegalStateException("The delimiter and quote characters must differ.");
+            return new GMNColumnScanner(this);
+        }
+
+        private static byte ascii(char c, String what)
+        {
+            if (c == 0 || c >= 0x80 || c == '\r' || c == '\n')
+                throw new IllegalArgumentException("The " + what + " must be a printable ASCII character or a tab.");
+            return (byte) c;
+        }
+
+    }
+
+    /**
+     * Write every row of an input file to an output file with the outcome appended.
+     *
+     * @param input the input file.
+     * @param output the output file, which is created or truncated.
+     * @return counts of the rows processed.
+     * @throws IOException if reading the input or writing the output fails, or the named column is not in the header row.
+     */
+    public GMNFileProcessor.Summary annotate(Path input, Path output)
+        throws IOException
+    {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            return annotate(in, out);
+        }
+    }
+
+    /**
+     * Write every row read from a channel to a channel with the outcome appended.
+     *
+     * @param input the channel from which rows are read until end of stream. It is not closed.
+     * @param output the channel to which rows are written. It is not closed.
+     * @return counts of the rows processed.
+     * @throws IOException if reading the input or writing the output fails, or the named column is not in the header row.
+     */
+    public GMNFileProcessor.Summary annotate(ReadableByteChannel input, WritableByteChannel output)
+        throws IOException
+    {
+        return scan(input, output, false);
+    }
+
+    /**
+     * Write the rows of an input file whose GMN is not valid to a rejects file, with the reason appended.
+     *
+     * @param input the input file.
+     * @param rejects the rejects file, which is created or truncated.
+     * @return counts of the rows processed.
+     * @throws IOException if reading the input or writing the rejects fails, or the named column is not in the header row.
+     */
+    public GMNFileProcessor.Summary reject(Path input, Path rejects)
+        throws IOException
+    {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(rejects, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            return reject(in, out);
+        }
+    }
+
+    /**
+     * Write the rows read from a channel whose GMN is not valid to a channel, with the reason appended.
+     *
+     * @param input the channel from which rows are read until end of stream. It is not closed.
+     * @param rejects the channel to which rejected rows are written. It is not closed.
+     * @return counts of the rows processed.
+     * @throws IOException if reading the input or writing the rejects fails, or the named column is not in the header row.
+     */
+    public GMNFileProcessor.Summary reject(ReadableByteChannel input, WritableByteChannel rejects)
+        throws IOException
+    {
+        return scan(input, rejects, true);
+    }
+
+    // Read the input into a buffer that is enlarged as necessary to hold the
+    // longest row, as GMNFileProcessor does for channel input
+    private GMNFileProcessor.Summary scan(ReadableByteChannel input, WritableByteChannel output, boolean rejectsOnly)
+        throws IOException
+    {
+        Worker worker = new Worker(output, rejectsOnly);
+        ByteBuffer buf = ByteBuffer.allocateDirect(GMNFileProcessor.INPUT_BUFFER_SIZE);
+        long offset = 0;
+        boolean last = false;
+        while (!last)
+        {
+            last = input.read(buf) < 0;
+            int length = buf.position();
+            int consumed = worker.scan(buf, length, last);
+            if (consumed == 0 && length == buf.capacity() && !last)
+            {
+                // A single row fills the buffer, so read into a larger one
+                if (length == Integer.MAX_VALUE)
+                    throw new IOException("Row at offset " + offset + " is too long to be processed.");
+                ByteBuffer larger = ByteBuffer.allocateDirect((int) Math.min(Integer.MAX_VALUE, length * 2L));
+                ((Buffer) buf).flip();
+                larger.put(buf);
+                buf = larger;
+                continue;
+            }
+            offset += consumed;
+            ((Buffer) buf).limit(length);
+            ((Buffer) buf).position(consumed);
+            buf.compact();
+        }
+        worker.flush();
+        return worker.summary;
+    }
+
+    // Finds the selected field and the end of each row and writes the
+    // results through a buffer. Used by a single thread.
+    private final class Worker
+    {
+
+        private final byte[][] reasons = new byte[GMNValidationResult.Reason.byCode.length][];
+        private final WritableByteChannel channel;
+        private final boolean rejectsOnly;
+        private final ByteBuffer out = ByteBuffer.allocateDirect(GMNFileProcessor.OUTPUT_BUFFER_SIZE);
+        private final byte[] checks = new byte[2];
+        private byte[] unescaped = new byte[GMNKernel.MAX_LENGTH + 2];
+        private ByteBuffer view;
+        private int selected = column;
+        private boolean headerPending = header;
+        final GMNFileProcessor.Summary summary = new GMNFileProcessor.Summary();
+
+        // Bounds of the row and the selected field found by the last call to row()
+        private int rowEnd;
+        private int next;
+        private int fieldStart;
+        private int fieldEnd;
+        private boolean escaped;
+
+        Worker(WritableByteChannel channel, boolean rejectsOnly)
+        {
+            this.channel = channel;
+            this.rejectsOnly = rejectsOnly;
+            for (GMNValidationResult.Reason reason : GMNValidationResult.Reason.byCode)
+                reasons[reason.ordinal()] = reason.name().getBytes(StandardCharsets.US_ASCII);
+        }
+
+        // Process the complete rows in the first length bytes of buf and
+        // return the number of bytes consumed. If last is set the final row
+        // need not be terminated.
+        int scan(ByteBuffer buf, int length, boolean last)
+            throws IOException
+        {
+            view = buf.duplicate();
+            int start = 0;
+            while (start < length)
+            {
+                if (!row(buf, start, length, last))
+                    return start;
+                if (headerPending)
+                    header(buf, start);
+                else if (rowEnd == start)
+                    blank(start);
+                else
+                    check(buf, start);
+                start = next;
+            }
+            return start;
+        }
+
+        // Find the end of the row starting at start and the bounds of the
+        // selected field within it. Returns false if the row is incomplete.
+        private boolean row(ByteBuffer buf, int start, int length, boolean last)
+        {
+            int pos = start;
+            int field = 0;
+            fieldStart = fieldEnd = -1;
+            escaped = false;
+            while (true)
+            {
+                int contentStart;
+                int contentEnd;
+                boolean doubled = false;
+                if (pos < length && buf.get(pos) == quote)
+                {
+                    contentStart = ++pos;
+                    while (true)
+                    {
+                        while (pos < length && buf.get(pos) != quote)
+                            pos++;
+                        if (pos + 1 >= length && !last)
+                            return false;  // The closing quote, or what follows it, is yet to be read
+                        if (pos + 1 < length && buf.get(pos + 1) == quote)
+                        {
+                            doubled = true;
+                            pos += 2;
+                            continue;
+                        }
+                        contentEnd = Math.min(pos, length);
+                        pos = Math.min(pos + 1, length);
+                        break;
+                    }
+                    // Anything between the closing quote and the delimiter is ignored
+                    while (pos < length && !boundary(buf.get(pos)))
+                        pos++;
+                }
+                else
+                {
+                    contentStart = pos;
+                    while (pos < length && !boundary(buf.get(pos)))
+                        pos++;
+                    contentEnd = pos;
+                }
+
+                if (pos == length && !last)
+                    return false;
+                if (field == selected)
+                {
+                    fieldStart = contentStart;
+                    fieldEnd = contentEnd;
+                    escaped = doubled;
+                }
+
+                if (pos < length && buf.get(pos) == delimiter)
+                {
+                    pos++;
+                    field++;
+                    continue;
+                }
+
+                rowEnd = pos;
+                if (pos < length && buf.get(pos++) == '\r')
+                {
+                    // A carriage return at the end of the buffer may be
+                    // followed by a line feed that is yet to be read
+                    if (pos == length && !last)
+                        return false;
+                    if (pos < length && buf.get(pos) == '\n')
+                        pos++;
+                }
+                next = pos;
+                return true;
+            }
+        }
+
+        private boolean boundary(byte b)
+        {
+            return b == delimiter || b == '\n' || b == '\r';
+        }
+
+        // Find a named column and copy the header row with the result column appended
+        private void header(ByteBuffer buf, int start)
+            throws IOException
+        {
+            headerPending = false;
+            if (columnName != null)
+            {
+                List<String> names = names(buf, start);
+                selected = names.indexOf(columnName);
+                if (selected < 0)
+                    throw new IOException("Column \"" + columnName + "\" is not in the header row: " + names);
+            }
+            write(start, resultColumn);
+        }
+
+        // The unquoted names in the header row
+        private List<String> names(ByteBuffer buf, int start)
+        {
+            List<String> names = new ArrayList<String>();
+            byte[] name = new byte[rowEnd - start];
+            int len = 0;
+            boolean quoted = false;
+            for (int i = start; i < rowEnd; i++)
+            {
+                byte b = buf.get(i);
+                if (quoted && b == quote)
+                {
+                    if (i + 1 < rowEnd && buf.get(i + 1) == quote)
+                        name[len++] = buf.get(i++);
+                    else
+                        quoted = false;
+                }
+                else if (quoted)
+                {
+                    name[len++] = b;
+                }
+                else if (b == quote)
+                {
+                    quoted = true;
+                }
+                else if (b == delimiter)
+                {
+                    names.add(new String(name, 0, len, StandardCharsets.UTF_8));
+                    len = 0;
+                }
+                else
+                {
+                    name[len++] = b;
+                }
+            }
+            names.add(new String(name, 0, len, StandardCharsets.UTF_8));
+            return names;
+        }
+
+        private void blank(int start)
+            throws IOException
+        {
+            if (!rejectsOnly)
+                copy(start, next - start);
+        }
+
+        // Check the GMN of a row and write the row if required
+        private void check(ByteBuffer buf, int start)
+            throws IOException
+        {
+            boolean complete = mode == GMNFileProcessor.Mode.VERIFY;
+            int status;
+            int sum = 0;
+            if (fieldStart < 0)
+            {
+                status = GMNKernel.status(GMNKernel.TOO_SHORT, 0);
+            }
+            else if (escaped)
+            {
+                int len = unescape(buf);
+                status = GMNKernel.checkFormat(unescaped, 0, len, complete);
+                if (status == GMNKernel.OK)
+                {
+                    sum = GMNKernel.sum(unescaped, 0, complete ? len - 2 : len);
+                    if (complete && sum != GMNKernel.checkValue(unescaped[len - 2], unescaped[len - 1]))
+                        status = GMNKernel.status(GMNKernel.CHECK_MISMATCH, len - 2);
+                }
+            }
+            else
+            {
+                int off = fieldStart;
+                int len = fieldEnd - fieldStart;
+                status = GMNKernel.checkFormat(buf, off, len, complete);
+                if (status == GMNKernel.OK)
+                {
+                    sum = GMNKernel.sum(buf, off, complete ? len - 2 : len);
+                    if (complete && sum != GMNKernel.checkValue(buf.get(off + len - 2), buf.get(off + len - 1)))
+                        status = GMNKernel.status(GMNKernel.CHECK_MISMATCH, len - 2);
+                }
+            }
+            summary.count(status);
+
+            if (rejectsOnly && status == GMNKernel.OK)
+                return;
+            byte[] result;
+            if (!complete && status == GMNKernel.OK)
+            {
+                checks[0] = (byte) GMNKernel.cset32chars[sum / 32];
+                checks[1] = (byte) GMNKernel.cset32chars[sum % 32];
+                result = checks;
+            }
+            else
+            {
+                result = reasons[GMNKernel.code(status)];
+            }
+            write(start, result);
+        }
+
+        // Remove the doubling of quote characters from the selected field
+        private int unescape(ByteBuffer buf)
+        {
+            int len = 0;
+            for (int i = fieldStart; i < fieldEnd; i++)
+            {
+                byte b = buf.get(i);
+                if (b == quote)
+                    i++;
+                if (len == unescaped.length)
+                    unescaped = Arrays.copyOf(unescaped, len * 2);
+                unescaped[len++] = b;
+            }
+            return len;
+        }
+
+        // Copy a row with a field appended, keeping its line terminator
+        private void write(int start, byte[] appended)
+            throws IOException
+        {
+            copy(start, rowEnd - start);
+            put(delimiter);
+            put(appended, 0, appended.length);
+            copy(rowEnd, next - rowEnd);
+        }
+
+        // Copy a region of the input to the output. The Buffer casts keep the
+        // class compatible with Java 8 when built by a later compiler.
+        private void copy(int off, int len)
+            throws IOException
+        {
+            while (len > 0)
+            {
+                if (!out.hasRemaining())
+                    flush();
+                int n = Math.min(len, out.remaining());
+                ((Buffer) view).limit(off + n);
+                ((Buffer) view).position(off);
+                out.put(view);
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void put(byte b)
+            throws IOException
+        {
+            if (!out.hasRemaining())
+                flush();
+            out.put(b);
+        }
+
+        private void put(byte[] src, int off, int len)
+            throws IOException
+        {
+            while (len > 0)
+            {
+                if (!out.hasRemaining())
+                    flush();
+                int n = Math.min(len, out.remaining());
+                out.put(src, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        void flush()
+            throws IOException
+        {
+            ((Buffer) out).flip();
+            while (out.hasRemaining())
+                channel.write(out);
+            ((Buffer) out).clear();
+        }
+
+    }
+
+}
@@ -0,0 +1,277 @@
+package org.gs1;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A candidate correction of a healthcare GMN that fails verification, in which
+ * a single character has been substituted or two adjacent characters have
+ * been transposed.
+ *
+ * Since the check character pair is the weighted sum of the character values
+ * modulo the prime 1021, and every weight is invertible modulo 1021, the
+ * change in value that a substitution at a given position requires is
+ * determined by solving a linear congruence. So there is at most one
+ * substituted character per position that makes the healthcare GMN valid, and
+ * it is found without trying each character in turn. The effect of each
+ * adjacent transposition on the sum is likewise calculated directly.
+ *
+ * Candidates are returned by {@link HealthcareGMN#suggestCorrections(String)}
+ * ranked by how likely they are to reflect a keying error: substitutions of a
+ * character that is easily mistaken for the correct one (such as {@code O}
+ * for {@code 0}, or a change of case) first, then transpositions, then any
+ * other substitutions. Candidates of equal rank are ordered by position.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public final class GMNCorrection
+{
+
+    /**
+     * Kind of error that a correction reverses.
+     */
+    public enum Type
+    {
+        /** A single character was keyed incorrectly. */
+        SUBSTITUTION,
+        /** Two adjacent characters were keyed in the wrong order. */
+        TRANSPOSITION
+    }
+
+    // Groups of characters that are easily mistaken for one another
+    private static final String[] confusables =
+        { "0OoDQ", "1Il", "2Zz", "5Ss", "6G", "8B", "9g", "UVv", "-_" };
+
+    // Multiplicative inverse of each weight modulo 1021
+    private static final int[] inverseWeights = new int[GMNKernel.weights.length];
+
+    static
+    {
+        for (int i = 0; i < inverseWeights.length; i++)
+            inverseWeights[i] = inverse(GMNKernel.weights[i]);
+    }
+
+    private static final int RANK_CONFUSABLE = 0;
+    private static final int RANK_TRANSPOSITION = 1;
+    private static final int RANK_SUBSTITUTION = 2;
+
+    private final String gmn;
+    private final Type type;
+    private final int position;
+    private final int rank;
+
+    private GMNCorrection(String gmn, Type type, int position, int rank)
+    {
+        this.gmn = gmn;
+        this.type = type;
+        this.position = position;
+        this.rank = rank;
+    }
+
+    /**
+     * The corrected healthcare GMN, which is complete and valid.
+     *
+     * @return the corrected healthcare GMN.
+     */
+    public String getGmn()
+    {
+        return gmn;
+    }
+
+    /**
+     * The kind of error that the correction reverses.
+     *
+     * @return the type of correction.
+     */
+    public Type getType()
+    {
+        return type;
+    }
+
+    /**
+     * The zero-based position of the substituted character, or of the first of the two transposed characters.
+     *
+     * @return the position of the correction.
+     */
+    public int getPosition()
+    {
+        return position;
+    }
+
+    @Override
+    public String toString()
+    {
+        return type.name() + " at position " + position + ": " + gmn;
+    }
+
+    // Find every single substitution and adjacent transposition that makes a
+    // complete GMN valid. A valid or unrepairable GMN has no candidates.
+    static List<GMNCorrection> suggest(String gmn)
+    {
+        int len = gmn.length();
+        if (len < GMNKernel.minLength(true) || len > GMNKernel.maxLength(true))
+            return Collections.emptyList();
+        int body = len - 2;
+
+        // Weighted sum of the data characters, with characters outside of
+        // cset82 contributing nothing, and the single position that breaks
+        // the format, if any
+        int sum = 0;
+        int bad = -1;
+        for (int i = 0; i < len; i++)
+        {
+            char c = gmn.charAt(i);
+            if (i < body)
+            {
+                int v = GMNKernel.cset82(c);
+                if (v > 0)
+                    sum += v * GMNKernel.weight(body, i);
+            }
+            if (!fits(i, body, c))
+            {
+                if (bad >= 0)
+                    return Collections.emptyList();
+                bad = i;
+            }
+        }
+        sum %= GMNKernel.MODULUS;
+        int c1 = GMNKernel.cset32(gmn.charAt(body));
+        int c2 = GMNKernel.cset32(gmn.charAt(body + 1));
+        if (bad < 0 && sum == c1 * 32 + c2)
+            return Collections.emptyList();
+
+        List<GMNCorrection> out = new ArrayList<GMNCorrection>();
+
+        // Substitution of a data character: solve (v' - v) * w = target - sum,
+        // unless the check pair encodes 1021 to 1023, which no sum reaches
+        int target = c1 * 32 + c2;
+        if (c1 >= 0 && c2 >= 0 && target < GMNKernel.MODULUS)
+        {
+            for (int i = bad < 0 ? 0 : bad; i < body && (bad < 0 || i == bad); i++)
+            {
+                char c = gmn.charAt(i);
+                int v = Math.max(GMNKernel.cset82(c), 0);
+                int w = GMNKernel.weight(body, i);
+                int rest = sum - v * w;
+                int nv = mod((target - rest) * inverseWeights[GMNKernel.weights.length - body + i]);
+                if (nv < GMNKernel.cset82.length())
+                {
+                    char r = GMNKernel.cset82.charAt(nv);
+                    if (r != c && fits(i, body, r))
+                        out.add(substitution(gmn, i, r));
+                }
+            }
+        }
+
+        // Substitution of a check character: the other must already match
+        if ((bad < 0 || bad == body) && c2 >= 0 && sum % 32 == c2)
+            out.add(substitution(gmn, body, GMNKernel.cset32chars[sum / 32]));
+        if ((bad < 0 || bad == body + 1) && c1 >= 0 && sum / 32 == c1)
+            out.add(substitution(gmn, body + 1, GMNKernel.cset32chars[sum % 32]));
+
+        // Adjacent transpositions, which must also repair any bad position
+        for (int i = 0; i + 1 < len; i++)
+        {
+            char a = gmn.charAt(i);
+            char b = gmn.charAt(i + 1);
+            if (a == b || (bad >= 0 && bad != i && bad != i + 1) || !fits(i, body, b) || !fits(i + 1, body, a))
+                continue;
+            int s = sum;
+            int t;
+            if (i + 1 < body)
+            {
+                s += (GMNKernel.cset82(b) - GMNKernel.cset82(a)) * (GMNKernel.weight(body, i) - GMNKernel.weight(body, i + 1));
+                t = c1 * 32 + c2;
+            }
+            else if (i + 1 == body)
+            {
+                s += (GMNKernel.cset82(b) - GMNKernel.cset82(a)) * GMNKernel.weight(body, i);
+                t = GMNKernel.cset32(a) * 32 + c2;
+            }
+            else
+            {
+                t = c2 * 32 + c1;
+            }
+            if (mod(s) == t)
+                out.add(transposition(gmn, i));
+        }
+
+        Collections.sort(out, (x, y) -> x.rank != y.rank ? x.rank - y.rank : x.position - y.position);
+        return Collections.unmodifiableList(out);
+    }
+
+    // Whether a character is allowed at a position of a complete GMN whose
+    // check character pair begins at body
+    private static boolean fits(int i, int body, char c)
+    {
+        if (i < 5)
+            return GMNKernel.isDigit(c);
+        if (i < body)
+            return GMNKernel.cset82(c) >= 0;
+        return GMNKernel.cset32(c) >= 0;
+    }
+
+    private static GMNCorrection substitution(String gmn, int i, char r)
+    {
+        char c = gmn.charAt(i);
+        char[] out = gmn.toCharArray();
+        out[i] = r;
+        int rank = confusable(c, r) ? RANK_CONFUSABLE : RANK_SUBSTITUTION;
+        return new GMNCorrection(new String(out), Type.SUBSTITUTION, i, rank);
+    }
+
+    private static GMNCorrection transposition(String gmn, int i)
+    {
+        char[] out = gmn.toCharArray();
+        out[i] = gmn.charAt(i + 1);
+        out[i + 1] = gmn.charAt(i);
+        return new GMNCorrection(new String(out), Type.TRANSPOSITION, i, RANK_TRANSPOSITION);
+    }
+
+    private static boolean confusable(char a, char b)
+    {
+        if (Character.toLowerCase(a) == Character.toLowerCase(b))
+            return true;
+        for (String group : confusables)
+            if (group.indexOf(a) >= 0 && group.indexOf(b) >= 0)
+                return true;
+        return false;
+    }
+
+    private static int mod(int v)
+    {
+        v %= GMNKernel.MODULUS;
+        return v < 0 ? v + GMNKernel.MODULUS : v;
+    }
+
+    // Inverse by Fermat's little theorem, since the modulus is prime
+    private static int inverse(int w)
+    {
+        long result = 1;
+        long base = w;
+        for (int e = GMNKernel.MODULUS - 2; e > 0; e >>= 1)
+        {
+            if ((e & 1) != 0)
+                result = result * base % GMNKernel.MODULUS;
+            base = base * base % GMNKernel.MODULUS;
+        }
+        return (int) result;
+    }
+
+}
@@ -0,0 +1,758 @@
+package org.gs1;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Validates, sorts and removes duplicates from lists of healthcare GMNs that
+ * may be far larger than the available memory.
+ *
+ * Each line of the input file is verified as a complete healthcare GMN.
+ * Invalid lines are written to a rejects file in the form {@code in : reason},
+ * in input order. Valid healthcare GMNs are packed as {@link GMNKey}s into a
+ * buffer of bounded size which, whenever it is full, is sorted, stripped of
+ * duplicates and spilled to a temporary run file in the format of a
+ * {@link GMNIndex}. The runs are then merged, k at a time, into a sorted
+ * output file of distinct healthcare GMNs, one per line.
+ *
+ * The input is divided into newline-aligned ranges that generate runs in
+ * parallel. The memory limit is shared between the run buffers of the
+ * concurrent ranges during run generation, and between the read buffers of
+ * the runs being merged during merging.
+ *
+ * Lines are read by the same rule as {@link GMNFileProcessor}, so that both
+ * count the same lines of a file as valid: each line is checked as read,
+ * surrounding whitespace is part of the line, and an empty line is rejected
+ * as too short.
+ *
+ * A deduplicator holds no state between calls and may be shared by threads.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public final class GMNDeduplicator
+{
+
+    /**
+     * Default limit in bytes on the memory used for buffering healthcare GMNs.
+     */
+    public static final long DEFAULT_MEMORY_LIMIT = 64L << 20;
+
+    /**
+     * Size of the buffers through which files are read and written.
+     */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    // Smallest number of healthcare GMNs in a run, and largest number of runs
+    // merged at once, whatever the memory limit
+    private static final int MIN_RUN_SIZE = 1024;
+    private static final int MAX_FAN_IN = 512;
+
+    private static final byte[] SEPARATOR = " : ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final long memoryLimit;
+    private final Path tempDirectory;
+
+    /**
+     * Create a deduplicator that uses the default memory limit and the default temporary directory.
+     */
+    public GMNDeduplicator()
+    {
+        this(DEFAULT_MEMORY_LIMIT, null);
+    }
+
+    /**
+     * Create a deduplicator with a given memory limit and temporary directory.
+     *
+     * @param memoryLimit the approximate limit in bytes on the memory used for buffering healthcare GMNs.
+     * @param tempDirectory the directory in which run files are created, or null for the default temporary directory.
+     */
+    public GMNDeduplicator(long memoryLimit, Path tempDirectory)
+    {
+        if (memoryLimit < 1)
+            throw new IllegalArgumentException("The memory limit must be positive.");
+        this.memoryLimit = memoryLimit;
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * Counts of the lines processed.
+     */
+    public static final class Summary
+    {
+
+        private long lines;
+        private long valid;
+        private long rejected;
+        private long distinct;
+        private long runs;
+
+        Summary()
+        {
+        }
+
+        /**
+         * The number of lines processed, including empty lines.
+         *
+         * @return the number of lines.
+         */
+        public long getLines()
+        {
+            return lines;
+        }
+
+        /**
+         * The number of lines that held a valid healthcare GMN, including duplicates.
+         *
+         * @return the number of valid lines.
+         */
+        public long getValid()
+        {
+            return valid;
+        }
+
+        /**
+         * The number of lines written to the rejects file.
+         *
+         * @return the number of invalid lines.
+         */
+        public long getRejected()
+        {
+            return rejected;
+        }
+
+        /**
+         * The number of distinct healthcare GMNs written to the output file.
+         *
+         * @return the number of distinct valid healthcare GMNs.
+         */
+        public long getDistinct()
+        {
+            return distinct;
+        }
+
+        /**
+         * The number of valid lines that repeated an earlier healthcare GMN.
+         *
+         * @return the number of duplicates removed.
+         */
+        public long getDuplicates()
+        {
+            return valid - distinct;
+        }
+
+        /**
+         * The number of sorted runs spilled to disk during run generation.
+         *
+         * @return the number of runs.
+         */
+        public long getRuns()
+        {
+            return runs;
+        }
+
+        void add(Summary s)
+        {
+            lines += s.lines;
+            valid += s.valid;
+            rejected += s.rejected;
+            runs += s.runs;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Lines: " + lines + ", valid: " + valid + ", rejected: " + rejected +
+                   ", distinct: " + distinct + ", duplicates: " + getDuplicates() + ", runs: " + runs;
+        }
+
+    }
+
+    /**
+     * Process an input file on the common ForkJoinPool.
+     *
+     * @param input a text file of healthcare GMNs, one per line.
+     * @param output the file to receive the sorted, distinct, valid healthcare GMNs, which is created or truncated.
+     * @param rejects the file to receive the invalid lines and the reasons for which they were rejected, which is created or truncated.
+     * @return counts of the lines processed.
+     * @throws IOException if reading the input or writing any file fails.
+     */
+    public Summary process(Path input, Path output, Path rejects)
+        throws IOException
+    {
+        return process(input, output, rejects, ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * Process an input file, generating sorted runs in parallel on a given executor.
+     *
+     * @param input a text file of healthcare GMNs, one per line.
+     * @param output the file to receive the sorted, distinct, valid healthcare GMNs, which is created or truncated.
+     * @param rejects the file to receive the invalid lines and the reasons for which they were rejected, which is created or truncated.
+     * @param executor the executor on which runs are generated.
+     * @param parallelism the number of ranges of the input that generate runs concurrently.
+     * @return counts of the lines processed.
+     * @throws IOException if reading the input or writing any file fails.
+     */
+    public Summary process(Path input, Path output, Path rejects, Executor executor, int parallelism)
+        throws IOException
+    {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("The parallelism must be at least 1.");
+
+        int runSize = (int) Math.max(MIN_RUN_SIZE, Math.min(Integer.MAX_VALUE - 8, memoryLimit / parallelism / GMNKey.BYTES));
+        Summary summary = new Summary();
+        List<Range> ranges = new ArrayList<Range>();
+        Throwable failure = null;
+        try
+        {
+            // Generate sorted runs from newline-aligned ranges in parallel
+            try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ))
+            {
+                long size = in.size();
+                long start = 0;
+                List<CompletableFuture<Range>> futures = new ArrayList<CompletableFuture<Range>>();
+                try
+                {
+                    for (int i = 0; i < parallelism && start < size; i++)
+                    {
+                        long end = GMNFileProcessor.lineBoundary(in, i == parallelism - 1 ? size : Math.max(start, size * (i + 1) / parallelism), size);
+                        final Range range = new Range(in, start, end, runSize);
+                        ranges.add(range);
+                        futures.add(CompletableFuture.supplyAsync(() -> {
+                            try
+                            {
+                                range.generate();
+                            }
+                            catch (IOException e)
+                            {
+                                throw new UncheckedIOException(e);
+                            }
+                            return range;
+                        }, executor));
+                        start = end;
+                    }
+                }
+                finally
+                {
+                    // Wait for every range, even after one has failed or been
+                    // rejected, so that none is still reading the input or
+                    // writing its files when the ranges are deleted
+                    CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).handle((v, e) -> null).join();
+                }
+                for (CompletableFuture<Range> f : futures)
+                    summary.add(await(f).summary);
+            }
+
+            // Concatenate the rejects of each range in input order
+            try (FileChannel out = create(rejects))
+            {
+                for (Range range : ranges)
+                {
+                    try (FileChannel in = FileChannel.open(range.rejects, StandardOpenOption.READ))
+                    {
+                        long pos = 0;
+                        long size = in.size();
+                        while (pos < size)
+                            pos += in.transferTo(pos, size - pos, out);
+                    }
+                }
+            }
+
+            // Merge the runs, in several passes if there are too many to merge at once
+            List<Path> runs = new ArrayList<Path>();
+            for (Range range : ranges)
+                runs.addAll(range.runs);
+            int fanIn = (int) Math.max(2, Math.min(MAX_FAN_IN, memoryLimit / BUFFER_SIZE));
+            while (runs.size() > fanIn)
+            {
+                List<Path> merged = new ArrayList<Path>();
+                for (int i = 0; i < runs.size(); i += fanIn)
+                {
+                    List<Path> group = runs.subList(i, Math.min(i + fanIn, runs.size()));
+                    Path run = tempFile("gmn-run", ".idx");
+                    merged.add(run);
+                    try (FileChannel out = create(run))
+                    {
+                        merge(group, new RunWriter(out));
+                    }
+                    for (Path p : group)
+                        Files.delete(p);
+                }
+                runs.clear();
+                runs.addAll(merged);
+                for (Range range : ranges)
+                    range.runs.clear();
+                ranges.add(new Range(merged));
+            }
+            try (FileChannel out = create(output))
+            {
+                summary.distinct = merge(runs, new TextWriter(out));
+            }
+        }
+        catch (Throwable e)
+        {
+            failure = e;
+            throw e;
+        }
+        finally
+        {
+            // A file that cannot be deleted does not hide the original failure
+            IOException deleteFailure = null;
+            for (Range range : ranges)
+            {
+                try
+                {
+                    range.delete();
+                }
+                catch (IOException e)
+                {
+                    if (failure != null)
+                        failure.addSuppressed(e);
+                    else if (deleteFailure == null)
+                        deleteFailure = e;
+                    else
+                        deleteFailure.addSuppressed(e);
+                }
+            }
+            if (deleteFailure != null)
+                throw deleteFailure;
+        }
+        return summary;
+    }
+
+    // Merge sorted runs, writing each distinct healthcare GMN once, and return
+    // the number written
+    private static long merge(List<Path> runs, Sink sink)
+        throws IOException
+    {
+        PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(Math.max(1, runs.size()),
+            (a, b) -> GMNKey.compare(a.high, a.middle, a.low, b.high, b.middle, b.low));
+        List<RunReader> readers = new ArrayList<RunReader>();
+        try
+        {
+            for (Path run : runs)
+            {
+                RunReader r = new RunReader(run);
+                readers.add(r);
+                if (r.next())
+                    queue.add(r);
+            }
+            long count = 0;
+            boolean first = true;
+            long high = 0, middle = 0;
+            int low = 0;
+            while (!queue.isEmpty())
+            {
+                RunReader r = queue.poll();
+                if (first || r.high != high || r.middle != middle || r.low != low)
+                {
+                    high = r.high;
+                    middle = r.middle;
+                    low = r.low;
+                    sink.write(high, middle, low);
+                    count++;
+                    first = false;
+                }
+                if (r.next())
+                    queue.add(r);
+            }
+            sink.finish(count);
+            return count;
+        }
+        finally
+        {
+            for (RunReader r : readers)
+                r.close();
+        }
+    }
+
+    private Path tempFile(String prefix, String suffix)
+        throws IOException
+    {
+        return tempDirectory != null ? Files.createTempFile(tempDirectory, prefix, suffix) : Files.createTempFile(prefix, suffix);
+    }
+
+    private static FileChannel create(Path file)
+        throws IOException
+    {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    private static <T> T await(CompletableFuture<T> future)
+        throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for runs to be generated.");
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException)
+                throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private static void drain(ByteBuffer buf, FileChannel out)
+        throws IOException
+    {
+        ((Buffer) buf).flip();
+        while (buf.hasRemaining())
+            out.write(buf);
+        ((Buffer) buf).clear();
+    }
+
+    // A newline-aligned range of the input, and the run and rejects files
+    // that it generates
+    private final class Range
+    {
+        final FileChannel in;
+        final long start;
+        final long end;
+        final int runSize;
+        final List<Path> runs = new ArrayList<Path>();
+        final Summary summary = new Summary();
+        Path rejects;
+
+        private GMNIndex.Builder builder;
+        private ByteBuffer rejectBuf;
+        private FileChannel rejectOut;
+
+        Range(FileChannel in, long start, long end, int runSize)
+        {
+            this.in = in;
+            this.start = start;
+            this.end = end;
+            this.runSize = runSize;
+        }
+
+        // Placeholder that owns intermediate runs so that they are deleted
+        Range(List<Path> runs)
+        {
+            this(null, 0, 0, 0);
+            this.runs.addAll(runs);
+        }
+
+        void generate()
+            throws IOException
+        {
+            builder = new GMNIndex.Builder((int) Math.min(runSize, (end - start) / (GMNKernel.minLength(true) + 1) + 1));
+            rejects = tempFile("gmn-rejects", ".txt");
+            rejectBuf = ByteBuffer.allocate(BUFFER_SIZE);
+            try (FileChannel out = create(rejects))
+            {
+                rejectOut = out;
+                scan();
+                if (builder.size() > 0)
+                    spill();
+                drain(rejectBuf, rejectOut);
+            }
+            finally
+            {
+                builder = null;
+                rejectOut = null;
+            }
+        }
+
+        // Read the range in blocks, processing each complete line. A carriage
+        // return at the end of a block waits for the next block in case it is
+        // followed by a line feed.
+        private void scan()
+            throws IOException
+        {
+            byte[] buf = new byte[BUFFER_SIZE];
+            int n = 0;
+            long pos = start;
+            while (true)
+            {
+                ByteBuffer dst = ByteBuffer.wrap(buf, n, (int) Math.min(buf.length - n, end - pos));
+                while (dst.hasRemaining())
+                {
+                    int r = in.read(dst, pos);
+                    if (r < 0)
+                        throw new IOException("The input file was truncated while it was being read.");
+                    pos += r;
+                }
+                n = dst.position();
+                boolean eof = pos >= end;
+
+                ByteBuffer view = ByteBuffer.wrap(buf);
+                int lineStart = 0;
+                while (true)
+                {
+                    int i = GMNFileProcessor.lineEnd(view, lineStart, n);
+                    if (i == n || (buf[i] == '\r' && i + 1 == n && !eof))
+                        break;
+                    line(buf, lineStart, i);
+                    if (buf[i] == '\r' && i + 1 < n && buf[i + 1] == '\n')
+                        i++;
+                    lineStart = i + 1;
+                }
+                if (eof)
+                {
+                    if (lineStart < n)
+                        line(buf, lineStart, n);
+                    return;
+                }
+                n -= lineStart;
+                System.arraycopy(buf, lineStart, buf, 0, n);
+                if (n == buf.length)
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+        }
+
+        private void line(byte[] buf, int from, int to)
+            throws IOException
+        {
+            int len = to - from;
+            summary.lines++;
+
+            boolean ascii = true;
+            for (int i = from; i < to; i++)
+                if (buf[i] < 0)
+                    ascii = false;
+            String message;
+            if (ascii)
+            {
+                int status = GMNKernel.checkFormat(buf, from, len, true);
+                if (status == GMNKernel.OK &&
+                    GMNKernel.sum(buf, from, len - 2) != GMNKernel.checkValue(buf[to - 2], buf[to - 1]))
+                    status = GMNKernel.status(GMNKernel.CHECK_MISMATCH, len - 2);
+                if (status == GMNKernel.OK)
+                {
+                    try
+                    {
+                        builder.add(GMNKey.of(buf, from, len));
+                    }
+                    catch (GS1Exception e)
+                    {
+                        throw new IllegalStateException(e);  // Not reached, since the format is valid
+                    }
+                    summary.valid++;
+                    if (builder.size() == runSize)
+                        spill();
+                    return;
+                }
+                int i = GMNKernel.position(status);
+                message = GMNValidationResult.of(status, i < len ? (char) buf[from + i] : '\0', true).getMessage();
+            }
+            else
+            {
+                message = HealthcareGMN.validate(new String(buf, from, len, StandardCharsets.UTF_8)).getMessage();
+            }
+            summary.rejected++;
+            reject(buf, from, len);
+            reject(SEPARATOR, 0, SEPARATOR.length);
+            byte[] m = message.getBytes(StandardCharsets.UTF_8);
+            reject(m, 0, m.length);
+            reject(NEWLINE, 0, NEWLINE.length);
+        }
+
+        private void reject(byte[] b, int off, int len)
+            throws IOException
+        {
+            while (len > 0)
+            {
+                if (!rejectBuf.hasRemaining())
+                    drain(rejectBuf, rejectOut);
+                int n = Math.min(len, rejectBuf.remaining());
+                rejectBuf.put(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void spill()
+            throws IOException
+        {
+            Path run = tempFile("gmn-run", ".idx");
+            runs.add(run);
+            builder.write(run);
+            builder.clear();
+            summary.runs++;
+        }
+
+        void delete()
+            throws IOException
+        {
+            for (Path run : runs)
+                Files.deleteIfExists(run);
+            if (rejects != null)
+                Files.deleteIfExists(rejects);
+        }
+    }
+
+    // Sequential reader of the keys of a run file
+    private static final class RunReader
+    {
+        private final FileChannel in;
+        private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE - BUFFER_SIZE % GMNKey.BYTES);
+        private long remaining;
+        long high;
+        long middle;
+        int low;
+
+        RunReader(Path run)
+            throws IOException
+        {
+            in = FileChannel.open(run, StandardOpenOption.READ);
+            ((Buffer) buf).limit(GMNIndex.HEADER_SIZE);
+            fill();
+            if (buf.getInt() != GMNIndex.MAGIC || buf.getInt() != GMNIndex.VERSION)
+                throw new IOException("The run file is corrupt: " + run);
+            remaining = buf.getLong();
+            ((Buffer) buf).clear();
+            ((Buffer) buf).limit(0);
+        }
+
+        boolean next()
+            throws IOException
+        {
+            if (remaining == 0)
+                return false;
+            if (!buf.hasRemaining())
+            {
+                ((Buffer) buf).clear();
+                if (remaining * GMNKey.BYTES < buf.capacity())
+                    ((Buffer) buf).limit((int) (remaining * GMNKey.BYTES));
+                fill();
+            }
+            high = buf.getLong();
+            middle = buf.getLong();
+            low = buf.getInt();
+            remaining--;
+            return true;
+        }
+
+        private void fill()
+            throws IOException
+        {
+            while (buf.hasRemaining())
+                if (in.read(buf) < 0)
+                    throw new IOException("Unexpected end of run file.");
+            ((Buffer) buf).flip();
+        }
+
+        void close()
+            throws IOException
+        {
+            in.close();
+        }
+    }
+
+    private interface Sink
+    {
+        void write(long high, long middle, int low) throws IOException;
+
+        void finish(long count) throws IOException;
+    }
+
+    // Writes merged keys as an intermediate run file
+    private static final class RunWriter implements Sink
+    {
+        private final FileChannel out;
+        private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+
+        RunWriter(FileChannel out)
+        {
+            this.out = out;
+            buf.putInt(GMNIndex.MAGIC).putInt(GMNIndex.VERSION).putLong(0);
+        }
+
+        @Override
+        public void write(long high, long middle, int low)
+            throws IOException
+        {
+            if (buf.remaining() < GMNKey.BYTES)
+                drain(buf, out);
+            buf.putLong(high).putLong(middle).putInt(low);
+        }
+
+        @Override
+        public void finish(long count)
+            throws IOException
+        {
+            drain(buf, out);
+            ByteBuffer header = ByteBuffer.allocate(8);
+            header.putLong(count);
+            ((Buffer) header).flip();
+            while (header.hasRemaining())
+                out.write(header, 8 + header.position());
+        }
+    }
+
+    // Writes merged keys as lines of text
+    private static final class TextWriter implements Sink
+    {
+        private final FileChannel out;
+        private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+        private final byte[] line = new byte[GMNKernel.MAX_LENGTH + 2 + NEWLINE.length];
+
+        TextWriter(FileChannel out)
+        {
+            this.out = out;
+        }
+
+        @Override
+        public void write(long high, long middle, int low)
+            throws IOException
+        {
+            int len = GMNKey.getBytes(high, middle, low, line, 0);
+            System.arraycopy(NEWLINE, 0, line, len, NEWLINE.length);
+            len += NEWLINE.length;
+            if (buf.remaining() < len)
+                drain(buf, out);
+            buf.put(line, 0, len);
+        }
+
+        @Override
+        public void finish(long count)
+            throws IOException
+        {
+            drain(buf, out);
+        }
+    }
+
+}
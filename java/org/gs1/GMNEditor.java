@@ -0,0 +1,442 @@
+package org.gs1;
+
+import java.util.Arrays;
+
+/**
+ * A mutable healthcare GMN that is validated incrementally as it is edited,
+ * e.g. keystroke by keystroke in a data-entry form.
+ *
+ * Characters are inserted, deleted or replaced one edit at a time, after
+ * which the validity, the reason and position of the first error, whether
+ * each character belongs to the character set for its position, and the
+ * check character pair are available immediately, without rescanning the
+ * input or allocating.
+ *
+ * Since the weights are aligned to the rightmost character, a change of
+ * length moves every character to a different weight. The editor therefore
+ * maintains the weighted sum for every possible alignment of the weights,
+ * which an edit updates for the characters that it affects only. The
+ * membership of each character of each character set is held as bitmasks
+ * that are shifted by insertions and deletions, and which are combined with
+ * the positions of the GS1 Company Prefix and check character pair for the
+ * current length on demand.
+ *
+ * An editor holds either a partial healthcare GMN, whose check character
+ * pair is calculated, or a complete healthcare GMN, whose final two
+ * characters are verified as its check character pair.
+ *
+ * Instances are not safe for use by multiple concurrent threads.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public final class GMNEditor
+{
+
+    /**
+     * Maximum number of characters held by an editor, which leaves room for
+     * input that is too long to be reported as such.
+     */
+    public static final int CAPACITY = 64;
+
+    private final boolean complete;
+    private final char[] buf = new char[CAPACITY];
+    private int len;
+
+    // sums[s] is the weighted sum of the characters when the first of them
+    // takes weights[s]. Characters that would fall beyond the last weight
+    // are excluded, so sums[weights.length - n] is the sum of the first n.
+    private final int[] sums = new int[GMNKernel.weights.length];
+
+    // Bit i is set if character i is outside of each character set
+    private long notDigit;
+    private long notCset82;
+    private long notCset32;
+
+    /**
+     * Create an empty editor.
+     *
+     * @param complete true if the editor holds a GMN complete with a check character pair. Otherwise false.
+     */
+    public GMNEditor(boolean complete)
+    {
+        this.complete = complete;
+    }
+
+    /**
+     * Indicate whether the editor holds a GMN complete with a check character pair.
+     *
+     * @return true if the final two characters are a check character pair. Otherwise false.
+     */
+    public boolean isComplete()
+    {
+        return complete;
+    }
+
+    /**
+     * The number of characters.
+     *
+     * @return number of characters.
+     */
+    public int length()
+    {
+        return len;
+    }
+
+    /**
+     * The character at a position.
+     *
+     * @param pos zero-based position.
+     * @return the character.
+     */
+    public char charAt(int pos)
+    {
+        checkPosition(pos, len - 1);
+        return buf[pos];
+    }
+
+    /**
+     * Insert a character.
+     *
+     * @param pos zero-based position at which to insert, from zero to the length.
+     * @param c the character.
+     * @throws IllegalStateException if the editor is full.
+     */
+    public void insert(int pos, char c)
+    {
+        checkPosition(pos, len);
+        if (len == CAPACITY)
+            throw new IllegalStateException("The editor is full at " + CAPACITY + " characters.");
+        open(pos, 1);
+        put(pos, c);
+    }
+
+    /**
+     * Insert characters, e.g. pasted text. The following characters are
+     * moved once, however many characters are inserted.
+     *
+     * @param pos zero-based position at which to insert, from zero to the length.
+     * @param s the characters.
+     * @throws IllegalStateException if the characters do not fit in the editor, in which case its content is unchanged.
+     */
+    public void insert(int pos, CharSequence s)
+    {
+        checkPosition(pos, len);
+        int n = s.length();
+        if (n > CAPACITY - len)
+            throw new IllegalStateException("The editor is full at " + CAPACITY + " characters.");
+        if (n == 0)
+            return;
+        open(pos, n);
+        for (int i = 0; i < n; i++)
+            put(pos + i, s.charAt(i));
+    }
+
+    /**
+     * Append a character.
+     *
+     * @param c the character.
+     * @throws IllegalStateException if the editor is full.
+     */
+    public void append(char c)
+    {
+        insert(len, c);
+    }
+
+    /**
+     * Delete a character.
+     *
+     * @param pos zero-based position of the character.
+     */
+    public void delete(int pos)
+    {
+        checkPosition(pos, len - 1);
+        add(pos, -value(buf[pos]));
+
+        // Move each following character to the previous weight
+        for (int i = pos + 1; i < len; i++)
+        {
+            int v = value(buf[i]);
+            add(i, -v);
+            add(i - 1, v);
+        }
+        System.arraycopy(buf, pos + 1, buf, pos, len - pos - 1);
+        len--;
+
+        long low = (1L << pos) - 1;
+        notDigit = (notDigit & low) | (notDigit >>> 1 & ~low);
+        notCset82 = (notCset82 & low) | (notCset82 >>> 1 & ~low);
+        notCset32 = (notCset32 & low) | (notCset32 >>> 1 & ~low);
+    }
+
+    /**
+     * Delete a range of characters.
+     *
+     * @param start zero-based position of the first character, inclusive.
+     * @param end zero-based position of the last character, exclusive.
+     */
+    public void delete(int start, int end)
+    {
+        checkPosition(start, len);
+        checkPosition(end, len);
+        if (end < start)
+            throw new IndexOutOfBoundsException("The range " + start + " to " + end + " is reversed.");
+        for (int i = start; i < end; i++)
+            delete(start);
+    }
+
+    /**
+     * Replace a character.
+     *
+     * @param pos zero-based position of the character.
+     * @param c the replacement character.
+     */
+    public void replace(int pos, char c)
+    {
+        checkPosition(pos, len - 1);
+        add(pos, value(c) - value(buf[pos]));
+        buf[pos] = c;
+        classify(pos, c);
+    }
+
+    /**
+     * Remove all characters.
+     */
+    public void clear()
+    {
+        len = 0;
+        Arrays.fill(sums, 0);
+        notDigit = notCset82 = notCset32 = 0;
+    }
+
+    /**
+     * Replace the content.
+     *
+     * @param s the new content.
+     * @throws IllegalStateException if the content exceeds the capacity of the editor.
+     */
+    public void set(CharSequence s)
+    {
+        if (s.length() > CAPACITY)
+            throw new IllegalStateException("The editor is full at " + CAPACITY + " characters.");
+        clear();
+        insert(0, s);
+    }
+
+    /**
+     * Indicate whether the content is valid: well formed and, for a complete
+     * GMN, with a matching check character pair.
+     *
+     * @return true if the content is valid. Otherwise false.
+     */
+    public boolean isValid()
+    {
+        return status() == GMNKernel.OK;
+    }
+
+    /**
+     * Indicate whether the content is well formed, so has a check character pair.
+     *
+     * @return true if the content passes the format checks. Otherwise false.
+     */
+    public boolean isWellFormed()
+    {
+        return formatStatus() == GMNKernel.OK;
+    }
+
+    /**
+     * The reason for which the content is valid or invalid.
+     *
+     * @return the reason, which is {@link GMNValidationResult.Reason#VALID} for valid content.
+     */
+    public GMNValidationResult.Reason getReason()
+    {
+        return GMNValidationResult.Reason.byCode[GMNKernel.code(status())];
+    }
+
+    /**
+     * The zero-based position of the first character in error.
+     *
+     * @return the position of the offending character, as described by {@link GMNValidationResult#getPosition()}.
+     */
+    public int getPosition()
+    {
+        return GMNKernel.position(status());
+    }
+
+    /**
+     * The result of validating the content, as by {@link HealthcareGMN#validate(CharSequence)}
+     * or {@link HealthcareGMN#validatePartial(CharSequence)}.
+     *
+     * A result is allocated for invalid content, for its message.
+     *
+     * @return the result of validating the content.
+     */
+    public GMNValidationResult getValidation()
+    {
+        return GMNValidationResult.of(status(), buf, 0, len, complete);
+    }
+
+    /**
+     * Indicate whether the character at a position belongs to the character
+     * set for its position, as by {@link HealthcareGMN#goodCharacterPositions(String, boolean)}.
+     *
+     * @param pos zero-based position.
+     * @return true if the character belongs to the appropriate set. Otherwise false.
+     */
+    public boolean isGoodCharacter(int pos)
+    {
+        checkPosition(pos, len - 1);
+        return (badPositions() >>> pos & 1) == 0;
+    }
+
+    /**
+     * Copy the check character pair into a caller-supplied array: the pair
+     * calculated for a partial GMN, or the recalculated pair for a complete
+     * GMN.
+     *
+     * @param dst destination array to receive the two check characters.
+     * @param dstOff offset in the destination array at which to write the check characters.
+     * @return the offset in the destination array immediately following the check characters, or dstOff unchanged if the content is not well formed.
+     */
+    public int checkCharacters(char[] dst, int dstOff)
+    {
+        if (formatStatus() != GMNKernel.OK)
+            return dstOff;
+        return GMNKernel.writeChecks(sum(), dst, dstOff);
+    }
+
+    /**
+     * The check character pair: the pair calculated for a partial GMN, or the
+     * recalculated pair for a complete GMN.
+     *
+     * @return check character pair, or null if the content is not well formed.
+     */
+    public String getCheckCharacters()
+    {
+        if (formatStatus() != GMNKernel.OK)
+            return null;
+        return GMNKernel.checksString(sum());
+    }
+
+    /**
+     * The content.
+     *
+     * @return the content as a String.
+     */
+    @Override
+    public String toString()
+    {
+        return new String(buf, 0, len);
+    }
+
+    // Add the contribution of a character value at a position to the sum of
+    // every alignment in which the position takes a weight
+    // Make room for n characters at a position by moving each following
+    // character n weights on
+    private void open(int pos, int n)
+    {
+        for (int i = len - 1; i >= pos; i--)
+        {
+            int v = value(buf[i]);
+            add(i, -v);
+            add(i + n, v);
+        }
+        System.arraycopy(buf, pos, buf, pos + n, len - pos);
+        len += n;
+
+        long low = (1L << pos) - 1;
+        notDigit = (notDigit & low) | (notDigit & ~low) << n;
+        notCset82 = (notCset82 & low) | (notCset82 & ~low) << n;
+        notCset32 = (notCset32 & low) | (notCset32 & ~low) << n;
+    }
+
+    // Fill a position made by open
+    private void put(int pos, char c)
+    {
+        buf[pos] = c;
+        add(pos, value(c));
+        classify(pos, c);
+    }
+
+    private void add(int pos, int v)
+    {
+        short[] weights = GMNKernel.weights;
+        for (int s = 0; s + pos < weights.length; s++)
+            sums[s] += v * weights[s + pos];
+    }
+
+    private void classify(int pos, char c)
+    {
+        long bit = 1L << pos;
+        notDigit = GMNKernel.isDigit(c) ? notDigit & ~bit : notDigit | bit;
+        notCset82 = GMNKernel.cset82(c) >= 0 ? notCset82 & ~bit : notCset82 | bit;
+        notCset32 = GMNKernel.cset32(c) >= 0 ? notCset32 & ~bit : notCset32 | bit;
+    }
+
+    // Characters outside of cset82 are given no weight. They are reported by
+    // the format checks before any sum is used.
+    private static int value(char c)
+    {
+        return Math.max(GMNKernel.cset82(c), 0);
+    }
+
+    // Bitmask of the characters that are outside of the character set for
+    // their position, as GMNKernel.badPositions
+    private long badPositions()
+    {
+        long all = len == 64 ? -1L : (1L << len) - 1;
+        long prefix = all & 0x1F;
+        long checks = complete ? all & -(1L << Math.max(len - 2, 0)) & ~prefix : 0;
+        long model = all & ~prefix & ~checks;
+        return notDigit & prefix | notCset82 & model | notCset32 & checks;
+    }
+
+    private int formatStatus()
+    {
+        if (len < GMNKernel.minLength(complete))
+            return GMNKernel.TOO_SHORT;
+        if (len > GMNKernel.maxLength(complete))
+            return GMNKernel.TOO_LONG;
+        return GMNKernel.statusOf(badPositions(), len, complete);
+    }
+
+    private int status()
+    {
+        int status = formatStatus();
+        if (status != GMNKernel.OK || !complete)
+            return status;
+        if (sum() != GMNKernel.checkValue(buf[len - 2], buf[len - 1]))
+            return GMNKernel.status(GMNKernel.CHECK_MISMATCH, len - 2);
+        return GMNKernel.OK;
+    }
+
+    // The modulo sum of the characters preceding any check character pair,
+    // for well formed content
+    private int sum()
+    {
+        int body = complete ? len - 2 : len;
+        return sums[GMNKernel.weights.length - body] % GMNKernel.MODULUS;
+    }
+
+    private void checkPosition(int pos, int max)
+    {
+        if (pos < 0 || pos > max)
+            throw new IndexOutOfBoundsException("Position " + pos + " is outside of the " + len + " characters.");
+    }
+
+}
@@ -0,0 +1,1032 @@
+package org.gs1;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Verifies or completes the healthcare GMNs supplied on each line of a file.
+ *
+ * The input file is memory-mapped and its lines are checked in place as ASCII
+ * bytes, without decoding them to Strings. For each input line an output line
+ * of the form {@code in : out} is written through a buffered channel, where
+ * {@code out} is the check character pair when completing, the outcome when
+ * verifying, or a description of the problem with the input. This is the same
+ * line-by-line output that the interactive example program produces.
+ * Alternatively each result may be written as a CSV record or a JSON object.
+ *
+ * Lines are terminated by a line feed, a carriage return, or a carriage
+ * return followed by a line feed. Each line is checked as read: surrounding
+ * whitespace is part of the line, and an empty line is rejected as too
+ * short. {@link GMNDeduplicator} reads lines by the same rule, so that both
+ * count the same lines of a file as valid. Lines containing non-ASCII bytes
+ * are never valid; they are decoded as UTF-8 only to describe the problem
+ * accurately.
+ *
+ * Large files may be processed in parallel, in which case the input is
+ * divided into newline-aligned chunks and the output is written in input
+ * order. Input that cannot be mapped, such as standard input, is read from a
+ * channel and processed sequentially.
+ *
+ * A processor holds no state between calls and may be shared by threads.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public final class GMNFileProcessor
+{
+
+    /**
+     * The operation performed on each line.
+     */
+    public enum Mode
+    {
+        /** Each line is a complete healthcare GMN whose check character pair is verified. */
+        VERIFY,
+        /** Each line is a partial healthcare GMN whose check character pair is calculated. */
+        COMPLETE
+    }
+
+    /**
+     * The form in which the result for each line is written.
+     */
+    public enum Format
+    {
+        /** A line of the form {@code in : out}, as written by the interactive example program. */
+        PLAIN,
+        /**
+         * A CSV record with the fields {@code input}, {@code valid},
+         * {@code reason}, {@code position}, {@code checkCharacters} and
+         * {@code message}, preceded by a header record.
+         */
+        CSV,
+        /**
+         * A JSON object per line with the members {@code input}, {@code valid},
+         * {@code reason}, {@code position}, {@code checkCharacters} and, for
+         * invalid input, {@code message}.
+         */
+        NDJSON
+    }
+
+    /**
+     * Default size of each region of the input file that is mapped into memory.
+     */
+    public static final int DEFAULT_MAPPING_SIZE = 1 << 27;
+
+    /**
+     * Default size of each newline-aligned chunk of the input file that is processed as a unit of parallel work.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * Size of the buffer through which output is written.
+     */
+    static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Initial size of the buffer into which input that is not memory-mapped is read.
+     */
+    static final int INPUT_BUFFER_SIZE = 1 << 20;
+
+    private final Mode mode;
+    private final Format format;
+    private final int mappingSize;
+    private final int chunkSize;
+
+    /**
+     * Create a processor that maps the input in regions of the default size.
+     *
+     * @param mode the operation performed on each line.
+     */
+    public GMNFileProcessor(Mode mode)
+    {
+        this(mode, DEFAULT_MAPPING_SIZE);
+    }
+
+    /**
+     * Create a processor that maps the input in regions of a given size.
+     *
+     * The mapping is enlarged as necessary to hold a line that is longer than
+     * the given size.
+     *
+     * @param mode the operation performed on each line.
+     * @param mappingSize the size in bytes of each region of the input file that is mapped into memory.
+     */
+    public GMNFileProcessor(Mode mode, int mappingSize)
+    {
+        this(mode, mappingSize, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Create a processor that maps the input in regions of a given size and
+     * divides it into chunks of a given size for parallel processing.
+     *
+     * @param mode the operation performed on each line.
+     * @param mappingSize the size in bytes of each region of the input file that is mapped into memory.
+     * @param chunkSize the approximate size in bytes of each chunk of the input file that is processed as a unit of parallel work.
+     */
+    public GMNFileProcessor(Mode mode, int mappingSize, int chunkSize)
+    {
+        this(mode, Format.PLAIN, mappingSize, chunkSize);
+    }
+
+    /**
+     * Create a processor that writes its results in a given format, mapping
+     * the input in regions of the default size.
+     *
+     * @param mode the operation performed on each line.
+     * @param format the form in which the result for each line is written.
+     */
+    public GMNFileProcessor(Mode mode, Format format)
+    {
+        this(mode, format, DEFAULT_MAPPING_SIZE, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Create a processor that writes its results in a given format, mapping
+     * the input in regions of a given size and dividing it into chunks of a
+     * given size for parallel processing.
+     *
+     * @param mode the operation performed on each line.
+     * @param format the form in which the result for each line is written.
+     * @param mappingSize the size in bytes of each region of the input file that is mapped into memory.
+     * @param chunkSize the approximate size in bytes of each chunk of the input file that is processed as a unit of parallel work.
+     */
+    public GMNFileProcessor(Mode mode, Format format, int mappingSize, int chunkSize)
+    {
+        if (format == null)
+            throw new NullPointerException("format");
+        if (mappingSize < 2)
+            throw new IllegalArgumentException("The mapping size must be at least 2 bytes.");
+        if (chunkSize < 1)
+            throw new IllegalArgumentException("The chunk size must be at least 1 byte.");
+        this.mode = mode;
+        this.format = format;
+        this.mappingSize = mappingSize;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * The operation performed on each line.
+     *
+     * @return the mode of this processor.
+     */
+    public Mode getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * The form in which the result for each line is written.
+     *
+     * @return the format of this processor.
+     */
+    public Format getFormat()
+    {
+        return format;
+    }
+
+    /**
+     * Write the header that precedes the results in this processor's format,
+     * which is the CSV header record. Nothing is written for other formats.
+     *
+     * The methods that write to an output file write the header themselves.
+     * The methods that write to a channel do not, so that the output of
+     * several inputs may be concatenated under a single header.
+     *
+     * @param output the channel to which the header is written. It is not closed.
+     * @throws IOException if writing the header fails.
+     */
+    public void writeHeader(WritableByteChannel output)
+        throws IOException
+    {
+        if (format != Format.CSV)
+            return;
+        ByteBuffer buf = ByteBuffer.wrap(Worker.CSV_HEADER);
+        while (buf.hasRemaining())
+            output.write(buf);
+    }
+
+    /**
+     * Process each line of an input file, writing the results to an output file.
+     *
+     * @param input the input file.
+     * @param output the output file, which is created or truncated.
+     * @return counts of the lines processed.
+     * @throws IOException if reading the input or writing the output fails.
+     */
+    public Summary process(Path input, Path output)
+        throws IOException
+    {
+        try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            writeHeader(out);
+            return process(input, out);
+        }
+    }
+
+    /**
+     * Process each line of an input file, writing the results to a channel.
+     *
+     * @param input the input file.
+     * @param output the channel to which results are written. It is not closed.
+     * @return counts of the lines processed.
+     * @throws IOException if reading the input or writing the output fails.
+     */
+    public Summary process(Path input, WritableByteChannel output)
+        throws IOException
+    {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ))
+        {
+            Worker worker = new Worker(mode, format, output);
+            process(in, 0, in.size(), worker);
+            worker.flush();
+            return worker.summary;
+        }
+    }
+
+    /**
+     * Process each line read from a channel, such as standard input, writing the results to a channel.
+     *
+     * The input is read into a buffer that is enlarged as necessary to hold
+     * the longest line, and is processed sequentially. The output is
+     * identical to that of {@link #process(Path, WritableByteChannel)} for a
+     * file of the same content.
+     *
+     * @param input the channel from which lines are read until end of stream. It is not closed.
+     * @param output the channel to which results are written. It is not closed.
+     * @return counts of the lines processed.
+     * @throws IOException if reading the input or writing the output fails.
+     */
+    public Summary process(ReadableByteChannel input, WritableByteChannel output)
+        throws IOException
+    {
+        Worker worker = new Worker(mode, format, output);
+        ByteBuffer buf = ByteBuffer.allocateDirect(INPUT_BUFFER_SIZE);
+        long offset = 0;
+        boolean last = false;
+        while (!last)
+        {
+            last = input.read(buf) < 0;
+            int length = buf.position();
+            int consumed = worker.scan(buf, length, last);
+            if (consumed == 0 && length == buf.capacity() && !last)
+            {
+                // A single line fills the buffer, so read into a larger one
+                if (length == Integer.MAX_VALUE)
+                    throw new IOException("Line at offset " + offset + " is too long to be processed.");
+                ByteBuffer larger = ByteBuffer.allocateDirect((int) Math.min(Integer.MAX_VALUE, length * 2L));
+                ((Buffer) buf).flip();
+                larger.put(buf);
+                buf = larger;
+                continue;
+            }
+            offset += consumed;
+            ((Buffer) buf).limit(length);
+            ((Buffer) buf).position(consumed);
+            buf.compact();
+        }
+        worker.flush();
+        return worker.summary;
+    }
+
+    /**
+     * Process each line of an input file in parallel on the common ForkJoinPool, writing the results to an output file in input order.
+     *
+     * @param input the input file.
+     * @param output the output file, which is created or truncated.
+     * @return counts of the lines processed.
+     * @throws IOException if reading the input or writing the output fails.
+     */
+    public Summary processParallel(Path input, Path output)
+        throws IOException
+    {
+        try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            writeHeader(out);
+            return processParallel(input, out, ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism());
+        }
+    }
+
+    /**
+     * Process each line of an input file in parallel, writing the results to a channel in input order.
+     *
+     * The input is divided into chunks that end at line boundaries. Each chunk
+     * is processed by a task submitted to the executor, and the output of
+     * each chunk is written to the channel as soon as it and all preceding
+     * chunks are complete. The output is identical to that of
+     * {@link #process(Path, WritableByteChannel)}.
+     *
+     * @param input the input file.
+     * @param output the channel to which results are written. It is not closed.
+     * @param executor the executor on which chunks are processed.
+     * @param parallelism the number of chunks that may be processed concurrently. Twice this many chunks are buffered at most.
+     * @return counts of the lines processed.
+     * @throws IOException if reading the input or writing the output fails.
+     */
+    public Summary processParallel(Path input, WritableByteChannel output, Executor executor, int parallelism)
+        throws IOException
+    {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("The parallelism must be at least 1.");
+
+        Summary summary = new Summary();
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ))
+        {
+            long size = in.size();
+            ArrayDeque<CompletableFuture<Chunk>> pending = new ArrayDeque<>();
+            Queue<Chunk> free = new ConcurrentLinkedQueue<>();
+            try
+            {
+                long start = 0;
+                while (start < size)
+                {
+                    long end = lineBoundary(in, Math.min(start + chunkSize, size), size);
+                    pending.add(submit(in, start, end, executor, free));
+                    start = end;
+
+                    // Bound the buffered output by writing the oldest chunk
+                    if (pending.size() >= 2 * parallelism)
+                        write(pending.poll(), output, summary, free);
+                }
+                while (!pending.isEmpty())
+                    write(pending.poll(), output, summary, free);
+            }
+            finally
+            {
+                // After a failure, chunks that have not started are cancelled,
+                // and those that are running are waited for, so that none is
+                // still reading the input or using the executor on return
+                for (CompletableFuture<Chunk> f : pending)
+                    f.cancel(false);
+                CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).handle((v, e) -> null).join();
+            }
+        }
+        return summary;
+    }
+
+    // Buffers and worker for processing a chunk, recycled between chunks so
+    // that their allocation is not repeated
+    private static final class Chunk
+    {
+        final ChunkChannel output = new ChunkChannel(OUTPUT_BUFFER_SIZE);
+        final Worker worker;
+
+        Chunk(Mode mode, Format format)
+        {
+            worker = new Worker(mode, format, output);
+        }
+
+        void reset()
+        {
+            output.size = 0;
+            worker.summary.clear();
+        }
+    }
+
+    private CompletableFuture<Chunk> submit(final FileChannel in, final long start, final long end,
+                                            Executor executor, final Queue<Chunk> free)
+    {
+        return CompletableFuture.supplyAsync(new Supplier<Chunk>() {
+            @Override
+            public Chunk get()
+            {
+                Chunk chunk = free.poll();
+                if (chunk == null)
+                    chunk = new Chunk(mode, format);
+                try
+                {
+                    process(in, start, end, chunk.worker);
+                    chunk.worker.flush();
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+                return chunk;
+            }
+        }, executor);
+    }
+
+    // Wait for a chunk to complete and write its output
+    private static void write(CompletableFuture<Chunk> future, WritableByteChannel output, Summary summary, Queue<Chunk> free)
+        throws IOException
+    {
+        Chunk chunk;
+        try
+        {
+            chunk = future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a chunk to be processed.");
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException)
+                throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        }
+        ByteBuffer buf = ByteBuffer.wrap(chunk.output.bytes, 0, chunk.output.size);
+        while (buf.hasRemaining())
+            output.write(buf);
+        summary.add(chunk.worker.summary);
+        chunk.reset();
+        free.add(chunk);
+    }
+
+    // Find the end of the line that starts at an offset, i.e. the offset of
+    // its terminator, or the limit if there is none before it. Nothing is
+    // trimmed, so that every bulk processor checks the same lines.
+    static int lineEnd(ByteBuffer buf, int from, int to)
+    {
+        int i = from;
+        while (i < to)
+        {
+            byte b = buf.get(i);
+            if (b == '\n' || b == '\r')
+                break;
+            i++;
+        }
+        return i;
+    }
+
+    // Find the first line boundary at or after a position, i.e. the offset
+    // immediately following a line terminator
+    static long lineBoundary(FileChannel in, long pos, long size)
+        throws IOException
+    {
+        if (pos >= size || pos == 0)
+            return pos;
+
+        // Scan from the byte preceding the position, since a terminator there
+        // makes the position itself a boundary. A boundary never falls between
+        // a carriage return and its line feed.
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        long bufStart = pos - 1;
+        boolean cr = false;
+        while (bufStart < size)
+        {
+            ((Buffer) buf).clear();
+            int n = in.read(buf, bufStart);
+            if (n <= 0)
+                break;
+            for (int i = 0; i < n; i++)
+            {
+                byte b = buf.get(i);
+                long at = bufStart + i;
+                if (b == '\n')
+                    return at + 1;
+                if (cr)
+                    return at;
+                cr = b == '\r';
+            }
+            bufStart += n;
+        }
+        return size;
+    }
+
+    // An in-memory channel that collects the output of a chunk
+    static final class ChunkChannel implements WritableByteChannel
+    {
+        byte[] bytes;
+        int size;
+
+        ChunkChannel(int capacity)
+        {
+            bytes = new byte[capacity];
+        }
+
+        @Override
+        public int write(ByteBuffer src)
+        {
+            int n = src.remaining();
+            if (size + n > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + n));
+            src.get(bytes, size, n);
+            size += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return true;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
+    // Process the lines within a region of a file, mapping it a window at a
+    // time. The region must begin at the start of a line.
+    void process(FileChannel in, long start, long end, Worker worker)
+        throws IOException
+    {
+        long pos = start;
+        int window = mappingSize;
+        while (pos < end)
+        {
+            int length = (int) Math.min(window, end - pos);
+            boolean last = pos + length == end;
+            MappedByteBuffer buf = in.map(FileChannel.MapMode.READ_ONLY, pos, length);
+            int consumed = worker.scan(buf, length, last);
+            if (consumed == 0)
+            {
+                // A single line fills the window, so map a larger one
+                if (window == Integer.MAX_VALUE)
+                    throw new IOException("Line at offset " + pos + " is too long to be processed.");
+                window = (int) Math.min(Integer.MAX_VALUE, window * 2L);
+                continue;
+            }
+            pos += consumed;
+        }
+    }
+
+    /**
+     * Counts of the lines processed, by outcome.
+     */
+    public static final class Summary
+    {
+
+        private final long[] counts = new long[GMNValidationResult.Reason.byCode.length];
+
+        /**
+         * The number of lines processed.
+         *
+         * @return the number of lines.
+         */
+        public long getLines()
+        {
+            long lines = 0;
+            for (long c : counts)
+                lines += c;
+            return lines;
+        }
+
+        /**
+         * The number of lines that were valid: verified healthcare GMNs, or partial healthcare GMNs that were completed.
+         *
+         * @return the number of valid lines.
+         */
+        public long getValid()
+        {
+            return counts[GMNKernel.OK];
+        }
+
+        /**
+         * The number of lines that were not valid for any reason.
+         *
+         * @return the number of invalid lines.
+         */
+        public long getInvalid()
+        {
+            return getLines() - getValid();
+        }
+
+        /**
+         * The number of lines with a given outcome.
+         *
+         * @param reason the reason for which lines were accepted or rejected.
+         * @return the number of lines.
+         */
+        public long getCount(GMNValidationResult.Reason reason)
+        {
+            return counts[reason.ordinal()];
+        }
+
+        void clear()
+        {
+            Arrays.fill(counts, 0);
+        }
+
+        /**
+         * Accumulate the counts of another summary into this one, such as to total the summaries of several inputs.
+         *
+         * @param other the summary whose counts are added.
+         */
+        public void add(Summary other)
+        {
+            for (int i = 0; i < counts.length; i++)
+                counts[i] += other.counts[i];
+        }
+
+        void count(int status)
+        {
+            counts[GMNKernel.code(status)]++;
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder sb = new StringBuilder();
+            sb.append("lines=").append(getLines()).append(", valid=").append(getValid()).append(", invalid=").append(getInvalid());
+            for (GMNValidationResult.Reason reason : GMNValidationResult.Reason.byCode)
+                if (reason != GMNValidationResult.Reason.VALID && counts[reason.ordinal()] != 0)
+                    sb.append(", ").append(reason).append('=').append(counts[reason.ordinal()]);
+            return sb.toString();
+        }
+
+    }
+
+    // Scans lines and writes their results through a buffer. Holds the
+    // per-run caches, so is used by a single thread.
+    static final class Worker
+    {
+
+        private static final byte[] SEPARATOR = " : ".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] VALID = "*** Valid ***".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] NOT_VALID = "*** Not valid ***".getBytes(StandardCharsets.US_ASCII);
+
+        static final byte[] CSV_HEADER = ascii("input,valid,reason,position,checkCharacters,message" + System.lineSeparator());
+
+        // Fragments of CSV records and JSON objects, in the order written
+        private static final byte[] COMMA = ascii(",");
+        private static final byte[] QUOTE = ascii("\"");
+        private static final byte[] JSON_INPUT = ascii("{\"input\":");
+        private static final byte[] JSON_VALID = ascii(",\"valid\":");
+        private static final byte[] JSON_REASON = ascii(",\"reason\":\"");
+        private static final byte[] JSON_POSITION = ascii("\",\"position\":");
+        private static final byte[] JSON_CHECKS = ascii(",\"checkCharacters\":");
+        private static final byte[] JSON_MESSAGE = ascii(",\"message\":");
+        private static final byte[] JSON_END = ascii("}");
+        private static final byte[] TRUE = ascii("true");
+        private static final byte[] FALSE = ascii("false");
+        private static final byte[] NULL = ascii("null");
+        private static final byte[][] REASONS = new byte[GMNValidationResult.Reason.byCode.length][];
+
+        static
+        {
+            for (GMNValidationResult.Reason reason : GMNValidationResult.Reason.byCode)
+                REASONS[reason.ordinal()] = ascii(reason.name());
+        }
+
+        // Positional messages are cached per code, position and character
+        private static final int POSITIONS = GMNKernel.MAX_LENGTH + 2;
+
+        private final boolean complete;
+        private final Format format;
+        private final WritableByteChannel channel;
+        private final ByteBuffer out = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+        private final byte[] checks = new byte[2];
+        private final byte[] digits = new byte[10];
+        private final byte[][] fixedMessages = new byte[GMNValidationResult.Reason.byCode.length][];
+        private byte[][] positionalMessages;
+        private ByteBuffer view;
+        final Summary summary = new Summary();
+
+        Worker(Mode mode, Format format, WritableByteChannel channel)
+        {
+            this.complete = mode == Mode.VERIFY;
+            this.format = format;
+            this.channel = channel;
+        }
+
+        // Process the complete lines in the first length bytes of buf and
+        // return the number of bytes consumed. If last is set the final line
+        // need not be terminated.
+        int scan(ByteBuffer buf, int length, boolean last)
+            throws IOException
+        {
+            view = buf.duplicate();
+            int start = 0;
+            while (start < length)
+            {
+                int end = lineEnd(buf, start, length);
+                byte b = end < length ? buf.get(end) : 0;
+
+                if (end == length)
+                {
+                    if (!last)
+                        return start;
+                    line(buf, start, end - start);
+                    return length;
+                }
+
+                // A carriage return at the end of the window may be followed
+                // by a line feed in the next one
+                if (b == '\r' && end + 1 == length && !last)
+                    return start;
+
+                line(buf, start, end - start);
+                start = end + 1;
+                if (b == '\r' && start < length && buf.get(start) == '\n')
+                    start++;
+            }
+            return start;
+        }
+
+        // Process a single line
+        void line(ByteBuffer buf, int off, int len)
+            throws IOException
+        {
+            int status = GMNKernel.checkFormat(buf, off, len, complete);
+            int sum = 0;
+            if (status == GMNKernel.OK)
+            {
+                sum = GMNKernel.sum(buf, off, complete ? len - 2 : len);
+                if (complete && sum != GMNKernel.checkValue(buf.get(off + len - 2), buf.get(off + len - 1)))
+                    status = GMNKernel.status(GMNKernel.CHECK_MISMATCH, len - 2);
+            }
+
+            // Lines with non-ASCII content are decoded so that reasons and
+            // positions are reported, and counted, in characters, as they
+            // are for String input
+            GMNValidationResult result = null;
+            if (status != GMNKernel.OK && !ascii(buf, off, len))
+            {
+                result = decoded(buf, off, len);
+                status = GMNKernel.status(result.getReason().ordinal(), result.getPosition());
+            }
+            summary.count(status);
+
+            if (format != Format.PLAIN)
+            {
+                record(buf, off, len, status, sum, result);
+                return;
+            }
+
+            copy(off, len);
+            put(SEPARATOR, 0, SEPARATOR.length);
+            if (!complete && status == GMNKernel.OK)
+            {
+                checks[0] = (byte) GMNKernel.cset32chars[sum / 32];
+                checks[1] = (byte) GMNKernel.cset32chars[sum % 32];
+                put(checks, 0, 2);
+            }
+            else if (status == GMNKernel.OK)
+            {
+                put(VALID, 0, VALID.length);
+            }
+            else if (GMNKernel.code(status) == GMNKernel.CHECK_MISMATCH)
+            {
+                put(NOT_VALID, 0, NOT_VALID.length);
+            }
+            else
+            {
+                byte[] message = result != null ? encode(result) : message(buf, off, len, status);
+                put(message, 0, message.length);
+            }
+            put(NEWLINE, 0, NEWLINE.length);
+        }
+
+        // Write the result for a line as a CSV record or a JSON object, with
+        // the decoded result of a line with non-ASCII content
+        private void record(ByteBuffer buf, int off, int len, int status, int sum, GMNValidationResult result)
+            throws IOException
+        {
+            boolean csv = format == Format.CSV;
+            int code = GMNKernel.code(status);
+            int position = GMNKernel.position(status);
+            boolean wellFormed = status == GMNKernel.OK || code == GMNKernel.CHECK_MISMATCH;
+            byte[] message = null;
+            if (status != GMNKernel.OK)
+                message = result != null ? encode(result) : message(buf, off, len, status);
+
+            if (!csv)
+                put(JSON_INPUT, 0, JSON_INPUT.length);
+            quote(buf, off, len, csv);
+            byte[] b = csv ? COMMA : JSON_VALID;
+            put(b, 0, b.length);
+            b = status == GMNKernel.OK ? TRUE : FALSE;
+            put(b, 0, b.length);
+            b = csv ? COMMA : JSON_REASON;
+            put(b, 0, b.length);
+            put(REASONS[code], 0, REASONS[code].length);
+            b = csv ? COMMA : JSON_POSITION;
+            put(b, 0, b.length);
+            putInt(position);
+            b = csv ? COMMA : JSON_CHECKS;
+            put(b, 0, b.length);
+            if (wellFormed)
+            {
+                checks[0] = (byte) GMNKernel.cset32chars[sum / 32];
+                checks[1] = (byte) GMNKernel.cset32chars[sum % 32];
+                if (!csv)
+                    put(QUOTE, 0, 1);
+                put(checks, 0, 2);
+                if (!csv)
+                    put(QUOTE, 0, 1);
+            }
+            else if (!csv)
+            {
+                put(NULL, 0, NULL.length);
+            }
+            if (csv)
+                put(COMMA, 0, 1);
+            if (message != null)
+            {
+                if (!csv)
+                    put(JSON_MESSAGE, 0, JSON_MESSAGE.length);
+                put(message, 0, message.length);
+            }
+            if (!csv)
+                put(JSON_END, 0, 1);
+            put(NEWLINE, 0, NEWLINE.length);
+        }
+
+        // Describe a failed format check, reusing previously encoded messages
+        private byte[] message(ByteBuffer buf, int off, int len, int status)
+        {
+            int code = GMNKernel.code(status);
+            if (code != GMNKernel.INVALID_CHARACTER && code != GMNKernel.INVALID_CHECK_CHARACTER)
+            {
+                if (fixedMessages[code] == null)
+                    fixedMessages[code] = encode(GMNValidationResult.of(status, '\0', complete));
+                return fixedMessages[code];
+            }
+
+            int position = GMNKernel.position(status);
+            int c = buf.get(off + position);
+            int key = ((code == GMNKernel.INVALID_CHARACTER ? 0 : POSITIONS) + position) * 128 + c;
+            if (positionalMessages == null)
+                positionalMessages = new byte[2 * POSITIONS * 128][];
+            if (positionalMessages[key] == null)
+                positionalMessages[key] = encode(GMNValidationResult.of(status, (char) c, complete));
+            return positionalMessages[key];
+        }
+
+        private GMNValidationResult decoded(ByteBuffer buf, int off, int len)
+        {
+            byte[] raw = new byte[len];
+            for (int i = 0; i < len; i++)
+                raw[i] = buf.get(off + i);
+            String line = new String(raw, StandardCharsets.UTF_8);
+            return complete ? HealthcareGMN.validate(line) : HealthcareGMN.validatePartial(line);
+        }
+
+        private static boolean ascii(ByteBuffer buf, int off, int len)
+        {
+            for (int i = 0; i < len; i++)
+                if (buf.get(off + i) < 0)
+                    return false;
+            return true;
+        }
+
+        private static byte[] ascii(String s)
+        {
+            return s.getBytes(StandardCharsets.US_ASCII);
+        }
+
+        // Encode a message as written in this worker's format: as is, as a
+        // quoted CSV field or as a JSON string
+        private byte[] encode(GMNValidationResult result)
+        {
+            String message = result.getMessage();
+            if (format == Format.PLAIN)
+                return message.getBytes(StandardCharsets.UTF_8);
+            boolean csv = format == Format.CSV;
+            StringBuilder sb = new StringBuilder(message.length() + 8);
+            sb.append('"');
+            for (int i = 0; i < message.length(); i++)
+            {
+                char c = message.charAt(i);
+                if (c == '"')
+                    sb.append(csv ? "\"\"" : "\\\"");
+                else if (c == '\\' && !csv)
+                    sb.append("\\\\");
+                else if (c < 0x20 && !csv)
+                    sb.append(String.format("\\u%04x", (int) c));
+                else
+                    sb.append(c);
+            }
+            sb.append('"');
+            return sb.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        // Copy a region of the input to the output as a quoted CSV field or a
+        // JSON string. Non-ASCII bytes are copied as they are.
+        private void quote(ByteBuffer buf, int off, int len, boolean csv)
+            throws IOException
+        {
+            put(QUOTE, 0, 1);
+            int from = off;
+            int end = off + len;
+            for (int i = off; i < end; i++)
+            {
+                byte b = buf.get(i);
+                if (b != '"' && (csv || (b != '\\' && (b < 0 || b >= 0x20))))
+                    continue;
+                copy(from, i - from);
+                from = i + 1;
+                if (csv)
+                {
+                    put(QUOTE, 0, 1);
+                    put(QUOTE, 0, 1);
+                }
+                else if (b == '"' || b == '\\')
+                {
+                    digits[0] = '\\';
+                    digits[1] = b;
+                    put(digits, 0, 2);
+                }
+                else
+                {
+                    byte[] escape = ascii(String.format("\\u%04x", (int) b));
+                    put(escape, 0, escape.length);
+                }
+            }
+            copy(from, end - from);
+            put(QUOTE, 0, 1);
+        }
+
+        private void putInt(int value)
+            throws IOException
+        {
+            int i = digits.length;
+            do
+            {
+                digits[--i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            while (value != 0);
+            put(digits, i, digits.length - i);
+        }
+
+        // Copy a region of the input to the output. The Buffer casts keep the
+        // class compatible with Java 8 when built by a later compiler.
+        private void copy(int off, int len)
+            throws IOException
+        {
+            while (len > 0)
+            {
+                if (!out.hasRemaining())
+                    flush();
+                int n = Math.min(len, out.remaining());
+                ((Buffer) view).limit(off + n);
+                ((Buffer) view).position(off);
+                out.put(view);
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void put(byte[] src, int off, int len)
+            throws IOException
+        {
+            while (len > 0)
+            {
+                if (!out.hasRemaining())
+                    flush();
+                int n = Math.min(len, out.remaining());
+                out.put(src, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        void flush()
+            throws IOException
+        {
+            ((Buffer) out).flip();
+            while (out.hasRemaining())
+                channel.write(out);
+            ((Buffer) out).clear();
+        }
+
+    }
+
+}
@@ -0,0 +1,541 @@
+package org.gs1;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A persistent, sorted index of healthcare GMNs that is memory-mapped for
+ * membership and GS1 Company Prefix range queries.
+ *
+ * An index file holds a short header followed by the distinct healthcare
+ * GMNs of a set, each as a {@link GMNKey} serialised in {@value GMNKey#BYTES}
+ * bytes, in ascending order. Since keys sort as their string forms do, the
+ * healthcare GMNs that begin with a given GS1 Company Prefix are contiguous.
+ *
+ * Opening an index maps the file without reading or deserialising it, so
+ * the index is available immediately and occupies the operating system's page
+ * cache rather than the Java heap. Queries are binary searches over the mapped
+ * records. An index is immutable and may be queried by multiple concurrent
+ * threads.
+ *
+ * Index files are written by a {@link Builder}.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public final class GMNIndex
+{
+
+    // File header: magic, format version and number of records
+    static final int MAGIC = 0x474D4E49;  // "GMNI"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 4 + 4 + 8;
+
+    // Number of records in each mapped segment, which keeps each mapping
+    // within the limit of a single buffer
+    private static final long SEGMENT_RECORDS = (1 << 30) / GMNKey.BYTES;
+
+    private final ByteBuffer[] segments;
+    private final long size;
+
+    private GMNIndex(ByteBuffer[] segments, long size)
+    {
+        this.segments = segments;
+        this.size = size;
+    }
+
+    /**
+     * Open an index file written by a {@link Builder}.
+     *
+     * @param file the index file.
+     * @return the index.
+     * @throws IOException if the file cannot be read or is not an index.
+     */
+    public static GMNIndex open(Path file)
+        throws IOException
+    {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining())
+                if (in.read(header) < 0)
+                    throw new IOException("The file is not a healthcare GMN index: " + file);
+            ((Buffer) header).flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                throw new IOException("The file is not a healthcare GMN index: " + file);
+            long size = header.getLong();
+            if (size < 0 || in.size() != HEADER_SIZE + size * GMNKey.BYTES)
+                throw new IOException("The healthcare GMN index is corrupt: " + file);
+
+            ByteBuffer[] segments = new ByteBuffer[(int) ((size + SEGMENT_RECORDS - 1) / SEGMENT_RECORDS)];
+            for (int s = 0; s < segments.length; s++)
+            {
+                long first = s * SEGMENT_RECORDS;
+                long count = Math.min(SEGMENT_RECORDS, size - first);
+                segments[s] = in.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * GMNKey.BYTES, count * GMNKey.BYTES);
+            }
+            return new GMNIndex(segments, size);
+        }
+    }
+
+    /**
+     * The number of healthcare GMNs in the index.
+     *
+     * @return the number of entries.
+     */
+    public long size()
+    {
+        return size;
+    }
+
+    /**
+     * The healthcare GMN at a position in the sorted index.
+     *
+     * @param index zero-based position.
+     * @return the key of the healthcare GMN.
+     */
+    public GMNKey get(long index)
+    {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Entry " + index + " is outside of the index of " + size + " entries.");
+        ByteBuffer seg = segment(index);
+        int off = offset(index);
+        return GMNKey.of(seg.getLong(off), seg.getLong(off + 8), seg.getInt(off + 16));
+    }
+
+    /**
+     * Indicate whether the index contains a healthcare GMN.
+     *
+     * @param gmn a healthcare GMN complete with a check character pair.
+     * @return true if the healthcare GMN is in the index. Otherwise false, including if its format is invalid.
+     */
+    public boolean contains(CharSequence gmn)
+    {
+        if (GMNKernel.checkFormat(gmn, 0, gmn.length(), true) != GMNKernel.OK)
+            return false;
+        try
+        {
+            return contains(GMNKey.of(gmn));
+        }
+        catch (GS1Exception e)
+        {
+            return false;  // Not reached, since the format is valid
+        }
+    }
+
+    /**
+     * Indicate whether the index contains a healthcare GMN.
+     *
+     * @param key the key of a healthcare GMN.
+     * @return true if the healthcare GMN is in the index. Otherwise false.
+     */
+    public boolean contains(GMNKey key)
+    {
+        long lo = 0;
+        long hi = size;
+        while (lo < hi)
+        {
+            long mid = (lo + hi) >>> 1;
+            ByteBuffer seg = segment(mid);
+            int off = offset(mid);
+            int c = GMNKey.compare(seg.getLong(off), seg.getLong(off + 8), seg.getInt(off + 16),
+                                   key.getHigh(), key.getMiddle(), key.getLow());
+            if (c == 0)
+                return true;
+            if (c < 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return false;
+    }
+
+    /**
+     * The position of the first healthcare GMN that begins with a GS1 Company Prefix.
+     *
+     * @param gcp a GS1 Company Prefix.
+     * @return the position of the first entry with the GS1 Company Prefix, or the position at which it would be inserted if there are none.
+     * @throws GS1Exception if the GS1 Company Prefix is invalid.
+     */
+    public long firstIndexOfGcp(String gcp)
+        throws GS1Exception
+    {
+        checkGcp(gcp);
+        return bound(gcp, false);
+    }
+
+    /**
+     * The position following the last healthcare GMN that begins with a GS1 Company Prefix.
+     *
+     * @param gcp a GS1 Company Prefix.
+     * @return the position following the last entry with the GS1 Company Prefix.
+     * @throws GS1Exception if the GS1 Company Prefix is invalid.
+     */
+    public long endIndexOfGcp(String gcp)
+        throws GS1Exception
+    {
+        checkGcp(gcp);
+        return bound(gcp, true);
+    }
+
+    /**
+     * The number of healthcare GMNs that begin with a GS1 Company Prefix.
+     *
+     * @param gcp a GS1 Company Prefix.
+     * @return the number of entries with the GS1 Company Prefix.
+     * @throws GS1Exception if the GS1 Company Prefix is invalid.
+     */
+    public long countOfGcp(String gcp)
+        throws GS1Exception
+    {
+        checkGcp(gcp);
+        return bound(gcp, true) - bound(gcp, false);
+    }
+
+    /**
+     * Perform an action for each healthcare GMN that begins with a GS1 Company Prefix, in ascending order.
+     *
+     * @param gcp a GS1 Company Prefix.
+     * @param action the action to perform on the key of each healthcare GMN.
+     * @throws GS1Exception if the GS1 Company Prefix is invalid.
+     */
+    public void forEachOfGcp(String gcp, Consumer<? super GMNKey> action)
+        throws GS1Exception
+    {
+        checkGcp(gcp);
+        long end = bound(gcp, true);
+        for (long i = bound(gcp, false); i < end; i++)
+            action.accept(get(i));
+    }
+
+    private ByteBuffer segment(long index)
+    {
+        return segments[(int) (index / SEGMENT_RECORDS)];
+    }
+
+    private static int offset(long index)
+    {
+        return (int) (index % SEGMENT_RECORDS) * GMNKey.BYTES;
+    }
+
+    // Position of the first entry whose leading characters compare greater
+    // than or equal to (or, if after is set, strictly greater than) a prefix
+    private long bound(String prefix, boolean after)
+    {
+        long lo = 0;
+        long hi = size;
+        while (lo < hi)
+        {
+            long mid = (lo + hi) >>> 1;
+            int c = comparePrefix(mid, prefix);
+            if (c < 0 || (after && c == 0))
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    // Compare the leading characters of an entry with a prefix
+    private int comparePrefix(long index, String prefix)
+    {
+        ByteBuffer seg = segment(index);
+        int off = offset(index);
+        long high = seg.getLong(off);
+        long middle = seg.getLong(off + 8);
+        int low = seg.getInt(off + 16);
+        int len = GMNKey.length(high, middle, low);
+        for (int i = 0; i < prefix.length(); i++)
+        {
+            if (i >= len)
+                return -1;
+            int c = GMNKey.charAt(high, middle, low, i) - prefix.charAt(i);
+            if (c != 0)
+                return c;
+        }
+        return 0;
+    }
+
+    private static void checkGcp(String gcp)
+        throws GS1Exception
+    {
+        int status = GMNKernel.checkGcpLength(gcp);
+        if (status == GMNKernel.OK)
+            status = GMNKernel.checkGcpDigits(gcp);
+        if (status != GMNKernel.OK)
+            throw new GS1Exception(GMNValidationResult.of(status, gcp, "", null));
+    }
+
+    /**
+     * Collects healthcare GMNs in memory and writes them to an index file.
+     *
+     * Each healthcare GMN is held as the three words of its packed key in
+     * primitive arrays, i.e. {@value GMNKey#BYTES} bytes per entry. The
+     * entries are sorted and duplicates removed when the index is written.
+     *
+     * A builder is not safe for use by multiple concurrent threads.
+     */
+    public static final class Builder
+    {
+
+        private long[] high;
+        private long[] middle;
+        private int[] low;
+        private int size;
+
+        /**
+         * Create an empty builder.
+         */
+        public Builder()
+        {
+            this(1024);
+        }
+
+        /**
+         * Create an empty builder with space reserved for a given number of entries.
+         *
+         * @param capacity number of entries for which to reserve space.
+         */
+        public Builder(int capacity)
+        {
+            capacity = Math.max(capacity, 1);
+            high = new long[capacity];
+            middle = new long[capacity];
+            low = new int[capacity];
+        }
+
+        /**
+         * Add a healthcare GMN.
+         *
+         * @param gmn a healthcare GMN complete with a check character pair, which need not be correct.
+         * @return this builder.
+         * @throws GS1Exception if the format of the healthcare GMN is invalid.
+         */
+        public Builder add(CharSequence gmn)
+            throws GS1Exception
+        {
+            return add(GMNKey.of(gmn));
+        }
+
+        /**
+         * Add the key of a healthcare GMN.
+         *
+         * @param key the key of a healthcare GMN.
+         * @return this builder.
+         */
+        public Builder add(GMNKey key)
+        {
+            if (size == high.length)
+            {
+                if (size == Integer.MAX_VALUE - 8)
+                    throw new IllegalStateException("The builder is full.");
+                int capacity = (int) Math.min(size * 2L, Integer.MAX_VALUE - 8);
+                high = Arrays.copyOf(high, capacity);
+                middle = Arrays.copyOf(middle, capacity);
+                low = Arrays.copyOf(low, capacity);
+            }
+            high[size] = key.getHigh();
+            middle[size] = key.getMiddle();
+            low[size] = key.getLow();
+            size++;
+            return this;
+        }
+
+        /**
+         * Add every healthcare GMN listed in a file, one per line.
+         *
+         * Surrounding whitespace is removed from each line and blank lines are ignored.
+         *
+         * @param file a text file of healthcare GMNs.
+         * @return this builder.
+         * @throws GS1Exception if the format of any healthcare GMN is invalid, in which case those on preceding lines have been added.
+         * @throws IOException if the file cannot be read.
+         */
+        public Builder addAll(Path file)
+            throws GS1Exception, IOException
+        {
+            long line = 0;
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8))
+            {
+                String s;
+                while ((s = in.readLine()) != null)
+                {
+                    line++;
+                    s = s.trim();
+                    if (s.isEmpty())
+                        continue;
+                    try
+                    {
+                        add(s);
+                    }
+                    catch (GS1Exception e)
+                    {
+                        throw new GS1Exception("Line " + line + ": ", e);
+                    }
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Remove all entries so that the builder can be refilled. Buffers are retained.
+         */
+        public void clear()
+        {
+            size = 0;
+        }
+
+        /**
+         * The number of healthcare GMNs added, including duplicates.
+         *
+         * @return the number of entries added.
+         */
+        public int size()
+        {
+            return size;
+        }
+
+        /**
+         * Sort the healthcare GMNs, remove duplicates and write the index file, replacing any existing file.
+         *
+         * @param file the destination index file.
+         * @return the number of distinct healthcare GMNs written.
+         * @throws IOException if the file cannot be written.
+         */
+        public long write(Path file)
+            throws IOException
+        {
+            sort(0, size);
+            int distinct = 0;
+            for (int i = 0; i < size; i++)
+            {
+                if (distinct > 0 && high[i] == high[distinct - 1] && middle[i] == middle[distinct - 1] && low[i] == low[distinct - 1])
+                    continue;
+                high[distinct] = high[i];
+                middle[distinct] = middle[i];
+                low[distinct] = low[i];
+                distinct++;
+            }
+            size = distinct;
+
+            try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+            {
+                ByteBuffer buf = ByteBuffer.allocateDirect(GMNKey.BYTES * 4096);
+                buf.putInt(MAGIC).putInt(VERSION).putLong(size);
+                for (int i = 0; i < size; i++)
+                {
+                    if (buf.remaining() < GMNKey.BYTES)
+                        drain(buf, out);
+                    buf.putLong(high[i]).putLong(middle[i]).putInt(low[i]);
+                }
+                drain(buf, out);
+            }
+            return size;
+        }
+
+        private static void drain(ByteBuffer buf, FileChannel out)
+            throws IOException
+        {
+            ((Buffer) buf).flip();
+            while (buf.hasRemaining())
+                out.write(buf);
+            ((Buffer) buf).clear();
+        }
+
+        // Three-way quicksort of the parallel key arrays, which
+        // handles the long runs of duplicates in merged lists efficiently
+        private void sort(int from, int to)
+        {
+            while (to - from > 16)
+            {
+                int p = from + (to - from) / 2;
+                median(from, p, to - 1);
+                long ph = high[p];
+                long pm = middle[p];
+                int pl = low[p];
+                int lt = from;
+                int gt = to - 1;
+                int i = from;
+                while (i <= gt)
+                {
+                    int c = GMNKey.compare(high[i], middle[i], low[i], ph, pm, pl);
+                    if (c < 0)
+                        swap(lt++, i++);
+                    else if (c > 0)
+                        swap(i, gt--);
+                    else
+                        i++;
+                }
+                // Recurse into the smaller part to bound the depth of the stack
+                if (lt - from < to - gt - 1)
+                {
+                    sort(from, lt);
+                    from = gt + 1;
+                }
+                else
+                {
+                    sort(gt + 1, to);
+                    to = lt;
+                }
+            }
+            for (int i = from + 1; i < to; i++)
+                for (int j = i; j > from && GMNKey.compare(high[j - 1], middle[j - 1], low[j - 1], high[j], middle[j], low[j]) > 0; j--)
+                    swap(j - 1, j);
+        }
+
+        // Order three entries so that the middle one is their median
+        private void median(int a, int b, int c)
+        {
+            if (compare(a, b) > 0)
+                swap(a, b);
+            if (compare(b, c) > 0)
+                swap(b, c);
+            if (compare(a, b) > 0)
+                swap(a, b);
+        }
+
+        private int compare(int a, int b)
+        {
+            return GMNKey.compare(high[a], middle[a], low[a], high[b], middle[b], low[b]);
+        }
+
+        private void swap(int a, int b)
+        {
+            long h = high[a];
+            high[a] = high[b];
+            high[b] = h;
+            long m = middle[a];
+            middle[a] = middle[b];
+            middle[b] = m;
+            int l = low[a];
+            low[a] = low[b];
+            low[b] = l;
+        }
+
+    }
+
+}
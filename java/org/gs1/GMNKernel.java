@@ -0,0 +1,475 @@
+package org.gs1;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Primitive, allocation-free implementation of the healthcare GMN format
+ * checks and check character pair calculation.
+ *
+ * The public helper classes are thin wrappers around these routines. Inputs
+ * are addressed as a window (offset and length) over a CharSequence, a char
+ * array, or an array or buffer of ASCII bytes so that callers never need to
+ * copy or split their data.
+ *
+ * Format checks return a compact status int: zero when the input is well
+ * formed, otherwise a failure code in the low byte and the zero-based position
+ * of the offending character in the remaining bits.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+final class GMNKernel {
+
+    /**
+     * Descending primes used as multipliers of each data character.
+     */
+    static final short[] weights = new short[]
+        {83,79,73,71,67,61,59,53,47,43,41,37,31,29,23,19,17,13,11,7,5,3,2};
+
+    /**
+     * GS1 AI encodable character set 82. Place in the string represents the
+     * character value.
+     */
+    static final String cset82 =
+        "!\"%&'()*+,-./0123456789:;<=>?ABCDEFGHIJKLMNOPQRSTUVWXYZ" +
+        "_abcdefghijklmnopqrstuvwxyz";
+
+    /**
+     * Subset of the encodable character set used for the check character pair.
+     */
+    static final String cset32 = "23456789ABCDEFGHJKLMNPQRSTUVWXYZ";
+
+    /**
+     * Maximum length of a partial healthcare GMN, i.e. excluding the check
+     * character pair.
+     */
+    static final int MAX_LENGTH = 23;
+
+    /**
+     * Minimum length of a partial healthcare GMN, i.e. excluding the check
+     * character pair.
+     */
+    static final int MIN_LENGTH = 6;
+
+    /**
+     * The check character pair is the weighted sum modulo this prime.
+     */
+    static final int MODULUS = 1021;
+
+    // Status codes, matching the ordinals of GMNValidationResult.Reason
+    static final int OK = 0;
+    static final int TOO_SHORT = 1;
+    static final int TOO_LONG = 2;
+    static final int GCP_NOT_NUMERIC = 3;
+    static final int INVALID_CHARACTER = 4;
+    static final int INVALID_CHECK_CHARACTER = 5;
+    static final int CHECK_MISMATCH = 6;
+    static final int GCP_TOO_SHORT = 7;
+    static final int GCP_TOO_LONG = 8;
+    static final int MODEL_EMPTY = 9;
+    static final int CHECK_WRONG_LENGTH = 10;
+
+    /**
+     * ASCII to cset82 value lookup table. Characters outside of cset82 map to -1.
+     */
+    static final byte[] cset82value = new byte[128];
+
+    /**
+     * ASCII to cset32 value lookup table. Characters outside of cset32 map to -1.
+     */
+    static final byte[] cset32value = new byte[128];
+
+    /**
+     * cset32 as an array for indexing by check character value.
+     */
+    static final char[] cset32chars = cset32.toCharArray();
+
+    // Initialisation populates the cset82 and cset32 lookup tables
+    static
+    {
+        Arrays.fill(cset82value, (byte) -1);
+        for (int i = 0; i < cset82.length(); i++)
+            cset82value[cset82.charAt(i)] = (byte) i;
+
+        Arrays.fill(cset32value, (byte) -1);
+        for (int i = 0; i < cset32.length(); i++)
+            cset32value[cset32.charAt(i)] = (byte) i;
+    }
+
+    private GMNKernel() {}
+
+    static int status(int code, int position)
+    {
+        return code | position << 8;
+    }
+
+    static int code(int status)
+    {
+        return status & 0xFF;
+    }
+
+    static int position(int status)
+    {
+        return status >>> 8;
+    }
+
+    static boolean isDigit(int c)
+    {
+        return c >= '0' && c <= '9';
+    }
+
+    static int cset82(int c)
+    {
+        return (c >>> 7) == 0 ? cset82value[c] : -1;
+    }
+
+    static int cset32(int c)
+    {
+        return (c >>> 7) == 0 ? cset32value[c] : -1;
+    }
+
+    /**
+     * Weight applied to the character at a position of a partial GMN of a
+     * given length. Weights are aligned to the rightmost character.
+     */
+    static int weight(int len, int i)
+    {
+        return weights[weights.length - len + i];
+    }
+
+    /**
+     * Combine the two check characters into the value that they represent, or
+     * -1 if either is outside of cset32.
+     */
+    static int checkValue(int c1, int c2)
+    {
+        int hi = cset32(c1);
+        int lo = cset32(c2);
+        return (hi | lo) < 0 ? -1 : hi * 32 + lo;
+    }
+
+    static int minLength(boolean complete)
+    {
+        return complete ? MIN_LENGTH + 2 : MIN_LENGTH;
+    }
+
+    static int maxLength(boolean complete)
+    {
+        return complete ? MAX_LENGTH + 2 : MAX_LENGTH;
+    }
+
+    // Perform local consistency checks on a window of a partial or complete GMN
+    static int checkFormat(CharSequence s, int off, int len, boolean complete)
+    {
+        if (len < minLength(complete))
+            return TOO_SHORT;
+        if (len > maxLength(complete))
+            return TOO_LONG;
+
+        // GMN begins with a GS1 Company Prefix which is at least five characters
+        for (int i = 0; i < 5; i++)
+            if (!isDigit(s.charAt(off + i)))
+                return status(GCP_NOT_NUMERIC, i);
+
+        int body = complete ? len - 2 : len;
+        for (int i = 5; i < body; i++)
+            if (cset82(s.charAt(off + i)) < 0)
+                return status(INVALID_CHARACTER, i);
+
+        // For a complete GMN final two positions are check character pair
+        for (int i = body; i < len; i++)
+            if (cset32(s.charAt(off + i)) < 0)
+                return status(INVALID_CHECK_CHARACTER, i);
+
+        return OK;
+    }
+
+    static int checkFormat(char[] s, int off, int len, boolean complete)
+    {
+        if (len < minLength(complete))
+            return TOO_SHORT;
+        if (len > maxLength(complete))
+            return TOO_LONG;
+
+        for (int i = 0; i < 5; i++)
+            if (!isDigit(s[off + i]))
+                return status(GCP_NOT_NUMERIC, i);
+
+        int body = complete ? len - 2 : len;
+        for (int i = 5; i < body; i++)
+            if (cset82(s[off + i]) < 0)
+                return status(INVALID_CHARACTER, i);
+
+        for (int i = body; i < len; i++)
+            if (cset32(s[off + i]) < 0)
+                return status(INVALID_CHECK_CHARACTER, i);
+
+        return OK;
+    }
+
+    // ASCII bytes, e.g. from a packed batch or a file. Bytes above 0x7F are
+    // outside of every character set.
+    static int checkFormat(byte[] s, int off, int len, boolean complete)
+    {
+        if (len < minLength(complete))
+            return TOO_SHORT;
+        if (len > maxLength(complete))
+            return TOO_LONG;
+
+        for (int i = 0; i < 5; i++)
+            if (!isDigit(s[off + i]))
+                return status(GCP_NOT_NUMERIC, i);
+
+        int body = complete ? len - 2 : len;
+        for (int i = 5; i < body; i++)
+            if (cset82(s[off + i] & 0xFF) < 0)
+                return status(INVALID_CHARACTER, i);
+
+        for (int i = body; i < len; i++)
+            if (cset32(s[off + i] & 0xFF) < 0)
+                return status(INVALID_CHECK_CHARACTER, i);
+
+        return OK;
+    }
+
+    // ASCII bytes addressed by absolute index, e.g. within a mapped file
+    static int checkFormat(ByteBuffer s, int off, int len, boolean complete)
+    {
+        if (len < minLength(complete))
+            return TOO_SHORT;
+        if (len > maxLength(complete))
+            return TOO_LONG;
+
+        for (int i = 0; i < 5; i++)
+            if (!isDigit(s.get(off + i)))
+                return status(GCP_NOT_NUMERIC, i);
+
+        int body = complete ? len - 2 : len;
+        for (int i = 5; i < body; i++)
+            if (cset82(s.get(off + i) & 0xFF) < 0)
+                return status(INVALID_CHARACTER, i);
+
+        for (int i = body; i < len; i++)
+            if (cset32(s.get(off + i) & 0xFF) < 0)
+                return status(INVALID_CHECK_CHARACTER, i);
+
+        return OK;
+    }
+
+    // Classify every character of a window of at most 64 characters against
+    // the character set for its position: digits for the first five, cset32
+    // for the check character pair of a complete GMN, otherwise cset82. Bit i
+    // of the result is set if character i does not belong.
+    static long badPositions(CharSequence s, int off, int len, boolean complete)
+    {
+        int body = complete ? len - 2 : len;
+        long bad = 0;
+        for (int i = 0; i < len; i++)
+        {
+            int c = s.charAt(off + i);
+            boolean good = i < 5 ? isDigit(c) : i < body ? cset82(c) >= 0 : cset32(c) >= 0;
+            bad |= (good ? 0L : 1L) << i;
+        }
+        return bad;
+    }
+
+    // The status of a window whose length is in range, from the bitmask of
+    // its bad positions. The lowest bad position is reported, as by checkFormat.
+    static int statusOf(long badPositions, int len, boolean complete)
+    {
+        if (badPositions == 0)
+            return OK;
+        int i = Long.numberOfTrailingZeros(badPositions);
+        if (i < 5)
+            return status(GCP_NOT_NUMERIC, i);
+        return status(i < (complete ? len - 2 : len) ? INVALID_CHARACTER : INVALID_CHECK_CHARACTER, i);
+    }
+
+    // Format check a window of a complete GMN and compare its check character
+    // pair against the recalculated pair
+    static int checkGMN(CharSequence s, int off, int len)
+    {
+        int status = checkFormat(s, off, len, true);
+        if (status != OK)
+            return status;
+        if (sum(s, off, len - 2) != checkValue(s.charAt(off + len - 2), s.charAt(off + len - 1)))
+            return status(CHECK_MISMATCH, len - 2);
+        return OK;
+    }
+
+    static int checkGMN(char[] s, int off, int len)
+    {
+        int status = checkFormat(s, off, len, true);
+        if (status != OK)
+            return status;
+        if (sum(s, off, len - 2) != checkValue(s[off + len - 2], s[off + len - 1]))
+            return status(CHECK_MISMATCH, len - 2);
+        return OK;
+    }
+
+    // Perform local consistency checks on a GMN provided as GS1 Company Prefix,
+    // model reference and optional check character components. Positions are
+    // relative to the concatenation of the components.
+    static int checkFormatGcpModelChecks(CharSequence gcp, CharSequence model, CharSequence checks)
+    {
+        int status = checkGcpLength(gcp);
+        if (status != OK)
+            return status;
+
+        // Verify that the model reference contains at least one character
+        if (model.length() < 1)
+            return status(MODEL_EMPTY, gcp.length());
+
+        status = checkGcpDigits(gcp);
+        if (status != OK)
+            return status;
+
+        return checkFormatModelChecks(gcp.length(), model, checks);
+    }
+
+    // Verify that the GS1 Company Prefix has the correct length
+    static int checkGcpLength(CharSequence gcp)
+    {
+        if (gcp.length() < 5)
+            return GCP_TOO_SHORT;
+        if (gcp.length() > 12)
+            return GCP_TOO_LONG;
+        return OK;
+    }
+
+    // Verify that the GS1 Company Prefix is numeric only
+    static int checkGcpDigits(CharSequence gcp)
+    {
+        for (int i = 0; i < gcp.length(); i++)
+            if (!isDigit(gcp.charAt(i)))
+                return status(GCP_NOT_NUMERIC, i);
+        return OK;
+    }
+
+    // The checks of checkFormatGcpModelChecks that follow those of the GS1
+    // Company Prefix, given a GS1 Company Prefix of the given length that has
+    // passed them
+    static int checkFormatModelChecks(int gcpLen, CharSequence model, CharSequence checks)
+    {
+        int modelLen = model.length();
+
+        // If given, verify that the check is the correct length
+        if (checks != null && checks.length() != 2)
+            return status(CHECK_WRONG_LENGTH, gcpLen + modelLen);
+
+        // Perform more format checks on the overall GMN. The GS1 Company Prefix
+        // is at least five digits, so only the maximum length can be exceeded.
+        boolean complete = checks != null;
+        if (gcpLen + modelLen + (complete ? 2 : 0) > maxLength(complete))
+            return TOO_LONG;
+
+        for (int i = 0; i < modelLen; i++)
+            if (cset82(model.charAt(i)) < 0)
+                return status(INVALID_CHARACTER, gcpLen + i);
+
+        if (complete)
+            for (int i = 0; i < 2; i++)
+                if (cset32(checks.charAt(i)) < 0)
+                    return status(INVALID_CHECK_CHARACTER, gcpLen + modelLen + i);
+
+        return OK;
+    }
+
+    // As checkFormatGcpModelChecks, additionally comparing the check character
+    // pair against the recalculated pair
+    static int checkGMNGcpModelChecks(CharSequence gcp, CharSequence model, CharSequence checks)
+    {
+        int status = checkFormatGcpModelChecks(gcp, model, checks);
+        if (status != OK)
+            return status;
+        if (sumGcpModel(gcp, model) != checkValue(checks.charAt(0), checks.charAt(1)))
+            return status(CHECK_MISMATCH, gcp.length() + model.length());
+        return OK;
+    }
+
+    // Modulo 1021 weighted sum of a partial GMN provided as GS1 Company Prefix
+    // and model reference components that have passed the format checks
+    static int sumGcpModel(CharSequence gcp, CharSequence model)
+    {
+        int gcpLen = gcp.length();
+        int w = weights.length - gcpLen - model.length();
+        return (weightedSum(gcp, 0, gcpLen, w) + weightedSum(model, 0, model.length(), w + gcpLen)) % MODULUS;
+    }
+
+    // Sum of the products of the character values and consecutive weights
+    // starting from a given weight index, without the modulo reduction
+    static int weightedSum(CharSequence s, int off, int len, int firstWeight)
+    {
+        int sum = 0;
+        for (int i = 0; i < len; i++)
+            sum += cset82value[s.charAt(off + i)] * weights[firstWeight + i];
+        return sum;
+    }
+
+    // Modulo 1021 sum of the products of the character values and their
+    // corresponding weights, for a window that has passed the format checks
+    static int sum(CharSequence s, int off, int len)
+    {
+        int w = weights.length - len;
+        int sum = 0;
+        for (int i = 0; i < len; i++)
+            sum += cset82value[s.charAt(off + i)] * weights[w + i];
+        return sum % MODULUS;
+    }
+
+    static int sum(char[] s, int off, int len)
+    {
+        int w = weights.length - len;
+        int sum = 0;
+        for (int i = 0; i < len; i++)
+            sum += cset82value[s[off + i]] * weights[w + i];
+        return sum % MODULUS;
+    }
+
+    static int sum(byte[] s, int off, int len)
+    {
+        int w = weights.length - len;
+        int sum = 0;
+        for (int i = 0; i < len; i++)
+            sum += cset82value[s[off + i]] * weights[w + i];
+        return sum % MODULUS;
+    }
+
+    static int sum(ByteBuffer s, int off, int len)
+    {
+        int w = weights.length - len;
+        int sum = 0;
+        for (int i = 0; i < len; i++)
+            sum += cset82value[s.get(off + i)] * weights[w + i];
+        return sum % MODULUS;
+    }
+
+    // Split the 10-bit sum over two five-bit check characters
+    static int writeChecks(int sum, char[] dst, int dstOff)
+    {
+        dst[dstOff] = cset32chars[sum / 32];
+        dst[dstOff + 1] = cset32chars[sum % 32];
+        return dstOff + 2;
+    }
+
+    static String checksString(int sum)
+    {
+        return new String(new char[] { cset32chars[sum / 32], cset32chars[sum % 32] });
+    }
+
+}
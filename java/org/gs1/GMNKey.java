@@ -0,0 +1,543 @@
+package org.gs1;
+
+/**
+ * A complete healthcare GMN packed into a fixed-width, 160-bit binary form,
+ * for use as a compact key in large in-memory sets and sorted files.
+ *
+ * The five leading digits are packed as a 17-bit number, followed by each of
+ * the up to twenty remaining characters as a 7-bit code: one more than its
+ * value in cset82, or zero beyond the end of a shorter healthcare GMN. Since
+ * cset82 is in ASCII order, comparing the packed form as an unsigned number
+ * orders keys exactly as their string forms are ordered. The 160 bits are held
+ * in two longs and an int, i.e. {@link #BYTES} bytes when serialised, compared
+ * with upwards of 70 bytes for an equivalent String.
+ *
+ * A key may hold any healthcare GMN whose format is valid, so that a key with
+ * an incorrect check character pair can be stored and then verified in its
+ * packed form.
+ *
+ * The static methods that operate on the three words of the packed form, and
+ * the bulk codecs, allow large sets of keys to be held in primitive arrays
+ * without any per-key objects.
+ *
+ * Instances are immutable and may be shared by threads.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public final class GMNKey implements Comparable<GMNKey>
+{
+
+    /**
+     * Size of the serialised form of a key in bytes.
+     */
+    public static final int BYTES = 20;
+
+    // Number of characters packed as codes, and the bit offset of the first
+    // code from the most significant bit
+    private static final int CODES = GMNKernel.MAX_LENGTH + 2 - 5;
+    private static final int CODE_OFFSET = 17;
+
+    private static final int[] powersOfTen = { 10000, 1000, 100, 10, 1 };
+
+    private final long high;
+    private final long middle;
+    private final int low;
+
+    private GMNKey(long high, long middle, int low)
+    {
+        this.high = high;
+        this.middle = middle;
+        this.low = low;
+    }
+
+    /**
+     * Pack a healthcare GMN.
+     *
+     * @param gmn a healthcare GMN complete with a check character pair, which need not be correct.
+     * @return the packed key.
+     * @throws GS1Exception if the format of the given healthcare GMN is invalid.
+     */
+    public static GMNKey of(CharSequence gmn)
+        throws GS1Exception
+    {
+        int len = gmn.length();
+        int status = GMNKernel.checkFormat(gmn, 0, len, true);
+        if (status != GMNKernel.OK)
+            throw new GS1Exception(GMNValidationResult.of(status, gmn, 0, len, true));
+
+        long hi = 0, mid = 0, lo = 0;
+        for (int i = 0; i < 5; i++)
+            lo = lo * 10 + gmn.charAt(i) - '0';
+        for (int i = 5; i < 5 + CODES; i++)
+        {
+            int code = i < len ? GMNKernel.cset82(gmn.charAt(i)) + 1 : 0;
+            hi = (hi << 7) | (mid >>> 57);
+            mid = (mid << 7) | (lo >>> 25);
+            lo = ((lo << 7) | code) & 0xFFFFFFFFL;
+        }
+        return pad(hi, mid, lo);
+    }
+
+    /**
+     * Pack a healthcare GMN held within a region of an array of ASCII bytes.
+     *
+     * @param buf a buffer containing a healthcare GMN complete with a check character pair, which need not be correct.
+     * @param off offset of the first byte.
+     * @param len number of bytes.
+     * @return the packed key.
+     * @throws GS1Exception if the format of the given healthcare GMN is invalid.
+     */
+    public static GMNKey of(byte[] buf, int off, int len)
+        throws GS1Exception
+    {
+        int status = GMNKernel.checkFormat(buf, off, len, true);
+        if (status != GMNKernel.OK)
+        {
+            int i = GMNKernel.position(status);
+            throw new GS1Exception(GMNValidationResult.of(status, i < len ? (char) (buf[off + i] & 0xFF) : '\0', true));
+        }
+
+        long hi = 0, mid = 0, lo = 0;
+        for (int i = 0; i < 5; i++)
+            lo = lo * 10 + buf[off + i] - '0';
+        for (int i = 5; i < 5 + CODES; i++)
+        {
+            int code = i < len ? GMNKernel.cset82(buf[off + i]) + 1 : 0;
+            hi = (hi << 7) | (mid >>> 57);
+            mid = (mid << 7) | (lo >>> 25);
+            lo = ((lo << 7) | code) & 0xFFFFFFFFL;
+        }
+        return pad(hi, mid, lo);
+    }
+
+    /**
+     * Recreate a key from its three words, as returned by {@link #getHigh()}, {@link #getMiddle()} and {@link #getLow()}.
+     *
+     * @param high the most significant word.
+     * @param middle the middle word.
+     * @param low the least significant word.
+     * @return the key.
+     * @throws IllegalArgumentException if the words are not the packed form of a healthcare GMN.
+     */
+    public static GMNKey of(long high, long middle, int low)
+    {
+        if (!isWellFormed(high, middle, low))
+            throw new IllegalArgumentException("The words are not a packed healthcare GMN.");
+        return new GMNKey(high, middle, low);
+    }
+
+    /**
+     * Recreate a key from its serialised form.
+     *
+     * @param src a buffer containing a serialised key.
+     * @param off offset of the first byte of the serialised key.
+     * @return the key.
+     * @throws IllegalArgumentException if the bytes are not the packed form of a healthcare GMN.
+     */
+    public static GMNKey fromBytes(byte[] src, int off)
+    {
+        return of(readLong(src, off), readLong(src, off + 8), readInt(src, off + 16));
+    }
+
+    /**
+     * Serialise the key in big-endian order, so that unsigned byte-wise comparison of serialised keys matches their ordering.
+     *
+     * @param dst destination array to receive {@link #BYTES} bytes.
+     * @param off offset in the destination array at which to write.
+     * @return the offset in the destination array immediately following the serialised key.
+     */
+    public int toBytes(byte[] dst, int off)
+    {
+        return write(high, middle, low, dst, off);
+    }
+
+    /**
+     * Serialise the key in big-endian order.
+     *
+     * @return a new array of {@link #BYTES} bytes.
+     */
+    public byte[] toBytes()
+    {
+        byte[] b = new byte[BYTES];
+        toBytes(b, 0);
+        return b;
+    }
+
+    /**
+     * The most significant word of the packed form.
+     *
+     * @return the high word.
+     */
+    public long getHigh()
+    {
+        return high;
+    }
+
+    /**
+     * The middle word of the packed form.
+     *
+     * @return the middle word.
+     */
+    public long getMiddle()
+    {
+        return middle;
+    }
+
+    /**
+     * The least significant word of the packed form.
+     *
+     * @return the low word.
+     */
+    public int getLow()
+    {
+        return low;
+    }
+
+    /**
+     * The length of the healthcare GMN.
+     *
+     * @return the number of characters, including the check character pair.
+     */
+    public int length()
+    {
+        return length(high, middle, low);
+    }
+
+    /**
+     * The character at a position of the healthcare GMN.
+     *
+     * @param i zero-based position.
+     * @return the character.
+     */
+    public char charAt(int i)
+    {
+        if (i < 0 || i >= length())
+            throw new IndexOutOfBoundsException("Position " + i + " is outside of the healthcare GMN.");
+        return charAt(high, middle, low, i);
+    }
+
+    /**
+     * Unpack the healthcare GMN into a caller-supplied array.
+     *
+     * @param dst destination array to receive the characters.
+     * @param off offset in the destination array at which to write.
+     * @return the offset in the destination array immediately following the healthcare GMN.
+     */
+    public int getChars(char[] dst, int off)
+    {
+        return getChars(high, middle, low, dst, off);
+    }
+
+    /**
+     * Unpack the healthcare GMN as ASCII bytes into a caller-supplied array.
+     *
+     * @param dst destination array to receive the bytes.
+     * @param off offset in the destination array at which to write.
+     * @return the offset in the destination array immediately following the healthcare GMN.
+     */
+    public int getBytes(byte[] dst, int off)
+    {
+        return getBytes(high, middle, low, dst, off);
+    }
+
+    /**
+     * Verify that the healthcare GMN has a correct check character pair, without unpacking it.
+     *
+     * @return true if the healthcare GMN has a valid check character pair. Otherwise false.
+     */
+    public boolean verifyCheckCharacters()
+    {
+        return verifyCheckCharacters(high, middle, low);
+    }
+
+    /**
+     * Verify that the healthcare GMN held in the three words of a packed key has a correct check character pair.
+     *
+     * @param high the most significant word.
+     * @param middle the middle word.
+     * @param low the least significant word.
+     * @return true if the healthcare GMN has a valid check character pair. Otherwise false.
+     */
+    public static boolean verifyCheckCharacters(long high, long middle, int low)
+    {
+        int len = length(high, middle, low);
+        int body = len - 2;
+        int digits = (int) (high >>> 47);
+        int sum = 0;
+        for (int i = 0; i < 5; i++)
+            sum += GMNKernel.cset82('0' + digits / powersOfTen[i] % 10) * GMNKernel.weight(body, i);
+        for (int i = 5; i < body; i++)
+            sum += (code(high, middle, low, i - 5) - 1) * GMNKernel.weight(body, i);
+        int c1 = GMNKernel.cset32(GMNKernel.cset82.charAt(code(high, middle, low, body - 5) - 1));
+        int c2 = GMNKernel.cset32(GMNKernel.cset82.charAt(code(high, middle, low, body - 4) - 1));
+        return sum % GMNKernel.MODULUS == c1 * 32 + c2;
+    }
+
+    /**
+     * Pack healthcare GMNs into three parallel arrays of words.
+     *
+     * @param src healthcare GMNs complete with check character pairs.
+     * @param srcOff index of the first healthcare GMN to pack.
+     * @param high destination array of the most significant words.
+     * @param middle destination array of the middle words.
+     * @param low destination array of the least significant words.
+     * @param dstOff index in the destination arrays at which to write.
+     * @param count number of healthcare GMNs to pack.
+     * @throws GS1Exception if the format of any of the healthcare GMNs is invalid.
+     */
+    public static void encode(CharSequence[] src, int srcOff, long[] high, long[] middle, int[] low, int dstOff, int count)
+        throws GS1Exception
+    {
+        for (int i = 0; i < count; i++)
+        {
+            GMNKey k = encode(src, srcOff + i);
+            high[dstOff + i] = k.high;
+            middle[dstOff + i] = k.middle;
+            low[dstOff + i] = k.low;
+        }
+    }
+
+    /**
+     * Unpack healthcare GMNs from three parallel arrays of words.
+     *
+     * @param high source array of the most significant words.
+     * @param middle source array of the middle words.
+     * @param low source array of the least significant words.
+     * @param srcOff index of the first key to unpack.
+     * @param dst destination array to receive the healthcare GMNs.
+     * @param dstOff index in the destination array at which to write.
+     * @param count number of keys to unpack.
+     */
+    public static void decode(long[] high, long[] middle, int[] low, int srcOff, String[] dst, int dstOff, int count)
+    {
+        char[] buf = new char[GMNKernel.MAX_LENGTH + 2];
+        for (int i = 0; i < count; i++)
+        {
+            int len = getChars(high[srcOff + i], middle[srcOff + i], low[srcOff + i], buf, 0);
+            dst[dstOff + i] = new String(buf, 0, len);
+        }
+    }
+
+    /**
+     * Pack healthcare GMNs into consecutive serialised keys of {@link #BYTES} bytes each.
+     *
+     * @param src healthcare GMNs complete with check character pairs.
+     * @param srcOff index of the first healthcare GMN to pack.
+     * @param dst destination array to receive the serialised keys.
+     * @param dstOff offset in the destination array at which to write.
+     * @param count number of healthcare GMNs to pack.
+     * @return the offset in the destination array immediately following the serialised keys.
+     * @throws GS1Exception if the format of any of the healthcare GMNs is invalid.
+     */
+    public static int encode(CharSequence[] src, int srcOff, byte[] dst, int dstOff, int count)
+        throws GS1Exception
+    {
+        for (int i = 0; i < count; i++)
+            dstOff = encode(src, srcOff + i).toBytes(dst, dstOff);
+        return dstOff;
+    }
+
+    /**
+     * Unpack healthcare GMNs from consecutive serialised keys of {@link #BYTES} bytes each.
+     *
+     * @param src source array of serialised keys.
+     * @param srcOff offset of the first serialised key.
+     * @param dst destination array to receive the healthcare GMNs.
+     * @param dstOff index in the destination array at which to write.
+     * @param count number of keys to unpack.
+     * @throws IllegalArgumentException if any of the serialised keys is not the packed form of a healthcare GMN.
+     */
+    public static void decode(byte[] src, int srcOff, String[] dst, int dstOff, int count)
+    {
+        for (int i = 0; i < count; i++)
+            dst[dstOff + i] = fromBytes(src, srcOff + i * BYTES).toString();
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (!(o instanceof GMNKey))
+            return false;
+        GMNKey k = (GMNKey) o;
+        return high == k.high && middle == k.middle && low == k.low;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        long h = high * 0x9E3779B97F4A7C15L + middle;
+        h = h * 0x9E3779B97F4A7C15L + low;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Compare keys in the order of their string forms.
+     */
+    @Override
+    public int compareTo(GMNKey o)
+    {
+        return compare(high, middle, low, o.high, o.middle, o.low);
+    }
+
+    // Compare the packed forms of two keys as unsigned 160-bit numbers
+    static int compare(long high1, long middle1, int low1, long high2, long middle2, int low2)
+    {
+        int c = Long.compareUnsigned(high1, high2);
+        if (c == 0)
+            c = Long.compareUnsigned(middle1, middle2);
+        if (c == 0)
+            c = Integer.compareUnsigned(low1, low2);
+        return c;
+    }
+
+    /**
+     * The healthcare GMN.
+     */
+    @Override
+    public String toString()
+    {
+        char[] buf = new char[GMNKernel.MAX_LENGTH + 2];
+        return new String(buf, 0, getChars(buf, 0));
+    }
+
+    private static GMNKey encode(CharSequence[] src, int i)
+        throws GS1Exception
+    {
+        try
+        {
+            return of(src[i]);
+        }
+        catch (GS1Exception e)
+        {
+            throw new GS1Exception("Healthcare GMN at index " + i + ": ", e);
+        }
+    }
+
+    // Shift the packed digits and codes into the most significant 157 bits
+    private static GMNKey pad(long hi, long mid, long lo)
+    {
+        hi = (hi << 3) | (mid >>> 61);
+        mid = (mid << 3) | (lo >>> 29);
+        lo = (lo << 3) & 0xFFFFFFFFL;
+        return new GMNKey(hi, mid, (int) lo);
+    }
+
+    // Extract a field of up to 32 bits that begins at a bit offset counted
+    // from the most significant bit of the 160-bit packed form
+    private static int bits(long high, long middle, int low, int off, int width)
+    {
+        int end = off + width;
+        long lo = low & 0xFFFFFFFFL;
+        long r;
+        if (end <= 64)
+            r = high >>> (64 - end);
+        else if (off < 64)
+            r = (high << (end - 64)) | (middle >>> (128 - end));
+        else if (end <= 128)
+            r = middle >>> (128 - end);
+        else if (off < 128)
+            r = (middle << (end - 128)) | (lo >>> (160 - end));
+        else
+            r = lo >>> (160 - end);
+        return (int) (r & ((1L << width) - 1));
+    }
+
+    // The code of the kth character following the leading digits
+    private static int code(long high, long middle, int low, int k)
+    {
+        return bits(high, middle, low, CODE_OFFSET + 7 * k, 7);
+    }
+
+    static int length(long high, long middle, int low)
+    {
+        int k = GMNKernel.MIN_LENGTH + 2 - 5;
+        while (k < CODES && code(high, middle, low, k) != 0)
+            k++;
+        return 5 + k;
+    }
+
+    static char charAt(long high, long middle, int low, int i)
+    {
+        if (i < 5)
+            return (char) ('0' + (int) (high >>> 47) / powersOfTen[i] % 10);
+        return GMNKernel.cset82.charAt(code(high, middle, low, i - 5) - 1);
+    }
+
+    private static int getChars(long high, long middle, int low, char[] dst, int off)
+    {
+        int len = length(high, middle, low);
+        for (int i = 0; i < len; i++)
+            dst[off + i] = charAt(high, middle, low, i);
+        return off + len;
+    }
+
+    static int getBytes(long high, long middle, int low, byte[] dst, int off)
+    {
+        int len = length(high, middle, low);
+        for (int i = 0; i < len; i++)
+            dst[off + i] = (byte) charAt(high, middle, low, i);
+        return off + len;
+    }
+
+    // Whether three words could have been produced by packing a healthcare
+    // GMN of valid format
+    private static boolean isWellFormed(long high, long middle, int low)
+    {
+        if ((high >>> 47) > 99999 || (low & 7) != 0)
+            return false;
+        int len = length(high, middle, low);
+        for (int k = 0; k < CODES; k++)
+        {
+            int code = code(high, middle, low, k);
+            if (k < len - 5 ? code == 0 || code > GMNKernel.cset82.length() : code != 0)
+                return false;
+        }
+        for (int i = len - 2; i < len; i++)
+            if (GMNKernel.cset32(charAt(high, middle, low, i)) < 0)
+                return false;
+        return true;
+    }
+
+    private static int write(long high, long middle, int low, byte[] dst, int off)
+    {
+        for (int i = 0; i < 8; i++)
+            dst[off + i] = (byte) (high >>> (56 - 8 * i));
+        for (int i = 0; i < 8; i++)
+            dst[off + 8 + i] = (byte) (middle >>> (56 - 8 * i));
+        for (int i = 0; i < 4; i++)
+            dst[off + 16 + i] = (byte) (low >>> (24 - 8 * i));
+        return off + BYTES;
+    }
+
+    private static long readLong(byte[] src, int off)
+    {
+        long v = 0;
+        for (int i = 0; i < 8; i++)
+            v = (v << 8) | (src[off + i] & 0xFF);
+        return v;
+    }
+
+    private static int readInt(byte[] src, int off)
+    {
+        int v = 0;
+        for (int i = 0; i < 4; i++)
+            v = (v << 8) | (src[off + i] & 0xFF);
+        return v;
+    }
+
+}
@@ -0,0 +1,143 @@
+package org.gs1;
+
+/**
+ * Command-line entry point that verifies or completes the healthcare GMNs
+ * given as its arguments, optimised for short-lived invocations from scripts
+ * and hooks.
+ *
+ * Usage: {@code java -cp HealthcareGMN.jar org.gs1.GMNMain {verify|complete} gmn...}
+ *
+ * With a single healthcare GMN the output is that of the example program,
+ * e.g. {@code The check characters are valid}. With several, each is written
+ * on its own line in the form {@code in : out} used by the example program for
+ * files, so that many can be checked for the cost of starting one JVM. The
+ * exit status is 0 if every input is valid, 1 if any is not, and 2 if the
+ * arguments are incorrect.
+ *
+ * Most of the time of a short run is spent starting the JVM and loading
+ * classes, so the checks are made directly with the primitive routines. Only
+ * the classes that hold the character set tables are initialised, and the
+ * classes that describe a failure are only loaded if one occurs. Startup is
+ * shortened further by a class data sharing archive, which the cds build
+ * profile creates by running this class, used with
+ * {@code -XX:SharedArchiveFile=HealthcareGMN.jsa}.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public final class GMNMain
+{
+
+    /**
+     * Exit status when every input is valid.
+     */
+    public static final int EXIT_VALID = 0;
+
+    /**
+     * Exit status when any input is invalid.
+     */
+    public static final int EXIT_INVALID = 1;
+
+    /**
+     * Exit status when the arguments are incorrect.
+     */
+    public static final int EXIT_USAGE = 2;
+
+    private GMNMain() {}
+
+    public static void main(String[] args)
+    {
+        StringBuilder out = new StringBuilder();
+        StringBuilder err = new StringBuilder();
+        int exit = run(args, out, err);
+        System.out.print(out);
+        System.out.flush();
+        System.err.print(err);
+        System.exit(exit);
+    }
+
+    /**
+     * Verify or complete each healthcare GMN given as an argument.
+     *
+     * @param args the operation, {@code verify} or {@code complete}, followed by one or more healthcare GMNs.
+     * @param out receives the result for each healthcare GMN.
+     * @param err receives the usage message and, for a single healthcare GMN, any error.
+     * @return the exit status.
+     */
+    public static int run(String[] args, StringBuilder out, StringBuilder err)
+    {
+        boolean complete;
+        if (args.length >= 2 && args[0].equals("verify"))
+            complete = true;
+        else if (args.length >= 2 && args[0].equals("complete"))
+            complete = false;
+        else
+        {
+            err.append("Usage: java org.gs1.GMNMain {verify|complete} gmn...").append(System.lineSeparator());
+            return EXIT_USAGE;
+        }
+
+        boolean single = args.length == 2;
+        int exit = EXIT_VALID;
+        for (int i = 1; i < args.length; i++)
+        {
+            String gmn = args[i];
+            int len = gmn.length();
+            int status;
+            int sum = 0;
+            if (complete)
+            {
+                status = GMNPlatform.checkGMN(gmn, 0, len);
+            }
+            else
+            {
+                sum = GMNPlatform.checkSum(gmn, 0, len);
+                status = sum < 0 ? -sum : GMNKernel.OK;
+            }
+            if (status != GMNKernel.OK)
+                exit = EXIT_INVALID;
+
+            boolean mismatch = GMNKernel.code(status) == GMNKernel.CHECK_MISMATCH;
+            if (single && status != GMNKernel.OK && !mismatch)
+            {
+                err.append("Error: ").append(message(status, gmn, complete)).append(System.lineSeparator());
+                continue;
+            }
+
+            if (!single)
+                out.append(gmn).append(" : ");
+            if (status == GMNKernel.OK && !complete)
+                out.append(single ? gmn : "").append(GMNKernel.cset32chars[sum / 32]).append(GMNKernel.cset32chars[sum % 32]);
+            else if (single)
+                out.append(status == GMNKernel.OK ? "The check characters are valid" : "The check characters are NOT valid");
+            else if (status == GMNKernel.OK)
+                out.append("*** Valid ***");
+            else if (mismatch)
+                out.append("*** Not valid ***");
+            else
+                out.append(message(status, gmn, complete));
+            out.append(System.lineSeparator());
+        }
+        return exit;
+    }
+
+    private static String message(int status, String gmn, boolean complete)
+    {
+        return GMNValidationResult.of(status, gmn, 0, gmn.length(), complete).getMessage();
+    }
+
+}
@@ -0,0 +1,437 @@
+package org.gs1;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Runtime metrics for the {@link HealthcareGMN} helper methods.
+ *
+ * Metrics are enabled by starting the JVM with the system property
+ * {@code -Dorg.gs1.gmn.metrics=true}. When enabled, the number of calls to
+ * each method and the number of rejected inputs for each
+ * {@link GMNValidationResult.Reason} are counted, and the latency of one in
+ * every {@code org.gs1.gmn.metrics.sampleInterval} calls (default 64) is
+ * recorded in a histogram with power-of-two buckets. The metrics are
+ * published through the platform MBean server as
+ * {@value #OBJECT_NAME} and may be read programmatically with
+ * {@link #snapshot()}.
+ *
+ * The enablement flag is a constant, so when metrics are disabled the
+ * instrumentation is removed from the compiled helper methods and nothing is
+ * counted or registered.
+ *
+ * Counters are {@link LongAdder}s, which do not contend between threads.
+ * Latency is sampled only for calls that return rather than raise a
+ * {@link GS1Exception}, although such failures are still counted.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public final class GMNMetrics
+{
+
+    /**
+     * The name under which the metrics are registered with the platform MBean server.
+     */
+    public static final String OBJECT_NAME = "org.gs1:type=HealthcareGMNMetrics";
+
+    /**
+     * The public methods of {@link HealthcareGMN}. Overloads are counted together.
+     */
+    public enum Method
+    {
+        CHECK_CHARACTERS("checkCharacters"),
+        CHECK_CHARACTERS_GCP_MODEL("checkCharactersGcpModel"),
+        ADD_CHECK_CHARACTERS("addCheckCharacters"),
+        ADD_CHECK_CHARACTERS_GCP_MODEL("addCheckCharactersGcpModel"),
+        VERIFY_CHECK_CHARACTERS("verifyCheckCharacters"),
+        VERIFY_CHECK_CHARACTERS_GCP_MODEL_CHECKS("verifyCheckCharactersGcpModelChecks"),
+        VALIDATE("validate"),
+        VALIDATE_PARTIAL("validatePartial"),
+        VALIDATE_GCP_MODEL_CHECKS("validateGcpModelChecks"),
+        VALIDATE_GCP_MODEL("validateGcpModel"),
+        SUGGEST_CORRECTIONS("suggestCorrections"),
+        GOOD_CHARACTER_POSITIONS("goodCharacterPositions"),
+        GOOD_CHARACTER_POSITIONS_GCP_MODEL_CHECKS("goodCharacterPositionsGcpModelChecks"),
+        GOOD_CHARACTER_POSITIONS_GCP_MODEL("goodCharacterPositionsGcpModel");
+
+        private final String methodName;
+
+        Method(String methodName)
+        {
+            this.methodName = methodName;
+        }
+
+        /**
+         * The name of the method in {@link HealthcareGMN}.
+         *
+         * @return the method name.
+         */
+        public String getMethodName()
+        {
+            return methodName;
+        }
+    }
+
+    /**
+     * Number of latency histogram buckets. Bucket {@code i} counts latencies
+     * below {@code 2^i} nanoseconds and, other than bucket zero, of at least
+     * {@code 2^(i-1)} nanoseconds.
+     */
+    public static final int BUCKETS = 40;
+
+    // Read once so that the instrumentation is constant folded
+    static final boolean ENABLED = Boolean.getBoolean("org.gs1.gmn.metrics");
+    static final int SAMPLE_INTERVAL = Math.max(1, Integer.getInteger("org.gs1.gmn.metrics.sampleInterval", 64));
+
+    private static final Method[] methods = Method.values();
+    private static final GMNValidationResult.Reason[] reasons = GMNValidationResult.Reason.byCode;
+
+    private static final LongAdder[] calls = new LongAdder[methods.length];
+    private static final LongAdder[] failures = new LongAdder[reasons.length];
+    private static final LongAdder[][] latency = new LongAdder[methods.length][BUCKETS];
+
+    static
+    {
+        if (ENABLED)
+        {
+            for (int i = 0; i < methods.length; i++)
+            {
+                calls[i] = new LongAdder();
+                for (int j = 0; j < BUCKETS; j++)
+                    latency[i][j] = new LongAdder();
+            }
+            for (int i = 0; i < reasons.length; i++)
+                failures[i] = new LongAdder();
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+            }
+            catch (JMException | SecurityException e)
+            {
+                // Another copy of the library has registered already, or
+                // registration is not permitted. The snapshot API still works.
+            }
+        }
+    }
+
+    private GMNMetrics() {}
+
+    /**
+     * Indicate whether metrics were enabled when the JVM started.
+     *
+     * @return true if metrics are being recorded. Otherwise false.
+     */
+    public static boolean isEnabled()
+    {
+        return ENABLED;
+    }
+
+    /**
+     * Take a consistent-enough copy of the current counts. Counters that are
+     * updated while the snapshot is taken may or may not be included.
+     *
+     * @return a snapshot of the metrics, all zero if metrics are disabled.
+     */
+    public static Snapshot snapshot()
+    {
+        long[] c = new long[methods.length];
+        long[] f = new long[reasons.length];
+        long[][] l = new long[methods.length][BUCKETS];
+        if (ENABLED)
+        {
+            for (int i = 0; i < methods.length; i++)
+            {
+                c[i] = calls[i].sum();
+                for (int j = 0; j < BUCKETS; j++)
+                    l[i][j] = latency[i][j].sum();
+            }
+            for (int i = 0; i < reasons.length; i++)
+                f[i] = failures[i].sum();
+        }
+        return new Snapshot(c, f, l);
+    }
+
+    /**
+     * Reset all counters to zero.
+     */
+    public static void reset()
+    {
+        if (!ENABLED)
+            return;
+        for (int i = 0; i < methods.length; i++)
+        {
+            calls[i].reset();
+            for (int j = 0; j < BUCKETS; j++)
+                latency[i][j].reset();
+        }
+        for (int i = 0; i < reasons.length; i++)
+            failures[i].reset();
+    }
+
+    // Count a call and return the start time if the call is sampled, or zero.
+    // Callers guard every use with ENABLED.
+    static long enter(Method m)
+    {
+        calls[m.ordinal()].increment();
+        if (SAMPLE_INTERVAL == 1 || ThreadLocalRandom.current().nextInt(SAMPLE_INTERVAL) == 0)
+        {
+            long start = System.nanoTime();
+            return start != 0 ? start : 1;
+        }
+        return 0;
+    }
+
+    // Record the latency of a sampled call and count a failing GMNKernel status
+    static void exit(Method m, long start, int status)
+    {
+        if (start != 0)
+        {
+            long nanos = Math.max(0, System.nanoTime() - start);
+            latency[m.ordinal()][Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos))].increment();
+        }
+        failure(status);
+    }
+
+    // Count a failing GMNKernel status
+    static void failure(int status)
+    {
+        if (status != GMNKernel.OK)
+            failures[GMNKernel.code(status)].increment();
+    }
+
+    /**
+     * An immutable copy of the metrics at a point in time.
+     */
+    public static final class Snapshot
+    {
+
+        private final long[] calls;
+        private final long[] failures;
+        private final long[][] latency;
+
+        Snapshot(long[] calls, long[] failures, long[][] latency)
+        {
+            this.calls = calls;
+            this.failures = failures;
+            this.latency = latency;
+        }
+
+        /**
+         * The number of calls to a method, across all of its overloads.
+         *
+         * @param method a method of {@link HealthcareGMN}.
+         * @return the call count.
+         */
+        public long getCalls(Method method)
+        {
+            return calls[method.ordinal()];
+        }
+
+        /**
+         * The number of calls to all methods.
+         *
+         * @return the total call count.
+         */
+        public long getTotalCalls()
+        {
+            long n = 0;
+            for (long c : calls)
+                n += c;
+            return n;
+        }
+
+        /**
+         * The number of calls that rejected their input for a given reason,
+         * either by raising a {@link GS1Exception}, by returning false from a
+         * verify method or by returning an invalid {@link GMNValidationResult}.
+         *
+         * @param reason the reason for rejection.
+         * @return the failure count, which is zero for {@link GMNValidationResult.Reason#VALID}.
+         */
+        public long getFailures(GMNValidationResult.Reason reason)
+        {
+            return failures[reason.ordinal()];
+        }
+
+        /**
+         * The number of calls that rejected their input for any reason.
+         *
+         * @return the total failure count.
+         */
+        public long getTotalFailures()
+        {
+            long n = 0;
+            for (long f : failures)
+                n += f;
+            return n;
+        }
+
+        /**
+         * The latency histogram of the sampled calls to a method.
+         *
+         * @param method a method of {@link HealthcareGMN}.
+         * @return a copy of the {@link GMNMetrics#BUCKETS} bucket counts.
+         */
+        public long[] getLatencyHistogram(Method method)
+        {
+            return latency[method.ordinal()].clone();
+        }
+
+        /**
+         * The number of calls to a method whose latency was sampled.
+         *
+         * @param method a method of {@link HealthcareGMN}.
+         * @return the sample count.
+         */
+        public long getSamples(Method method)
+        {
+            long n = 0;
+            for (long b : latency[method.ordinal()])
+                n += b;
+            return n;
+        }
+
+        /**
+         * Estimate a latency percentile of a method from its histogram.
+         *
+         * @param method a method of {@link HealthcareGMN}.
+         * @param percentile the percentile, between 0 and 100.
+         * @return the upper bound in nanoseconds of the bucket containing the percentile, or zero if there are no samples.
+         */
+        public long getLatencyPercentile(Method method, double percentile)
+        {
+            if (percentile < 0 || percentile > 100)
+                throw new IllegalArgumentException("The percentile must be between 0 and 100.");
+            long[] h = latency[method.ordinal()];
+            long samples = getSamples(method);
+            if (samples == 0)
+                return 0;
+            long rank = Math.max(1, (long) Math.ceil(samples * percentile / 100));
+            long n = 0;
+            for (int i = 0; i < h.length; i++)
+            {
+                n += h[i];
+                if (n >= rank)
+                    return 1L << i;
+            }
+            return 1L << (h.length - 1);
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder sb = new StringBuilder();
+            for (Method m : methods)
+            {
+                long c = getCalls(m);
+                if (c == 0)
+                    continue;
+                sb.append(m.getMethodName()).append(": calls=").append(c);
+                if (getSamples(m) != 0)
+                    sb.append(", p50<").append(getLatencyPercentile(m, 50)).append("ns")
+                      .append(", p99<").append(getLatencyPercentile(m, 99)).append("ns");
+                sb.append(System.lineSeparator());
+            }
+            for (GMNValidationResult.Reason r : reasons)
+            {
+                long f = getFailures(r);
+                if (f != 0)
+                    sb.append(r.name()).append(": ").append(f).append(System.lineSeparator());
+            }
+            return sb.toString();
+        }
+
+    }
+
+    // The platform MBean, which reads a fresh snapshot for each attribute
+    private static final class Bean implements GMNMetricsMXBean
+    {
+
+        @Override
+        public Map<String, Long> getCallCounts()
+        {
+            Snapshot s = snapshot();
+            Map<String, Long> out = new LinkedHashMap<String, Long>();
+            for (Method m : methods)
+                out.put(m.getMethodName(), s.getCalls(m));
+            return Collections.unmodifiableMap(out);
+        }
+
+        @Override
+        public Map<String, Long> getFailureCounts()
+        {
+            Snapshot s = snapshot();
+            Map<String, Long> out = new LinkedHashMap<String, Long>();
+            for (GMNValidationResult.Reason r : reasons)
+                if (r != GMNValidationResult.Reason.VALID)
+                    out.put(r.name(), s.getFailures(r));
+            return Collections.unmodifiableMap(out);
+        }
+
+        @Override
+        public Map<String, Long> getSampleCounts()
+        {
+            Snapshot s = snapshot();
+            Map<String, Long> out = new LinkedHashMap<String, Long>();
+            for (Method m : methods)
+                out.put(m.getMethodName(), s.getSamples(m));
+            return Collections.unmodifiableMap(out);
+        }
+
+        @Override
+        public Map<String, Long> getMedianLatencyNanos()
+        {
+            return percentiles(50);
+        }
+
+        @Override
+        public Map<String, Long> getP99LatencyNanos()
+        {
+            return percentiles(99);
+        }
+
+        @Override
+        public int getSampleInterval()
+        {
+            return SAMPLE_INTERVAL;
+        }
+
+        @Override
+        public void reset()
+        {
+            GMNMetrics.reset();
+        }
+
+        private Map<String, Long> percentiles(double percentile)
+        {
+            Snapshot s = snapshot();
+            Map<String, Long> out = new LinkedHashMap<String, Long>();
+            for (Method m : methods)
+                out.put(m.getMethodName(), s.getLatencyPercentile(m, percentile));
+            return Collections.unmodifiableMap(out);
+        }
+
+    }
+
+}
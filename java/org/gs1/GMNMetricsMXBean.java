@@ -0,0 +1,80 @@
+package org.gs1;
+
+import java.util.Map;
+
+/**
+ * Management interface through which {@link GMNMetrics} are published to the
+ * platform MBean server under the name {@value GMNMetrics#OBJECT_NAME}.
+ *
+ * Maps are keyed by the name of the {@link HealthcareGMN} method or of the
+ * {@link GMNValidationResult.Reason} for a failure. Latencies are estimated
+ * from the sampled calls to a power-of-two number of nanoseconds.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public interface GMNMetricsMXBean
+{
+
+    /**
+     * The number of calls to each method.
+     *
+     * @return call counts by method name.
+     */
+    Map<String, Long> getCallCounts();
+
+    /**
+     * The number of calls that rejected their input, for each reason.
+     *
+     * @return failure counts by reason.
+     */
+    Map<String, Long> getFailureCounts();
+
+    /**
+     * The number of calls whose latency was sampled, for each method.
+     *
+     * @return sample counts by method name.
+     */
+    Map<String, Long> getSampleCounts();
+
+    /**
+     * The estimated median latency of each method.
+     *
+     * @return median latency in nanoseconds by method name.
+     */
+    Map<String, Long> getMedianLatencyNanos();
+
+    /**
+     * The estimated 99th percentile latency of each method.
+     *
+     * @return 99th percentile latency in nanoseconds by method name.
+     */
+    Map<String, Long> getP99LatencyNanos();
+
+    /**
+     * The interval at which calls are sampled for latency.
+     *
+     * @return one in how many calls is timed.
+     */
+    int getSampleInterval();
+
+    /**
+     * Reset all counters to zero.
+     */
+    void reset();
+
+}
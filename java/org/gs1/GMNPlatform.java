@@ -0,0 +1,95 @@
+package org.gs1;
+
+/**
+ * Hot-path checks of the {@link HealthcareGMN} API whose best implementation
+ * depends on the Java release.
+ *
+ * This is the Java 8 implementation, which delegates to the scalar routines
+ * of {@link GMNKernel}. The multi-release jar contains a replacement in
+ * {@code META-INF/versions/21} that Java 21 and later load instead. Both
+ * implementations return identical statuses for every input.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+final class GMNPlatform
+{
+
+    /**
+     * Identifies the implementation in use, so that tests can confirm which
+     * code path they exercised.
+     */
+    static final String IMPLEMENTATION = "java8";
+
+    /**
+     * Longest window that can be classified as a bitmask of positions.
+     */
+    static final int MAX_MASK_LENGTH = 64;
+
+    private GMNPlatform() {}
+
+    // Format check a window of a complete GMN and compare its check character
+    // pair against the recalculated pair
+    static int checkGMN(CharSequence s, int off, int len)
+    {
+        return GMNKernel.checkGMN(s, off, len);
+    }
+
+    static int checkGMN(char[] s, int off, int len)
+    {
+        return GMNKernel.checkGMN(s, off, len);
+    }
+
+    // Perform local consistency checks on a window of a partial or complete GMN
+    static int checkFormat(CharSequence s, int off, int len, boolean complete)
+    {
+        return GMNKernel.checkFormat(s, off, len, complete);
+    }
+
+    static int checkFormat(char[] s, int off, int len, boolean complete)
+    {
+        return GMNKernel.checkFormat(s, off, len, complete);
+    }
+
+    // Format check a window of a partial GMN and return its modulo sum, or
+    // the negated status if the format check fails
+    static int checkSum(CharSequence s, int off, int len)
+    {
+        int status = GMNKernel.checkFormat(s, off, len, false);
+        return status != GMNKernel.OK ? -status : GMNKernel.sum(s, off, len);
+    }
+
+    static int checkSum(char[] s, int off, int len)
+    {
+        int status = GMNKernel.checkFormat(s, off, len, false);
+        return status != GMNKernel.OK ? -status : GMNKernel.sum(s, off, len);
+    }
+
+    // Format check a window of ASCII bytes, e.g. a row of a packed batch
+    static int checkFormat(byte[] s, int off, int len, boolean complete)
+    {
+        return GMNKernel.checkFormat(s, off, len, complete);
+    }
+
+    // Bitmask of the positions of a window, of at most MAX_MASK_LENGTH
+    // characters, that are outside of the character set for their position
+    static long badPositions(CharSequence s, int off, int len, boolean complete)
+    {
+        return GMNKernel.badPositions(s, off, len, complete);
+    }
+
+}
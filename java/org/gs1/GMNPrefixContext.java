@@ -0,0 +1,220 @@
+package org.gs1;
+
+/**
+ * A GS1 Company Prefix that is prepared for calculating and verifying the check
+ * character pairs of many healthcare GMNs that share it.
+ *
+ * Since the weights are aligned to the rightmost character, the contribution
+ * of the GS1 Company Prefix to the weighted sum depends only on the prefix and
+ * the overall length of the GMN. A context validates the prefix once and
+ * calculates its contribution for every possible length up front, so that each
+ * subsequent operation only processes the model reference.
+ *
+ * The methods produce the same results, and raise the same exceptions, as the
+ * GS1 Company Prefix and model reference variants of the methods of
+ * {@link HealthcareGMN}.
+ *
+ * Instances are immutable and may be shared by threads.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public final class GMNPrefixContext
+{
+
+    private final String gcp;
+
+    // Outcome of the checks on the GS1 Company Prefix, which are separated by
+    // the check on the model reference length
+    private final int lengthStatus;
+    private final int digitsStatus;
+
+    // Weighted sum of the GS1 Company Prefix for each overall length of a
+    // partial GMN, without modulo reduction
+    private final int[] prefixSums = new int[GMNKernel.MAX_LENGTH + 1];
+
+    /**
+     * Prepare a GS1 Company Prefix.
+     *
+     * An invalid GS1 Company Prefix is accepted, in which case every operation
+     * reports the problem with it.
+     *
+     * @param gcp a GS1 Company Prefix.
+     */
+    public GMNPrefixContext(String gcp)
+    {
+        this.gcp = gcp;
+        lengthStatus = GMNKernel.checkGcpLength(gcp);
+        digitsStatus = GMNKernel.checkGcpDigits(gcp);
+        if (lengthStatus == GMNKernel.OK && digitsStatus == GMNKernel.OK)
+            for (int len = gcp.length() + 1; len <= GMNKernel.MAX_LENGTH; len++)
+                prefixSums[len] = GMNKernel.weightedSum(gcp, 0, gcp.length(), GMNKernel.weights.length - len);
+    }
+
+    /**
+     * The GS1 Company Prefix.
+     *
+     * @return the GS1 Company Prefix.
+     */
+    public String getGcp()
+    {
+        return gcp;
+    }
+
+    /**
+     * The outcome of validating the GS1 Company Prefix on its own.
+     *
+     * @return the validation result, which describes the problem with the GS1 Company Prefix if it is invalid.
+     */
+    public GMNValidationResult getValidation()
+    {
+        int status = lengthStatus != GMNKernel.OK ? lengthStatus : digitsStatus;
+        return GMNValidationResult.of(status, gcp, "", null);
+    }
+
+    /**
+     * Calculates the check character pair for a partial healthcare GMN formed from this GS1 Company Prefix and a given model reference.
+     *
+     * @param model a model reference.
+     * @return check character pair.
+     * @throws GS1Exception if the format of the resulting healthcare GMN is invalid.
+     */
+    public String checkCharacters(CharSequence model)
+        throws GS1Exception
+    {
+        return GMNKernel.checksString(checkSum(model));
+    }
+
+    /**
+     * Calculates the check character pair for a partial healthcare GMN formed from this GS1 Company Prefix and a given model reference, writing it into a caller-supplied array without allocating.
+     *
+     * @param model a model reference.
+     * @param dst destination array to receive the two check characters.
+     * @param dstOff offset in the destination array at which to write the check characters.
+     * @return the offset in the destination array immediately following the check characters.
+     * @throws GS1Exception if the format of the resulting healthcare GMN is invalid.
+     */
+    public int checkCharacters(CharSequence model, char[] dst, int dstOff)
+        throws GS1Exception
+    {
+        return GMNKernel.writeChecks(checkSum(model), dst, dstOff);
+    }
+
+    /**
+     * Complete a partial healthcare GMN formed from this GS1 Company Prefix and a given model reference by appending the check character pair.
+     *
+     * @param model a model reference.
+     * @return a complete healthcare GMN including the check character pair.
+     * @throws GS1Exception if the format of the resulting healthcare GMN is invalid.
+     */
+    public String addCheckCharacters(CharSequence model)
+        throws GS1Exception
+    {
+        int sum = checkSum(model);
+        int gcpLen = gcp.length();
+        int modelLen = model.length();
+        char[] out = new char[gcpLen + modelLen + 2];
+        gcp.getChars(0, gcpLen, out, 0);
+        for (int i = 0; i < modelLen; i++)
+            out[gcpLen + i] = model.charAt(i);
+        GMNKernel.writeChecks(sum, out, gcpLen + modelLen);
+        return new String(out);
+    }
+
+    /**
+     * Verify that a healthcare GMN formed from this GS1 Company Prefix, a given model reference and given check characters has a correct check character pair.
+     *
+     * @param model a model reference.
+     * @param checks a check character pair.
+     * @return true if the healthcare GMN has a valid check character pair. Otherwise false.
+     * @throws GS1Exception if the format of the healthcare GMN is invalid.
+     */
+    public boolean verifyCheckCharacters(CharSequence model, CharSequence checks)
+        throws GS1Exception
+    {
+        int status = status(model, checks);
+        if (GMNKernel.code(status) == GMNKernel.CHECK_MISMATCH)
+            return false;
+        if (status != GMNKernel.OK)
+            throw new GS1Exception(GMNValidationResult.of(status, gcp, model, checks));
+        return true;
+    }
+
+    /**
+     * Validate a healthcare GMN formed from this GS1 Company Prefix, a given model reference and given check characters, without raising an exception.
+     *
+     * @param model a model reference.
+     * @param checks a check character pair.
+     * @return the validation result. Positions are relative to the concatenated components.
+     */
+    public GMNValidationResult validate(CharSequence model, CharSequence checks)
+    {
+        return GMNValidationResult.of(status(model, checks), gcp, model, checks);
+    }
+
+    /**
+     * Validate the format of a partial healthcare GMN formed from this GS1 Company Prefix and a given model reference, without raising an exception.
+     *
+     * @param model a model reference.
+     * @return the validation result. Positions are relative to the concatenated components.
+     */
+    public GMNValidationResult validatePartial(CharSequence model)
+    {
+        return GMNValidationResult.of(formatStatus(model, null), gcp, model, null);
+    }
+
+    // Format check against the cached outcome of the GS1 Company Prefix checks
+    private int formatStatus(CharSequence model, CharSequence checks)
+    {
+        if (lengthStatus != GMNKernel.OK)
+            return lengthStatus;
+        if (model.length() < 1)
+            return GMNKernel.status(GMNKernel.MODEL_EMPTY, gcp.length());
+        if (digitsStatus != GMNKernel.OK)
+            return digitsStatus;
+        return GMNKernel.checkFormatModelChecks(gcp.length(), model, checks);
+    }
+
+    // Modulo 1021 weighted sum of a partial GMN formed with a model reference
+    // that has passed the format checks
+    private int sum(CharSequence model)
+    {
+        int modelLen = model.length();
+        int len = gcp.length() + modelLen;
+        return (prefixSums[len] + GMNKernel.weightedSum(model, 0, modelLen, GMNKernel.weights.length - modelLen)) % GMNKernel.MODULUS;
+    }
+
+    private int checkSum(CharSequence model)
+        throws GS1Exception
+    {
+        int status = formatStatus(model, null);
+        if (status != GMNKernel.OK)
+            throw new GS1Exception(GMNValidationResult.of(status, gcp, model, null));
+        return sum(model);
+    }
+
+    private int status(CharSequence model, CharSequence checks)
+    {
+        int status = formatStatus(model, checks);
+        if (status != GMNKernel.OK)
+            return status;
+        if (sum(model) != GMNKernel.checkValue(checks.charAt(0), checks.charAt(1)))
+            return GMNKernel.status(GMNKernel.CHECK_MISMATCH, gcp.length() + model.length());
+        return GMNKernel.OK;
+    }
+
+}
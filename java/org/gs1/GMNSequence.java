@@ -0,0 +1,294 @@
+package org.gs1;
+
+import java.util.Arrays;
+
+/**
+ * Generates complete healthcare GMNs for a range of sequential model
+ * references under one GS1 Company Prefix, e.g. {@code ABC0001} to
+ * {@code ABC9999}.
+ *
+ * Each model reference is a fixed prefix followed by a counter of a fixed
+ * width whose positions take their characters from a given alphabet, rolling
+ * over from the rightmost position like an odometer. Since the weighted sum is
+ * linear modulo 1021, advancing the counter changes the sum by a known amount
+ * for each position that changes. The sum is therefore updated incrementally,
+ * and each healthcare GMN is written into a reusable buffer without rescanning
+ * or allocating.
+ *
+ * A sequence is a cursor: call {@link #next()} to advance to each healthcare
+ * GMN in turn, then read it from {@link #buffer()}. A range can be divided
+ * with {@link #split(int)} into independent sequences that may be run on
+ * separate threads. A single sequence is not safe for use by multiple
+ * concurrent threads.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public final class GMNSequence
+{
+
+    private final String gcp;
+    private final String modelPrefix;
+    private final String alphabet;
+    private final int width;
+    private final long from;
+    private final long to;
+
+    // Offset of the counter within the buffer
+    private final int counterOff;
+
+    // Per counter position (leftmost first): change in the sum when the
+    // character at that position advances from digit d to d + 1, and when it
+    // wraps from the last digit back to the first, modulo 1021
+    private final int[][] stepDelta;
+    private final int[] wrapDelta;
+
+    private final char[] buf;
+    private final int[] digits;
+    private int sum;
+    private long index;
+
+    /**
+     * Create a sequence of the healthcare GMNs whose counter takes each value in a range.
+     *
+     * @param gcp a GS1 Company Prefix.
+     * @param modelPrefix the fixed characters at the start of each model reference, possibly empty.
+     * @param alphabet the distinct cset82 characters taken by each counter position, in increasing order.
+     * @param width the number of counter positions at the end of each model reference.
+     * @param from the first counter value, inclusive.
+     * @param to the last counter value, exclusive.
+     * @throws GS1Exception if the format of the resulting healthcare GMNs is invalid.
+     * @throws IllegalArgumentException if the alphabet or range is invalid.
+     */
+    public GMNSequence(String gcp, String modelPrefix, String alphabet, int width, long from, long to)
+        throws GS1Exception
+    {
+        if (alphabet.isEmpty())
+            throw new IllegalArgumentException("The alphabet must contain at least one character.");
+        for (int i = 0; i < alphabet.length(); i++)
+        {
+            if (GMNKernel.cset82(alphabet.charAt(i)) < 0)
+                throw new IllegalArgumentException("The alphabet contains a character outside of cset82: " + alphabet.charAt(i));
+            if (i > 0 && alphabet.charAt(i) == alphabet.charAt(i - 1))
+                throw new IllegalArgumentException("The alphabet contains a repeated character: " + alphabet.charAt(i));
+            if (i > 0 && alphabet.charAt(i) < alphabet.charAt(i - 1))
+                throw new IllegalArgumentException("The alphabet is not in increasing order at: " + alphabet.charAt(i));
+        }
+        if (width < 1)
+            throw new IllegalArgumentException("The counter width must be at least 1.");
+        if (from < 0 || to < from || to > capacity(alphabet.length(), width))
+            throw new IllegalArgumentException("The range " + from + " to " + to + " does not fit a counter of width " + width + ".");
+
+        // Validate the format using the first model reference
+        char[] model = new char[modelPrefix.length() + width];
+        modelPrefix.getChars(0, modelPrefix.length(), model, 0);
+        Arrays.fill(model, modelPrefix.length(), model.length, alphabet.charAt(0));
+        GMNValidationResult result = HealthcareGMN.validateGcpModel(gcp, new String(model));
+        if (!result.isValid())
+            throw new GS1Exception(result);
+
+        this.gcp = gcp;
+        this.modelPrefix = modelPrefix;
+        this.alphabet = alphabet;
+        this.width = width;
+        this.from = from;
+        this.to = to;
+
+        int len = gcp.length() + model.length;
+        counterOff = len - width;
+        buf = new char[len + 2];
+        gcp.getChars(0, gcp.length(), buf, 0);
+        modelPrefix.getChars(0, modelPrefix.length(), buf, gcp.length());
+        digits = new int[width];
+
+        int k = alphabet.length();
+        stepDelta = new int[width][k];
+        wrapDelta = new int[width];
+        for (int p = 0; p < width; p++)
+        {
+            int w = GMNKernel.weight(len, counterOff + p);
+            for (int d = 0; d + 1 < k; d++)
+                stepDelta[p][d] = mod((GMNKernel.cset82(alphabet.charAt(d + 1)) - GMNKernel.cset82(alphabet.charAt(d))) * w);
+            wrapDelta[p] = mod((GMNKernel.cset82(alphabet.charAt(0)) - GMNKernel.cset82(alphabet.charAt(k - 1))) * w);
+        }
+
+        index = from - 1;
+    }
+
+    /**
+     * The number of distinct values of a counter, or {@link Long#MAX_VALUE} if it exceeds the range of a long.
+     *
+     * @param alphabetSize the number of characters taken by each counter position.
+     * @param width the number of counter positions.
+     * @return the number of counter values.
+     */
+    public static long capacity(int alphabetSize, int width)
+    {
+        long n = 1;
+        for (int i = 0; i < width; i++)
+        {
+            if (n > Long.MAX_VALUE / alphabetSize)
+                return Long.MAX_VALUE;
+            n *= alphabetSize;
+        }
+        return n;
+    }
+
+    /**
+     * Advance to the next healthcare GMN in the sequence.
+     *
+     * @return true if the sequence has advanced. Otherwise false, if the sequence is exhausted.
+     */
+    public boolean next()
+    {
+        if (index + 1 >= to)
+            return false;
+        if (++index == from)
+        {
+            seek(from);
+        }
+        else
+        {
+            // Advance the counter from the rightmost position, applying the
+            // change of each position to the sum
+            int k = alphabet.length();
+            for (int p = width - 1; p >= 0; p--)
+            {
+                int d = digits[p];
+                if (d + 1 < k)
+                {
+                    digits[p] = d + 1;
+                    buf[counterOff + p] = alphabet.charAt(d + 1);
+                    sum = addMod(sum, stepDelta[p][d]);
+                    break;
+                }
+                digits[p] = 0;
+                buf[counterOff + p] = alphabet.charAt(0);
+                sum = addMod(sum, wrapDelta[p]);
+            }
+        }
+        GMNKernel.writeChecks(sum, buf, buf.length - 2);
+        return true;
+    }
+
+    /**
+     * The buffer holding the current healthcare GMN, complete with its check character pair.
+     *
+     * The buffer is overwritten by each call to {@link #next()} and its length equals {@link #length()}.
+     *
+     * @return the reusable buffer.
+     */
+    public char[] buffer()
+    {
+        return buf;
+    }
+
+    /**
+     * The length of each healthcare GMN in the sequence, including the check character pair.
+     *
+     * @return the length in characters.
+     */
+    public int length()
+    {
+        return buf.length;
+    }
+
+    /**
+     * The current healthcare GMN.
+     *
+     * @return a copy of the current healthcare GMN.
+     * @throws IllegalStateException if {@link #next()} has not yet returned true.
+     */
+    public String current()
+    {
+        if (index < from)
+            throw new IllegalStateException("The sequence has not been advanced to its first healthcare GMN.");
+        return new String(buf);
+    }
+
+    /**
+     * The counter value of the current healthcare GMN.
+     *
+     * @return the counter value, which is one less than the first value if the sequence has not yet been advanced.
+     */
+    public long index()
+    {
+        return index;
+    }
+
+    /**
+     * Divide the remaining range of this sequence into contiguous, independent sequences of near equal size.
+     *
+     * Each returned sequence has its own buffer, so they may be advanced on separate threads.
+     *
+     * @param parts the maximum number of sequences.
+     * @return the sequences, in counter order.
+     */
+    public GMNSequence[] split(int parts)
+    {
+        if (parts < 1)
+            throw new IllegalArgumentException("The number of parts must be at least 1.");
+        long start = index + 1 < from ? from : index + 1;
+        long remaining = to - start;
+        int n = (int) Math.max(1, Math.min(parts, remaining));
+        GMNSequence[] out = new GMNSequence[n];
+        for (int i = 0; i < n; i++)
+        {
+            // The first remaining % n parts take one extra value, which
+            // avoids the overflow of remaining * i for a large range
+            long a = start + (remaining / n) * i + Math.min(i, remaining % n);
+            long b = start + (remaining / n) * (i + 1) + Math.min(i + 1, remaining % n);
+            try
+            {
+                out[i] = new GMNSequence(gcp, modelPrefix, alphabet, width, a, b);
+            }
+            catch (GS1Exception e)
+            {
+                // The format was validated when this sequence was created
+                throw new IllegalStateException(e);
+            }
+        }
+        return out;
+    }
+
+    // Position the counter at a value and calculate the sum from scratch
+    private void seek(long value)
+    {
+        int k = alphabet.length();
+        for (int p = width - 1; p >= 0; p--)
+        {
+            int d = (int) (value % k);
+            value /= k;
+            digits[p] = d;
+            buf[counterOff + p] = alphabet.charAt(d);
+        }
+        sum = GMNKernel.sum(buf, 0, buf.length - 2);
+    }
+
+    private static int mod(int v)
+    {
+        v %= GMNKernel.MODULUS;
+        return v < 0 ? v + GMNKernel.MODULUS : v;
+    }
+
+    private static int addMod(int sum, int delta)
+    {
+        sum += delta;
+        return sum >= GMNKernel.MODULUS ? sum - GMNKernel.MODULUS : sum;
+    }
+
+}
@@ -0,0 +1,208 @@
+package org.gs1;
+
+/**
+ * Outcome of validating a full or partial healthcare GMN without raising an
+ * exception.
+ *
+ * A result records why the input was rejected and the position of the
+ * offending character. The human-readable message is only built when it is
+ * requested, so rejecting malformed input is inexpensive. All successful
+ * validations share the {@link #VALID} instance.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public final class GMNValidationResult
+{
+
+    /**
+     * Reason for which a healthcare GMN is accepted or rejected.
+     */
+    public enum Reason
+    {
+        /** The input is valid. */
+        VALID,
+        /** The input is shorter than the minimum length. */
+        TOO_SHORT,
+        /** The input is longer than the maximum length. */
+        TOO_LONG,
+        /** The GS1 Company Prefix contains a character that is not a digit. */
+        GCP_NOT_NUMERIC,
+        /** A data character is outside of the encodable character set 82. */
+        INVALID_CHARACTER,
+        /** A check character is outside of the check character set 32. */
+        INVALID_CHECK_CHARACTER,
+        /** The check character pair does not match the data characters. */
+        CHECK_MISMATCH,
+        /** The GS1 Company Prefix component is shorter than 5 digits. */
+        GCP_TOO_SHORT,
+        /** The GS1 Company Prefix component is longer than 12 digits. */
+        GCP_TOO_LONG,
+        /** The model reference component is empty. */
+        MODEL_EMPTY,
+        /** The check character component is not 2 characters long. */
+        CHECK_WRONG_LENGTH;
+
+        // Shared copy of values() for lookup by status code
+        static final Reason[] byCode = values();
+    }
+
+    /**
+     * The result of a successful validation.
+     */
+    public static final GMNValidationResult VALID =
+        new GMNValidationResult(Reason.VALID, 0, '\0', false, false);
+
+    private final Reason reason;
+    private final int position;
+    private final char character;
+    private final boolean complete;
+    private final boolean components;
+
+    private GMNValidationResult(Reason reason, int position, char character, boolean complete, boolean components)
+    {
+        this.reason = reason;
+        this.position = position;
+        this.character = character;
+        this.complete = complete;
+        this.components = components;
+    }
+
+    // Create a result from a GMNKernel status and the offending character
+    static GMNValidationResult of(int status, char character, boolean complete)
+    {
+        if (status == GMNKernel.OK)
+            return VALID;
+        return new GMNValidationResult(Reason.byCode[GMNKernel.code(status)], GMNKernel.position(status), character, complete, false);
+    }
+
+    // Create a result from a GMNKernel status for the given input
+    static GMNValidationResult of(int status, CharSequence input, int off, int len, boolean complete)
+    {
+        int i = GMNKernel.position(status);
+        return of(status, i < len ? input.charAt(off + i) : '\0', complete);
+    }
+
+    static GMNValidationResult of(int status, char[] input, int off, int len, boolean complete)
+    {
+        int i = GMNKernel.position(status);
+        return of(status, i < len ? input[off + i] : '\0', complete);
+    }
+
+    // Create a result from a GMNKernel status for input provided as components
+    static GMNValidationResult of(int status, CharSequence gcp, CharSequence model, CharSequence checks)
+    {
+        if (status == GMNKernel.OK)
+            return VALID;
+        int i = GMNKernel.position(status);
+        int gcpLen = gcp.length();
+        int modelLen = model.length();
+        char c;
+        if (i < gcpLen)
+            c = gcp.charAt(i);
+        else if (i < gcpLen + modelLen)
+            c = model.charAt(i - gcpLen);
+        else if (checks != null && i - gcpLen - modelLen < checks.length())
+            c = checks.charAt(i - gcpLen - modelLen);
+        else
+            c = '\0';
+        return new GMNValidationResult(Reason.byCode[GMNKernel.code(status)], i, c, checks != null, true);
+    }
+
+    /**
+     * Indicate whether the input was valid.
+     *
+     * @return true if the input was valid. Otherwise false.
+     */
+    public boolean isValid()
+    {
+        return reason == Reason.VALID;
+    }
+
+    /**
+     * The reason for which the input was accepted or rejected.
+     *
+     * @return the reason, which is {@link Reason#VALID} for valid input.
+     */
+    public Reason getReason()
+    {
+        return reason;
+    }
+
+    /**
+     * The zero-based position of the character that caused the input to be rejected.
+     *
+     * For reasons relating to the overall length of the input, or to the
+     * length of the GS1 Company Prefix, this is zero. For a mismatched check
+     * character pair this is the position of the first check character.
+     *
+     * @return the position of the offending character.
+     */
+    public int getPosition()
+    {
+        return position;
+    }
+
+    /**
+     * A description of the reason for which the input was rejected.
+     *
+     * The message matches that of the {@link GS1Exception} raised by the
+     * corresponding throwing method of {@link HealthcareGMN}.
+     *
+     * @return a human-readable message, or null if the input was valid.
+     */
+    public String getMessage()
+    {
+        int minLength = GMNKernel.minLength(complete);
+        int maxLength = GMNKernel.maxLength(complete);
+
+        switch (reason)
+        {
+            case VALID:
+                return null;
+            case TOO_SHORT:
+                return "The input is too short. It should be at least " + minLength + " characters long" + ( complete ? "." : " excluding the check character pair." );
+            case TOO_LONG:
+                return "The input is too long. It should be " + maxLength + " characters maximum" + ( complete ? "." : " excluding the check character pair." );
+            case GCP_NOT_NUMERIC:
+                return components ?
+                    "The GS1 Company Prefix must only contain digits." :
+                    "GMN starts with the GS1 Company Prefix. At least the first five characters must be digits.";
+            case INVALID_CHARACTER:
+                return "Invalid character at position " + (position + 1) + ": " + character;
+            case INVALID_CHECK_CHARACTER:
+                return "Invalid check character at position " + (position + 1) + ": " + character;
+            case CHECK_MISMATCH:
+                return "The check character pair is incorrect.";
+            case GCP_TOO_SHORT:
+                return "The GS1 Company Prefix is too short. It should be at least 5 digits long.";
+            case GCP_TOO_LONG:
+                return "The GS1 Company Prefix is too long. It should not be more than 12 digits long.";
+            case MODEL_EMPTY:
+                return "The model reference must contain at least one character.";
+            default:  // CHECK_WRONG_LENGTH
+                return "The check must be 2 characters long.";
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return isValid() ? reason.name() : reason.name() + " at position " + position + ": " + getMessage();
+    }
+
+}
@@ -0,0 +1,293 @@
+package org.gs1;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of healthcare GMN verification results, for workloads in
+ * which a small number of healthcare GMNs account for most lookups.
+ *
+ * Both positive and negative results are cached, including the reason for
+ * which an invalid healthcare GMN was rejected. The methods produce the same
+ * results, and raise the same exceptions, as the corresponding methods of
+ * {@link HealthcareGMN}.
+ *
+ * Lookups are lock-free. When the cache is full, an entry is evicted using the
+ * CLOCK policy, an approximation of least recently used in which a lookup only
+ * marks the entry as referenced. Insertions are serialised with one another,
+ * but not with lookups. Inputs longer than a complete healthcare GMN are
+ * rejected without being cached.
+ *
+ * Counters of hits, misses and evictions are maintained so that the size of
+ * the cache can be tuned. Instances may be shared by threads.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public final class GMNVerificationCache
+{
+
+    private final int maximumSize;
+    private final ConcurrentHashMap<Object, Entry> map;
+
+    // CLOCK ring of cached keys, guarded by itself
+    private final Object[] ring;
+    private int hand;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private static final class Entry
+    {
+        final GMNValidationResult result;
+        volatile boolean referenced;
+
+        Entry(GMNValidationResult result)
+        {
+            this.result = result;
+        }
+    }
+
+    // Key of a healthcare GMN provided as components, which is distinct from
+    // the key of the same characters provided as a single string
+    private static final class ComponentKey
+    {
+        final String gcp;
+        final String model;
+        final String checks;
+
+        ComponentKey(String gcp, String model, String checks)
+        {
+            this.gcp = gcp;
+            this.model = model;
+            this.checks = checks;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof ComponentKey))
+                return false;
+            ComponentKey k = (ComponentKey) o;
+            return gcp.equals(k.gcp) && model.equals(k.model) && checks.equals(k.checks);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (gcp.hashCode() * 31 + model.hashCode()) * 31 + checks.hashCode();
+        }
+    }
+
+    /**
+     * Create a cache holding up to a given number of results.
+     *
+     * @param maximumSize maximum number of cached results.
+     */
+    public GMNVerificationCache(int maximumSize)
+    {
+        if (maximumSize < 1)
+            throw new IllegalArgumentException("The maximum size must be at least 1.");
+        this.maximumSize = maximumSize;
+        map = new ConcurrentHashMap<Object, Entry>(Math.min(maximumSize, 1 << 16) * 4 / 3 + 1);
+        ring = new Object[maximumSize];
+    }
+
+    /**
+     * Validate a given healthcare GMN, including its check character pair, using a cached result if available.
+     *
+     * @param gmn a healthcare GMN.
+     * @return the validation result, which describes the first problem found if the healthcare GMN is invalid.
+     */
+    public GMNValidationResult validate(CharSequence gmn)
+    {
+        if (gmn.length() > GMNKernel.maxLength(true))
+            return HealthcareGMN.validate(gmn);
+        String key = gmn.toString();
+        Entry e = lookup(key);
+        return e != null ? e.result : insert(key, HealthcareGMN.validate(key));
+    }
+
+    /**
+     * Validate a given healthcare GMN, provided as GS1 Company Prefix, model reference and check character components, using a cached result if available.
+     *
+     * @param gcp a GS1 Company Prefix.
+     * @param model a model reference.
+     * @param checks a check character pair.
+     * @return the validation result, which describes the first problem found if the healthcare GMN is invalid. Positions are relative to the concatenated components.
+     */
+    public GMNValidationResult validateGcpModelChecks(String gcp, String model, String checks)
+    {
+        if (gcp.length() + model.length() + checks.length() > GMNKernel.maxLength(true))
+            return HealthcareGMN.validateGcpModelChecks(gcp, model, checks);
+        ComponentKey key = new ComponentKey(gcp, model, checks);
+        Entry e = lookup(key);
+        return e != null ? e.result : insert(key, HealthcareGMN.validateGcpModelChecks(gcp, model, checks));
+    }
+
+    /**
+     * Verify that a given healthcare GMN has a correct check character pair, using a cached result if available.
+     *
+     * @param gmn a healthcare GMN.
+     * @return true if the healthcare GMN is has a valid check character pair. Otherwise false.
+     * @throws GS1Exception if the format of the given healthcare GMN is invalid.
+     */
+    public boolean verifyCheckCharacters(CharSequence gmn)
+        throws GS1Exception
+    {
+        return verified(validate(gmn));
+    }
+
+    /**
+     * Verify that a given healthcare GMN, provided as GS1 Company Prefix, model reference and check character components, has a correct check character pair, using a cached result if available.
+     *
+     * @param gcp a GS1 Company Prefix.
+     * @param model a model reference.
+     * @param checks a check character pair.
+     * @return true if the healthcare GMN has a valid check character pair. Otherwise false.
+     * @throws GS1Exception if the format of the given healthcare GMN is invalid.
+     */
+    public boolean verifyCheckCharactersGcpModelChecks(String gcp, String model, String checks)
+        throws GS1Exception
+    {
+        return verified(validateGcpModelChecks(gcp, model, checks));
+    }
+
+    /**
+     * The maximum number of cached results.
+     *
+     * @return the maximum size.
+     */
+    public int getMaximumSize()
+    {
+        return maximumSize;
+    }
+
+    /**
+     * The number of cached results.
+     *
+     * @return the current size.
+     */
+    public int size()
+    {
+        return map.size();
+    }
+
+    /**
+     * The number of lookups that were answered from the cache.
+     *
+     * @return the hit count.
+     */
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * The number of lookups that required the healthcare GMN to be validated.
+     *
+     * @return the miss count.
+     */
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * The number of results that have been evicted to make room for others.
+     *
+     * @return the eviction count.
+     */
+    public long getEvictionCount()
+    {
+        return evictions.sum();
+    }
+
+    /**
+     * Remove all cached results. The counters are retained.
+     */
+    public void clear()
+    {
+        synchronized (ring)
+        {
+            map.clear();
+            Arrays.fill(ring, null);
+            hand = 0;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "GMNVerificationCache[size=" + size() + "/" + maximumSize + ", hits=" + getHitCount() +
+               ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    private Entry lookup(Object key)
+    {
+        Entry e = map.get(key);
+        if (e == null)
+        {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (!e.referenced)
+            e.referenced = true;
+        return e;
+    }
+
+    // Cache a result, evicting the first unreferenced entry found by the
+    // clock hand if the cache is full
+    private GMNValidationResult insert(Object key, GMNValidationResult result)
+    {
+        synchronized (ring)
+        {
+            if (map.containsKey(key))
+                return result;
+            while (ring[hand] != null)
+            {
+                Entry victim = map.get(ring[hand]);
+                if (!victim.referenced)
+                {
+                    map.remove(ring[hand]);
+                    evictions.increment();
+                    break;
+                }
+                victim.referenced = false;
+                hand = (hand + 1) % maximumSize;
+            }
+            ring[hand] = key;
+            hand = (hand + 1) % maximumSize;
+            map.put(key, new Entry(result));
+        }
+        return result;
+    }
+
+    private static boolean verified(GMNValidationResult result)
+        throws GS1Exception
+    {
+        if (result.getReason() == GMNValidationResult.Reason.CHECK_MISMATCH)
+            return false;
+        if (!result.isValid())
+            throw new GS1Exception(result);
+        return true;
+    }
+
+}
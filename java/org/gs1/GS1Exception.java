@@ -1,9 +1,24 @@
 package org.gs1;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
 /**
  * A custom exception class to differentiate exceptions raised by the utility
  * class from other sources of error.
  *
+ * An exception raised because a healthcare GMN is invalid carries the
+ * machine-readable {@link GMNValidationResult.Reason} and the position of the
+ * offending character, so that callers can branch on the error without
+ * parsing the message. The message itself is only built when it is first
+ * requested.
+ *
+ * Feeds that reject many inputs through the throwing API may avoid the cost
+ * of capturing a stack trace for each rejection by starting the JVM with the
+ * system property {@code -Dorg.gs1.gmn.stacklessExceptions=true}, in which
+ * case {@link #getStackTrace()} of such a rejection is empty. Exceptions
+ * created with the public constructor are unaffected.
+ *
  * @author Copyright (c) 2019 GS1 AISBL.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -26,9 +41,98 @@ public class GS1Exception extends Exception
 
     static final long serialVersionUID = 1L;
 
+    // Read once so that every exception is created in the same mode
+    static final boolean STACKLESS = Boolean.getBoolean("org.gs1.gmn.stacklessExceptions");
+
+    private final GMNValidationResult.Reason reason;
+    private final int position;
+    private final String prefix;
+    private transient GMNValidationResult result;
+    private String message;
+
     public GS1Exception(String message) {
         super(message);
+        this.reason = null;
+        this.position = -1;
+        this.prefix = null;
+        this.message = message;
     }
 
-}
+    // Raised for an invalid healthcare GMN. The message is built on demand.
+    GS1Exception(GMNValidationResult result)
+    {
+        this(null, result);
+    }
+
+    // Raised for an invalid healthcare GMN within bulk input, identified by a
+    // prefix to the message such as "Line 3: "
+    GS1Exception(String prefix, GMNValidationResult result)
+    {
+        super(null, null, !STACKLESS, !STACKLESS);
+        this.reason = result.getReason();
+        this.position = result.getPosition();
+        this.prefix = prefix;
+        this.result = result;
+    }
+
+    // Re-raise an exception for bulk input with a prefix to the message,
+    // preserving its reason and position, and keeping it as the cause
+    GS1Exception(String prefix, GS1Exception e)
+    {
+        super(null, e, !STACKLESS, !STACKLESS);
+        this.reason = e.reason;
+        this.position = e.position;
+        if (e.result != null)
+        {
+            this.prefix = e.prefix != null ? prefix + e.prefix : prefix;
+            this.result = e.result;
+        }
+        else
+        {
+            this.prefix = null;
+            this.message = prefix + e.getMessage();
+        }
+    }
+
+    /**
+     * The reason for which the healthcare GMN was rejected.
+     *
+     * @return the reason, or null if the exception was not raised by validation of a healthcare GMN.
+     */
+    public GMNValidationResult.Reason getReason()
+    {
+        return reason;
+    }
+
+    /**
+     * The zero-based position of the character that caused the healthcare GMN
+     * to be rejected, as given by {@link GMNValidationResult#getPosition()}.
+     *
+     * @return the position, or -1 if the exception was not raised by validation of a healthcare GMN.
+     */
+    public int getPosition()
+    {
+        return position;
+    }
 
+    @Override
+    public String getMessage()
+    {
+        String m = message;
+        if (m == null && result != null)
+        {
+            m = prefix != null ? prefix + result.getMessage() : result.getMessage();
+            message = m;
+        }
+        return m;
+    }
+
+    // The validation result is not serializable, so fix the message first
+    private void writeObject(ObjectOutputStream out)
+        throws IOException
+    {
+        getMessage();
+        out.defaultWriteObject();
+    }
+
+}
@@ -1,8 +1,7 @@
 package org.gs1;
 
-import java.util.Collections;
-import java.util.Map;
-import java.util.HashMap;
+import java.io.IOException;
+import java.util.List;
 
 /**
  * Helper class that is both a demonstration and usable implementation of a
@@ -29,84 +28,110 @@ import java.util.HashMap;
 
 public final class HealthcareGMN {
 
+    private HealthcareGMN() {}
+
     /**
-     * Descending primes used as multipliers of each data character.
+     * Calculates the check character pair for a given partial healthcare GMN.
+     *
+     * @param part a partial healthcare GMN.
+     * @return check character pair.
+     * @throws GS1Exception if the format of the given healthcare GMN is invalid.
      */
-    private final static short[] weights = new short[]
-        {83,79,73,71,67,61,59,53,47,43,41,37,31,29,23,19,17,13,11,7,5,3,2};
+    public static String checkCharacters(String part)
+        throws GS1Exception
+    {
+        return checkCharacters((CharSequence) part);
+    }
 
     /**
-     * GS1 AI encodable character set 82. Place in the string represents the
-     * character value.
+     * Calculates the check character pair for a given partial healthcare GMN.
+     *
+     * @param part a partial healthcare GMN.
+     * @return check character pair.
+     * @throws GS1Exception if the format of the given healthcare GMN is invalid.
      */
-    private final static String cset82 =
-        "!\"%&'()*+,-./0123456789:;<=>?ABCDEFGHIJKLMNOPQRSTUVWXYZ" +
-        "_abcdefghijklmnopqrstuvwxyz";
+    public static String checkCharacters(CharSequence part)
+        throws GS1Exception
+    {
+        long t = _enter(GMNMetrics.Method.CHECK_CHARACTERS);
+        String checks = GMNKernel.checksString(_checkSum(part, 0, part.length()));
+        _exit(GMNMetrics.Method.CHECK_CHARACTERS, t, GMNKernel.OK);
+        return checks;
+    }
 
     /**
-     * Subset of the encodable character set used for the check character pair.
+     * Calculates the check character pair for a partial healthcare GMN held within a region of a character array.
+     *
+     * @param buf a buffer containing a partial healthcare GMN.
+     * @param off offset of the first character of the partial healthcare GMN.
+     * @param len length of the partial healthcare GMN.
+     * @return check character pair.
+     * @throws GS1Exception if the format of the given healthcare GMN is invalid.
      */
-    private final static String cset32 = "23456789ABCDEFGHJKLMNPQRSTUVWXYZ";
+    public static String checkCharacters(char[] buf, int off, int len)
+        throws GS1Exception
+    {
+        long t = _enter(GMNMetrics.Method.CHECK_CHARACTERS);
+        String checks = GMNKernel.checksString(_checkSum(buf, off, len));
+        _exit(GMNMetrics.Method.CHECK_CHARACTERS, t, GMNKernel.OK);
+        return checks;
+    }
 
     /**
-     * Character to value map for cset82.
+     * Calculates the check character pair for a given partial healthcare GMN, writing it into a caller-supplied array without allocating.
+     *
+     * @param part a partial healthcare GMN.
+     * @param dst destination array to receive the two check characters.
+     * @param dstOff offset in the destination array at which to write the check characters.
+     * @return the offset in the destination array immediately following the check characters.
+     * @throws GS1Exception if the format of the given healthcare GMN is invalid.
      */
-    private final static Map<Character, Short> cset82value;
+    public static int checkCharacters(CharSequence part, char[] dst, int dstOff)
+        throws GS1Exception
+    {
+        long t = _enter(GMNMetrics.Method.CHECK_CHARACTERS);
+        int end = GMNKernel.writeChecks(_checkSum(part, 0, part.length()), dst, dstOff);
+        _exit(GMNMetrics.Method.CHECK_CHARACTERS, t, GMNKernel.OK);
+        return end;
+    }
 
     /**
-     * Character to value map for cset32.
+     * Calculates the check character pair for a partial healthcare GMN held within a region of a character array, writing it into a caller-supplied array without allocating.
+     *
+     * The destination may be the source buffer itself, in which case writing at {@code off + len} completes the healthcare GMN in place.
+     *
+     * @param buf a buffer containing a partial healthcare GMN.
+     * @param off offset of the first character of the partial healthcare GMN.
+     * @param len length of the partial healthcare GMN.
+     * @param dst destination array to receive the two check characters.
+     * @param dstOff offset in the destination array at which to write the check characters.
+     * @return the offset in the destination array immediately following the check characters.
+     * @throws GS1Exception if the format of the given healthcare GMN is invalid.
      */
-    private final static Map<Character, Short> cset32value;
-
-    // Initialisation populates the cset82 and cset32 mappings
-    static
+    public static int checkCharacters(char[] buf, int off, int len, char[] dst, int dstOff)
+        throws GS1Exception
     {
-        Map<Character, Short> tmp = new HashMap<>();
-        for (short i = 0; i < cset82.length(); i++)
-            tmp.put(cset82.charAt(i), i);
-        cset82value=Collections.unmodifiableMap(tmp);
-
-        tmp = new HashMap<>();
-        for (short i = 0; i < cset32.length(); i++)
-            tmp.put(cset32.charAt(i), i);
-        cset32value=Collections.unmodifiableMap(tmp);
+        long t = _enter(GMNMetrics.Method.CHECK_CHARACTERS);
+        int end = GMNKernel.writeChecks(_checkSum(buf, off, len), dst, dstOff);
+        _exit(GMNMetrics.Method.CHECK_CHARACTERS, t, GMNKernel.OK);
+        return end;
     }
 
-    private HealthcareGMN() {}
-
     /**
-     * Calculates the check character pair for a given partial healthcare GMN.
+     * Calculates the check character pair for a given partial healthcare GMN, appending it to a caller-supplied destination.
      *
      * @param part a partial healthcare GMN.
-     * @return check character pair.
+     * @param out destination to which the two check characters are appended.
      * @throws GS1Exception if the format of the given healthcare GMN is invalid.
+     * @throws IOException if appending to the destination fails.
      */
-    public static String checkCharacters(String part)
-        throws GS1Exception
+    public static void checkCharacters(CharSequence part, Appendable out)
+        throws GS1Exception, IOException
     {
-        _formatChecks(part, false);
-
-        /*
-         * The GMN check character pair calculation is performed here.
-         *
-         */
-
-        // Characters are compared with the rightmost weights
-        int offset = weights.length - part.length();
-
-        // Modulo 1021 sum of the products of the character values and their
-        // corresponding weights
-        int sum = 0;
-        for (int i=0; i < part.length(); i++)
-        {
-                short c = cset82value.get(part.charAt(i));
-                short w = weights[ offset + i ];
-                sum += c * w;
-        }
-        sum %= 1021;
-
-        // Split the 10-bit sum over two five-bit check characters
-        return "" + cset32.charAt(sum / 32) + cset32.charAt(sum % 32);
+        long t = _enter(GMNMetrics.Method.CHECK_CHARACTERS);
+        int sum = _checkSum(part, 0, part.length());
+        out.append(GMNKernel.cset32chars[sum / 32]).append(GMNKernel.cset32chars[sum % 32]);
+        _exit(GMNMetrics.Method.CHECK_CHARACTERS, t, GMNKernel.OK);
     }
 
     /**
@@ -120,8 +145,11 @@ public final class HealthcareGMN {
     public static String checkCharactersGcpModel(String gcp, String model)
         throws GS1Exception
     {
+        long t = _enter(GMNMetrics.Method.CHECK_CHARACTERS_GCP_MODEL);
         _formatChecksGcpModel(gcp, model);
-        return checkCharacters(gcp + model);
+        String checks = GMNKernel.checksString(GMNKernel.sumGcpModel(gcp, model));
+        _exit(GMNMetrics.Method.CHECK_CHARACTERS_GCP_MODEL, t, GMNKernel.OK);
+        return checks;
     }
 
     /**
@@ -134,7 +162,28 @@ public final class HealthcareGMN {
     public static String addCheckCharacters(String part)
         throws GS1Exception
     {
-        return part + checkCharacters(part);
+        return addCheckCharacters((CharSequence) part);
+    }
+
+    /**
+     * Complete a given partial healthcare GMN by appending the check character pair.
+     *
+     * @param part a partial healthcare GMN.
+     * @return a complete healthcare GMN including the check character pair.
+     * @throws GS1Exception if the format of the given healthcare GMN is invalid.
+     */
+    public static String addCheckCharacters(CharSequence part)
+        throws GS1Exception
+    {
+        long t = _enter(GMNMetrics.Method.ADD_CHECK_CHARACTERS);
+        int len = part.length();
+        int sum = _checkSum(part, 0, len);
+        char[] out = new char[len + 2];
+        for (int i = 0; i < len; i++)
+            out[i] = part.charAt(i);
+        GMNKernel.writeChecks(sum, out, len);
+        _exit(GMNMetrics.Method.ADD_CHECK_CHARACTERS, t, GMNKernel.OK);
+        return new String(out);
     }
 
     /**
@@ -148,8 +197,14 @@ public final class HealthcareGMN {
     public static String addCheckCharactersGcpModel(String gcp, String model)
         throws GS1Exception
     {
+        long t = _enter(GMNMetrics.Method.ADD_CHECK_CHARACTERS_GCP_MODEL);
         _formatChecksGcpModel(gcp, model);
-        return addCheckCharacters(gcp + model);
+        char[] out = new char[gcp.length() + model.length() + 2];
+        gcp.getChars(0, gcp.length(), out, 0);
+        model.getChars(0, model.length(), out, gcp.length());
+        GMNKernel.writeChecks(GMNKernel.sumGcpModel(gcp, model), out, gcp.length() + model.length());
+        _exit(GMNMetrics.Method.ADD_CHECK_CHARACTERS_GCP_MODEL, t, GMNKernel.OK);
+        return new String(out);
     }
 
     /**
@@ -162,14 +217,62 @@ public final class HealthcareGMN {
     public static boolean verifyCheckCharacters(String gmn)
         throws GS1Exception
     {
-        _formatChecks(gmn, true);
+        return verifyCheckCharacters((CharSequence) gmn);
+    }
 
-        // Split off the provided check character pair, recalculate them and ensure
-        // that they match
-        String part = gmn.substring(0, gmn.length() - 2);
-        String suppliedChecks = gmn.substring(gmn.length() - 2, gmn.length());
+    /**
+     * Verify that a given healthcare GMN has a correct check character pair.
+     *
+     * @param gmn a healthcare GMN.
+     * @return true if the healthcare GMN is has a valid check character pair. Otherwise false.
+     * @throws GS1Exception if the format of the given healthcare GMN is invalid.
+     */
+    public static boolean verifyCheckCharacters(CharSequence gmn)
+        throws GS1Exception
+    {
+        int len = gmn.length();
+        long t = _enter(GMNMetrics.Method.VERIFY_CHECK_CHARACTERS);
+        int status = GMNPlatform.checkGMN(gmn, 0, len);
+        if (GMNKernel.code(status) == GMNKernel.CHECK_MISMATCH)
+        {
+            _exit(GMNMetrics.Method.VERIFY_CHECK_CHARACTERS, t, status);
+            return false;
+        }
+        if (status != GMNKernel.OK)
+        {
+            _failure(status);
+            throw new GS1Exception(GMNValidationResult.of(status, gmn, 0, len, true));
+        }
+        _exit(GMNMetrics.Method.VERIFY_CHECK_CHARACTERS, t, status);
+        return true;
+    }
 
-        return checkCharacters(part).equals(suppliedChecks);
+    /**
+     * Verify that a healthcare GMN held within a region of a character array has a correct check character pair.
+     *
+     * @param buf a buffer containing a healthcare GMN.
+     * @param off offset of the first character of the healthcare GMN.
+     * @param len length of the healthcare GMN.
+     * @return true if the healthcare GMN is has a valid check character pair. Otherwise false.
+     * @throws GS1Exception if the format of the given healthcare GMN is invalid.
+     */
+    public static boolean verifyCheckCharacters(char[] buf, int off, int len)
+        throws GS1Exception
+    {
+        long t = _enter(GMNMetrics.Method.VERIFY_CHECK_CHARACTERS);
+        int status = GMNPlatform.checkGMN(buf, off, len);
+        if (GMNKernel.code(status) == GMNKernel.CHECK_MISMATCH)
+        {
+            _exit(GMNMetrics.Method.VERIFY_CHECK_CHARACTERS, t, status);
+            return false;
+        }
+        if (status != GMNKernel.OK)
+        {
+            _failure(status);
+            throw new GS1Exception(GMNValidationResult.of(status, buf, off, len, true));
+        }
+        _exit(GMNMetrics.Method.VERIFY_CHECK_CHARACTERS, t, status);
+        return true;
     }
 
     /**
@@ -184,8 +287,127 @@ public final class HealthcareGMN {
     public static boolean verifyCheckCharactersGcpModelChecks(String gcp, String model, String checks)
         throws GS1Exception
     {
-        _formatChecksGcpModelChecks(gcp, model, checks);
-        return verifyCheckCharacters(gcp + model + checks);
+        long t = _enter(GMNMetrics.Method.VERIFY_CHECK_CHARACTERS_GCP_MODEL_CHECKS);
+        int status = GMNKernel.checkGMNGcpModelChecks(gcp, model, checks);
+        if (GMNKernel.code(status) == GMNKernel.CHECK_MISMATCH)
+        {
+            _exit(GMNMetrics.Method.VERIFY_CHECK_CHARACTERS_GCP_MODEL_CHECKS, t, status);
+            return false;
+        }
+        if (status != GMNKernel.OK)
+        {
+            _failure(status);
+            throw new GS1Exception(GMNValidationResult.of(status, gcp, model, checks));
+        }
+        _exit(GMNMetrics.Method.VERIFY_CHECK_CHARACTERS_GCP_MODEL_CHECKS, t, status);
+        return true;
+    }
+
+    /**
+     * Validate a given healthcare GMN, including its check character pair, without raising an exception.
+     *
+     * @param gmn a healthcare GMN.
+     * @return the validation result, which describes the first problem found if the healthcare GMN is invalid.
+     */
+    public static GMNValidationResult validate(CharSequence gmn)
+    {
+        long t = _enter(GMNMetrics.Method.VALIDATE);
+        int len = gmn.length();
+        int status = GMNPlatform.checkGMN(gmn, 0, len);
+        _exit(GMNMetrics.Method.VALIDATE, t, status);
+        return GMNValidationResult.of(status, gmn, 0, len, true);
+    }
+
+    /**
+     * Validate a healthcare GMN held within a region of a character array, including its check character pair, without raising an exception.
+     *
+     * @param buf a buffer containing a healthcare GMN.
+     * @param off offset of the first character of the healthcare GMN.
+     * @param len length of the healthcare GMN.
+     * @return the validation result, which describes the first problem found if the healthcare GMN is invalid.
+     */
+    public static GMNValidationResult validate(char[] buf, int off, int len)
+    {
+        long t = _enter(GMNMetrics.Method.VALIDATE);
+        int status = GMNPlatform.checkGMN(buf, off, len);
+        _exit(GMNMetrics.Method.VALIDATE, t, status);
+        return GMNValidationResult.of(status, buf, off, len, true);
+    }
+
+    /**
+     * Validate the format of a given partial healthcare GMN without raising an exception.
+     *
+     * @param part a partial healthcare GMN.
+     * @return the validation result, which describes the first problem found if the partial healthcare GMN is invalid.
+     */
+    public static GMNValidationResult validatePartial(CharSequence part)
+    {
+        long t = _enter(GMNMetrics.Method.VALIDATE_PARTIAL);
+        int len = part.length();
+        int status = GMNPlatform.checkFormat(part, 0, len, false);
+        _exit(GMNMetrics.Method.VALIDATE_PARTIAL, t, status);
+        return GMNValidationResult.of(status, part, 0, len, false);
+    }
+
+    /**
+     * Validate the format of a partial healthcare GMN held within a region of a character array without raising an exception.
+     *
+     * @param buf a buffer containing a partial healthcare GMN.
+     * @param off offset of the first character of the partial healthcare GMN.
+     * @param len length of the partial healthcare GMN.
+     * @return the validation result, which describes the first problem found if the partial healthcare GMN is invalid.
+     */
+    public static GMNValidationResult validatePartial(char[] buf, int off, int len)
+    {
+        long t = _enter(GMNMetrics.Method.VALIDATE_PARTIAL);
+        int status = GMNPlatform.checkFormat(buf, off, len, false);
+        _exit(GMNMetrics.Method.VALIDATE_PARTIAL, t, status);
+        return GMNValidationResult.of(status, buf, off, len, false);
+    }
+
+    /**
+     * Validate a given healthcare GMN, provided as GS1 Company Prefix, model reference and check character components, without raising an exception.
+     *
+     * @param gcp a GS1 Company Prefix.
+     * @param model a model reference.
+     * @param checks a check character pair.
+     * @return the validation result, which describes the first problem found if the healthcare GMN is invalid. Positions are relative to the concatenated components.
+     */
+    public static GMNValidationResult validateGcpModelChecks(String gcp, String model, String checks)
+    {
+        long t = _enter(GMNMetrics.Method.VALIDATE_GCP_MODEL_CHECKS);
+        int status = GMNKernel.checkGMNGcpModelChecks(gcp, model, checks);
+        _exit(GMNMetrics.Method.VALIDATE_GCP_MODEL_CHECKS, t, status);
+        return GMNValidationResult.of(status, gcp, model, checks);
+    }
+
+    /**
+     * Validate the format of a given partial healthcare GMN, provided as GS1 Company Prefix and model reference components, without raising an exception.
+     *
+     * @param gcp a GS1 Company Prefix.
+     * @param model a model reference.
+     * @return the validation result, which describes the first problem found if the partial healthcare GMN is invalid. Positions are relative to the concatenated components.
+     */
+    public static GMNValidationResult validateGcpModel(String gcp, String model)
+    {
+        long t = _enter(GMNMetrics.Method.VALIDATE_GCP_MODEL);
+        int status = GMNKernel.checkFormatGcpModelChecks(gcp, model, null);
+        _exit(GMNMetrics.Method.VALIDATE_GCP_MODEL, t, status);
+        return GMNValidationResult.of(status, gcp, model, null);
+    }
+
+    /**
+     * Suggest corrections to a healthcare GMN that fails verification, assuming that a single character was substituted or two adjacent characters were transposed.
+     *
+     * @param gmn a healthcare GMN complete with a check character pair.
+     * @return the valid healthcare GMNs that differ from the given one by a single substitution or adjacent transposition, most likely first. Empty if the healthcare GMN is valid, has the wrong length or cannot be repaired by a single such correction.
+     */
+    public static List<GMNCorrection> suggestCorrections(String gmn)
+    {
+        long t = _enter(GMNMetrics.Method.SUGGEST_CORRECTIONS);
+        List<GMNCorrection> corrections = GMNCorrection.suggest(gmn);
+        _exit(GMNMetrics.Method.SUGGEST_CORRECTIONS, t, GMNKernel.OK);
+        return corrections;
     }
 
     /**
@@ -197,19 +419,9 @@ public final class HealthcareGMN {
      */
     public static boolean[] goodCharacterPositions(String gmn, boolean complete)
     {
-        boolean[] out = new boolean[gmn.length()];
-        for (int i = 0; i < gmn.length(); i++)
-        {
-
-            // GMN begins with a GS1 Company Prefix which is at least five characters
-            if (i < 5)
-                out[i] = Character.isDigit(gmn.charAt(i));
-            else if (!complete || i < gmn.length() - 2)
-                out[i] = cset82value.containsKey(gmn.charAt(i));
-            else  // For a complete GMN final two positions are check character pair
-                out[i] = cset32value.containsKey(gmn.charAt(i));
-
-        }
+        long t = _enter(GMNMetrics.Method.GOOD_CHARACTER_POSITIONS);
+        boolean[] out = _goodCharacterPositions(gmn, complete);
+        _exit(GMNMetrics.Method.GOOD_CHARACTER_POSITIONS, t, GMNKernel.OK);
         return out;
     };
 
@@ -223,12 +435,14 @@ public final class HealthcareGMN {
      */
     public static boolean[] goodCharacterPositionsGcpModelChecks(String gcp, String model, String checks)
     {
-        boolean[] out = goodCharacterPositions(gcp + model + checks, true);
+        long t = _enter(GMNMetrics.Method.GOOD_CHARACTER_POSITIONS_GCP_MODEL_CHECKS);
+        boolean[] out = _goodCharacterPositions(gcp + model + checks, true);
 
         // The GS1 Company Prefix is numeric only
         for (int i = 0; i < gcp.length(); i++)
-            out[i] = Character.isDigit(gcp.charAt(i));
+            out[i] = GMNKernel.isDigit(gcp.charAt(i));
 
+        _exit(GMNMetrics.Method.GOOD_CHARACTER_POSITIONS_GCP_MODEL_CHECKS, t, GMNKernel.OK);
         return out;
     };
 
@@ -241,83 +455,98 @@ public final class HealthcareGMN {
      */
     public static boolean[] goodCharacterPositionsGcpModel(String gcp, String model)
     {
-        boolean[] out = goodCharacterPositions(gcp + model, false);
+        long t = _enter(GMNMetrics.Method.GOOD_CHARACTER_POSITIONS_GCP_MODEL);
+        boolean[] out = _goodCharacterPositions(gcp + model, false);
 
         // The GS1 Company Prefix is numeric only
         for (int i = 0; i < gcp.length(); i++)
-            out[i] = Character.isDigit(gcp.charAt(i));
+            out[i] = GMNKernel.isDigit(gcp.charAt(i));
 
+        _exit(GMNMetrics.Method.GOOD_CHARACTER_POSITIONS_GCP_MODEL, t, GMNKernel.OK);
         return out;
     };
 
-    // Perform some local consistency checks on a partial or complete GMN string
-    private static void _formatChecks(String input, boolean complete)
+    private static boolean[] _goodCharacterPositions(String gmn, boolean complete)
+    {
+        boolean[] out = new boolean[gmn.length()];
+
+        // Classify the whole input at once when it fits in a bitmask
+        if (gmn.length() <= GMNPlatform.MAX_MASK_LENGTH)
+        {
+            long bad = GMNPlatform.badPositions(gmn, 0, gmn.length(), complete);
+            for (int i = 0; i < out.length; i++)
+                out[i] = (bad >>> i & 1) == 0;
+            return out;
+        }
+
+        for (int i = 0; i < gmn.length(); i++)
+        {
+
+            // GMN begins with a GS1 Company Prefix which is at least five characters
+            if (i < 5)
+                out[i] = GMNKernel.isDigit(gmn.charAt(i));
+            else if (!complete || i < gmn.length() - 2)
+                out[i] = GMNKernel.cset82(gmn.charAt(i)) >= 0;
+            else  // For a complete GMN final two positions are check character pair
+                out[i] = GMNKernel.cset32(gmn.charAt(i)) >= 0;
+
+        }
+        return out;
+    }
+
+    // Format check a partial GMN and return its modulo 1021 weighted sum
+    private static int _checkSum(CharSequence part, int off, int len)
+        throws GS1Exception
+    {
+        int sum = GMNPlatform.checkSum(part, off, len);
+        if (sum < 0)
+        {
+            _failure(-sum);
+            throw new GS1Exception(GMNValidationResult.of(-sum, part, off, len, false));
+        }
+        return sum;
+    }
+
+    private static int _checkSum(char[] part, int off, int len)
         throws GS1Exception
     {
-        int maxLength = complete ? weights.length + 2 : weights.length;
-        int minLength = complete ? 8 : 6;
-
-        // Verify overall length
-        if (input.length() < minLength)
-            throw new GS1Exception("The input is too short. It should be at least " + minLength + " characters long" + ( complete ? "." : " excluding the check character pair." ) );
-        if (input.length() > maxLength)
-            throw new GS1Exception("The input is too long. It should be " + maxLength + " characters maximum" + ( complete ? "." : " excluding the check character pair." ) );
-
-        // Verify that the content is in the correct encodable character set
-        boolean[] goodCharacters = goodCharacterPositions(input, complete);
-        for (int i = 0; i < input.length(); i++)
-            if (!goodCharacters[i])
-            {
-                if (i < 5)
-                    throw new GS1Exception("GMN starts with the GS1 Company Prefix. At least the first five characters must be digits.");
-                else if (!complete || i < input.length() - 2)
-                    throw new GS1Exception("Invalid character at position " + (i + 1) + ": " + input.charAt(i));
-                else
-                    throw new GS1Exception("Invalid check character at position " + (i + 1) + ": " + input.charAt(i));
-            }
-
-        return;
+        int sum = GMNPlatform.checkSum(part, off, len);
+        if (sum < 0)
+        {
+            _failure(-sum);
+            throw new GS1Exception(GMNValidationResult.of(-sum, part, off, len, false));
+        }
+        return sum;
     }
 
     // Perform some local consistency checks on the input provided as GS1 Company Prefix and model reference
     private static void _formatChecksGcpModel(String gcp, String model)
         throws GS1Exception
     {
-         _formatChecksGcpModelChecks(gcp, model, null);
+         int status = GMNKernel.checkFormatGcpModelChecks(gcp, model, null);
+         if (status != GMNKernel.OK)
+         {
+             _failure(status);
+             throw new GS1Exception(GMNValidationResult.of(status, gcp, model, null));
+         }
     }
 
-    // Perform some local consistency checks on the input provided as GS1 Company Prefix, model reference and check characters
-    private static void _formatChecksGcpModelChecks(String gcp, String model, String checks)
-        throws GS1Exception
+    // Instrumentation, which compiles away unless metrics are enabled
+    private static long _enter(GMNMetrics.Method method)
     {
+        return GMNMetrics.ENABLED ? GMNMetrics.enter(method) : 0;
+    }
 
-         // Verify that the GS1 Company Prefix has the correct length
-         if (gcp.length() < 5)
-             throw new GS1Exception("The GS1 Company Prefix is too short. It should be at least 5 digits long.");
-         if (gcp.length() > 12)
-             throw new GS1Exception("The GS1 Company Prefix is too long. It should not be more than 12 digits long.");
-
-         // Verify that the model reference contains at least one character
-         if (model.length() < 1)
-             throw new GS1Exception("The model reference must contain at least one character.");
-
-         // Verify that the GS1 Company Prefix is numeric only
-         boolean[] goodCharacters = goodCharacterPositionsGcpModel(gcp, model);
-         for (int i = 0; i < gcp.length(); i++)
-             if (!goodCharacters[i])
-                 throw new GS1Exception("The GS1 Company Prefix must only contain digits.");
-
-         // If given, verify that the check is the correct length
-         if (checks != null && checks.length() != 2)
-            throw new GS1Exception("The check must be 2 characters long.");
-
-         // Perform more format checks on the overall GMN
-         if (checks == null)
-             _formatChecks(gcp + model, false);
-         else
-             _formatChecks(gcp + model + checks, true);
-
-         return;
+    private static void _exit(GMNMetrics.Method method, long start, int status)
+    {
+        if (GMNMetrics.ENABLED)
+            GMNMetrics.exit(method, start, status);
+    }
+
+    private static void _failure(int status)
+    {
+        if (GMNMetrics.ENABLED)
+            GMNMetrics.failure(status);
     }
 
 }
@@ -0,0 +1,374 @@
+package org.gs1.tools;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.gs1.GMNColumnScanner;
+import org.gs1.GMNFileProcessor;
+
+/**
+ * A non-interactive command that verifies or completes the healthcare GMNs
+ * supplied on each line of files or standard input, for use in scripts and
+ * batch jobs.
+ *
+ * <pre>
+ *     java -cp ... org.gs1.tools.GMNCommand verify|complete [options] [file ...]
+ * </pre>
+ *
+ * Files are memory-mapped and processed in parallel by a configurable number
+ * of threads, with the results written in input order. Standard input, given
+ * as {@code -} or when there are no files, is processed sequentially. Results
+ * are written through a buffered channel to standard output or to a file, as
+ * plain {@code in : out} lines, CSV records or newline-delimited JSON.
+ *
+ * Given a column, the input is instead a single CSV or TSV file whose rows
+ * are copied with the outcome appended, or only the rejected rows, using a
+ * {@link GMNColumnScanner}.
+ *
+ * A report of the throughput and of the number of lines by outcome is written
+ * to standard error. An input that cannot be read is reported there too, and
+ * the remaining inputs are still processed. The exit status is
+ * {@value #EXIT_VALID} if every line was valid, {@value #EXIT_INVALID} if any
+ * line was invalid, {@value #EXIT_USAGE} for incorrect arguments, including an
+ * output file that is one of the inputs, and {@value #EXIT_IO_ERROR} if
+ * reading any input or writing the output failed.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public final class GMNCommand
+{
+
+    /**
+     * Exit status when every line was valid.
+     */
+    public static final int EXIT_VALID = 0;
+
+    /**
+     * Exit status when at least one line was invalid.
+     */
+    public static final int EXIT_INVALID = 1;
+
+    /**
+     * Exit status for incorrect arguments.
+     */
+    public static final int EXIT_USAGE = 2;
+
+    /**
+     * Exit status when reading the input or writing the output failed.
+     */
+    public static final int EXIT_IO_ERROR = 3;
+
+    private static final String USAGE =
+        "Usage: GMNCommand verify|complete [options] [file ...]\n" +
+        "\n" +
+        "Verify or complete the healthcare GMN on each line of the files, or of\n" +
+        "standard input if no file or \"-\" is given.\n" +
+        "\n" +
+        "Options:\n" +
+        "  -t, --threads N      threads processing each file (default: available processors)\n" +
+        "  -f, --format FORMAT  plain, csv or ndjson (default: plain)\n" +
+        "  -o, --output FILE    write the results to FILE instead of standard output\n" +
+        "  -q, --quiet          do not write the report to standard error\n" +
+        "  -c, --column COL     the input is CSV with the GMN in column COL, by name or\n" +
+        "                       zero-based position; rows are written with the outcome appended\n" +
+        "  -d, --delimiter C    the CSV field delimiter, or \"tab\" (default: ,)\n" +
+        "      --no-header      the CSV input has no header row\n" +
+        "  -r, --rejects        write only the CSV rows that are not valid\n" +
+        "  -h, --help           show this help\n" +
+        "\n" +
+        "Exit status: 0 if every line was valid, 1 if any line was invalid,\n" +
+        "2 for incorrect arguments, 3 if reading or writing failed.\n";
+
+    private GMNCommand() {}
+
+    /**
+     * Run the command and exit with its status.
+     *
+     * @param args the command-line arguments.
+     */
+    public static void main(String[] args)
+    {
+        int status;
+        try (FileChannel in = new FileInputStream(FileDescriptor.in).getChannel();
+             FileChannel out = new FileOutputStream(FileDescriptor.out).getChannel())
+        {
+            status = run(args, in, out, System.err);
+        }
+        catch (IOException e)
+        {
+            System.err.println("GMNCommand: " + e.getMessage());
+            status = EXIT_IO_ERROR;
+        }
+        System.exit(status);
+    }
+
+    /**
+     * Run the command with the given standard streams.
+     *
+     * @param args the command-line arguments.
+     * @param stdin the channel read for the input {@code -}.
+     * @param stdout the channel to which results are written when no output file is given. It is not closed.
+     * @param stderr the stream to which the report and any errors are written.
+     * @return the exit status.
+     */
+    public static int run(String[] args, ReadableByteChannel stdin, WritableByteChannel stdout, PrintStream stderr)
+    {
+        GMNFileProcessor.Mode mode = null;
+        GMNFileProcessor.Format format = GMNFileProcessor.Format.PLAIN;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path output = null;
+        boolean quiet = false;
+        String column = null;
+        char delimiter = ',';
+        boolean header = true;
+        boolean rejects = false;
+        List<String> inputs = new ArrayList<String>();
+
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                String arg = args[i];
+                switch (arg)
+                {
+                    case "-h":
+                    case "--help":
+                        stderr.print(USAGE);
+                        return EXIT_VALID;
+                    case "-t":
+                    case "--threads":
+                        String n = value(args, ++i, arg);
+                        threads = n.matches("[0-9]{1,4}") ? Integer.parseInt(n) : 0;
+                        if (threads < 1)
+                            throw new IllegalArgumentException("The number of threads must be at least 1.");
+                        break;
+                    case "-f":
+                    case "--format":
+                        format = choice(GMNFileProcessor.Format.class, value(args, ++i, arg), "format");
+                        break;
+                    case "-o":
+                    case "--output":
+                        output = Paths.get(value(args, ++i, arg));
+                        break;
+                    case "-q":
+                    case "--quiet":
+                        quiet = true;
+                        break;
+                    case "-c":
+                    case "--column":
+                        column = value(args, ++i, arg);
+                        break;
+                    case "-d":
+                    case "--delimiter":
+                        String d = value(args, ++i, arg);
+                        if (d.equals("tab"))
+                            d = "\t";
+                        if (d.length() != 1)
+                            throw new IllegalArgumentException("The delimiter must be a single character.");
+                        delimiter = d.charAt(0);
+                        break;
+                    case "--no-header":
+                        header = false;
+                        break;
+                    case "-r":
+                    case "--rejects":
+                        rejects = true;
+                        break;
+                    default:
+                        if (arg.startsWith("-") && !arg.equals("-"))
+                            throw new IllegalArgumentException("Unknown option: " + arg);
+                        if (mode == null)
+                            mode = choice(GMNFileProcessor.Mode.class, arg, "operation");
+                        else
+                            inputs.add(arg);
+                }
+            }
+            if (mode == null)
+                throw new IllegalArgumentException("Missing operation: verify or complete.");
+            if (column == null && (rejects || !header || delimiter != ','))
+                throw new IllegalArgumentException("The CSV options require --column.");
+            if (column != null && format != GMNFileProcessor.Format.PLAIN)
+                throw new IllegalArgumentException("The output format does not apply with --column.");
+            if (column != null && inputs.size() > 1)
+                throw new IllegalArgumentException("Only one input may be given with --column.");
+
+            // The output is truncated before the inputs are read
+            if (output != null)
+                for (String input : inputs)
+                    if (!input.equals("-") && sameFile(output, Paths.get(input)))
+                        throw new IllegalArgumentException("The output must not be one of the inputs: " + input);
+        }
+        catch (IllegalArgumentException e)
+        {
+            stderr.println("GMNCommand: " + e.getMessage());
+            stderr.print(USAGE);
+            return EXIT_USAGE;
+        }
+        if (inputs.isEmpty())
+            inputs.add("-");
+        GMNColumnScanner scanner;
+        try
+        {
+            scanner = column == null ? null : scanner(mode, column, delimiter, header);
+        }
+        catch (IllegalArgumentException | IllegalStateException e)
+        {
+            stderr.println("GMNCommand: " + e.getMessage());
+            return EXIT_USAGE;
+        }
+
+        GMNFileProcessor processor = new GMNFileProcessor(mode, format);
+        GMNFileProcessor.Summary total = new GMNFileProcessor.Summary();
+        ExecutorService pool = threads > 1 ? Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "GMNCommand");
+            t.setDaemon(true);
+            return t;
+        }) : null;
+        long start = System.nanoTime();
+        boolean failed = false;
+        try (FileChannel file = output == null ? null : FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            WritableByteChannel out = file != null ? file : stdout;
+            if (scanner == null)
+                processor.writeHeader(out);
+
+            // An input that cannot be read is reported and the others are
+            // still processed
+            for (String input : inputs)
+            {
+                try
+                {
+                    GMNFileProcessor.Summary summary;
+                    if (scanner != null)
+                        summary = scan(scanner, input.equals("-") ? stdin : null, input, out, rejects);
+                    else if (input.equals("-"))
+                        summary = processor.process(stdin, out);
+                    else if (pool == null)
+                        summary = processor.process(Paths.get(input), out);
+                    else
+                        summary = processor.processParallel(Paths.get(input), out, pool, threads);
+                    total.add(summary);
+                }
+                catch (IOException e)
+                {
+                    stderr.println("GMNCommand: " + (input.equals("-") ? "standard input" : input) + ": " + e);
+                    failed = true;
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            stderr.println("GMNCommand: " + (output != null ? output.toString() : "standard output") + ": " + e);
+            failed = true;
+        }
+        finally
+        {
+            if (pool != null)
+                pool.shutdownNow();
+        }
+        long nanos = System.nanoTime() - start;
+
+        if (!quiet)
+            stderr.println(report(mode, total, nanos));
+        if (failed)
+            return EXIT_IO_ERROR;
+        return total.getInvalid() == 0 ? EXIT_VALID : EXIT_INVALID;
+    }
+
+    // Whether two paths name the same file, including through links
+    private static boolean sameFile(Path a, Path b)
+    {
+        try
+        {
+            if (Files.exists(a) && Files.exists(b))
+                return Files.isSameFile(a, b);
+        }
+        catch (IOException e)
+        {
+            // Compare the names instead
+        }
+        return a.toAbsolutePath().normalize().equals(b.toAbsolutePath().normalize());
+    }
+
+    private static GMNColumnScanner scanner(GMNFileProcessor.Mode mode, String column, char delimiter, boolean header)
+    {
+        GMNColumnScanner.Builder builder = new GMNColumnScanner.Builder(mode).delimiter(delimiter).header(header);
+        if (column.matches("[0-9]{1,9}"))
+            builder.column(Integer.parseInt(column));
+        else
+            builder.column(column);
+        return builder.build();
+    }
+
+    private static GMNFileProcessor.Summary scan(GMNColumnScanner scanner, ReadableByteChannel stdin, String input,
+                                                 WritableByteChannel out, boolean rejects)
+        throws IOException
+    {
+        if (stdin != null)
+            return rejects ? scanner.reject(stdin, out) : scanner.annotate(stdin, out);
+        try (FileChannel in = FileChannel.open(Paths.get(input), StandardOpenOption.READ))
+        {
+            return rejects ? scanner.reject(in, out) : scanner.annotate(in, out);
+        }
+    }
+
+    // The throughput and the counts of lines by outcome
+    static String report(GMNFileProcessor.Mode mode, GMNFileProcessor.Summary summary, long nanos)
+    {
+        double seconds = nanos / 1e9;
+        return String.format(Locale.ROOT, "%s: %d records in %.3f s, %.0f records/s, %s",
+            mode.name().toLowerCase(Locale.ROOT), summary.getLines(), seconds,
+            seconds > 0 ? summary.getLines() / seconds : 0.0, summary);
+    }
+
+    private static <E extends Enum<E>> E choice(Class<E> type, String value, String what)
+    {
+        try
+        {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IllegalArgumentException("Unknown " + what + ": " + value);
+        }
+    }
+
+    private static String value(String[] args, int i, String option)
+    {
+        if (i >= args.length)
+            throw new IllegalArgumentException("Missing value for " + option);
+        return args[i];
+    }
+
+}
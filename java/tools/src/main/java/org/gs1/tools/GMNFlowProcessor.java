@@ -0,0 +1,612 @@
+package org.gs1.tools;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.gs1.GMNBatch;
+import org.gs1.GMNValidationResult;
+
+/**
+ * A {@link Flow.Processor} that verifies or completes a stream of healthcare
+ * GMNs, emitting one {@link Result} for each input in the order determined by
+ * the processor's configuration.
+ *
+ * Inputs are requested from upstream in batches of up to a configurable size
+ * and each batch is processed by a {@link GMNBatch}. Upstream demand follows
+ * downstream demand, so a slow subscriber holds back the publisher rather
+ * than causing results to accumulate. A batch is no larger than the
+ * outstanding downstream demand and is processed as soon as all of its inputs
+ * have arrived, so that a subscriber requesting a few results from a live
+ * source receives them without waiting for a full batch.
+ *
+ * With the default parallelism of one and no executor, each batch is
+ * processed on the thread that delivers its last input, so that there is no
+ * thread hop at all. Given an executor, up to {@code parallelism} batches are
+ * processed concurrently, one task per batch, and results are emitted either
+ * in input order or as each batch completes.
+ *
+ * A processor accepts a single subscriber. Inputs may be character sequences
+ * or, for byte slices, ByteBuffers whose remaining bytes are the ASCII
+ * characters of a healthcare GMN. A buffer must not be modified until its
+ * result has been emitted.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public final class GMNFlowProcessor<T> implements Flow.Processor<T, GMNFlowProcessor.Result<T>>
+{
+
+    /**
+     * Default maximum number of inputs requested from upstream and processed together.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * The operation applied to each input.
+     */
+    public enum Mode
+    {
+        /** Verify each input as a complete healthcare GMN. */
+        VERIFY,
+        /** Calculate the check character pair of each input as a partial healthcare GMN. */
+        COMPLETE
+    }
+
+    /**
+     * The outcome for a single input.
+     *
+     * @param <T> the input type.
+     */
+    public static final class Result<T>
+    {
+
+        private final T input;
+        private final GMNValidationResult.Reason reason;
+        private final int position;
+        private final String checkCharacters;
+
+        Result(T input, GMNValidationResult.Reason reason, int position, String checkCharacters)
+        {
+            this.input = input;
+            this.reason = reason;
+            this.position = position;
+            this.checkCharacters = checkCharacters;
+        }
+
+        /**
+         * The input to which this result applies.
+         *
+         * @return the input.
+         */
+        public T getInput()
+        {
+            return input;
+        }
+
+        /**
+         * Indicate whether the input was valid: a correct healthcare GMN when
+         * verifying, or a well-formed partial healthcare GMN when completing.
+         *
+         * @return true if the input was valid. Otherwise false.
+         */
+        public boolean isValid()
+        {
+            return reason == GMNValidationResult.Reason.VALID;
+        }
+
+        /**
+         * The reason for which the input was accepted or rejected.
+         *
+         * @return the reason, which is {@link GMNValidationResult.Reason#VALID} for valid input.
+         */
+        public GMNValidationResult.Reason getReason()
+        {
+            return reason;
+        }
+
+        /**
+         * The zero-based position of the character that caused the input to be rejected.
+         *
+         * @return the position, as described by {@link GMNValidationResult#getPosition()}.
+         */
+        public int getPosition()
+        {
+            return position;
+        }
+
+        /**
+         * The check character pair calculated for the input, which when
+         * verifying is the correct pair whether or not it matches the input.
+         *
+         * @return the check character pair, or null if the input was not well formed.
+         */
+        public String getCheckCharacters()
+        {
+            return checkCharacters;
+        }
+
+        @Override
+        public String toString()
+        {
+            return input + " : " + (checkCharacters != null ? checkCharacters + " " : "") + reason;
+        }
+
+    }
+
+    /**
+     * Configures and creates processors.
+     */
+    public static final class Builder
+    {
+
+        private final Mode mode;
+        private int batchSize = DEFAULT_BATCH_SIZE;
+        private int parallelism = 1;
+        private Executor executor;
+        private boolean ordered = true;
+
+        /**
+         * Start configuring a processor.
+         *
+         * @param mode the operation applied to each input.
+         */
+        public Builder(Mode mode)
+        {
+            if (mode == null)
+                throw new NullPointerException("mode");
+            this.mode = mode;
+        }
+
+        /**
+         * Set the maximum number of inputs requested from upstream and processed together.
+         *
+         * @param batchSize the batch size.
+         * @return this builder.
+         */
+        public Builder batchSize(int batchSize)
+        {
+            if (batchSize < 1)
+                throw new IllegalArgumentException("The batch size must be at least 1.");
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Process batches concurrently on an executor.
+         *
+         * @param parallelism the maximum number of batches processed concurrently.
+         * @param executor the executor on which batches are processed.
+         * @return this builder.
+         */
+        public Builder parallelism(int parallelism, Executor executor)
+        {
+            if (parallelism < 1)
+                throw new IllegalArgumentException("The parallelism must be at least 1.");
+            if (executor == null)
+                throw new NullPointerException("executor");
+            this.parallelism = parallelism;
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Set whether results are emitted in input order, which is the
+         * default, or as each batch completes.
+         *
+         * @param ordered true to preserve input order. Otherwise false.
+         * @return this builder.
+         */
+        public Builder ordered(boolean ordered)
+        {
+            this.ordered = ordered;
+            return this;
+        }
+
+        /**
+         * Create a processor of character sequences.
+         *
+         * @return a new processor.
+         */
+        public GMNFlowProcessor<CharSequence> forCharSequences()
+        {
+            return new GMNFlowProcessor<CharSequence>(this, (batch, s) -> batch.add(s));
+        }
+
+        /**
+         * Create a processor of byte slices.
+         *
+         * @return a new processor.
+         */
+        public GMNFlowProcessor<ByteBuffer> forByteBuffers()
+        {
+            return new GMNFlowProcessor<ByteBuffer>(this, new ByteBufferAdder());
+        }
+
+    }
+
+    // Appends an input to a batch. Called serially by the upstream thread.
+    private interface Adder<T>
+    {
+        void add(GMNBatch batch, T item);
+    }
+
+    private static final class ByteBufferAdder implements Adder<ByteBuffer>
+    {
+        private byte[] scratch = new byte[32];
+
+        @Override
+        public void add(GMNBatch batch, ByteBuffer buf)
+        {
+            int len = buf.remaining();
+            if (buf.hasArray())
+            {
+                batch.add(buf.array(), buf.arrayOffset() + buf.position(), len);
+                return;
+            }
+            if (scratch.length < len)
+                scratch = new byte[len];
+            buf.duplicate().get(scratch, 0, len);
+            batch.add(scratch, 0, len);
+        }
+    }
+
+    // A batch of inputs, which becomes ready once its results are calculated
+    private static final class Chunk<T>
+    {
+        final GMNBatch batch;
+        Object[] items;
+        int count;
+        Result<T>[] results;
+        int next;
+        volatile boolean ready;
+
+        Chunk(GMNBatch batch, int batchSize)
+        {
+            this.batch = batch;
+            this.items = new Object[batchSize];
+        }
+    }
+
+    private final Mode mode;
+    private final int batchSize;
+    private final int parallelism;
+    private final Executor executor;
+    private final boolean ordered;
+    private final Adder<T> adder;
+
+    // Batches available for reuse
+    private final Queue<GMNBatch> batches = new ConcurrentLinkedQueue<GMNBatch>();
+
+    // Chunks awaiting emission. When ordered, chunks are queued as they are
+    // filled, otherwise as they become ready.
+    private final Queue<Chunk<T>> output = new ConcurrentLinkedQueue<Chunk<T>>();
+
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile Flow.Subscription upstream;
+    private volatile Flow.Subscriber<? super Result<T>> downstream;
+    private volatile boolean done;
+    private volatile boolean cancelled;
+    private volatile Throwable error;
+
+    // Accessed only by the upstream thread
+    private Chunk<T> filling;
+
+    // Written only within the drain loop, and read by the upstream thread to
+    // find the last input of each request
+    private volatile long upstreamRequested;
+
+    // Accessed only within the drain loop
+    private long emitted;
+    private boolean terminated;
+    private boolean upstreamCancelled;
+
+    private GMNFlowProcessor(Builder builder, Adder<T> adder)
+    {
+        this.mode = builder.mode;
+        this.batchSize = builder.batchSize;
+        this.parallelism = builder.parallelism;
+        this.executor = builder.executor;
+        this.ordered = builder.ordered;
+        this.adder = adder;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Result<T>> subscriber)
+    {
+        if (subscriber == null)
+            throw new NullPointerException("subscriber");
+        synchronized (this)
+        {
+            if (downstream == null && !cancelled)
+            {
+                subscriber.onSubscribe(new Downstream());
+                downstream = subscriber;
+                drain();
+                return;
+            }
+        }
+        subscriber.onSubscribe(new Flow.Subscription()
+        {
+            @Override
+            public void request(long n)
+            {
+            }
+
+            @Override
+            public void cancel()
+            {
+            }
+        });
+        subscriber.onError(new IllegalStateException("A GMNFlowProcessor accepts only a single subscriber."));
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription)
+    {
+        if (upstream != null)
+        {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        drain();
+    }
+
+    @Override
+    public void onNext(T item)
+    {
+        if (item == null)
+            throw new NullPointerException("item");
+        if (done || cancelled)
+            return;
+        Chunk<T> c = filling;
+        if (c == null)
+        {
+            GMNBatch b = batches.poll();
+            c = filling = new Chunk<T>(b != null ? b : new GMNBatch(batchSize), batchSize);
+        }
+        adder.add(c.batch, item);
+        c.items[c.count++] = item;
+
+        // A batch is complete when it is full or holds the last requested input
+        boolean last = c.count == batchSize || received.get() + 1 == upstreamRequested;
+        if (last)
+            submit(c);
+        received.incrementAndGet();
+        if (last)
+            drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable)
+    {
+        if (throwable == null)
+            throw new NullPointerException("throwable");
+        if (done)
+            return;
+        error = throwable;
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete()
+    {
+        if (done)
+            return;
+        Chunk<T> c = filling;
+        if (c != null)
+            submit(c);
+        done = true;
+        drain();
+    }
+
+    // Process a filled chunk, inline or on the executor
+    private void submit(Chunk<T> c)
+    {
+        filling = null;
+        inFlight.incrementAndGet();
+        if (ordered)
+            output.offer(c);
+        if (executor == null)
+        {
+            process(c);
+            return;
+        }
+        try
+        {
+            executor.execute(() -> {
+                process(c);
+                drain();
+            });
+        }
+        catch (RuntimeException e)
+        {
+            fail(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void process(Chunk<T> c)
+    {
+        try
+        {
+            GMNBatch b = c.batch;
+            if (mode == Mode.VERIFY)
+                b.verify();
+            else
+                b.complete();
+            Result<T>[] r = (Result<T>[]) new Result<?>[c.count];
+            for (int i = 0; i < c.count; i++)
+                r[i] = new Result<T>((T) c.items[i], b.getReason(i), b.getPosition(i), b.getCheckCharacters(i));
+            c.results = r;
+            c.items = null;
+            b.clear();
+            batches.offer(b);
+            c.ready = true;
+            if (!ordered)
+                output.offer(c);
+        }
+        catch (RuntimeException e)
+        {
+            fail(e);
+        }
+        finally
+        {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void fail(Throwable e)
+    {
+        if (error == null)
+            error = e;
+        done = true;
+    }
+
+    // Emit ready results to the extent of downstream demand, signal
+    // termination and request further inputs from upstream. The loop is
+    // entered by one thread at a time; other callers leave a note for it to
+    // run again.
+    private void drain()
+    {
+        if (wip.getAndIncrement() != 0)
+            return;
+        int missed = 1;
+        do
+        {
+            Flow.Subscriber<? super Result<T>> a = downstream;
+            if (a != null && !terminated)
+            {
+                if (cancelled)
+                {
+                    terminated = true;
+                    cancelUpstream();
+                    output.clear();
+                }
+                else if (error != null)
+                {
+                    terminated = true;
+                    cancelUpstream();
+                    output.clear();
+                    a.onError(error);
+                }
+                else
+                {
+                    long r = requested.get();
+                    while (emitted != r && !cancelled)
+                    {
+                        Chunk<T> c = output.peek();
+                        if (c == null || !c.ready)
+                            break;
+                        Result<T> result = c.results[c.next];
+                        c.results[c.next++] = null;
+                        if (c.next == c.results.length)
+                            output.poll();
+                        emitted++;
+                        a.onNext(result);
+                    }
+                    // Cancellation or an error during emission is handled on the next pass
+                    if (cancelled || error != null)
+                    {
+                        wip.incrementAndGet();
+                    }
+                    else if (done && inFlight.get() == 0 && output.isEmpty())
+                    {
+                        terminated = true;
+                        a.onComplete();
+                    }
+                    else
+                    {
+                        requestUpstream();
+                    }
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        }
+        while (missed != 0);
+    }
+
+    // Request another batch once the previous one has arrived, if there is a
+    // free processing slot and downstream wants more than is already coming.
+    // The batch is limited to the outstanding demand.
+    private void requestUpstream()
+    {
+        Flow.Subscription s = upstream;
+        if (s == null || done)
+            return;
+        long u = upstreamRequested;
+        if (u != received.get() || inFlight.get() >= parallelism)
+            return;
+        long outstanding = requested.get() - u;
+        if (outstanding <= 0)
+            return;
+        int n = (int) Math.min(batchSize, outstanding);
+        upstreamRequested = u + n;
+        s.request(n);
+    }
+
+    private void cancelUpstream()
+    {
+        Flow.Subscription s = upstream;
+        if (s != null && !upstreamCancelled)
+        {
+            upstreamCancelled = true;
+            s.cancel();
+        }
+    }
+
+    private final class Downstream implements Flow.Subscription
+    {
+        @Override
+        public void request(long n)
+        {
+            if (n <= 0)
+            {
+                fail(new IllegalArgumentException("The number of results requested must be positive."));
+            }
+            else
+            {
+                long r, u;
+                do
+                {
+                    r = requested.get();
+                    u = r + n < 0 ? Long.MAX_VALUE : r + n;
+                }
+                while (!requested.compareAndSet(r, u));
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel()
+        {
+            cancelled = true;
+            drain();
+        }
+    }
+
+}
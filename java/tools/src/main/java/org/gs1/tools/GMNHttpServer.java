@@ -0,0 +1,351 @@
+package org.gs1.tools;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.gs1.GMNBatch;
+import org.gs1.GMNValidationResult;
+import org.gs1.HealthcareGMN;
+
+/**
+ * A small HTTP service that verifies and completes healthcare GMNs, built on
+ * the JDK's {@code com.sun.net.httpserver}.
+ *
+ * <ul>
+ * <li>{@code GET /verify?gmn=...} verifies a complete healthcare GMN.</li>
+ * <li>{@code GET /complete?gmn=...} calculates the check character pair of a partial healthcare GMN.</li>
+ * <li>{@code POST /batch/verify} and {@code POST /batch/complete} process a
+ * request body of one input per line, returning one result per line.</li>
+ * </ul>
+ *
+ * Each result is a JSON object with the members {@code input}, {@code valid},
+ * {@code reason}, {@code position}, {@code checkCharacters} and, for invalid
+ * input, {@code message}. Batch responses are newline-delimited JSON.
+ *
+ * Exchanges are handled on virtual threads when the JVM provides them, and
+ * otherwise on a cached thread pool. Concurrent single-GMN requests are
+ * coalesced into micro-batches by a {@link GMNRequestCoalescer}.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public final class GMNHttpServer implements AutoCloseable
+{
+
+    /**
+     * Default port on which the service listens when run from the command line.
+     */
+    public static final int DEFAULT_PORT = 8080;
+
+    // Number of lines of a batch request processed together
+    private static final int BATCH_ROWS = 1024;
+
+    // Time for which a single-GMN request waits for its batch
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final GMNRequestCoalescer coalescer;
+
+    /**
+     * Create a service bound to the given address. The service does not accept requests until it is started.
+     *
+     * @param address the address to bind, with port zero for an ephemeral port.
+     * @param maxBatch the maximum number of single-GMN requests coalesced into one batch.
+     * @throws IOException if the address cannot be bound.
+     */
+    public GMNHttpServer(InetSocketAddress address, int maxBatch)
+        throws IOException
+    {
+        this.server = HttpServer.create(address, 0);
+        this.executor = newExecutor();
+        this.coalescer = new GMNRequestCoalescer(maxBatch);
+        server.setExecutor(executor);
+        server.createContext("/verify", e -> single(e, GMNFlowProcessor.Mode.VERIFY));
+        server.createContext("/complete", e -> single(e, GMNFlowProcessor.Mode.COMPLETE));
+        server.createContext("/batch/verify", e -> batch(e, GMNFlowProcessor.Mode.VERIFY));
+        server.createContext("/batch/complete", e -> batch(e, GMNFlowProcessor.Mode.COMPLETE));
+    }
+
+    /**
+     * Start accepting requests.
+     */
+    public void start()
+    {
+        server.start();
+    }
+
+    /**
+     * The port on which the service listens.
+     *
+     * @return the bound port.
+     */
+    public int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * The coalescer of single-GMN requests, whose counters show the degree of coalescing.
+     *
+     * @return the coalescer.
+     */
+    public GMNRequestCoalescer getCoalescer()
+    {
+        return coalescer;
+    }
+
+    /**
+     * Stop accepting requests, wait briefly for exchanges in progress and release all resources.
+     */
+    @Override
+    public void close()
+    {
+        server.stop(1);
+        coalescer.close();
+        executor.shutdown();
+    }
+
+    /**
+     * Run the service until the JVM is stopped.
+     *
+     * @param args optionally the port on which to listen.
+     * @throws IOException if the port cannot be bound.
+     */
+    public static void main(String[] args)
+        throws IOException
+    {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        GMNHttpServer s = new GMNHttpServer(new InetSocketAddress(port), GMNRequestCoalescer.DEFAULT_MAX_BATCH);
+        s.start();
+        System.out.println("Listening on port " + s.getPort());
+    }
+
+    // A virtual thread per exchange where the JVM provides them, from Java 21
+    static ExecutorService newExecutor()
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "GMNHttpServer");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    private void single(HttpExchange e, GMNFlowProcessor.Mode mode)
+        throws IOException
+    {
+        try
+        {
+            if (!"GET".equals(e.getRequestMethod()))
+            {
+                send(e, 405, "Use GET.\n");
+                return;
+            }
+            String gmn;
+            try
+            {
+                gmn = parameter(e.getRequestURI().getRawQuery(), "gmn");
+            }
+            catch (IllegalArgumentException x)
+            {
+                send(e, 400, "Malformed query.\n");
+                return;
+            }
+            if (gmn == null)
+            {
+                send(e, 400, "Missing parameter: gmn\n");
+                return;
+            }
+            GMNFlowProcessor.Result<String> r;
+            try
+            {
+                r = coalescer.submit(mode, gmn).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException x)
+            {
+                Thread.currentThread().interrupt();
+                send(e, 503, "Interrupted.\n");
+                return;
+            }
+            catch (ExecutionException x)
+            {
+                send(e, 503, x.getCause().getMessage() + "\n");
+                return;
+            }
+            catch (TimeoutException x)
+            {
+                send(e, 503, "Timed out.\n");
+                return;
+            }
+            StringBuilder sb = new StringBuilder();
+            json(sb, r, mode);
+            sb.append('\n');
+            e.getResponseHeaders().set("Content-Type", "application/json");
+            send(e, 200, sb.toString());
+        }
+        finally
+        {
+            e.close();
+        }
+    }
+
+    private void batch(HttpExchange e, GMNFlowProcessor.Mode mode)
+        throws IOException
+    {
+        try
+        {
+            if (!"POST".equals(e.getRequestMethod()))
+            {
+                send(e, 405, "Use POST.\n");
+                return;
+            }
+            e.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+            e.sendResponseHeaders(200, 0);
+            BufferedReader in = new BufferedReader(new InputStreamReader(e.getRequestBody(), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(e.getResponseBody(), StandardCharsets.UTF_8), 1 << 16);
+            GMNBatch batch = new GMNBatch(BATCH_ROWS);
+            List<String> inputs = new ArrayList<String>(BATCH_ROWS);
+            StringBuilder sb = new StringBuilder();
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                line = line.trim();
+                if (line.isEmpty())
+                    continue;
+                batch.add(line);
+                inputs.add(line);
+                if (inputs.size() == BATCH_ROWS)
+                    flush(batch, inputs, mode, sb, out);
+            }
+            flush(batch, inputs, mode, sb, out);
+            out.flush();
+        }
+        finally
+        {
+            e.close();
+        }
+    }
+
+    private static void flush(GMNBatch batch, List<String> inputs, GMNFlowProcessor.Mode mode, StringBuilder sb, Writer out)
+        throws IOException
+    {
+        if (mode == GMNFlowProcessor.Mode.VERIFY)
+            batch.verify();
+        else
+            batch.complete();
+        for (int i = 0; i < inputs.size(); i++)
+        {
+            sb.setLength(0);
+            json(sb, new GMNFlowProcessor.Result<String>(inputs.get(i), batch.getReason(i), batch.getPosition(i), batch.getCheckCharacters(i)), mode);
+            sb.append('\n');
+            out.append(sb);
+        }
+        batch.clear();
+        inputs.clear();
+    }
+
+    // Format a result as a JSON object. The message of an invalid input is
+    // recalculated since only the reason and position are batched.
+    static void json(StringBuilder sb, GMNFlowProcessor.Result<String> r, GMNFlowProcessor.Mode mode)
+    {
+        sb.append("{\"input\":");
+        string(sb, r.getInput());
+        sb.append(",\"valid\":").append(r.isValid());
+        sb.append(",\"reason\":\"").append(r.getReason().name()).append('"');
+        sb.append(",\"position\":").append(r.getPosition());
+        sb.append(",\"checkCharacters\":");
+        if (r.getCheckCharacters() != null)
+            string(sb, r.getCheckCharacters());
+        else
+            sb.append("null");
+        if (!r.isValid())
+        {
+            GMNValidationResult v = mode == GMNFlowProcessor.Mode.VERIFY ?
+                HealthcareGMN.validate(r.getInput()) : HealthcareGMN.validatePartial(r.getInput());
+            sb.append(",\"message\":");
+            string(sb, v.getMessage());
+        }
+        sb.append('}');
+    }
+
+    private static void string(StringBuilder sb, String s)
+    {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if (c < 0x20)
+                sb.append(String.format("\\u%04x", (int) c));
+            else
+                sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    private static String parameter(String rawQuery, String name)
+    {
+        if (rawQuery == null)
+            return null;
+        for (String pair : rawQuery.split("&"))
+        {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            if (key.equals(name))
+                return eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+        }
+        return null;
+    }
+
+    private static void send(HttpExchange e, int status, String body)
+        throws IOException
+    {
+        byte[] b = body.getBytes(StandardCharsets.UTF_8);
+        e.sendResponseHeaders(status, b.length);
+        try (OutputStream out = e.getResponseBody())
+        {
+            out.write(b);
+        }
+    }
+
+}
@@ -0,0 +1,304 @@
+package org.gs1.tools;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.gs1.GS1Exception;
+import org.gs1.HealthcareGMN;
+
+/**
+ * A load-test harness for {@link GMNHttpServer} that issues single-GMN verify
+ * requests from a number of concurrent clients for a fixed duration and
+ * reports the throughput and the latency percentiles observed by the clients.
+ *
+ * Run against an embedded server on an ephemeral port with
+ *
+ * <pre>
+ *     java -cp ... org.gs1.tools.GMNLoadTest [concurrency] [seconds]
+ * </pre>
+ *
+ * or against a running service by giving its base URL as a third argument.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public final class GMNLoadTest
+{
+
+    private static final String CSET82 =
+        "!\"%&'()*+,-./0123456789:;<=>?ABCDEFGHIJKLMNOPQRSTUVWXYZ" +
+        "_abcdefghijklmnopqrstuvwxyz";
+
+    private GMNLoadTest() {}
+
+    /**
+     * The outcome of a load test.
+     */
+    public static final class Report
+    {
+
+        private final long requests;
+        private final long errors;
+        private final long nanos;
+        private final long p50;
+        private final long p99;
+        private final long batches;
+
+        Report(long requests, long errors, long nanos, long p50, long p99, long batches)
+        {
+            this.requests = requests;
+            this.errors = errors;
+            this.nanos = nanos;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.batches = batches;
+        }
+
+        /**
+         * The number of requests that completed with status 200.
+         *
+         * @return the request count.
+         */
+        public long getRequests()
+        {
+            return requests;
+        }
+
+        /**
+         * The number of requests that failed or completed with another status.
+         *
+         * @return the error count.
+         */
+        public long getErrors()
+        {
+            return errors;
+        }
+
+        /**
+         * The number of successful requests per second.
+         *
+         * @return the throughput.
+         */
+        public double getRequestsPerSecond()
+        {
+            return requests * 1e9 / nanos;
+        }
+
+        /**
+         * The median latency of the successful requests.
+         *
+         * @return the latency in nanoseconds.
+         */
+        public long getP50Nanos()
+        {
+            return p50;
+        }
+
+        /**
+         * The 99th percentile latency of the successful requests.
+         *
+         * @return the latency in nanoseconds.
+         */
+        public long getP99Nanos()
+        {
+            return p99;
+        }
+
+        /**
+         * The number of batches into which an embedded server coalesced the requests.
+         *
+         * @return the batch count, or -1 if the server was not embedded.
+         */
+        public long getBatches()
+        {
+            return batches;
+        }
+
+        @Override
+        public String toString()
+        {
+            String s = String.format("Requests: %d, errors: %d, requests/s: %.0f, p50: %.1f us, p99: %.1f us",
+                requests, errors, getRequestsPerSecond(), p50 / 1e3, p99 / 1e3);
+            if (batches >= 0)
+                s += String.format(", mean batch: %.2f", batches == 0 ? 0.0 : (double) (requests + errors) / batches);
+            return s;
+        }
+
+    }
+
+    /**
+     * Run a load test against a running service.
+     *
+     * @param base the base URL of the service, such as {@code http://localhost:8080}.
+     * @param concurrency the number of clients, each of which waits for its response before sending another request.
+     * @param duration how long to send requests for.
+     * @return the report.
+     * @throws InterruptedException if interrupted while waiting for the clients.
+     */
+    public static Report run(URI base, int concurrency, Duration duration)
+        throws InterruptedException
+    {
+        List<URI> uris = new ArrayList<URI>();
+        for (String gmn : inputs(1024, 1))
+            uris.add(base.resolve("/verify?gmn=" + URLEncoder.encode(gmn, StandardCharsets.UTF_8)));
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        AtomicLong errors = new AtomicLong();
+        long[][] latencies = new long[concurrency][];
+        int[] counts = new int[concurrency];
+        Thread[] threads = new Thread[concurrency];
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        for (int t = 0; t < concurrency; t++)
+        {
+            final int id = t;
+            threads[t] = new Thread(() -> {
+                long[] l = new long[1024];
+                int n = 0;
+                int next = id * 37;
+                while (System.nanoTime() < end)
+                {
+                    HttpRequest request = HttpRequest.newBuilder(uris.get(next++ & 1023)).GET().build();
+                    long t0 = System.nanoTime();
+                    try
+                    {
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        if (response.statusCode() != 200)
+                        {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                    }
+                    catch (IOException e)
+                    {
+                        errors.incrementAndGet();
+                        continue;
+                    }
+                    catch (InterruptedException e)
+                    {
+                        break;
+                    }
+                    if (n == l.length)
+                        l = Arrays.copyOf(l, n * 2);
+                    l[n++] = System.nanoTime() - t0;
+                }
+                latencies[id] = l;
+                counts[id] = n;
+            }, "GMNLoadTest-" + t);
+            threads[t].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        long nanos = System.nanoTime() - start;
+
+        int total = 0;
+        for (int c : counts)
+            total += c;
+        long[] all = new long[total];
+        int off = 0;
+        for (int t = 0; t < concurrency; t++)
+        {
+            System.arraycopy(latencies[t], 0, all, off, counts[t]);
+            off += counts[t];
+        }
+        Arrays.sort(all);
+        return new Report(total, errors.get(), nanos, percentile(all, 50), percentile(all, 99), -1);
+    }
+
+    /**
+     * Run a load test against an embedded service on an ephemeral port.
+     *
+     * @param concurrency the number of clients.
+     * @param duration how long to send requests for.
+     * @return the report, including the number of coalesced batches.
+     * @throws IOException if the service cannot be started.
+     * @throws InterruptedException if interrupted while waiting for the clients.
+     */
+    public static Report runEmbedded(int concurrency, Duration duration)
+        throws IOException, InterruptedException
+    {
+        try (GMNHttpServer server = new GMNHttpServer(new InetSocketAddress("127.0.0.1", 0), GMNRequestCoalescer.DEFAULT_MAX_BATCH))
+        {
+            server.start();
+            long before = server.getCoalescer().getBatchCount();
+            Report r = run(URI.create("http://127.0.0.1:" + server.getPort()), concurrency, duration);
+            return new Report(r.requests, r.errors, r.nanos, r.p50, r.p99, server.getCoalescer().getBatchCount() - before);
+        }
+    }
+
+    /**
+     * Run a load test and print its report.
+     *
+     * @param args the concurrency (default 64), the duration in seconds (default 10) and optionally the base URL of a running service.
+     * @throws Exception if the test cannot be run.
+     */
+    public static void main(String[] args)
+        throws Exception
+    {
+        int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        Duration duration = Duration.ofSeconds(args.length > 1 ? Long.parseLong(args[1]) : 10);
+        Report r = args.length > 2 ?
+            run(URI.create(args[2]), concurrency, duration) :
+            runEmbedded(concurrency, duration);
+        System.out.println(r);
+    }
+
+    private static long percentile(long[] sorted, double p)
+    {
+        if (sorted.length == 0)
+            return 0;
+        int rank = (int) Math.ceil(sorted.length * p / 100);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    // Valid healthcare GMNs of random lengths, with one in eight corrupted
+    private static List<String> inputs(int n, long seed)
+    {
+        Random rnd = new Random(seed);
+        List<String> out = new ArrayList<String>(n);
+        try
+        {
+            for (int i = 0; i < n; i++)
+            {
+                StringBuilder sb = new StringBuilder();
+                int len = 6 + rnd.nextInt(18);
+                for (int j = 0; j < len; j++)
+                    sb.append(j < 5 ? (char) ('0' + rnd.nextInt(10)) : CSET82.charAt(rnd.nextInt(82)));
+                String gmn = HealthcareGMN.addCheckCharacters(sb.toString());
+                out.add(i % 8 == 7 ? gmn.substring(0, gmn.length() - 1) + (gmn.endsWith("2") ? "3" : "2") : gmn);
+            }
+        }
+        catch (GS1Exception e)
+        {
+            throw new IllegalStateException(e);  // Not reached, since the inputs are well formed
+        }
+        return out;
+    }
+
+}
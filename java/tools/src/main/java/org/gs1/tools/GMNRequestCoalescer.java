@@ -0,0 +1,231 @@
+package org.gs1.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.gs1.GMNBatch;
+
+/**
+ * Coalesces concurrent requests to verify or complete single healthcare GMNs
+ * into micro-batches that are processed together by a {@link GMNBatch}.
+ *
+ * Requests are queued and taken by a single dispatcher thread, which
+ * processes everything that has accumulated, up to the maximum batch size,
+ * in one pass. There is no timed coalescing window: a request arriving at an
+ * idle dispatcher is processed at once, and batches grow naturally with the
+ * arrival rate while the dispatcher is busy.
+ *
+ * @author Copyright (c) 2019 GS1 AISBL.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+public final class GMNRequestCoalescer implements AutoCloseable
+{
+
+    /**
+     * Default maximum number of requests processed in one batch.
+     */
+    public static final int DEFAULT_MAX_BATCH = 1024;
+
+    private static final class Request
+    {
+        final GMNFlowProcessor.Mode mode;
+        final String input;
+        final CompletableFuture<GMNFlowProcessor.Result<String>> future = new CompletableFuture<GMNFlowProcessor.Result<String>>();
+
+        Request(GMNFlowProcessor.Mode mode, String input)
+        {
+            this.mode = mode;
+            this.input = input;
+        }
+    }
+
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<Request>();
+    private final int maxBatch;
+    private final Thread dispatcher;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * Create a coalescer with the default maximum batch size and start its dispatcher thread.
+     */
+    public GMNRequestCoalescer()
+    {
+        this(DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * Create a coalescer and start its dispatcher thread.
+     *
+     * @param maxBatch the maximum number of requests processed in one batch.
+     */
+    public GMNRequestCoalescer(int maxBatch)
+    {
+        if (maxBatch < 1)
+            throw new IllegalArgumentException("The maximum batch size must be at least 1.");
+        this.maxBatch = maxBatch;
+        this.dispatcher = new Thread(this::dispatch, "GMNRequestCoalescer");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Queue a request.
+     *
+     * @param mode whether to verify a complete or complete a partial healthcare GMN.
+     * @param input the full or partial healthcare GMN.
+     * @return a future that is completed with the result once the request's batch has been processed.
+     * @throws NullPointerException if the mode or input is null.
+     */
+    public CompletableFuture<GMNFlowProcessor.Result<String>> submit(GMNFlowProcessor.Mode mode, String input)
+    {
+        if (mode == null)
+            throw new NullPointerException("mode");
+        if (input == null)
+            throw new NullPointerException("input");
+        Request r = new Request(mode, input);
+        if (closed)
+        {
+            r.future.completeExceptionally(new IllegalStateException("The coalescer is closed."));
+            return r.future;
+        }
+        requests.increment();
+        queue.add(r);
+
+        // A close that ran between the check and the add has already failed
+        // the queued requests, so fail this one too
+        if (closed)
+            failQueued();
+        return r.future;
+    }
+
+    /**
+     * The number of requests submitted.
+     *
+     * @return the request count.
+     */
+    public long getRequestCount()
+    {
+        return requests.sum();
+    }
+
+    /**
+     * The number of batches processed, which is less than the number of requests to the extent that they were coalesced.
+     *
+     * @return the batch count.
+     */
+    public long getBatchCount()
+    {
+        return batches.sum();
+    }
+
+    /**
+     * Stop the dispatcher. Requests that have not been processed fail with an {@link IllegalStateException}.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        dispatcher.interrupt();
+        try
+        {
+            dispatcher.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        failQueued();
+    }
+
+    private void failQueued()
+    {
+        for (Request r; (r = queue.poll()) != null; )
+            r.future.completeExceptionally(new IllegalStateException("The coalescer is closed."));
+    }
+
+    private void dispatch()
+    {
+        List<Request> pending = new ArrayList<Request>(maxBatch);
+        GMNBatch verify = new GMNBatch(maxBatch);
+        GMNBatch complete = new GMNBatch(maxBatch);
+        List<Request> verifyRequests = new ArrayList<Request>(maxBatch);
+        List<Request> completeRequests = new ArrayList<Request>(maxBatch);
+        while (!closed)
+        {
+            try
+            {
+                pending.add(queue.take());
+            }
+            catch (InterruptedException e)
+            {
+                break;
+            }
+            queue.drainTo(pending, maxBatch - 1);
+
+            // A failure fails the requests of this batch only, and the
+            // dispatcher goes on to the next
+            try
+            {
+                for (Request r : pending)
+                {
+                    if (r.mode == GMNFlowProcessor.Mode.VERIFY)
+                    {
+                        verify.add(r.input);
+                        verifyRequests.add(r);
+                    }
+                    else
+                    {
+                        complete.add(r.input);
+                        completeRequests.add(r);
+                    }
+                }
+                if (verify.size() > 0)
+                    verify.verify();
+                if (complete.size() > 0)
+                    complete.complete();
+                finish(verify, verifyRequests);
+                finish(complete, completeRequests);
+            }
+            catch (RuntimeException e)
+            {
+                for (Request r : pending)
+                    r.future.completeExceptionally(e);
+            }
+            batches.increment();
+            pending.clear();
+            verify.clear();
+            complete.clear();
+            verifyRequests.clear();
+            completeRequests.clear();
+        }
+    }
+
+    private static void finish(GMNBatch batch, List<Request> requests)
+    {
+        for (int i = 0; i < requests.size(); i++)
+        {
+            Request r = requests.get(i);
+            r.future.complete(new GMNFlowProcessor.Result<String>(r.input, batch.getReason(i), batch.getPosition(i), batch.getCheckCharacters(i)));
+        }
+    }
+
+}
@@ -0,0 +1,142 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/*
+ * These are unit tests for the batch command.
+ *
+ * The output for files and standard input is compared with that of a
+ * sequential GMNFileProcessor, and the exit status and report are checked.
+ *
+ */
+import org.gs1.*;
+import org.gs1.tools.GMNCommand;
+
+public class GMNCommandTests
+{
+
+        @Rule
+        public TemporaryFolder folder = new TemporaryFolder();
+
+        private final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+        private int run(String stdin, String... args)
+        {
+            ReadableByteChannel in = Channels.newChannel(new ByteArrayInputStream(stdin.getBytes(StandardCharsets.UTF_8)));
+            return GMNCommand.run(args, in, Channels.newChannel(stdout), new PrintStream(stderr, true));
+        }
+
+        private File file(String content) throws Exception
+        {
+            File f = folder.newFile();
+            Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+            return f;
+        }
+
+        private static String content(int lines, boolean allValid)
+        {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < lines; i++)
+                sb.append(allValid || i % 3 != 0 ? "1987654Ad4X4bL5ttr2310c2K" : "1987654Ad4X4bL5ttr2310cXK").append('\n');
+            return sb.toString();
+        }
+
+        private String sequential(String content, GMNFileProcessor.Mode mode, GMNFileProcessor.Format format) throws Exception
+        {
+            File out = folder.newFile();
+            new GMNFileProcessor(mode, format).process(file(content).toPath(), out.toPath());
+            return new String(Files.readAllBytes(out.toPath()), StandardCharsets.UTF_8);
+        }
+
+        @Test
+        public void verifyFilesInParallel() throws Exception
+        {
+            String content = content(50000, false);
+            File a = file(content);
+            File b = file(content);
+            assertEquals(GMNCommand.EXIT_INVALID, run("", "verify", "--threads", "4", "--format", "ndjson", a.getPath(), b.getPath()));
+            String expected = sequential(content, GMNFileProcessor.Mode.VERIFY, GMNFileProcessor.Format.NDJSON);
+            assertEquals(expected + expected, new String(stdout.toByteArray(), StandardCharsets.UTF_8));
+            String report = new String(stderr.toByteArray(), StandardCharsets.UTF_8);
+            assertTrue(report, report.startsWith("verify: 100000 records in "));
+            assertTrue(report, report.contains("records/s, lines=100000, valid=66666, invalid=33334, CHECK_MISMATCH=33334"));
+        }
+
+        @Test
+        public void completeStandardInputToFile() throws Exception
+        {
+            String content = "1987654Ad4X4bL5ttr2310c\n12345\n";
+            File out = folder.newFile();
+            assertEquals(GMNCommand.EXIT_INVALID, run(content, "complete", "-f", "csv", "-o", out.getPath(), "-q", "-"));
+            assertEquals(sequential(content, GMNFileProcessor.Mode.COMPLETE, GMNFileProcessor.Format.CSV),
+                new String(Files.readAllBytes(out.toPath()), StandardCharsets.UTF_8));
+            assertEquals(0, stdout.size());
+            assertEquals(0, stderr.size());
+        }
+
+        @Test
+        public void allValidExitsWithZero() throws Exception
+        {
+            String content = content(1000, true);
+            assertEquals(GMNCommand.EXIT_VALID, run(content, "verify", "-t", "1", "-q"));
+            assertEquals(sequential(content, GMNFileProcessor.Mode.VERIFY, GMNFileProcessor.Format.PLAIN),
+                new String(stdout.toByteArray(), StandardCharsets.UTF_8));
+        }
+
+        @Test
+        public void usageAndInputErrors() throws Exception
+        {
+            assertEquals(GMNCommand.EXIT_USAGE, run(""));
+            assertEquals(GMNCommand.EXIT_USAGE, run("", "check"));
+            assertEquals(GMNCommand.EXIT_USAGE, run("", "verify", "--format", "xml"));
+            assertEquals(GMNCommand.EXIT_USAGE, run("", "verify", "--threads", "0"));
+            assertEquals(GMNCommand.EXIT_USAGE, run("", "verify", "--threads"));
+            assertEquals(GMNCommand.EXIT_USAGE, run("", "verify", "--bogus"));
+            assertTrue(new String(stderr.toByteArray(), StandardCharsets.UTF_8).contains("Unknown format: xml"));
+            assertEquals(GMNCommand.EXIT_IO_ERROR, run("", "verify", new File(folder.getRoot(), "missing").getPath()));
+            assertEquals(0, stdout.size());
+
+            // The output must not truncate an input
+            File in = file(content(10, true));
+            assertEquals(GMNCommand.EXIT_USAGE, run("", "verify", "-o", in.getPath(), in.getPath()));
+            assertEquals(content(10, true), new String(Files.readAllBytes(in.toPath()), StandardCharsets.UTF_8));
+        }
+
+        @Test
+        public void unreadableInputSkipped() throws Exception
+        {
+            String content = content(100, true);
+            File a = file(content);
+            File b = file(content);
+            String missing = new File(folder.getRoot(), "missing").getPath();
+            assertEquals(GMNCommand.EXIT_IO_ERROR, run("", "verify", a.getPath(), missing, b.getPath()));
+            String expected = sequential(content, GMNFileProcessor.Mode.VERIFY, GMNFileProcessor.Format.PLAIN);
+            assertEquals(expected + expected, new String(stdout.toByteArray(), StandardCharsets.UTF_8));
+            String report = new String(stderr.toByteArray(), StandardCharsets.UTF_8);
+            assertTrue(report, report.contains("GMNCommand: " + missing + ": "));
+            assertTrue(report, report.contains("verify: 200 records in "));
+        }
+
+        @Test
+        public void csvColumnRejects() throws Exception
+        {
+            String content = "id\tgmn\n1\t1987654Ad4X4bL5ttr2310c2K\n2\t1987654Ad4X4bL5ttr2310cXK\n";
+            assertEquals(GMNCommand.EXIT_INVALID, run(content, "verify", "--column", "gmn", "-d", "tab", "--rejects", "-q"));
+            assertEquals("id\tgmn\tgmnCheck\n2\t1987654Ad4X4bL5ttr2310cXK\tCHECK_MISMATCH\n",
+                new String(stdout.toByteArray(), StandardCharsets.UTF_8));
+            assertEquals(GMNCommand.EXIT_USAGE, run(content, "verify", "--rejects"));
+            assertEquals(GMNCommand.EXIT_USAGE, run(content, "verify", "-c", "1", "-f", "csv"));
+        }
+
+}
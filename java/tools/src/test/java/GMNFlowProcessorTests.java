@@ -0,0 +1,316 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * These are unit tests for the reactive verification processor.
+ *
+ * Results are compared with HealthcareGMN.validate and validatePartial, and
+ * a synchronous publisher is used to observe upstream demand.
+ *
+ */
+import org.gs1.*;
+import org.gs1.tools.GMNFlowProcessor;
+import org.gs1.tools.GMNFlowProcessor.Mode;
+import org.gs1.tools.GMNFlowProcessor.Result;
+
+public class GMNFlowProcessorTests
+{
+
+        // Mostly valid healthcare GMNs, with some corrupted
+        private static List<String> inputs(int n, long seed) throws Exception
+        {
+            Random rnd = new Random(seed);
+            List<String> out = new ArrayList<String>();
+            for (int i = 0; i < n; i++)
+            {
+                String gmn = GMNTestInputs.randomGMN(rnd);
+                if (rnd.nextInt(5) == 0)
+                    gmn = gmn.substring(0, 3) + "X" + gmn.substring(4);
+                out.add(gmn);
+            }
+            return out;
+        }
+
+        // Emits items synchronously on the requesting thread and records demand
+        private static final class ListPublisher<T> implements Flow.Publisher<T>
+        {
+            final List<T> items;
+            final List<Long> requests = Collections.synchronizedList(new ArrayList<Long>());
+            int next;
+            boolean emitting;
+            long demand;
+
+            ListPublisher(List<T> items)
+            {
+                this.items = items;
+            }
+
+            @Override
+            public void subscribe(Flow.Subscriber<? super T> s)
+            {
+                s.onSubscribe(new Flow.Subscription()
+                {
+                    @Override
+                    public void request(long n)
+                    {
+                        requests.add(n);
+                        demand += n;
+                        if (emitting)
+                            return;
+                        emitting = true;
+                        while (demand > 0 && next < items.size())
+                        {
+                            demand--;
+                            s.onNext(items.get(next++));
+                        }
+                        if (next == items.size())
+                        {
+                            next++;
+                            s.onComplete();
+                        }
+                        emitting = false;
+                    }
+
+                    @Override
+                    public void cancel()
+                    {
+                        next = items.size() + 1;
+                    }
+                });
+            }
+        }
+
+        private static final class Collector<T> implements Flow.Subscriber<Result<T>>
+        {
+            final List<Result<T>> results = Collections.synchronizedList(new ArrayList<Result<T>>());
+            final CountDownLatch done = new CountDownLatch(1);
+            final long initial;
+            Flow.Subscription subscription;
+            volatile Throwable error;
+
+            Collector(long initial)
+            {
+                this.initial = initial;
+            }
+
+            @Override
+            public void onSubscribe(Flow.Subscription s)
+            {
+                subscription = s;
+                if (initial > 0)
+                    s.request(initial);
+            }
+
+            @Override
+            public void onNext(Result<T> r)
+            {
+                results.add(r);
+            }
+
+            @Override
+            public void onError(Throwable t)
+            {
+                error = t;
+                done.countDown();
+            }
+
+            @Override
+            public void onComplete()
+            {
+                done.countDown();
+            }
+        }
+
+        private static void checkVerified(List<String> in, List<Result<CharSequence>> out)
+        {
+            assertEquals(in.size(), out.size());
+            for (int i = 0; i < in.size(); i++)
+            {
+                Result<CharSequence> r = out.get(i);
+                GMNValidationResult v = HealthcareGMN.validate(r.getInput());
+                assertEquals(in.get(i), r.getInput());
+                assertEquals(v.getReason(), r.getReason());
+                assertEquals(v.getPosition(), r.getPosition());
+            }
+        }
+
+        @Test
+        public void verifyInlineOrdered() throws Exception
+        {
+            List<String> in = inputs(1000, 1);
+            GMNFlowProcessor<CharSequence> p = new GMNFlowProcessor.Builder(Mode.VERIFY).batchSize(64).forCharSequences();
+            Collector<CharSequence> c = new Collector<CharSequence>(Long.MAX_VALUE);
+            p.subscribe(c);
+            new ListPublisher<CharSequence>(new ArrayList<CharSequence>(in)).subscribe(p);
+            assertTrue(c.done.await(0, TimeUnit.SECONDS));  // No thread hop: complete on return
+            assertNull(c.error);
+            checkVerified(in, c.results);
+        }
+
+        @Test
+        public void verifyParallelOrderedAndUnordered() throws Exception
+        {
+            List<String> in = inputs(20000, 2);
+            ExecutorService pool = Executors.newFixedThreadPool(4);
+            try
+            {
+                for (boolean ordered : new boolean[] { true, false })
+                {
+                    GMNFlowProcessor<CharSequence> p = new GMNFlowProcessor.Builder(Mode.VERIFY)
+                        .batchSize(100).parallelism(4, pool).ordered(ordered).forCharSequences();
+                    Collector<CharSequence> c = new Collector<CharSequence>(Long.MAX_VALUE);
+                    p.subscribe(c);
+                    new ListPublisher<CharSequence>(new ArrayList<CharSequence>(in)).subscribe(p);
+                    assertTrue(c.done.await(30, TimeUnit.SECONDS));
+                    assertNull(c.error);
+                    if (ordered)
+                    {
+                        checkVerified(in, c.results);
+                    }
+                    else
+                    {
+                        List<String> seen = new ArrayList<String>();
+                        for (Result<CharSequence> r : c.results)
+                        {
+                            seen.add(r.getInput().toString());
+                            assertEquals(HealthcareGMN.validate(r.getInput()).getReason(), r.getReason());
+                        }
+                        Collections.sort(seen);
+                        List<String> expected = new ArrayList<String>(in);
+                        Collections.sort(expected);
+                        assertEquals(expected, seen);
+                    }
+                }
+            }
+            finally
+            {
+                pool.shutdown();
+            }
+        }
+
+        @Test
+        public void upstreamDemandFollowsDownstream() throws Exception
+        {
+            List<String> in = inputs(100, 3);
+            GMNFlowProcessor<CharSequence> p = new GMNFlowProcessor.Builder(Mode.VERIFY).batchSize(10).forCharSequences();
+            Collector<CharSequence> c = new Collector<CharSequence>(0);
+            p.subscribe(c);
+            ListPublisher<CharSequence> pub = new ListPublisher<CharSequence>(new ArrayList<CharSequence>(in));
+            pub.subscribe(p);
+            assertTrue(pub.requests.isEmpty());
+
+            // Upstream requests are limited to the batch size and to downstream demand
+            c.subscription.request(3);
+            assertEquals(3, c.results.size());
+            assertEquals(Collections.singletonList(3L), pub.requests);
+
+            c.subscription.request(15);
+            assertEquals(18, c.results.size());
+            assertEquals(Arrays.asList(3L, 10L, 5L), pub.requests);
+
+            c.subscription.request(Long.MAX_VALUE);
+            assertTrue(c.done.await(0, TimeUnit.SECONDS));
+            checkVerified(in, c.results);
+
+            Collector<CharSequence> second = new Collector<CharSequence>(1);
+            p.subscribe(second);
+            assertTrue(second.error instanceof IllegalStateException);
+        }
+
+        // Emits items only when the test supplies them and never completes, as a
+        // live source of scanning events
+        private static final class LivePublisher<T> implements Flow.Publisher<T>
+        {
+            Flow.Subscriber<? super T> subscriber;
+            long demand;
+
+            @Override
+            public void subscribe(Flow.Subscriber<? super T> s)
+            {
+                subscriber = s;
+                s.onSubscribe(new Flow.Subscription()
+                {
+                    @Override
+                    public void request(long n)
+                    {
+                        demand += n;
+                    }
+
+                    @Override
+                    public void cancel()
+                    {
+                    }
+                });
+            }
+
+            void emit(T item)
+            {
+                assertTrue(demand > 0);
+                demand--;
+                subscriber.onNext(item);
+            }
+        }
+
+        @Test
+        public void liveSourceEmitsAsRequested() throws Exception
+        {
+            List<String> in = inputs(3, 4);
+            GMNFlowProcessor<CharSequence> p = new GMNFlowProcessor.Builder(Mode.VERIFY).forCharSequences();
+            Collector<CharSequence> c = new Collector<CharSequence>(1);
+            p.subscribe(c);
+            LivePublisher<CharSequence> pub = new LivePublisher<CharSequence>();
+            pub.subscribe(p);
+
+            // A single result is delivered without waiting for a full batch
+            assertEquals(1, pub.demand);
+            pub.emit(in.get(0));
+            assertEquals(1, c.results.size());
+
+            // A batch is processed once all of its requested inputs have arrived
+            c.subscription.request(2);
+            assertEquals(2, pub.demand);
+            pub.emit(in.get(1));
+            assertEquals(1, c.results.size());
+            pub.emit(in.get(2));
+            checkVerified(in, c.results);
+            assertEquals(1, c.done.getCount());
+        }
+
+        @Test
+        public void completeByteBuffers() throws Exception
+        {
+            List<ByteBuffer> in = new ArrayList<ByteBuffer>();
+            in.add(ByteBuffer.wrap("xx1987654Ad4X4bL5ttr2310cxx".getBytes(StandardCharsets.US_ASCII), 2, 23));
+            ByteBuffer direct = ByteBuffer.allocateDirect(23);
+            direct.put("1987654Ad4X4bL5ttr2310c".getBytes(StandardCharsets.US_ASCII)).flip();
+            in.add(direct);
+            in.add(ByteBuffer.wrap("12345".getBytes(StandardCharsets.US_ASCII)));
+
+            GMNFlowProcessor<ByteBuffer> p = new GMNFlowProcessor.Builder(Mode.COMPLETE).batchSize(2).forByteBuffers();
+            Collector<ByteBuffer> c = new Collector<ByteBuffer>(Long.MAX_VALUE);
+            p.subscribe(c);
+            new ListPublisher<ByteBuffer>(in).subscribe(p);
+            assertTrue(c.done.await(0, TimeUnit.SECONDS));
+            assertEquals(3, c.results.size());
+            assertEquals("2K", c.results.get(0).getCheckCharacters());
+            assertEquals("2K", c.results.get(1).getCheckCharacters());
+            assertSame(direct, c.results.get(1).getInput());
+            assertFalse(c.results.get(2).isValid());
+            assertEquals(GMNValidationResult.Reason.TOO_SHORT, c.results.get(2).getReason());
+            assertNull(c.results.get(2).getCheckCharacters());
+        }
+
+}
@@ -0,0 +1,176 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * These are unit tests for the embedded HTTP verification service.
+ *
+ * A service is started on an ephemeral port for each test.
+ *
+ */
+import org.gs1.tools.GMNFlowProcessor;
+import org.gs1.tools.GMNHttpServer;
+import org.gs1.tools.GMNLoadTest;
+import org.gs1.tools.GMNRequestCoalescer;
+
+public class GMNHttpServerTests
+{
+
+        private GMNHttpServer server;
+        private HttpClient client;
+
+        @Before
+        public void start() throws Exception
+        {
+            server = new GMNHttpServer(new InetSocketAddress("127.0.0.1", 0), GMNRequestCoalescer.DEFAULT_MAX_BATCH);
+            server.start();
+            client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        }
+
+        @After
+        public void stop()
+        {
+            server.close();
+        }
+
+        private HttpResponse<String> get(String path) throws Exception
+        {
+            return client.send(HttpRequest.newBuilder(uri(path)).GET().build(), HttpResponse.BodyHandlers.ofString());
+        }
+
+        private URI uri(String path)
+        {
+            return URI.create("http://127.0.0.1:" + server.getPort() + path);
+        }
+
+        private static String query(String gmn)
+        {
+            return "?gmn=" + URLEncoder.encode(gmn, StandardCharsets.UTF_8);
+        }
+
+        @Test
+        public void verifyAndComplete() throws Exception
+        {
+            HttpResponse<String> r = get("/verify" + query("1987654Ad4X4bL5ttr2310c2K"));
+            assertEquals(200, r.statusCode());
+            assertEquals("{\"input\":\"1987654Ad4X4bL5ttr2310c2K\",\"valid\":true,\"reason\":\"VALID\",\"position\":0,\"checkCharacters\":\"2K\"}\n", r.body());
+
+            r = get("/verify" + query("1987654Ad4X4bL5ttr2310c2X"));
+            assertEquals("{\"input\":\"1987654Ad4X4bL5ttr2310c2X\",\"valid\":false,\"reason\":\"CHECK_MISMATCH\",\"position\":23,\"checkCharacters\":\"2K\"," +
+                         "\"message\":\"The check character pair is incorrect.\"}\n", r.body());
+
+            r = get("/complete" + query("1987654Ad4X4bL5ttr2310c"));
+            assertEquals("{\"input\":\"1987654Ad4X4bL5ttr2310c\",\"valid\":true,\"reason\":\"VALID\",\"position\":0,\"checkCharacters\":\"2K\"}\n", r.body());
+
+            r = get("/complete" + query("12\"45"));
+            assertEquals("{\"input\":\"12\\\"45\",\"valid\":false,\"reason\":\"TOO_SHORT\",\"position\":0,\"checkCharacters\":null," +
+                         "\"message\":\"The input is too short. It should be at least 6 characters long excluding the check character pair.\"}\n", r.body());
+
+            assertEquals(400, get("/verify").statusCode());
+            assertEquals(405, client.send(HttpRequest.newBuilder(uri("/verify")).POST(HttpRequest.BodyPublishers.noBody()).build(),
+                                          HttpResponse.BodyHandlers.ofString()).statusCode());
+        }
+
+        @Test
+        public void batch() throws Exception
+        {
+            String body = "1987654Ad4X4bL5ttr2310c2K\n\n  1987654Ad4X4bL5ttr2310c2X\r\n12345";
+            HttpResponse<String> r = client.send(HttpRequest.newBuilder(uri("/batch/verify"))
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, r.statusCode());
+            String[] lines = r.body().split("\n");
+            assertEquals(3, lines.length);
+            assertTrue(lines[0].contains("\"valid\":true"));
+            assertTrue(lines[1].contains("\"reason\":\"CHECK_MISMATCH\""));
+            assertTrue(lines[2].contains("\"reason\":\"TOO_SHORT\""));
+        }
+
+        @Test
+        public void concurrentRequestsCoalesced() throws Exception
+        {
+            List<CompletableFuture<HttpResponse<String>>> futures = new ArrayList<CompletableFuture<HttpResponse<String>>>();
+            for (int i = 0; i < 200; i++)
+                futures.add(client.sendAsync(HttpRequest.newBuilder(uri("/verify" + query("1987654Ad4X4bL5ttr2310c2K"))).GET().build(),
+                                             HttpResponse.BodyHandlers.ofString()));
+            for (CompletableFuture<HttpResponse<String>> f : futures)
+                assertTrue(f.get().body().contains("\"valid\":true"));
+            assertEquals(200, server.getCoalescer().getRequestCount());
+            assertTrue(server.getCoalescer().getBatchCount() <= 200);
+        }
+
+        @Test
+        public void loadTestHarness() throws Exception
+        {
+            GMNLoadTest.Report r = GMNLoadTest.runEmbedded(4, Duration.ofMillis(300));
+            assertTrue(r.getRequests() > 0);
+            assertEquals(0, r.getErrors());
+            assertTrue(r.getP99Nanos() >= r.getP50Nanos());
+            assertTrue(r.getBatches() > 0);
+        }
+
+        @Test
+        public void coalescerClosedConcurrently() throws Exception
+        {
+            // Every request submitted around a close completes, normally or
+            // exceptionally, rather than being left pending
+            for (int round = 0; round < 200; round++)
+            {
+                GMNRequestCoalescer coalescer = new GMNRequestCoalescer();
+                List<CompletableFuture<GMNFlowProcessor.Result<String>>> futures =
+                    new ArrayList<CompletableFuture<GMNFlowProcessor.Result<String>>>();
+                Thread submitter = new Thread(() -> {
+                    for (int i = 0; i < 50; i++)
+                        futures.add(coalescer.submit(GMNFlowProcessor.Mode.VERIFY, "1987654Ad4X4bL5ttr2310c2K"));
+                });
+                submitter.start();
+                coalescer.close();
+                submitter.join();
+                for (CompletableFuture<GMNFlowProcessor.Result<String>> f : futures)
+                    assertTrue(f.isDone());
+            }
+        }
+
+        @Test
+        public void coalescerRejectsNull() throws Exception
+        {
+            // A rejected request leaves the dispatcher running for later ones
+            try (GMNRequestCoalescer coalescer = new GMNRequestCoalescer())
+            {
+                try
+                {
+                    coalescer.submit(GMNFlowProcessor.Mode.VERIFY, null);
+                    fail();
+                }
+                catch (NullPointerException e)
+                {
+                }
+                try
+                {
+                    coalescer.submit(null, "1987654Ad4X4bL5ttr2310c2K");
+                    fail();
+                }
+                catch (NullPointerException e)
+                {
+                }
+                GMNFlowProcessor.Result<String> r =
+                    coalescer.submit(GMNFlowProcessor.Mode.VERIFY, "1987654Ad4X4bL5ttr2310c2K").get(5, TimeUnit.SECONDS);
+                assertTrue(r.isValid());
+                assertEquals("2K", coalescer.submit(GMNFlowProcessor.Mode.COMPLETE, "1987654Ad4X4bL5ttr2310c").get(5, TimeUnit.SECONDS).getCheckCharacters());
+            }
+        }
+
+}